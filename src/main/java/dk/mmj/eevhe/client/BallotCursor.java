@@ -0,0 +1,136 @@
+package dk.mmj.eevhe.client;
+
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.entities.BallotPage;
+import dk.mmj.eevhe.entities.PersistedBallot;
+import dk.mmj.eevhe.interfaces.BallotFetcher;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.cert.X509CertificateHolder;
+
+import javax.ws.rs.client.WebTarget;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * {@link BallotFetcher} which remembers the ballots it has fetched, and only fetches ballots cast since the last call.
+ * <br>
+ * Peers agree on each ballot separately, so each peer adds ballots in its own order, and assigns its own sequence numbers.
+ * The cursor therefore keeps a position in the list of each peer, and fetches pages of at most pageSize ballots
+ * after those positions, so refreshing repeatedly only transfers new ballots.
+ * A page only moves the position of a peer if it is proven to start right after it, in the tree the peer has signed the head of,
+ * so stale or replayed pages never make the cursor skip ballots.
+ * <br>
+ * Ballots are recognized by their {@link BallotDigest}, and a ballot is only returned once a majority of the peers
+ * have reported it. A ballot is returned once, with the latest timestamp reported by the peers it was first accepted from,
+ * so it is only considered cast before a time, if that majority agrees. Returned ballots are never removed or reordered,
+ * so the result of a call is a prefix of the result of any later call.
+ * <br>
+ * Calls are synchronized, so concurrent callers do not fetch the same ballots twice.
+ */
+public class BallotCursor implements BallotFetcher {
+    static final int DEFAULT_PAGE_SIZE = 1000;
+    private final Logger logger;
+    private final WebTarget bulletinBoard;
+    private final Supplier<? extends Collection<X509CertificateHolder>> certificates;
+    private final int pageSize;
+    private final Map<X509CertificateHolder, Long> positions = new HashMap<>();
+    private final Map<String, Report> pending = new HashMap<>();
+    private final Set<String> accepted = new HashSet<>();
+    private final List<PersistedBallot> ballots = new ArrayList<>();
+
+    /**
+     * @param logger        logger to be used in giving feedback
+     * @param bulletinBoard WebTarget pointing at bulletinBoard
+     * @param certificates  supplies the valid BB-peer certificates
+     */
+    public BallotCursor(Logger logger, WebTarget bulletinBoard, Supplier<? extends Collection<X509CertificateHolder>> certificates) {
+        this(logger, bulletinBoard, certificates, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param logger        logger to be used in giving feedback
+     * @param bulletinBoard WebTarget pointing at bulletinBoard
+     * @param certificates  supplies the valid BB-peer certificates
+     * @param pageSize      maximal number of ballots to fetch from each peer in one request
+     */
+    public BallotCursor(Logger logger, WebTarget bulletinBoard, Supplier<? extends Collection<X509CertificateHolder>> certificates, int pageSize) {
+        this.logger = logger;
+        this.bulletinBoard = bulletinBoard;
+        this.certificates = certificates;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Fetches pages of new ballots from all peers, until no peer returns a full page
+     *
+     * @return all ballots reported by a majority of peers so far, or null if no peer returned a valid page
+     */
+    @Override
+    public synchronized List<PersistedBallot> getBallots() {
+        Collection<X509CertificateHolder> certs = certificates.get();
+        int majority = certs.size() / 2 + 1;
+
+        boolean full;
+        do {
+            Map<X509CertificateHolder, Long> after = new HashMap<>(positions);
+            after.keySet().retainAll(certs);
+
+            Map<X509CertificateHolder, BallotPage> pages =
+                    FetchingUtilities.getBallotPages(logger, bulletinBoard, after, pageSize, certs);
+            if (pages == null || pages.isEmpty()) {
+                logger.warn("Failed to fetch ballots from the bulletin board peers");
+                return null;
+            }
+
+            full = false;
+            for (Map.Entry<X509CertificateHolder, BallotPage> page : pages.entrySet()) {
+                X509CertificateHolder peer = page.getKey();
+                long position = positions.getOrDefault(peer, -1L);
+                List<PersistedBallot> content = page.getValue().getBallots();
+                if (page.getValue().getStart() != position + 1 || content == null) {
+                    logger.warn("Ignoring page of ballots starting at " + page.getValue().getStart()
+                            + ", when the next ballot from the peer is " + (position + 1));
+                    continue;
+                }
+
+                for (PersistedBallot ballot : content) {
+                    report(peer, ballot, majority);
+                }
+
+                positions.put(peer, position + content.size());
+                full |= content.size() >= pageSize;
+            }
+        } while (full);
+
+        return new ArrayList<>(ballots);
+    }
+
+    /**
+     * Registers that a peer has reported a ballot, and accepts the ballot when a majority of peers have
+     */
+    private void report(X509CertificateHolder peer, PersistedBallot ballot, int majority) {
+        String digest = BallotDigest.hash(ballot);
+        if (accepted.contains(digest)) {
+            return;
+        }
+
+        Report report = pending.computeIfAbsent(digest, d -> new Report());
+        if (report.peers.add(peer) && (report.latest == null || ballot.getTs().after(report.latest.getTs()))) {
+            report.latest = ballot;
+        }
+
+        if (report.peers.size() >= majority) {
+            pending.remove(digest);
+            accepted.add(digest);
+            ballots.add(report.latest);
+        }
+    }
+
+    /**
+     * The peers which have reported a ballot, which has not yet been accepted
+     */
+    private static class Report {
+        private final Set<X509CertificateHolder> peers = new HashSet<>();
+        private PersistedBallot latest;
+    }
+}
@@ -27,6 +27,7 @@ import static dk.mmj.eevhe.client.SSLHelper.configureWebTarget;
  * <ul>
  *     <li>{@link Voter}</li>
  *     <li>{@link ResultFetcher}</li>
+ *     <li>{@link LoadGenerator}</li>
  * </ul>
  */
 public abstract class Client implements Application {
@@ -23,6 +23,11 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
     private static final String READ = "read=";
     private static final String FORCE_CALCULATIONS = "forceCalculations=";
     private static final String ELECTION_CERT_PATH = "electionCertificate=";
+    private static final String DLOG_TABLE_PATH = "dlogTable=";
+    private static final String LOAD = "load=";
+    private static final String RATE = "rate=";
+    private static final String RAMP_UP = "rampUp=";
+    private static final String DURATION = "duration=";
 
     //State
     private String targetUrl = "https://localhost:8080";
@@ -32,6 +37,11 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
     private boolean read = false;
     private boolean forceCalculations = false;
     private Path electionCertPath = Paths.get("certs/test_glob.pem");
+    private Path dlogTablePath = null;
+    private Integer loadSessions = null;
+    private double rate = 0;
+    private long rampUp = 0;
+    private long duration = 60_000;
 
     /**
      * Sets the local variables by translating the input from the command line.
@@ -56,6 +66,16 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
             forceCalculations = Boolean.parseBoolean(cmd.substring(FORCE_CALCULATIONS.length()));
         } else if (cmd.startsWith(ELECTION_CERT_PATH)) {
             electionCertPath = Paths.get(cmd.substring(ELECTION_CERT_PATH.length()));
+        } else if (cmd.startsWith(DLOG_TABLE_PATH)) {
+            dlogTablePath = Paths.get(cmd.substring(DLOG_TABLE_PATH.length()));
+        } else if (cmd.startsWith(LOAD)) {
+            loadSessions = Integer.parseInt(cmd.substring(LOAD.length()));
+        } else if (cmd.startsWith(RATE)) {
+            rate = Double.parseDouble(cmd.substring(RATE.length()));
+        } else if (cmd.startsWith(RAMP_UP)) {
+            rampUp = Long.parseLong(cmd.substring(RAMP_UP.length())) * 1_000;
+        } else if (cmd.startsWith(DURATION)) {
+            duration = Long.parseLong(cmd.substring(DURATION.length())) * 1_000;
         } else if (!cmd.equals(SELF)) {
             logger.warn("Did not recognize command " + command.getCommand());
         }
@@ -63,13 +83,16 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
 
     /**
      * Returns the {@link Voter.VoterConfiguration} with the loaded variables.
+     * If reading results or generating load, the configuration for that is returned instead
      *
      * @return Configuration for client execution
      */
     @Override
     public Client.ClientConfiguration<? extends Client> build() {
         if (read) {
-            return new ResultFetcher.ResultFetcherConfiguration(targetUrl, forceCalculations, electionCertPath);
+            return new ResultFetcher.ResultFetcherConfiguration(targetUrl, forceCalculations, electionCertPath, dlogTablePath);
+        } else if (loadSessions != null) {
+            return new LoadGenerator.LoadGeneratorConfiguration(targetUrl, electionCertPath, loadSessions, rate, rampUp, duration);
         } else {
             return new Voter.VoterConfiguration(targetUrl, id, vote, multi, electionCertPath);
         }
@@ -89,7 +112,12 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
                 "\t  --" + READ + "boolean\t Default=false. If true, all params except " + TARGET_URL.substring(0, TARGET_URL.length() - 1) +
                 "are ignored. Fetches poll results from bulletin board.\n" +
                 "\t  --" + FORCE_CALCULATIONS + "boolean\t\t Forces client to calculate sum of votes.\n" +
-                "\t  --" + ELECTION_CERT_PATH + "Path\t\t Points to global election certificate to verify DA and BB certs.\n";
+                "\t  --" + ELECTION_CERT_PATH + "Path\t\t Points to global election certificate to verify DA and BB certs.\n" +
+                "\t  --" + DLOG_TABLE_PATH + "Path\t\t Table used when decrypting results. Loaded if present, otherwise written after decryption.\n" +
+                "\t  --" + LOAD + "int\t\t Generates load with this many concurrent voter sessions, and reports latencies. id, vote and multi are ignored\n" +
+                "\t  --" + RATE + "double\t\t Target rate of ballots per second when generating load. Default=0, meaning as fast as possible\n" +
+                "\t  --" + RAMP_UP + "int\t\t Seconds to ramp up to the target rate. Default=0\n" +
+                "\t  --" + DURATION + "int\t\t Seconds to generate load for, including ramp-up. Default=60\n";
     }
 
     @Override
@@ -101,7 +129,12 @@ public class ClientConfigBuilder implements CommandLineParser.ConfigBuilder<Clie
                 MULTI,
                 READ,
                 FORCE_CALCULATIONS,
-                ELECTION_CERT_PATH
+                ELECTION_CERT_PATH,
+                DLOG_TABLE_PATH,
+                LOAD,
+                RATE,
+                RAMP_UP,
+                DURATION
         );
     }
 }
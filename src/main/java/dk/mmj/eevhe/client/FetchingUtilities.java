@@ -1,13 +1,10 @@
 package dk.mmj.eevhe.client;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
-import dk.mmj.eevhe.entities.PartialPublicInfo;
-import dk.mmj.eevhe.entities.PersistedBallot;
-import dk.mmj.eevhe.entities.SignedEntity;
-import dk.mmj.eevhe.entities.wrappers.BallotWrapper;
+import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.entities.wrappers.PublicInfoWrapper;
 import dk.mmj.eevhe.entities.wrappers.StringListWrapper;
 import org.apache.logging.log4j.Logger;
@@ -19,8 +16,10 @@ import org.bouncycastle.operator.ContentVerifierProvider;
 import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.bc.BcRSAContentVerifierProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
 
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -31,7 +30,10 @@ import java.util.stream.Collectors;
  */
 public class FetchingUtilities {
 
-    private static final ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Responses are requested as Smile, which is more compact, but JSON is accepted from servers not producing Smile
+     */
+    private static final String[] ACCEPTED_TYPES = {SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON};
 
     /**
      * Fetches and verifies certificate for da with given id, and extracts it's publicKey
@@ -66,21 +68,269 @@ public class FetchingUtilities {
     }
 
     /**
-     * Retrieves cast ballots from BulletinBoard
+     * Retrieves cast ballots from BulletinBoard, see {@link BallotCursor}
      *
      * @param logger            logger to be used in giving feedback
      * @param bulletinBoard     WebTarget pointing at bulletinBoard
      * @param validCertificates collection of valid BB-peer certificates
-     * @return list of ballots from BulletinBoard
+     * @return list of ballots reported by a majority of the BB-peers, or null if ballots could not be fetched
      */
     public static List<PersistedBallot> getBallots(Logger logger, WebTarget bulletinBoard, Collection<X509CertificateHolder> validCertificates) {
-        return fetch(
-                bulletinBoard.path("getBallots"),
-                new TypeReference<BallotWrapper>() {
-                },
-                validCertificates,
-                logger
-        ).getContent();
+        return new BallotCursor(logger, bulletinBoard, () -> validCertificates).getBallots();
+    }
+
+    /**
+     * Retrieves, from each BB-peer, the ballots it has added after a position in its own list of ballots
+     * <br>
+     * Peers agree on each ballot separately, and add it once they have, so each peer has its own order of ballots,
+     * and the position of a ballot is only meaningful for the peer that assigned it.
+     * The pages are therefore not compared, but returned for each peer, identified by the certificate it signed its tree head with.
+     * <br>
+     * Pages are not signed, but proven against the signed tree head they hold, see {@link #verifyBallotPage}
+     *
+     * @param logger            logger to be used in giving feedback
+     * @param bulletinBoard     WebTarget pointing at bulletinBoard
+     * @param after             position of the last ballot already fetched from each peer. Other peers start from their first ballot
+     * @param limit             maximal number of ballots to fetch from each peer
+     * @param validCertificates collection of valid BB-peer certificates
+     * @return the page from each peer with a valid tree head and proof, or null if ballots could not be fetched.
+     * The pages may be stale, so readers must check where they start
+     */
+    public static Map<X509CertificateHolder, BallotPage> getBallotPages(
+            Logger logger,
+            WebTarget bulletinBoard,
+            Map<X509CertificateHolder, Long> after,
+            int limit,
+            Collection<X509CertificateHolder> validCertificates) {
+        try {
+            WebTarget target = bulletinBoard.path("getBallots").queryParam("limit", limit);
+            for (Map.Entry<X509CertificateHolder, Long> position : after.entrySet()) {
+                target = target.queryParam("after", CertificateHelper.fingerprint(position.getKey()) + ":" + position.getValue());
+            }
+
+            byte[] response = target.request(ACCEPTED_TYPES).get(byte[].class);
+            List<BallotPage> pages = SmileProvider.readValue(response, new TypeReference<List<BallotPage>>() {
+            });
+
+            return verifyBallotPages(pages, validCertificates, logger);
+        } catch (Exception e) {
+            logger.warn("Failed to fetch ballots", e);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves, from each BB-peer, the first ballot cast by a voter
+     *
+     * @param logger            logger to be used in giving feedback
+     * @param bulletinBoard     WebTarget pointing at bulletinBoard
+     * @param id                id of the voter
+     * @param validCertificates collection of valid BB-peer certificates
+     * @return the ballot from each peer with a valid tree head and proof, or null if the ballot could not be fetched
+     */
+    public static Map<X509CertificateHolder, PersistedBallot> getBallot(
+            Logger logger,
+            WebTarget bulletinBoard,
+            String id,
+            Collection<X509CertificateHolder> validCertificates) {
+        try {
+            byte[] response = bulletinBoard.path("getBallot").path(id).request(ACCEPTED_TYPES).get(byte[].class);
+            List<BallotPage> pages = SmileProvider.readValue(response, new TypeReference<List<BallotPage>>() {
+            });
+
+            Map<X509CertificateHolder, PersistedBallot> result = new LinkedHashMap<>();
+            verifyBallotPages(pages, validCertificates, logger).forEach((cert, page) -> {
+                if (page.getBallots().size() == 1 && id.equals(page.getBallots().get(0).getId())) {
+                    result.put(cert, page.getBallots().get(0));
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            logger.warn("Failed to fetch ballot for voter with id " + id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #verifyBySigner}, but for pages, where the tree head is signed, and the ballots are proven against it
+     *
+     * @param pages        pages of ballots
+     * @param certificates list of all valid certificates
+     * @param logger       logger to be used in reporting errors
+     * @return the page from each peer, for those peers which validly signed a page
+     */
+    private static Map<X509CertificateHolder, BallotPage> verifyBallotPages(
+            List<BallotPage> pages, Collection<X509CertificateHolder> certificates, Logger logger) {
+        Map<X509CertificateHolder, BallotPage> result = new LinkedHashMap<>();
+
+        for (BallotPage page : pages) {
+            certificates.stream()
+                    .filter(c -> !result.containsKey(c))
+                    .filter(c -> verifyBallotPage(page, c, logger))
+                    .findAny()
+                    .ifPresent(c -> result.put(c, page));
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks that the tree head of a page is signed by a peer,
+     * and that the ballots, with their timestamps, are at the positions the page claims in that tree
+     *
+     * @param page   the page
+     * @param cert   certificate of the peer
+     * @param logger logger to be used in reporting errors
+     * @return whether the page is valid, and from the peer
+     */
+    static boolean verifyBallotPage(BallotPage page, X509CertificateHolder cert, Logger logger) {
+        SignedEntity<TreeHead> treeHead = page.getTreeHead();
+        if (treeHead == null || treeHead.getEntity() == null || page.getBallots() == null
+                || !verifySignedEntity(treeHead, cert, logger)) {
+            return false;
+        }
+        if (page.getBallots().isEmpty()) {
+            return true;
+        }
+
+        try {
+            List<byte[]> leaves = page.getBallots().stream().map(BallotDigest::leaf).collect(Collectors.toList());
+            TreeHead head = treeHead.getEntity();
+            return MerkleTree.verifyRange(leaves, page.getStart(), head.getSize(), fromHex(page.getProof()), Hex.decode(head.getRootHash()));
+        } catch (RuntimeException e) {
+            logger.warn("Malformed page of ballots from peer " + cert.getSubject(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Long-polls the bulletinBoard for receipts for a ballot, returning once a majority of peers have included it,
+     * or the timeout has passed
+     *
+     * @param logger            logger to be used in giving feedback
+     * @param bulletinBoard     WebTarget pointing at bulletinBoard
+     * @param ballot            the ballot that was cast
+     * @param timeout           time in ms to wait for the ballot to be included
+     * @param validCertificates collection of valid BB-peer certificates
+     * @return receipt for the ballot from each peer which validly signed one, or null if receipts could not be fetched
+     */
+    public static Map<X509CertificateHolder, BallotReceipt> getBallotReceipts(
+            Logger logger,
+            WebTarget bulletinBoard,
+            BallotDTO ballot,
+            long timeout,
+            Collection<X509CertificateHolder> validCertificates) {
+        try {
+            byte[] response = bulletinBoard.path("receipt").path(ballot.getId())
+                    .queryParam("timeout", timeout)
+                    .request(ACCEPTED_TYPES).get(byte[].class);
+
+            List<SignedEntity<BallotReceipt>> receipts = SmileProvider.readValue(response,
+                    new TypeReference<List<SignedEntity<BallotReceipt>>>() {
+                    });
+
+            String ballotHash = BallotDigest.hash(ballot);
+            Map<X509CertificateHolder, BallotReceipt> result = verifyBySigner(receipts, validCertificates, logger);
+            result.values().removeIf(r -> !ballot.getId().equals(r.getId()) || !ballotHash.equals(r.getBallotHash()));
+            return result;
+        } catch (Exception e) {
+            logger.warn("Failed to fetch receipts for ballot with id " + ballot.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the head of the Merkle tree over the ballots of each BB-peer.
+     * <br>
+     * Each peer adds ballots in the order it reaches agreement on them, so peers generally have different trees,
+     * and a head only commits the peer which signed it. Positions in receipts and proofs must be checked
+     * against the head of the same peer
+     *
+     * @param logger            logger to be used in giving feedback
+     * @param bulletinBoard     WebTarget pointing at bulletinBoard
+     * @param validCertificates collection of valid BB-peer certificates
+     * @return the tree head signed by each peer, or null if tree heads could not be fetched
+     */
+    public static Map<X509CertificateHolder, TreeHead> getTreeHeads(Logger logger, WebTarget bulletinBoard, Collection<X509CertificateHolder> validCertificates) {
+        try {
+            byte[] response = bulletinBoard.path("treeHead").request(ACCEPTED_TYPES).get(byte[].class);
+
+            List<SignedEntity<TreeHead>> heads = SmileProvider.readValue(response,
+                    new TypeReference<List<SignedEntity<TreeHead>>>() {
+                    });
+
+            return verifyBySigner(heads, validCertificates, logger);
+        } catch (Exception e) {
+            logger.warn("Failed to fetch tree heads", e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetches inclusion proofs for a ballot, and checks whether any of them proves the ballot is in the tree with the given head.
+     * <br>
+     * Proofs are not signed, so a single valid proof from any peer is enough.
+     * Peers order ballots differently, so the receipt and head must both come from the same peer,
+     * and only that peer's proof will match them
+     *
+     * @param logger        logger to be used in giving feedback
+     * @param bulletinBoard WebTarget pointing at bulletinBoard
+     * @param receipt       receipt for the ballot, which has been checked against the ballot
+     * @param head          tree head signed by the same peer
+     * @return whether the ballot is included in the tree
+     */
+    public static boolean verifyInclusion(Logger logger, WebTarget bulletinBoard, BallotReceipt receipt, TreeHead head) {
+        long position = receipt.getPosition();
+        try {
+            byte[] response = bulletinBoard.path("inclusionProof").path(Long.toString(position))
+                    .queryParam("size", head.getSize())
+                    .request(ACCEPTED_TYPES).get(byte[].class);
+
+            List<InclusionProof> proofs = SmileProvider.readValue(response, new TypeReference<List<InclusionProof>>() {
+            });
+
+            byte[] leaf = BallotDigest.leaf(receipt.getBallotHash(), receipt.getTimestamp());
+            byte[] root = Hex.decode(head.getRootHash());
+            return proofs.stream().anyMatch(p -> p.getLeafIndex() == position && p.getTreeSize() == head.getSize()
+                    && MerkleTree.verifyInclusion(leaf, position, head.getSize(), fromHex(p.getPath()), root));
+        } catch (Exception e) {
+            logger.warn("Failed to verify inclusion of ballot with id " + receipt.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Fetches consistency proofs between two tree heads, and checks whether any of them proves that the old tree
+     * is a prefix of the new, meaning no ballots were changed or removed in between
+     *
+     * @param logger        logger to be used in giving feedback
+     * @param bulletinBoard WebTarget pointing at bulletinBoard
+     * @param oldHead       the old tree head
+     * @param newHead       the new tree head, signed by the same peer as the old one
+     * @return whether the trees are consistent
+     */
+    public static boolean verifyConsistency(Logger logger, WebTarget bulletinBoard, TreeHead oldHead, TreeHead newHead) {
+        try {
+            byte[] response = bulletinBoard.path("consistencyProof")
+                    .queryParam("from", oldHead.getSize())
+                    .queryParam("to", newHead.getSize())
+                    .request(ACCEPTED_TYPES).get(byte[].class);
+
+            List<ConsistencyProof> proofs = SmileProvider.readValue(response, new TypeReference<List<ConsistencyProof>>() {
+            });
+
+            byte[] oldRoot = Hex.decode(oldHead.getRootHash());
+            byte[] newRoot = Hex.decode(newHead.getRootHash());
+            return proofs.stream().anyMatch(p -> p.getOldSize() == oldHead.getSize() && p.getNewSize() == newHead.getSize()
+                    && MerkleTree.verifyConsistency(oldHead.getSize(), newHead.getSize(), oldRoot, newRoot, fromHex(p.getPath())));
+        } catch (Exception e) {
+            logger.warn("Failed to verify consistency of tree heads " + oldHead + " and " + newHead, e);
+            return false;
+        }
+    }
+
+    private static List<byte[]> fromHex(List<String> hashes) {
+        return hashes == null ? null : hashes.stream().map(Hex::decode).collect(Collectors.toList());
     }
 
     /**
@@ -141,13 +391,13 @@ public class FetchingUtilities {
             Collection<X509CertificateHolder> validCertificates,
             Logger logger
     ) {
-        String serializedResponse = target.request().get(String.class);
+        byte[] serializedResponse = target.request(ACCEPTED_TYPES).get(byte[].class);
 
         List<SignedEntity<T>> deserializedResponse;
         try {
-            deserializedResponse = mapper.readValue(serializedResponse, new TypeReference<List<SignedEntity<T>>>() {
+            deserializedResponse = SmileProvider.readValue(serializedResponse, new TypeReference<List<SignedEntity<T>>>() {
             });
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             throw new RuntimeException("Failed to deserialize response", e);
         }
 
@@ -164,7 +414,7 @@ public class FetchingUtilities {
      */
     public static List<X509CertificateHolder> getBBPeerCertificates(Logger logger, WebTarget edgeTarget, AsymmetricKeyParameter electionPk) {
         try {
-            String responseString = edgeTarget.path("peerCertificates").request().get(String.class);
+            byte[] response = edgeTarget.path("peerCertificates").request(ACCEPTED_TYPES).get(byte[].class);
 
             ContentVerifierProvider verifier;
             try {
@@ -177,7 +427,7 @@ public class FetchingUtilities {
 
             List<SignedEntity<StringListWrapper>> certificates;
             try {
-                certificates = new ObjectMapper().readValue(responseString, new TypeReference<List<SignedEntity<StringListWrapper>>>() {
+                certificates = SmileProvider.readValue(response, new TypeReference<List<SignedEntity<StringListWrapper>>>() {
                 });
             } catch (IOException e) {
                 logger.error("FetchingUtilities: Failed to deserialize certificate list retrieved from bulletin board. Target: " + edgeTarget, e);
@@ -279,6 +529,29 @@ public class FetchingUtilities {
         return result;
     }
 
+    /**
+     * Like {@link #verifySignedAndValid(List, Collection, Logger)}, but keeps track of who signed each entity
+     *
+     * @param list         list of signed entities
+     * @param certificates list of all valid certificates
+     * @param logger       logger to be used in reporting errors
+     * @param <T>          type of entities
+     * @return the entity signed by each certificate, for those certificates which signed an entity
+     */
+    static <T> Map<X509CertificateHolder, T> verifyBySigner(List<SignedEntity<T>> list, Collection<X509CertificateHolder> certificates, Logger logger) {
+        Map<X509CertificateHolder, T> result = new LinkedHashMap<>();
+
+        for (SignedEntity<T> entity : list) {
+            certificates.stream()
+                    .filter(c -> !result.containsKey(c))
+                    .filter(c -> verifySignedEntity(entity, c, logger))
+                    .findAny()
+                    .ifPresent(c -> result.put(c, entity.getEntity()));
+        }
+
+        return result;
+    }
+
     private static boolean verifySignedEntity(SignedEntity<?> entity, X509CertificateHolder cert, Logger logger) {
         try {
             return entity.verifySignature(CertificateHelper.getPublicKeyFromCertificate(cert));
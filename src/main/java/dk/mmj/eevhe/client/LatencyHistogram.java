@@ -0,0 +1,145 @@
+package dk.mmj.eevhe.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies, in microseconds, with a relative error of at most 1/{@value #SUB_BUCKETS}.
+ * <br>
+ * Values below 2 * {@value #SUB_BUCKETS} are counted exactly. Larger values are grouped by their highest set bit,
+ * and each such range is split into {@value #SUB_BUCKETS} buckets of equal width,
+ * so recording a value is a few bit operations and a single atomic increment.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = SUB_BUCKETS * 2;
+    private static final int BUCKET_COUNT = EXACT_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name name of what is measured, used when printing the histogram
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records the time elapsed since a start time
+     *
+     * @param startNanos start time, as given by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param micros latency in microseconds. Negative values are recorded as zero
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the largest recorded latency in microseconds, or 0 if none are recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of recorded latencies in microseconds, or 0 if none are recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns a percentile of the recorded latencies, being the upper bound of the bucket it falls in,
+     * capped at the largest recorded latency
+     *
+     * @param percentile the percentile in (0;100]
+     * @return the latency in microseconds, such that the given percentage of recorded latencies are at most that,
+     * or 0 if none are recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0;100], was: " + percentile);
+        }
+
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @param value latency in microseconds, not negative
+     * @return index of the bucket counting the value
+     */
+    static int bucketOf(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket index of a bucket
+     * @return the largest value counted in the bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - EXACT_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @return the name of what is measured
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s n=%d mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                name, getCount(), getMean() / 1000,
+                getPercentile(50) / 1000.0, getPercentile(95) / 1000.0, getPercentile(99) / 1000.0, getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,347 @@
+package dk.mmj.eevhe.client;
+
+import dk.mmj.eevhe.crypto.EncryptionPadPool;
+import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.entities.BallotDTO;
+import dk.mmj.eevhe.entities.BallotReceipt;
+import dk.mmj.eevhe.entities.PersistedBallot;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.cert.X509CertificateHolder;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator, casting random ballots from many concurrent voter sessions, for measuring
+ * how much voting traffic the bulletin board can take.
+ * <br>
+ * Ballots are dispatched at a target rate, which is ramped up linearly from zero, and sessions are run on a fixed
+ * thread pool. For every ballot, the time spent generating, posting and confirming it is recorded separately.
+ * <br>
+ * Confirmation waits for receipts from the bulletin board, as {@link Voter} does. If it does not hand out receipts,
+ * the ballot is polled for with exponential backoff, starting at {@value #INITIAL_POLL_DELAY} ms.
+ */
+public class LoadGenerator extends Client {
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+    private static final long INITIAL_POLL_DELAY = 25;
+    private static final long MAX_POLL_DELAY = 1_000;
+    private static final long CONFIRMATION_TIMEOUT = 30_000;
+    private final int sessions;
+    private final double rate;
+    private final long rampUp;
+    private final long duration;
+    private final LatencyHistogram generation = new LatencyHistogram("generation");
+    private final LatencyHistogram posting = new LatencyHistogram("posting");
+    private final LatencyHistogram confirmation = new LatencyHistogram("confirmation");
+    private final LatencyHistogram total = new LatencyHistogram("total");
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong unconfirmed = new AtomicLong();
+
+    /**
+     * @param configuration the configuration, built by {@link ClientConfigBuilder}
+     */
+    public LoadGenerator(LoadGeneratorConfiguration configuration) {
+        super(configuration);
+        sessions = configuration.sessions;
+        rate = configuration.rate;
+        rampUp = configuration.rampUp;
+        duration = configuration.duration;
+    }
+
+    /**
+     * Runs the load test, and prints latencies when it is done
+     */
+    @Override
+    public void run() {
+        if (fetchPublicInfo() == null) {
+            logger.error("Unable to fetch public information from bulletin board. Terminating");
+            return;
+        }
+        PublicKey publicKey = getPublicKey();
+        int candidates = getCandidates().size();
+        List<X509CertificateHolder> certs = getBBPeerCertificates();
+        Pacer pacer = new Pacer(rate, rampUp, duration, System.nanoTime());
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessions, r -> {
+            Thread thread = new Thread(r, "LoadGeneratorSession");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (EncryptionPadPool pool = new EncryptionPadPool(publicKey, (candidates + 1) * sessions,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2))) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                futures.add(executor.submit(() -> runSession(pacer, pool, candidates, certs)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while generating load");
+        } catch (ExecutionException e) {
+            logger.error("Voter session failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.out.println(report());
+        logger.info(report());
+    }
+
+    /**
+     * Casts ballots at the times given by the pacer, until the test is over
+     */
+    private void runSession(Pacer pacer, EncryptionPadPool pool, int candidates, List<X509CertificateHolder> certs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!Thread.currentThread().isInterrupted()) {
+            OptionalLong scheduled = pacer.next();
+            if (!scheduled.isPresent()) {
+                return;
+            }
+            if (!sleepUntil(scheduled.getAsLong())) {
+                return;
+            }
+            castBallot(random.nextInt(candidates), candidates, pool, certs);
+        }
+    }
+
+    /**
+     * Generates, posts and confirms a single ballot, recording the time spent on each
+     */
+    private void castBallot(int vote, int candidates, EncryptionPadPool pool, List<X509CertificateHolder> certs) {
+        String id = UUID.randomUUID().toString();
+
+        long start = System.nanoTime();
+        BallotDTO ballot = SecurityUtils.generateBallot(vote, candidates, id, pool);
+        generation.recordSince(start);
+
+        long postStart = System.nanoTime();
+        try {
+            Response response = target.path("postBallot").request()
+                    .post(Entity.entity(ballot, SmileProvider.APPLICATION_SMILE_TYPE));
+            response.close();
+            posting.recordSince(postStart);
+            if (response.getStatus() != 204) {
+                logger.debug("Ballot was rejected with status " + response.getStatus());
+                rejected.incrementAndGet();
+                return;
+            }
+        } catch (ProcessingException e) {
+            logger.debug("Failed to post ballot", e);
+            rejected.incrementAndGet();
+            return;
+        }
+
+        long confirmationStart = System.nanoTime();
+        if (awaitConfirmation(ballot, certs)) {
+            confirmation.recordSince(confirmationStart);
+            total.recordSince(start);
+            confirmed.incrementAndGet();
+        } else {
+            unconfirmed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits for receipts from a majority of bulletin board peers,
+     * or polls the bulletin board until a majority of peers have signed the ballot, backing off exponentially
+     *
+     * @param ballot the ballot that was posted
+     * @param certs  certificates of bulletin board peers
+     * @return whether the ballot was confirmed within {@value #CONFIRMATION_TIMEOUT} ms
+     */
+    private boolean awaitConfirmation(BallotDTO ballot, List<X509CertificateHolder> certs) {
+        int threshold = (int) Math.ceil(((float) certs.size()) / 2);
+        Map<X509CertificateHolder, BallotReceipt> receipts = FetchingUtilities.getBallotReceipts(logger, target, ballot, CONFIRMATION_TIMEOUT, certs);
+        if (receipts != null) {
+            return receipts.size() >= threshold;
+        }
+
+        String id = ballot.getId();
+        long deadline = System.currentTimeMillis() + CONFIRMATION_TIMEOUT;
+        long delay = INITIAL_POLL_DELAY;
+
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(delay);
+                Map<X509CertificateHolder, PersistedBallot> ballots = FetchingUtilities.getBallot(logger, target, id, certs);
+                if (ballots != null && ballots.values().stream().filter(b -> b.isSameBallot(ballot)).count() >= threshold) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            delay = Math.min(delay * 2, MAX_POLL_DELAY);
+        }
+        return false;
+    }
+
+    /**
+     * @param nanoTime time to sleep until, as given by {@link System#nanoTime()}
+     * @return false if interrupted
+     */
+    private static boolean sleepUntil(long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return summary of the load test, with latencies for each phase
+     */
+    public String report() {
+        return "Load test with " + sessions + " sessions. Confirmed: " + confirmed.get()
+                + ", rejected: " + rejected.get() + ", unconfirmed: " + unconfirmed.get() + "\n"
+                + generation + "\n" + posting + "\n" + confirmation + "\n" + total;
+    }
+
+    /**
+     * @return latencies of generating ballots
+     */
+    public LatencyHistogram getGenerationLatency() {
+        return generation;
+    }
+
+    /**
+     * @return latencies of posting ballots
+     */
+    public LatencyHistogram getPostingLatency() {
+        return posting;
+    }
+
+    /**
+     * @return latencies from a ballot was posted until it was confirmed
+     */
+    public LatencyHistogram getConfirmationLatency() {
+        return confirmation;
+    }
+
+    /**
+     * @return number of ballots confirmed by a majority of bulletin board peers
+     */
+    public long getConfirmedCount() {
+        return confirmed.get();
+    }
+
+    /**
+     * Hands out the times at which ballots are to be cast, so sessions together cast ballots at the target rate.
+     * <br>
+     * During ramp-up, the rate grows linearly from zero, so by time t &#60; T the number of ballots is rate * t^2 / 2T.
+     * The n'th ballot is therefore scheduled at sqrt(2nT / rate) during ramp-up, and at a fixed interval afterwards.
+     * A rate of zero or less means no pacing, so sessions cast ballots back to back.
+     */
+    static class Pacer {
+        private final double rate;
+        private final double rampUp;
+        private final long durationNanos;
+        private final long start;
+        private long dispatched = 0;
+
+        /**
+         * @param rate     target rate in ballots per second, or zero for no pacing
+         * @param rampUp   time in ms to ramp up to the target rate
+         * @param duration time in ms to generate load for, including ramp-up
+         * @param start    start time, as given by {@link System#nanoTime()}
+         */
+        Pacer(double rate, long rampUp, long duration, long start) {
+            this.rate = rate;
+            this.rampUp = rampUp / 1_000d;
+            this.durationNanos = TimeUnit.MILLISECONDS.toNanos(duration);
+            this.start = start;
+        }
+
+        /**
+         * @return time to cast the next ballot, as given by {@link System#nanoTime()}, or empty if the test is over.
+         * The time may be negative, as nanoTime has an arbitrary origin
+         */
+        synchronized OptionalLong next() {
+            long scheduled = rate > 0
+                    ? start + (long) (offsetSeconds(dispatched) * 1e9)
+                    : System.nanoTime();
+            if (scheduled - start >= durationNanos) {
+                return OptionalLong.empty();
+            }
+            dispatched++;
+            return OptionalLong.of(scheduled);
+        }
+
+        /**
+         * @param n number of ballots before this one
+         * @return seconds from start at which the ballot is scheduled
+         */
+        double offsetSeconds(long n) {
+            double rampUpBallots = rate * rampUp / 2;
+            if (n < rampUpBallots) {
+                return Math.sqrt(2 * n * rampUp / rate);
+            }
+            return rampUp + (n - rampUpBallots) / rate;
+        }
+    }
+
+    /**
+     * Configuration for the load generator, built in the {@link ClientConfigBuilder}
+     */
+    public static class LoadGeneratorConfiguration extends ClientConfiguration<LoadGenerator> {
+        private final int sessions;
+        private final double rate;
+        private final long rampUp;
+        private final long duration;
+
+        /**
+         * @param targetUrl        url for bulletin board to post ballots to
+         * @param electionCertPath path to global election certificate
+         * @param sessions         number of concurrent voter sessions
+         * @param rate             target rate in ballots per second, or zero to cast ballots as fast as possible
+         * @param rampUp           time in ms to ramp up to the target rate
+         * @param duration         time in ms to generate load for, including ramp-up
+         */
+        LoadGeneratorConfiguration(String targetUrl, Path electionCertPath, int sessions, double rate, long rampUp, long duration) {
+            super(LoadGenerator.class, targetUrl, electionCertPath);
+            if (sessions < 1) {
+                throw new IllegalArgumentException("Number of sessions must be positive, was: " + sessions);
+            }
+            this.sessions = sessions;
+            this.rate = rate;
+            this.rampUp = rampUp;
+            this.duration = duration;
+        }
+
+        int getSessions() {
+            return sessions;
+        }
+
+        double getRate() {
+            return rate;
+        }
+
+        long getRampUp() {
+            return rampUp;
+        }
+
+        long getDuration() {
+            return duration;
+        }
+    }
+}
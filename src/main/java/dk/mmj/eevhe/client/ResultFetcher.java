@@ -4,11 +4,15 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import dk.mmj.eevhe.client.results.ElectionResult;
 import dk.mmj.eevhe.client.results.ResultCombinerImpl;
+import dk.mmj.eevhe.crypto.DiscreteLogTable;
+import dk.mmj.eevhe.crypto.Groups;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.entities.wrappers.PartialResultWrapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
@@ -22,18 +26,24 @@ import java.util.stream.Collectors;
 public class ResultFetcher extends Client {
     private static final Logger logger = LogManager.getLogger(ResultFetcher.class);
     private final boolean forceCalculation;
+    private final Path dlogTablePath;
+    private final BallotCursor ballotCursor;
     private ElectionResult electionResult;
 
     @SuppressWarnings("unused")//Used through reflection
     public ResultFetcher(ResultFetcherConfiguration configuration) {
         super(configuration);
         this.forceCalculation = configuration.forceCalculations;
+        this.dlogTablePath = configuration.dlogTablePath;
+        this.ballotCursor = new BallotCursor(logger, target, this::getBBPeerCertificates);
     }
 
     @SuppressWarnings("unused")//For gui impl
     public ResultFetcher(String address, boolean forceCalculation) {
-        super(new ResultFetcherConfiguration(address, forceCalculation, Paths.get("certs/test_glob.pem")));
+        super(new ResultFetcherConfiguration(address, forceCalculation, Paths.get("certs/test_glob.pem"), null));
         this.forceCalculation = forceCalculation;
+        this.dlogTablePath = null;
+        this.ballotCursor = new BallotCursor(logger, target, this::getBBPeerCertificates);
     }
 
     @Override
@@ -82,14 +92,22 @@ public class ResultFetcher extends Client {
             return;
         }
 
+        loadDiscreteLogTable();
+
         ResultCombinerImpl combiner = new ResultCombinerImpl(
                 forceCalculation, publicKey, candidates,
                 () -> FetchingUtilities.getPublicInfos(logger, target, cert, getBBPeerCertificates()),
-                () -> FetchingUtilities.getBallots(logger, target, getBBPeerCertificates()),
+                ballotCursor,
                 endTime);
 
 
         electionResult = combiner.computeResult(results);
+        if (electionResult == null) {
+            logger.error("Failed to compute election result");
+            return;
+        }
+
+        storeDiscreteLogTable(publicKey, electionResult.getVotesTotal());
 
         StringBuilder resBuilder = new StringBuilder().append("Results:\n-----------------------------\n");
 
@@ -107,6 +125,42 @@ public class ResultFetcher extends Client {
         logger.info(resBuilder.toString());
     }
 
+    /**
+     * Loads the discrete log table, if one is configured and present
+     */
+    private void loadDiscreteLogTable() {
+        if (dlogTablePath == null || !Files.exists(dlogTablePath)) {
+            return;
+        }
+
+        try {
+            DiscreteLogTable table = DiscreteLogTable.read(dlogTablePath);
+            DiscreteLogTable.register(table);
+            logger.info("Loaded discrete log table with " + table.getBabySteps() + " entries");
+        } catch (IOException e) {
+            logger.warn("Failed to read discrete log table from " + dlogTablePath + ". Computing it instead", e);
+        }
+    }
+
+    /**
+     * Writes a discrete log table sized to the electorate, if one is configured but not yet present
+     *
+     * @param publicKey  public key of the election
+     * @param votesTotal total number of votes cast
+     */
+    private void storeDiscreteLogTable(PublicKey publicKey, int votesTotal) {
+        if (dlogTablePath == null || Files.exists(dlogTablePath)) {
+            return;
+        }
+
+        try {
+            new DiscreteLogTable(Groups.forKey(publicKey), publicKey.getG(), votesTotal + 1).write(dlogTablePath);
+            logger.info("Wrote discrete log table to " + dlogTablePath);
+        } catch (IOException e) {
+            logger.warn("Failed to write discrete log table to " + dlogTablePath, e);
+        }
+    }
+
     private boolean verifySignature(SignedEntity<PartialResultList> entity) {
         try {
             int daId = entity.getEntity().getDaId();
@@ -141,19 +195,26 @@ public class ResultFetcher extends Client {
      */
     public static class ResultFetcherConfiguration extends ClientConfiguration<ResultFetcher> {
         private final boolean forceCalculations;
+        private final Path dlogTablePath;
 
         /**
          * @param targetUrl         url for {@link dk.mmj.eevhe.server.bulletinboard.BulletinBoardEdge} to get data from
          * @param forceCalculations whether ciphertext containing sum of votes should be computed locally
          * @param electionCertPath  path to global election certificate
+         * @param dlogTablePath     path to discrete log table used in decryption. May be null
          */
-        ResultFetcherConfiguration(String targetUrl, boolean forceCalculations, Path electionCertPath) {
+        ResultFetcherConfiguration(String targetUrl, boolean forceCalculations, Path electionCertPath, Path dlogTablePath) {
             super(ResultFetcher.class, targetUrl, electionCertPath);
             this.forceCalculations = forceCalculations;
+            this.dlogTablePath = dlogTablePath;
         }
 
         boolean isForceCalculations() {
             return forceCalculations;
         }
+
+        Path getDlogTablePath() {
+            return dlogTablePath;
+        }
     }
 }
@@ -71,6 +71,7 @@ public class SSLHelper {
      */
     public static JerseyWebTarget configureWebTarget(Logger logger, String targetUrl) {
         ClientConfig clientConfig = new ClientConfig();
+        clientConfig.register(SmileProvider.class);
 
         try {
             SSLContext ssl = SSLHelper.initializeSSL();
@@ -0,0 +1,109 @@
+package dk.mmj.eevhe.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes entities as Smile, the binary encoding of JSON, for requests and responses of type
+ * {@value #APPLICATION_SMILE}.
+ * <br>
+ * Smile writes the same structure as JSON, so entities need no changes, and signatures,
+ * which are computed over the JSON encoding, are still valid after transport.
+ * BigIntegers are written as raw bytes instead of decimal digits, and repeated strings,
+ * like class names in type information, are written once and referenced afterwards.
+ * <br>
+ * Must be registered with both servers and clients, as Jersey does not discover it on its own.
+ */
+@Provider
+@Consumes(SmileProvider.APPLICATION_SMILE)
+@Produces(SmileProvider.APPLICATION_SMILE)
+public class SmileProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    private static final ObjectMapper smileMapper = new ObjectMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build())
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    /**
+     * @return mapper reading and writing Smile
+     */
+    public static ObjectMapper getMapper() {
+        return smileMapper;
+    }
+
+    /**
+     * Deserializes content that is either Smile or JSON, determined by whether it starts with the Smile header.
+     * <br>
+     * This lets clients accept both formats, so they can still talk to servers only producing JSON
+     *
+     * @param content       serialized object
+     * @param typeReference type of the object
+     * @param <T>           type of the object
+     * @return the deserialized object
+     * @throws IOException if content could not be deserialized
+     */
+    public static <T> T readValue(byte[] content, TypeReference<T> typeReference) throws IOException {
+        ObjectMapper mapper = isSmile(content) ? smileMapper : jsonMapper;
+        return mapper.readValue(content, typeReference);
+    }
+
+    /**
+     * @param content serialized object
+     * @return whether content starts with the header written by Smile
+     */
+    static boolean isSmile(byte[] content) {
+        return content.length >= 3
+                && content[0] == SmileConstants.HEADER_BYTE_1
+                && content[1] == SmileConstants.HEADER_BYTE_2
+                && content[2] == SmileConstants.HEADER_BYTE_3;
+    }
+
+    private static boolean handles(Class<?> type, MediaType mediaType) {
+        //Raw content is left to the providers built into Jersey
+        boolean raw = type == byte[].class || type == String.class || InputStream.class.isAssignableFrom(type);
+        return !raw && !mediaType.isWildcardSubtype() && APPLICATION_SMILE_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        return smileMapper.readValue(entityStream, smileMapper.constructType(genericType));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        smileMapper.writerFor(smileMapper.constructType(genericType)).writeValue(entityStream, o);
+    }
+}
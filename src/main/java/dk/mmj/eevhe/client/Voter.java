@@ -1,20 +1,19 @@
 package dk.mmj.eevhe.client;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.mmj.eevhe.crypto.EncryptionPadPool;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.entities.BallotDTO;
+import dk.mmj.eevhe.entities.BallotReceipt;
 import dk.mmj.eevhe.entities.Candidate;
+import dk.mmj.eevhe.entities.PersistedBallot;
 import dk.mmj.eevhe.entities.PublicKey;
-import dk.mmj.eevhe.entities.SignedEntity;
+import dk.mmj.eevhe.entities.TreeHead;
 import dk.mmj.eevhe.server.decryptionauthority.DecryptionAuthorityConfigBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bouncycastle.cert.X509CertificateHolder;
 
 import javax.ws.rs.client.Entity;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -23,14 +22,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 
-import static dk.mmj.eevhe.client.FetchingUtilities.verifySignedAndValid;
-
 public class Voter extends Client {
     private static final Logger logger = LogManager.getLogger(DecryptionAuthorityConfigBuilder.class);
+    private static final int PAD_POOL_BALLOTS = 4;
+    private static final long RECEIPT_TIMEOUT = 10_000;
     private final Integer multi;
+    private EncryptionPadPool padPool;
     private String id;
     private Integer vote;
     private int[] castVotes;
@@ -63,11 +64,15 @@ public class Voter extends Client {
     }
 
     /**
+     * Casts a vote. Randomness for the following votes is precomputed in the background,
+     * making the encryption of those votes considerably faster
+     *
      * @param vote index of the candidate to vote for
      * @return whether the vote was successful
      */
     public boolean vote(Integer vote) {
-        return doVote(vote, getPublicKey());
+        PublicKey publicKey = getPublicKey();
+        return doVote(vote, publicKey, getPadPool(publicKey));
     }
 
     /**
@@ -84,8 +89,28 @@ public class Voter extends Client {
         if (multi != null) {
             doMultiVote(getPublicKey());
         } else {
-            vote(getVote());
+            doVote(getVote(), getPublicKey(), null);
+        }
+    }
+
+    /**
+     * Returns the pool of precomputed randomness for encrypting votes, creating it if needed.
+     * The pool holds enough for {@value #PAD_POOL_BALLOTS} ballots
+     *
+     * @param publicKey public key votes are encrypted under
+     * @return pool for the public key
+     */
+    private synchronized EncryptionPadPool getPadPool(PublicKey publicKey) {
+        if (padPool == null || !padPool.getPublicKey().equals(publicKey)) {
+            if (padPool != null) {
+                padPool.close();
+            }
+
+            int capacity = (getCandidates().size() + 1) * PAD_POOL_BALLOTS;
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            padPool = new EncryptionPadPool(publicKey, capacity, threads);
         }
+        return padPool;
     }
 
     /**
@@ -98,6 +123,7 @@ public class Voter extends Client {
         Random random = new Random();
         castVotes = new int[size];
         Arrays.fill(castVotes, 0);
+        EncryptionPadPool pool = getPadPool(publicKey);
 
         for (int i = 0; multi != null && i < multi; i++) {
             System.out.print("Dispatching votes: " + i + "/" + multi + " \r");
@@ -105,12 +131,14 @@ public class Voter extends Client {
             id = UUID.randomUUID().toString();
             int vote = random.nextInt(size);
 
-            if (doVote(vote, publicKey)) {
+            if (doVote(vote, publicKey, pool)) {
                 castVotes[vote]++;
             }
 
         }
         System.out.println("Dispatched " + multi + " votes with distribution: " + Arrays.toString(castVotes));
+        logger.info("Precomputed randomness: " + pool);
+        pool.close();
     }
 
     /**
@@ -125,12 +153,15 @@ public class Voter extends Client {
      *
      * @param publicKey is the public key used to encrypt the vote.
      * @param vote      is the vote to be cast, either 0 or 1.
+     * @param pool      pool of precomputed randomness for the public key, or null if randomness should be computed
      * @return whether vote was successfully cast
      */
-    private boolean doVote(int vote, PublicKey publicKey) {
+    private boolean doVote(int vote, PublicKey publicKey, EncryptionPadPool pool) {
         int candidateCount = getCandidates().size();
 
-        BallotDTO ballot = SecurityUtils.generateBallot(vote, candidateCount, id, publicKey);
+        BallotDTO ballot = pool != null
+                ? SecurityUtils.generateBallot(vote, candidateCount, id, pool)
+                : SecurityUtils.generateBallot(vote, candidateCount, id, publicKey);
         return postBallot(ballot);
     }
 
@@ -167,7 +198,7 @@ public class Voter extends Client {
      * @return whether post was a success
      */
     private boolean postBallot(BallotDTO ballot) {
-        Entity<?> entity = Entity.entity(ballot, MediaType.APPLICATION_JSON_TYPE);
+        Entity<?> entity = Entity.entity(ballot, SmileProvider.APPLICATION_SMILE_TYPE);
         Response response = target.path("postBallot").request().post(entity);
 
         if (response.getStatus() != 204) {
@@ -175,7 +206,65 @@ public class Voter extends Client {
             return false;
         }
 
-        return verifyPosted();
+        return awaitReceipts(ballot);
+    }
+
+    /**
+     * Waits for receipts from a majority of bulletin board peers, stating that they have included the ballot.
+     * <br>
+     * If the bulletin board does not hand out receipts, it is instead polled for the ballot
+     *
+     * @param ballot the ballot that was posted
+     * @return whether the ballot was included by a majority of peers
+     */
+    private boolean awaitReceipts(BallotDTO ballot) {
+        List<X509CertificateHolder> certs = getBBPeerCertificates();
+        Map<X509CertificateHolder, BallotReceipt> receipts = FetchingUtilities.getBallotReceipts(logger, target, ballot, RECEIPT_TIMEOUT, certs);
+        if (receipts == null) {
+            return verifyPosted();
+        }
+
+        int threshold = (int) Math.ceil(((float) certs.size()) / 2);
+        System.out.print("Received vote receipts from " + receipts.size() + "/" + threshold + " peers \r");
+        if (receipts.size() < threshold) {
+            return false;
+        }
+
+        verifyInclusion(receipts, certs);
+        return true;
+    }
+
+    /**
+     * Checks that the ballot is included in the Merkle tree over the ballots of each peer which gave a receipt.
+     * <br>
+     * Peers order ballots differently, so each receipt is checked against the tree head signed by the same peer.
+     * Unlike a receipt, the signed tree head commits the peer to its entire list of ballots,
+     * so the check is logged, but the vote is already counted as cast once receipts are received
+     *
+     * @param receipts receipts for the ballot, by the peer which signed them
+     * @param certs    certificates of bulletin board peers
+     */
+    private void verifyInclusion(Map<X509CertificateHolder, BallotReceipt> receipts, List<X509CertificateHolder> certs) {
+        Map<X509CertificateHolder, TreeHead> heads = FetchingUtilities.getTreeHeads(logger, target, certs);
+        if (heads == null) {
+            logger.info("Bulletin board did not provide tree heads");
+            return;
+        }
+
+        int verified = 0;
+        for (Map.Entry<X509CertificateHolder, BallotReceipt> receipt : receipts.entrySet()) {
+            long position = receipt.getValue().getPosition();
+            TreeHead head = heads.get(receipt.getKey());
+            if (head == null || head.getSize() <= position) {
+                logger.info("Peer " + receipt.getKey().getSubject() + " did not provide a tree head including the ballot");
+            } else if (FetchingUtilities.verifyInclusion(logger, target, receipt.getValue(), head)) {
+                verified++;
+            } else {
+                logger.warn("Failed to verify inclusion of ballot in the tree of peer " + receipt.getKey().getSubject()
+                        + " with " + head.getSize() + " ballots");
+            }
+        }
+        logger.info("Verified inclusion of ballot in the trees of " + verified + "/" + receipts.size() + " peers");
     }
 
     private boolean verifyPosted() {
@@ -187,23 +276,18 @@ public class Voter extends Client {
             try {
                 Thread.sleep(1_000);
 
-                String fetchedBallot = target.path("getBallot")
-                        .path(id)
-                        .request().get(String.class);
-
-                List<SignedEntity<BallotDTO>> ballots = new ObjectMapper()
-                        .readValue(fetchedBallot, new TypeReference<List<SignedEntity<BallotDTO>>>() {
-                        });
-
-                List<SignedEntity<BallotDTO>> validBallotSignatures = verifySignedAndValid(ballots, certs, logger);
+                Map<X509CertificateHolder, PersistedBallot> ballots = FetchingUtilities.getBallot(logger, target, id, certs);
+                if (ballots == null) {
+                    continue;
+                }
 
                 int threshold = (int) Math.ceil(((float) peers) / 2);
-                System.out.print("Received vote confirmation from " + validBallotSignatures.size() + "/" + threshold + " peers \r");
-                if (validBallotSignatures.size() >= threshold) {
+                System.out.print("Received vote confirmation from " + ballots.size() + "/" + threshold + " peers \r");
+                if (ballots.size() >= threshold) {
                     return true;
                 }
-            } catch (JsonProcessingException | InterruptedException e) {
-                logger.error("Failed to parse fetched ballots", e);
+            } catch (InterruptedException e) {
+                logger.error("Interrupted while waiting for vote confirmation", e);
                 return false;
             }
         } while (retries++ < 10);
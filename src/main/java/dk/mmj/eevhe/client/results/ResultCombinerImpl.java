@@ -1,7 +1,10 @@
 package dk.mmj.eevhe.client.results;
 
+import dk.mmj.eevhe.crypto.BallotColumns;
 import dk.mmj.eevhe.crypto.ElGamal;
-import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.Groups;
+import dk.mmj.eevhe.crypto.TallyEngine;
+import dk.mmj.eevhe.crypto.ThresholdCombiner;
 import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
 import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
@@ -15,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,45 +63,40 @@ public class ResultCombinerImpl implements ResultCombiner {
         Map<Integer, PartialPublicInfo> publicInfos = infoFetcher.fetch()
                 .stream().collect(Collectors.toMap(PartialPublicInfo::getSenderId, (i) -> i));
 
+        List<CipherText> sumCiphertexts = minimalPartials.stream()
+                .map(MinimalPartialResult::getCipherText)
+                .collect(Collectors.toList());
+
+        logger.info("Verifying partial results");
+        List<BigInteger[]> verifiedResults = partialResultLists.parallelStream()
+                .map(partialResultList -> verifyPartialResults(partialResultList, sumCiphertexts, publicInfos))
+                .collect(Collectors.toList());
+
         List<Map<Integer, BigInteger>> listOfPartialMaps = new ArrayList<>();
         logger.info("Combining partial results to total results");
         for (int candidateIdx = 0; candidateIdx < candidates.size(); candidateIdx++) {
             HashMap<Integer, BigInteger> decAuthorityIdToCiphertextCMap = new HashMap<>();
 
-            MinimalPartialResult candidatePartial = minimalPartials.get(candidateIdx);
-            CipherText sumCiphertext = candidatePartial.getCipherText();
-
-            for (PartialResultList partialResultList : partialResultLists) {
-                PartialResult result = partialResultList.getResults().get(candidateIdx);
-                CipherText partialDecryption = new CipherText(result.getResult(), sumCiphertext.getD());
-
-                PartialPublicInfo info = publicInfos.get(result.getId());
-                PublicKey partialPublicKey = new PublicKey(
-                        info.getPartialPublicKey(),
-                        info.getPublicKey().getG(),
-                        info.getPublicKey().getQ());
-
-                boolean validProof = DLogProofUtils.verifyProof(sumCiphertext, partialDecryption, partialPublicKey, result.getProof(), result.getId());
-
-                if (validProof) {
-                    decAuthorityIdToCiphertextCMap.put(result.getId(), result.getResult());
+            for (int i = 0; i < partialResultLists.size(); i++) {
+                BigInteger result = verifiedResults.get(i)[candidateIdx];
+                if (result != null) {
+                    decAuthorityIdToCiphertextCMap.put(partialResultLists.get(i).getResults().get(candidateIdx).getId(), result);
                 }
             }
 
             listOfPartialMaps.add(decAuthorityIdToCiphertextCMap);
         }
 
-
         int amountOfVotes = minimalPartials.get(0).getVoteCount();
         ArrayList<Integer> resultList = new ArrayList<>(candidates.size());
         try {
             logger.info("Attempting to decrypt from " + listOfPartialMaps.get(0).size() + " partials");
+            List<BigInteger> combinedPartials = new ThresholdCombiner(Groups.forKey(publicKey)).combineAll(listOfPartialMaps);
             for (Candidate candidate : candidates) {
                 int idx = candidate.getIdx();
-                Map<Integer, BigInteger> partialMap = listOfPartialMaps.get(idx);
-                BigInteger cs = SecurityUtils.lagrangeInterpolate(partialMap, publicKey.getP());
+                BigInteger cs = combinedPartials.get(idx);
                 CipherText cipherText = minimalPartials.get(idx).getCipherText();
-                int result = ElGamal.homomorphicDecryptionFromPartials(cipherText.getD(), cs, publicKey.getG(), publicKey.getP(), amountOfVotes);
+                int result = ElGamal.homomorphicDecryptionFromPartials(cipherText.getD(), cs, publicKey, amountOfVotes);
                 resultList.add(idx, result);
             }
         } catch (UnableToDecryptException e) {
@@ -108,6 +107,59 @@ public class ResultCombinerImpl implements ResultCombiner {
         return new ElectionResult(resultList, amountOfVotes);
     }
 
+    /**
+     * Verifies the partial decryptions from a single DA.
+     * <br>
+     * If the DA supplied an aggregated proof, all partial decryptions are verified at once,
+     * and only if that fails is each candidate checked against its own proof.
+     *
+     * @param partialResultList partial results from the DA
+     * @param sumCiphertexts    encrypted vote totals for each candidate
+     * @param publicInfos       public info of the DAs, by id
+     * @return the partial decryption for each candidate, or null for the candidates whose decryption could not be verified
+     */
+    private BigInteger[] verifyPartialResults(PartialResultList partialResultList, List<CipherText> sumCiphertexts,
+                                              Map<Integer, PartialPublicInfo> publicInfos) {
+        List<PartialResult> results = partialResultList.getResults();
+        BigInteger[] verified = new BigInteger[candidates.size()];
+
+        int id = results.get(0).getId();
+        PartialPublicInfo info = publicInfos.get(id);
+        PublicKey partialPublicKey = Groups.publicKey(
+                info.getPartialPublicKey(),
+                info.getPublicKey().getG(),
+                Groups.forKey(info.getPublicKey()));
+
+        List<BigInteger> partialDecryptions = results.subList(0, candidates.size()).stream()
+                .map(PartialResult::getResult)
+                .collect(Collectors.toList());
+        if (partialResultList.getAggregateProof() != null
+                && results.stream().allMatch(r -> r.getId() == id)
+                && DLogProofUtils.verifyAggregateProof(sumCiphertexts, partialDecryptions, partialPublicKey,
+                partialResultList.getAggregateProof(), id)) {
+            return partialDecryptions.toArray(verified);
+        }
+
+        for (int candidateIdx = 0; candidateIdx < candidates.size(); candidateIdx++) {
+            PartialResult result = results.get(candidateIdx);
+            CipherText sumCiphertext = sumCiphertexts.get(candidateIdx);
+            CipherText partialDecryption = new CipherText(result.getResult(), sumCiphertext.getD());
+
+            PartialPublicInfo resultInfo = publicInfos.get(result.getId());
+            PublicKey resultPublicKey = Groups.publicKey(
+                    resultInfo.getPartialPublicKey(),
+                    resultInfo.getPublicKey().getG(),
+                    Groups.forKey(resultInfo.getPublicKey()));
+
+            if (result.getProof() != null
+                    && DLogProofUtils.verifyProof(sumCiphertext, partialDecryption, resultPublicKey, result.getProof(), result.getId())) {
+                verified[candidateIdx] = result.getResult();
+            }
+        }
+
+        return verified;
+    }
+
     /**
      * Determines and returns the List of (Ciphertext, #votes) to be used in determining the election result
      *
@@ -133,21 +185,18 @@ public class ResultCombinerImpl implements ResultCombiner {
             List<PersistedBallot> ballots = ballotFetcher.getBallots();
 
             logger.debug("Filtering ballots");
-            List<PersistedBallot> validBallots = ballots.parallelStream()
-                    .filter(v -> v.getTs().getTime() < endTime)
-                    .filter(v -> VoteProofUtils.verifyBallot(v, publicKey))
-                    .collect(Collectors.toList());
+            List<PersistedBallot> validBallots = VoteProofUtils.verifyBallots(ballots.stream()
+                    .filter(v -> v.getCandidateVotes() != null && v.getCandidateVotes().size() == candidates.size())
+                    .collect(Collectors.toList()), publicKey);
+            BallotColumns columns = new BallotColumns(Groups.forKey(publicKey), candidates.size()).appendAll(validBallots);
+            BitSet rows = columns.castBefore(endTime);
 
             logger.info("Summing votes");
+            List<CipherText> sums = TallyEngine.getDefault().sumColumns(columns, rows, 1000);
+
             List<MinimalPartialResult> res = new ArrayList<>();
-            for (int i = 0; i < candidates.size(); i++) {
-                final int idx = i;
-                List<CandidateVoteDTO> votesForI = validBallots.parallelStream()
-                        .map(b -> b.getCandidateVotes().get(idx))
-                        .collect(Collectors.toList());
-
-                CipherText sumCiphertext = SecurityUtils.concurrentVoteSum(votesForI, publicKey, 1000);
-                int amountOfVotes = validBallots.size();
+            for (CipherText sumCiphertext : sums) {
+                int amountOfVotes = rows.cardinality();
                 res.add(new MinimalPartialResult(sumCiphertext, amountOfVotes));
             }
             return res;
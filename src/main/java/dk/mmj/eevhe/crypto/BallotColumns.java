@@ -0,0 +1,204 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.BallotDTO;
+import dk.mmj.eevhe.entities.CandidateVoteDTO;
+import dk.mmj.eevhe.entities.CipherText;
+import dk.mmj.eevhe.entities.PersistedBallot;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Columnar store of the ciphertexts of ballots, for tallying.
+ * <br>
+ * Each candidate has a single packed byte array, holding the c and d components of the vote in each ballot
+ * as fixed-width unsigned integers of {@link Group#getElementLength()} bytes. Timestamps are kept in a side array,
+ * indexed by the same row, so ballots are filtered by time without objects, see {@link #castBefore(long, int)}.
+ * <br>
+ * Compared to a list of {@link BallotDTO}s, a row costs no objects, and summing the votes
+ * for a candidate reads a single contiguous array. Proofs are not stored, so ballots must be verified
+ * before they are appended.
+ * <br>
+ * Instances are not thread-safe for appending, but may be read concurrently once filled.
+ */
+public class BallotColumns {
+    private static final int INITIAL_CAPACITY = 16;
+    private final Group group;
+    private final int candidates;
+    private final int width;
+    private byte[][] columns;
+    private long[] timestamps;
+    private int size;
+
+    /**
+     * @param group      the group the votes belong to
+     * @param candidates number of candidates on each ballot
+     */
+    public BallotColumns(Group group, int candidates) {
+        this.group = group;
+        this.candidates = candidates;
+        this.width = group.getElementLength();
+        this.columns = new byte[candidates][2 * width * INITIAL_CAPACITY];
+        this.timestamps = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends a row for each ballot
+     *
+     * @param ballots the ballots
+     * @return this store
+     * @throws IllegalArgumentException if a ballot does not have a vote for each candidate
+     */
+    public BallotColumns appendAll(List<? extends PersistedBallot> ballots) {
+        ensureCapacity(size + ballots.size());
+        for (PersistedBallot ballot : ballots) {
+            append(ballot, ballot.getTs().getTime());
+        }
+        return this;
+    }
+
+    /**
+     * Appends a row for the ballot
+     *
+     * @param ballot    the ballot, which must have been verified
+     * @param timestamp time the ballot was cast
+     * @return index of the row
+     * @throws IllegalArgumentException if the ballot does not have a vote for each candidate
+     */
+    public int append(BallotDTO ballot, long timestamp) {
+        List<CandidateVoteDTO> votes = ballot.getCandidateVotes();
+        if (votes == null || votes.size() != candidates) {
+            throw new IllegalArgumentException("Ballot " + ballot.getId() + " did not have a vote for each of "
+                    + candidates + " candidates");
+        }
+
+        ensureCapacity(size + 1);
+        int offset = 2 * width * size;
+        for (int i = 0; i < candidates; i++) {
+            CipherText cipherText = votes.get(i).getCipherText();
+            write(columns[i], offset, cipherText.getC());
+            write(columns[i], offset + width, cipherText.getD());
+        }
+        timestamps[size] = timestamp;
+
+        return size++;
+    }
+
+    /**
+     * @param row       index of the row
+     * @param candidate index of the candidate
+     * @return the vote for the candidate in the row
+     */
+    public CipherText getCipherText(int row, int candidate) {
+        checkRow(row);
+        int offset = 2 * width * row;
+        return new CipherText(read(columns[candidate], offset), read(columns[candidate], offset + width));
+    }
+
+    /**
+     * Sums the votes for a candidate in rows [from;to)
+     *
+     * @param candidate index of the candidate
+     * @param rows      rows to be included
+     * @param from      first row
+     * @param to        row after the last row
+     * @return accumulator holding the sum
+     */
+    CipherTextAccumulator sum(int candidate, BitSet rows, int from, int to) {
+        CipherTextAccumulator acc = new CipherTextAccumulator(group);
+        byte[] column = columns[candidate];
+        for (int row = from; row < to; row++) {
+            if (rows.get(row)) {
+                int offset = 2 * width * row;
+                acc.add(new CipherText(read(column, offset), read(column, offset + width)));
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * @param endTime end of the election
+     * @return the rows of ballots cast before endTime
+     */
+    public BitSet castBefore(long endTime) {
+        return castBefore(endTime, 0);
+    }
+
+    /**
+     * @param endTime end of the election
+     * @param from    first row to include, e.g. the first row appended since the last sum
+     * @return the rows from the given row on, of ballots cast before endTime
+     */
+    public BitSet castBefore(long endTime, int from) {
+        BitSet rows = new BitSet(size);
+        for (int row = Math.max(0, from); row < size; row++) {
+            if (timestamps[row] < endTime) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of candidates on each ballot
+     */
+    public int getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * @return the group the votes belong to
+     */
+    public Group getGroup() {
+        return group;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, 2 * timestamps.length);
+        for (int i = 0; i < candidates; i++) {
+            columns[i] = Arrays.copyOf(columns[i], 2 * width * newCapacity);
+        }
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+    }
+
+    /**
+     * Writes an element as a fixed-width unsigned integer, reducing it first if it does not fit
+     */
+    private void write(byte[] column, int offset, BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 8 * width) {
+            value = group.operate(group.getIdentity(), value);
+        }
+        if (value.signum() < 0 || value.bitLength() > 8 * width) {
+            throw new IllegalArgumentException("Value is not an element of the group");
+        }
+
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > width ? 1 : 0; //Skip sign byte
+        int length = bytes.length - start;
+        Arrays.fill(column, offset, offset + width - length, (byte) 0);
+        System.arraycopy(bytes, start, column, offset + width - length, length);
+    }
+
+    private BigInteger read(byte[] column, int offset) {
+        return new BigInteger(1, Arrays.copyOfRange(column, offset, offset + width));
+    }
+}
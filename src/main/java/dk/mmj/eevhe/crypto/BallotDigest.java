@@ -0,0 +1,149 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.*;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Canonical SHA-256 digests of ballots and their parts.
+ * <br>
+ * Every value is length-prefixed, so no two different ballots give the same input to the hash function,
+ * and the digest only depends on the content of the ballot, not on how it is serialized.
+ * A {@link PersistedBallot} therefore has the same digest as the {@link BallotDTO} it was created from.
+ */
+public class BallotDigest {
+
+    /**
+     * @param ballot the ballot
+     * @return hex encoded SHA-256 digest of the content of the ballot
+     */
+    public static String hash(BallotDTO ballot) {
+        SHA256Digest digest = new SHA256Digest();
+        update(digest, ballot);
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return Hex.toHexString(hash);
+    }
+
+    /**
+     * Data of the leaf for a ballot in the Merkle tree over the ballots of a Bulletin Board Peer.
+     * <br>
+     * The leaf commits to the time the ballot was cast, as well as its content,
+     * so ballots proven against a signed tree head can be filtered by time
+     *
+     * @param ballot the ballot, as added by the peer
+     * @return the data of the leaf
+     */
+    public static byte[] leaf(PersistedBallot ballot) {
+        return leaf(hash(ballot), ballot.getTs().getTime());
+    }
+
+    /**
+     * @param hash      hex encoded digest of the content of the ballot, as given by {@link #hash(BallotDTO)}
+     * @param timestamp time in ms the ballot was cast, as given by {@link PersistedBallot#getTs()}
+     * @return the data of the leaf for the ballot, see {@link #leaf(PersistedBallot)}
+     */
+    public static byte[] leaf(String hash, long timestamp) {
+        byte[] digest = Hex.decode(hash);
+        byte[] leaf = Arrays.copyOf(digest, digest.length + Long.BYTES);
+        for (int i = 0; i < Long.BYTES; i++) {
+            leaf[digest.length + i] = (byte) (timestamp >>> (8 * (Long.BYTES - 1 - i)));
+        }
+        return leaf;
+    }
+
+    /**
+     * Adds the content of a ballot to a digest
+     *
+     * @param digest the digest
+     * @param ballot the ballot
+     */
+    public static void update(SHA256Digest digest, BallotDTO ballot) {
+        update(digest, ballot.getId());
+        update(digest, ballot.getSumIsOneProof());
+
+        List<CandidateVoteDTO> votes = ballot.getCandidateVotes();
+        if (votes == null) {
+            update(digest, (BigInteger) null);
+            return;
+        }
+
+        update(digest, BigInteger.valueOf(votes.size()));
+        for (CandidateVoteDTO vote : votes) {
+            if (vote == null) {
+                update(digest, (BigInteger) null);
+            } else {
+                update(digest, vote);
+            }
+        }
+    }
+
+    /**
+     * Adds the content of a vote to a digest
+     *
+     * @param digest the digest
+     * @param vote   the vote
+     */
+    public static void update(SHA256Digest digest, CandidateVoteDTO vote) {
+        update(digest, vote.getId());
+        CipherText cipherText = vote.getCipherText();
+        if (cipherText == null) {
+            update(digest, (BigInteger) null);
+        } else {
+            update(digest, cipherText.getC(), cipherText.getD());
+        }
+        update(digest, vote.getProof());
+    }
+
+    private static void update(SHA256Digest digest, Proof proof) {
+        if (proof == null) {
+            update(digest, (BigInteger) null);
+            return;
+        }
+
+        update(digest, proof.getE0(), proof.getE1(), proof.getZ0(), proof.getZ1(),
+                proof.getA0(), proof.getB0(), proof.getA1(), proof.getB1());
+    }
+
+    /**
+     * Adds a string, which may be null, to a digest
+     *
+     * @param digest the digest
+     * @param value  the string
+     */
+    public static void update(SHA256Digest digest, String value) {
+        update(digest, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds values, which may be null, to a digest
+     *
+     * @param digest the digest
+     * @param values the values
+     */
+    public static void update(SHA256Digest digest, BigInteger... values) {
+        for (BigInteger value : values) {
+            update(digest, value == null ? null : value.toByteArray());
+        }
+    }
+
+    /**
+     * Adds a length-prefixed value to the digest, such that no two different sequences of values give the same input
+     */
+    private static void update(SHA256Digest digest, byte[] value) {
+        int length = value == null ? -1 : value.length;
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+        if (value != null) {
+            digest.update(value, 0, value.length);
+        }
+    }
+}
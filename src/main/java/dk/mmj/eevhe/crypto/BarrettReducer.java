@@ -0,0 +1,65 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+
+/**
+ * Modular reduction using Barrett's method.
+ * <br>
+ * Reducing a product of two residues costs two multiplications and a shift, instead of a long division,
+ * which makes it considerably faster than {@link BigInteger#mod(BigInteger)} for repeated multiplications in Z_p.
+ */
+class BarrettReducer {
+    private final BigInteger modulus;
+    private final BigInteger mu;
+    private final int k;
+
+    /**
+     * @param modulus the modulus to reduce by. Must be positive
+     */
+    BarrettReducer(BigInteger modulus) {
+        this.modulus = modulus;
+        this.k = modulus.bitLength();
+        this.mu = BigInteger.ONE.shiftLeft(2 * k).divide(modulus);
+    }
+
+    /**
+     * Reduces x modulo the modulus
+     *
+     * @param x value in the range [0;modulus^2)
+     * @return x mod modulus
+     */
+    BigInteger reduce(BigInteger x) {
+        if (x.signum() < 0 || x.bitLength() > 2 * k) {
+            return x.mod(modulus);
+        }
+
+        BigInteger quotient = x.shiftRight(k - 1).multiply(mu).shiftRight(k + 1);
+        BigInteger result = x.subtract(quotient.multiply(modulus));
+        while (result.compareTo(modulus) >= 0) {
+            result = result.subtract(modulus);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param a first factor in the range [0;modulus)
+     * @param b second factor in the range [0;modulus)
+     * @return a*b mod modulus
+     */
+    BigInteger multiply(BigInteger a, BigInteger b) {
+        return reduce(a.multiply(b));
+    }
+
+    /**
+     * @param a value in the range [0;modulus)
+     * @return a^2 mod modulus
+     */
+    BigInteger square(BigInteger a) {
+        return reduce(a.multiply(a));
+    }
+
+    BigInteger getModulus() {
+        return modulus;
+    }
+}
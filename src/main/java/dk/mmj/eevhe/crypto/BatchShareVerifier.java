@@ -0,0 +1,326 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch verifier for secret shares in the Pedersen and Feldman VSS protocols.
+ * <br>
+ * A share u_j (and u'_j in Pedersen VSS) from dealer i respects the commitments if g^u_j * e^u'_j = prod_t C_it^(j^t).
+ * In a batch, every relation is raised to a random {@value #CHALLENGE_BITS}-bit exponent, and all of them are multiplied
+ * together, so the batch is checked using a single multi-exponentiation, where shares from the same dealer share bases.
+ * An invalid share passes the combined check with probability at most 2^-{@value #CHALLENGE_BITS}.
+ * If the combined check fails, the batch is bisected to find the invalid shares, which are verified one at a time
+ * using {@link PedersenVSSUtils#verifyCommitmentRespected(Group, BigInteger, BigInteger, BigInteger, BigInteger, BigInteger[], BigInteger)}
+ * or {@link FeldmanVSSUtils#verifyCommitmentRespected(Group, BigInteger, BigInteger, BigInteger[], BigInteger)}.
+ * <br>
+ * As in {@link dk.mmj.eevhe.crypto.zeroknowledge.BatchVoteProofVerifier}, the random combination only tests the relations
+ * in the subgroup of order q. In Z_p^*, the component of order two is checked separately using Legendre symbols,
+ * which requires p = 2q+1. In any other subgroup of Z_p^*, shares are verified one at a time.
+ */
+public class BatchShareVerifier {
+    private static final int CHALLENGE_BITS = 64;
+    private static final SecureRandom random = new SecureRandom();
+    private final Group group;
+    private final BigInteger g;
+    private final BigInteger e;
+    private final BigInteger p;
+    private final BigInteger order;
+    private final boolean batchable;
+    private final List<Share> shares = new ArrayList<>();
+
+    /**
+     * Creates a verifier for Feldman VSS shares, committed to as g^a_t
+     *
+     * @param group the group
+     * @param g     generator g
+     */
+    public BatchShareVerifier(Group group, BigInteger g) {
+        this(group, g, null);
+    }
+
+    /**
+     * Creates a verifier for Pedersen VSS shares, committed to as g^a_t * e^b_t
+     *
+     * @param group the group
+     * @param g     generator g
+     * @param e     element e, or null for Feldman VSS shares
+     */
+    public BatchShareVerifier(Group group, BigInteger g, BigInteger e) {
+        this.group = group;
+        this.g = g;
+        this.e = e;
+        if (group instanceof ModPGroup) {
+            ModPGroup modPGroup = (ModPGroup) group;
+            this.p = modPGroup.getModulus();
+            this.order = p.subtract(BigInteger.ONE);
+            this.batchable = modPGroup.isSafePrimeGroup();
+        } else {
+            this.p = null;
+            this.order = group.getOrder();
+            this.batchable = true;
+        }
+    }
+
+    /**
+     * Adds a Feldman VSS share to the batch
+     *
+     * @param u                      u_j, which is equal to f_i(j)
+     * @param coefficientCommitments the dealer's coefficient commitments
+     * @param j                      id of the receiver of the share &#62; 0
+     * @return index of the share in the array returned by {@link #verify()}
+     */
+    public int add(BigInteger u, BigInteger[] coefficientCommitments, BigInteger j) {
+        if (e != null) {
+            throw new IllegalStateException("Pedersen VSS shares must have two values");
+        }
+        shares.add(new Share(u, null, coefficientCommitments, j));
+        return shares.size() - 1;
+    }
+
+    /**
+     * Adds a Pedersen VSS share to the batch
+     *
+     * @param u1                     u_j, which is equal to f_i(j)
+     * @param u2                     u'_j, which is equal to f'_i(j)
+     * @param coefficientCommitments the dealer's coefficient commitments
+     * @param j                      id of the receiver of the share &#62; 0
+     * @return index of the share in the array returned by {@link #verify()}
+     */
+    public int add(BigInteger u1, BigInteger u2, BigInteger[] coefficientCommitments, BigInteger j) {
+        if (e == null) {
+            throw new IllegalStateException("Feldman VSS shares only have a single value");
+        }
+        shares.add(new Share(u1, u2, coefficientCommitments, j));
+        return shares.size() - 1;
+    }
+
+    /**
+     * @return number of shares in the batch
+     */
+    public int size() {
+        return shares.size();
+    }
+
+    /**
+     * Verifies all shares in the batch, with the same result as verifying each share on its own
+     *
+     * @return array where index i is whether the i'th share respects the commitments
+     */
+    public boolean[] verify() {
+        boolean[] valid = new boolean[shares.size()];
+        Map<BigInteger[], Integer> symbols = new IdentityHashMap<>();
+
+        List<Share> statements = new ArrayList<>();
+        for (int i = 0; i < shares.size(); i++) {
+            Share share = shares.get(i);
+            share.index = i;
+            if (!isWellFormed(share)) {
+                continue;
+            }
+            if (!batchable || !prepare(share, symbols)) {
+                valid[i] = verifySingle(share);
+                continue;
+            }
+            statements.add(share);
+        }
+
+        verifyBatch(statements, valid);
+        return valid;
+    }
+
+    /**
+     * Verifies a batch, bisecting it if the combined check fails
+     *
+     * @param batch shares to be verified
+     * @param valid array to write results into
+     */
+    private void verifyBatch(List<Share> batch, boolean[] valid) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            Share share = batch.get(0);
+            valid[share.index] = verifySingle(share);
+            return;
+        }
+
+        if (combinedCheck(batch)) {
+            for (Share share : batch) {
+                valid[share.index] = true;
+            }
+            return;
+        }
+
+        int half = batch.size() / 2;
+        verifyBatch(batch.subList(0, half), valid);
+        verifyBatch(batch.subList(half, batch.size()), valid);
+    }
+
+    /**
+     * Checks that prod_k (prod_t C_kt^(j_k^t) / (g^u_k * e^u'_k))^r_k is the identity, for random r_k.
+     * <br>
+     * Exponents of the commitments of a dealer are summed, so each commitment is a single base.
+     * In Z_p^*, exponents are reduced modulo p-1, so the check is exact in all of Z_p^*.
+     * In a group of prime order, they are reduced modulo the order.
+     *
+     * @param batch shares to be checked
+     * @return whether the combined relation holds
+     */
+    private boolean combinedCheck(List<Share> batch) {
+        Map<BigInteger[], BigInteger[]> commitmentExponents = new IdentityHashMap<>();
+        BigInteger gExponent = BigInteger.ZERO;
+        BigInteger eExponent = BigInteger.ZERO;
+        int baseCount = 0;
+
+        for (Share share : batch) {
+            BigInteger r = new BigInteger(CHALLENGE_BITS, random);
+            BigInteger[] exponents = commitmentExponents.get(share.commitments);
+            if (exponents == null) {
+                exponents = new BigInteger[share.commitments.length];
+                Arrays.fill(exponents, BigInteger.ZERO);
+                commitmentExponents.put(share.commitments, exponents);
+                baseCount += exponents.length;
+            }
+
+            BigInteger jPow = BigInteger.ONE;
+            BigInteger j = share.j.mod(order);
+            for (int t = 0; t < exponents.length; t++) {
+                exponents[t] = exponents[t].add(r.multiply(jPow));
+                jPow = jPow.multiply(j).mod(order);
+            }
+
+            gExponent = gExponent.add(r.multiply(share.u1));
+            if (e != null) {
+                eExponent = eExponent.add(r.multiply(share.u2));
+            }
+        }
+
+        int extraBases = e != null ? 2 : 1;
+        BigInteger[] bases = new BigInteger[baseCount + extraBases];
+        BigInteger[] exponents = new BigInteger[baseCount + extraBases];
+        int i = 0;
+        for (Map.Entry<BigInteger[], BigInteger[]> entry : commitmentExponents.entrySet()) {
+            for (int t = 0; t < entry.getKey().length; t++) {
+                bases[i] = entry.getKey()[t];
+                exponents[i++] = entry.getValue()[t].mod(order);
+            }
+        }
+        bases[i] = g;
+        exponents[i++] = order.subtract(gExponent.mod(order));
+        if (e != null) {
+            bases[i] = e;
+            exponents[i] = order.subtract(eExponent.mod(order));
+        }
+
+        try {
+            return group.multiExponentiate(bases, exponents).equals(group.getIdentity());
+        } catch (IllegalArgumentException ex) {
+            //Commitments were not group elements
+            return false;
+        }
+    }
+
+    /**
+     * Performs the checks that are not part of the combined check.
+     * In Z_p^*, these are range checks of the commitments, and the order two component of the relation.
+     * In a group of prime order, the commitments must be group elements.
+     *
+     * @param share   the share
+     * @param symbols cache of the Legendre symbol of the product of all commitments, by commitments
+     * @return whether the share can be part of the combined check
+     */
+    private boolean prepare(Share share, Map<BigInteger[], Integer> symbols) {
+        if (p == null) {
+            for (BigInteger commitment : share.commitments) {
+                if (!group.isElement(commitment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (BigInteger commitment : share.commitments) {
+            if (commitment.signum() <= 0 || commitment.compareTo(p) >= 0) {
+                return false;
+            }
+        }
+
+        //Legendre symbols are multiplicative, so only the parity of j^t matters, which is 1 for t = 0 and that of j otherwise
+        int rightSide = share.j.testBit(0)
+                ? symbols.computeIfAbsent(share.commitments, this::productSymbol)
+                : SecurityUtils.jacobiSymbol(share.commitments[0], p);
+
+        int leftSide = pow(SecurityUtils.jacobiSymbol(g, p), share.u1);
+        if (e != null) {
+            leftSide *= pow(SecurityUtils.jacobiSymbol(e, p), share.u2);
+        }
+
+        return leftSide == rightSide;
+    }
+
+    /**
+     * @param commitments the commitments
+     * @return the Legendre symbol of the product of all commitments
+     */
+    private int productSymbol(BigInteger[] commitments) {
+        int symbol = 1;
+        for (BigInteger commitment : commitments) {
+            symbol *= SecurityUtils.jacobiSymbol(commitment, p);
+        }
+        return symbol;
+    }
+
+    private boolean verifySingle(Share share) {
+        if (e == null) {
+            return FeldmanVSSUtils.verifyCommitmentRespected(group, g, share.u1, share.commitments, share.j);
+        }
+        return PedersenVSSUtils.verifyCommitmentRespected(group, g, e, share.u1, share.u2, share.commitments, share.j);
+    }
+
+    /**
+     * @param share the share
+     * @return whether the share has all the values needed to verify it
+     */
+    private boolean isWellFormed(Share share) {
+        if (share.u1 == null || (e != null && share.u2 == null) || share.j == null
+                || share.commitments == null || share.commitments.length == 0) {
+            return false;
+        }
+        for (BigInteger commitment : share.commitments) {
+            if (commitment == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param symbol   a Legendre symbol, either 1 or -1
+     * @param exponent the exponent
+     * @return symbol^exponent
+     */
+    private static int pow(int symbol, BigInteger exponent) {
+        return symbol == -1 && exponent.testBit(0) ? -1 : 1;
+    }
+
+    private static class Share {
+        private final BigInteger u1;
+        private final BigInteger u2;
+        private final BigInteger[] commitments;
+        private final BigInteger j;
+        private int index;
+
+        private Share(BigInteger u1, BigInteger u2, BigInteger[] commitments, BigInteger j) {
+            this.u1 = u1;
+            this.u2 = u2;
+            this.commitments = commitments;
+            this.j = j;
+        }
+    }
+}
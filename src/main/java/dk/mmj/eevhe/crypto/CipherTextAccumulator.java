@@ -0,0 +1,86 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.CipherText;
+
+import java.math.BigInteger;
+import java.util.Collection;
+
+/**
+ * Accumulates the homomorphic sum of ciphertexts, being the component-wise product of c and d.
+ * <br>
+ * The running product is kept reduced, so every addition costs the same,
+ * no matter how many ciphertexts have been summed. Unlike {@link ElGamal#homomorphicAddition(CipherText, CipherText)},
+ * where the operands grow with every addition.
+ * <br>
+ * Instances are not thread-safe. Concurrent summation should use an accumulator per thread,
+ * and combine them using {@link #add(CipherTextAccumulator)}.
+ */
+public class CipherTextAccumulator {
+    private final Group group;
+    private BigInteger c;
+    private BigInteger d;
+
+    /**
+     * Creates an accumulator in the subgroup of Z_p^*, with p = 2q+1
+     *
+     * @param p the modulus
+     */
+    public CipherTextAccumulator(BigInteger p) {
+        this(new ModPGroup(p));
+    }
+
+    /**
+     * Creates an accumulator containing the encryption of zero with randomness zero, i.e. the identity in both components
+     *
+     * @param group the group the ciphertexts belong to
+     */
+    public CipherTextAccumulator(Group group) {
+        this.group = group;
+        this.c = group.getIdentity();
+        this.d = group.getIdentity();
+    }
+
+    /**
+     * Adds a ciphertext to the sum
+     *
+     * @param cipherText the ciphertext to be added
+     * @return this accumulator
+     */
+    public CipherTextAccumulator add(CipherText cipherText) {
+        c = group.operate(c, cipherText.getC());
+        d = group.operate(d, cipherText.getD());
+        return this;
+    }
+
+    /**
+     * Adds all ciphertexts to the sum
+     *
+     * @param cipherTexts the ciphertexts to be added
+     * @return this accumulator
+     */
+    public CipherTextAccumulator addAll(Collection<CipherText> cipherTexts) {
+        for (CipherText cipherText : cipherTexts) {
+            add(cipherText);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the sum of another accumulator to this sum
+     *
+     * @param other accumulator over the same group
+     * @return this accumulator
+     */
+    public CipherTextAccumulator add(CipherTextAccumulator other) {
+        c = group.operate(c, other.c);
+        d = group.operate(d, other.d);
+        return this;
+    }
+
+    /**
+     * @return the ciphertext containing the sum of all added ciphertexts, with both components reduced
+     */
+    public CipherText getSum() {
+        return new CipherText(c, d);
+    }
+}
@@ -0,0 +1,322 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Solves discrete logarithms g^b = target with small b in a {@link Group}, using the baby-step giant-step method.
+ * <br>
+ * The table holds the baby steps g^j for j in [0;m). A logarithm b &lt;= max is found using at most max/m giant steps,
+ * each costing a single multiplication, instead of one exponentiation for every candidate value of b.
+ * <br>
+ * Baby steps are stored by a 64-bit fingerprint of g^j, and every match is confirmed by an exponentiation,
+ * which keeps the table compact enough to be precomputed for an entire electorate and stored on disk.
+ * Only if two baby steps share a fingerprint, which happens with negligible probability, can a logarithm be missed.
+ * <br>
+ * Tables are cached per group and base, and grow to about sqrt(max) baby steps as larger logarithms are requested.
+ */
+public class DiscreteLogTable {
+    private static final int FORMAT_VERSION = 2;
+    private static final int CACHE_SIZE = 16;
+    private static final Map<List<Object>, DiscreteLogTable> cache = Collections.synchronizedMap(
+            new LinkedHashMap<List<Object>, DiscreteLogTable>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, DiscreteLogTable> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final Group group;
+    private final BigInteger g;
+    private final int babySteps;
+    private final BigInteger giantStep;
+    private final long[] keys;
+    private final int[] values;
+
+    /**
+     * Computes a table with the given number of baby steps, in the subgroup of Z_p^* with p = 2q+1
+     *
+     * @param g         the base
+     * @param p         the modulus
+     * @param babySteps number of baby steps. Logarithms below this number are found using a single lookup
+     */
+    public DiscreteLogTable(BigInteger g, BigInteger p, int babySteps) {
+        this(new ModPGroup(p), g, babySteps);
+    }
+
+    /**
+     * Computes a table with the given number of baby steps
+     *
+     * @param group     the group
+     * @param g         the base
+     * @param babySteps number of baby steps. Logarithms below this number are found using a single lookup
+     */
+    public DiscreteLogTable(Group group, BigInteger g, int babySteps) {
+        this(group, g, babySteps, new long[tableCapacity(babySteps)], new int[tableCapacity(babySteps)]);
+        Arrays.fill(values, -1);
+
+        BigInteger base = normalize(group, g);
+        BigInteger current = group.getIdentity();
+        for (int j = 0; j < babySteps; j++) {
+            insert(fingerprint(current), j);
+            current = group.operate(current, base);
+        }
+    }
+
+    private DiscreteLogTable(Group group, BigInteger g, int babySteps, long[] keys, int[] values) {
+        if (babySteps < 1) {
+            throw new IllegalArgumentException("Table must have at least one baby step, was: " + babySteps);
+        }
+
+        this.group = group;
+        this.g = g;
+        this.babySteps = babySteps;
+        this.giantStep = group.invert(group.exponentiate(g, BigInteger.valueOf(babySteps)));
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Returns a, possibly cached, table for the subgroup of Z_p^* with p = 2q+1,
+     * with enough baby steps to efficiently solve logarithms up to max
+     *
+     * @param g   the base
+     * @param p   the modulus
+     * @param max largest logarithm expected to be solved
+     * @return table for solving discrete logarithms with base g mod p
+     */
+    public static DiscreteLogTable forGroup(BigInteger g, BigInteger p, int max) {
+        return forGroup(new ModPGroup(p), g, max);
+    }
+
+    /**
+     * Returns a, possibly cached, table for the given group, with enough baby steps to efficiently solve
+     * logarithms up to max
+     *
+     * @param group the group
+     * @param g     the base
+     * @param max   largest logarithm expected to be solved
+     * @return table for solving discrete logarithms with base g in the group
+     */
+    public static DiscreteLogTable forGroup(Group group, BigInteger g, int max) {
+        int babySteps = (int) Math.ceil(Math.sqrt(max + 1.0));
+
+        return cache.compute(Arrays.asList(group, g), (k, table) -> {
+            if (table == null || table.babySteps < babySteps) {
+                return new DiscreteLogTable(group, g, babySteps);
+            }
+            return table;
+        });
+    }
+
+    /**
+     * Makes the table available through {@link #forGroup(Group, BigInteger, int)}, unless a larger table
+     * for the same group is already cached
+     *
+     * @param table the table, e.g. read from disk
+     */
+    public static void register(DiscreteLogTable table) {
+        cache.merge(Arrays.asList(table.group, table.g), table, (old, t) -> old.babySteps >= t.babySteps ? old : t);
+    }
+
+    /**
+     * Finds the smallest b in [0;max] where g^b = target
+     *
+     * @param target the value to find the logarithm of
+     * @param max    upper limit for the logarithm
+     * @return the smallest b in [0;max] with g^b = target
+     * @throws UnableToDecryptException if no such b exists
+     */
+    public int solve(BigInteger target, int max) throws UnableToDecryptException {
+        BigInteger reducedTarget = normalize(group, target);
+        BigInteger current = reducedTarget;
+
+        for (long offset = 0; offset <= max; offset += babySteps) {
+            int j = lookup(fingerprint(current));
+            if (j >= 0) {
+                long b = offset + j;
+                if (b > max) {
+                    break;
+                }
+                if (group.exponentiate(g, BigInteger.valueOf(b)).equals(reducedTarget)) {
+                    return (int) b;
+                }
+            }
+
+            current = group.operate(current, giantStep);
+        }
+
+        throw new UnableToDecryptException("Could not decrypt message");
+    }
+
+    /**
+     * @return number of baby steps in the table
+     */
+    public int getBabySteps() {
+        return babySteps;
+    }
+
+    /**
+     * Writes the table to the given path.
+     * <br>
+     * Named groups are written by name, while subgroups of Z_p^* are written by their modulus and order.
+     *
+     * @param path path to write to
+     * @throws IOException if writing fails
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(FORMAT_VERSION);
+            if (group.getName() != null) {
+                out.writeUTF(group.getName());
+            } else if (group instanceof ModPGroup) {
+                out.writeUTF("");
+                writeBigInteger(out, ((ModPGroup) group).getModulus());
+                writeBigInteger(out, group.getOrder());
+            } else {
+                throw new IOException("Unable to write table for unnamed group: " + group);
+            }
+            writeBigInteger(out, g);
+            out.writeInt(babySteps);
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #write(Path)}. Tables written by version 1, which only supported
+     * the subgroup of Z_p^* with p = 2q+1, can also be read
+     *
+     * @param path path to read from
+     * @return the table
+     * @throws IOException if reading fails, or the file is not a valid table
+     */
+    public static DiscreteLogTable read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version = in.readInt();
+            Group group;
+            BigInteger g;
+            if (version == 1) {
+                g = readBigInteger(in);
+                group = new ModPGroup(readBigInteger(in));
+            } else if (version == FORMAT_VERSION) {
+                group = readGroup(in);
+                g = readBigInteger(in);
+            } else {
+                throw new IOException("Unsupported discrete log table version: " + version);
+            }
+
+            int babySteps = in.readInt();
+            int capacity = in.readInt();
+            if (capacity != tableCapacity(babySteps)) {
+                throw new IOException("Discrete log table had capacity " + capacity + " for " + babySteps + " baby steps");
+            }
+
+            long[] keys = new long[capacity];
+            int[] values = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                keys[i] = in.readLong();
+                values[i] = in.readInt();
+            }
+
+            return new DiscreteLogTable(group, g, babySteps, keys, values);
+        }
+    }
+
+    private static Group readGroup(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        if (!name.isEmpty()) {
+            try {
+                return Groups.named(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Discrete log table was for unknown group", e);
+            }
+        }
+
+        BigInteger p = readBigInteger(in);
+        BigInteger q = readBigInteger(in);
+        return new ModPGroup(p, q);
+    }
+
+    /**
+     * @param group the group
+     * @param value representative of an element
+     * @return the canonical representative of the element, such that fingerprints can be compared
+     */
+    private static BigInteger normalize(Group group, BigInteger value) {
+        return group.operate(group.getIdentity(), value);
+    }
+
+    private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readBigInteger(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * @param babySteps number of entries to be held
+     * @return power of two, at least twice the number of entries
+     */
+    private static int tableCapacity(int babySteps) {
+        return Integer.highestOneBit(Math.max(babySteps, 1)) << 2;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the value. The low bits of g^j cannot be used directly, as they are all zero
+     * for a small base such as g=2 in Z_p^*, as long as g^j &lt; p
+     */
+    private static long fingerprint(BigInteger value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.toByteArray()) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int slot(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+
+    /**
+     * Inserts a baby step, unless the fingerprint is already present.
+     * As baby steps are inserted in increasing order, the smallest exponent is kept
+     */
+    private void insert(long key, int value) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == -1) {
+                keys[i] = key;
+                values[i] = value;
+                return;
+            }
+            if (keys[i] == key) {
+                return;
+            }
+        }
+    }
+
+    private int lookup(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != -1; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return -1;
+    }
+}
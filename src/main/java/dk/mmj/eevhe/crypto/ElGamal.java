@@ -27,7 +27,7 @@ public class ElGamal {
         Map<Integer, BigInteger> secretValues = SecurityUtils.generateSecretValues(polynomial, authorities, primePair.getQ());
         Map<Integer, BigInteger> publicValues = SecurityUtils.generatePublicValues(secretValues, g, primePair.getP());
 
-        return new DistKeyGenResult(g, primePair.getQ(), secretValues, publicValues);
+        return new DistKeyGenResult(g, primePair.getQ(), primePair.getP(), secretValues, publicValues);
     }
 
     /**
@@ -38,10 +38,10 @@ public class ElGamal {
      * @return the cipher text
      */
     static CipherText homomorphicEncryption(PublicKey publicKey, BigInteger message, BigInteger r) {
-        BigInteger p = publicKey.getQ().multiply(BigInteger.valueOf(2)).add(BigInteger.ONE);
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
 
-        BigInteger c = publicKey.getG().modPow(r, p);
-        BigInteger d = publicKey.getG().modPow(message, p).multiply(publicKey.getH().modPow(r, p));
+        BigInteger c = exponentiation.powG(r);
+        BigInteger d = exponentiation.getGroup().operate(exponentiation.powG(message), exponentiation.powH(r));
 
         return new CipherText(c, d);
     }
@@ -59,6 +59,31 @@ public class ElGamal {
         return homomorphicEncryption(publicKey, message, r);
     }
 
+    /**
+     * Encrypts the message under the given public key, using the precomputed randomness of a pad.
+     * <br>
+     * Encrypting 0 or 1 takes at most a single multiplication
+     *
+     * @param publicKey public key the pad was computed for
+     * @param message   message to be encrypted
+     * @param pad       the pad, which must not be used for other encryptions
+     * @return encrypted value, using the randomness {@link EncryptionPad#getR()}
+     */
+    public static CipherText homomorphicEncryption(PublicKey publicKey, BigInteger message, EncryptionPad pad) {
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+
+        BigInteger d;
+        if (message.signum() == 0) {
+            d = pad.getHR();
+        } else if (message.equals(BigInteger.ONE)) {
+            d = exponentiation.getGroup().operate(publicKey.getG(), pad.getHR());
+        } else {
+            d = exponentiation.getGroup().operate(exponentiation.powG(message), pad.getHR());
+        }
+
+        return new CipherText(pad.getGR(), d);
+    }
+
     /**
      * Homomorphic decryption
      *
@@ -69,11 +94,11 @@ public class ElGamal {
      * @throws UnableToDecryptException if no valid decryption value is found between 0 and max
      */
     public static int homomorphicDecryption(KeyPair keyPair, CipherText cipherText, int max) throws UnableToDecryptException {
-        BigInteger p = keyPair.getPublicKey().getQ().multiply(BigInteger.valueOf(2)).add(BigInteger.ONE);
-        BigInteger hr = cipherText.getC().modPow(keyPair.getSecretKey(), p);
-        BigInteger gPowMessage = cipherText.getD().multiply(hr.modInverse(p)).mod(p);
+        Group group = Groups.forKey(keyPair.getPublicKey());
+        BigInteger hr = group.exponentiate(cipherText.getC(), keyPair.getSecretKey());
+        BigInteger gPowMessage = group.divide(cipherText.getD(), hr);
 
-        return findDecryptionValue(gPowMessage, keyPair.getPublicKey().getG(), keyPair.getPublicKey().getP(), max);
+        return findDecryptionValue(gPowMessage, group, keyPair.getPublicKey().getG(), max);
     }
 
     /**
@@ -88,6 +113,18 @@ public class ElGamal {
         return SecurityUtils.computePartial(c, partialSecretKey, p);
     }
 
+    /**
+     * Partially decrypts the given c value
+     *
+     * @param c                value to be partially decrypted
+     * @param partialSecretKey partial secret key used to decrypt
+     * @param group            group of the public key
+     * @return A partial decryption of the C value
+     */
+    public static BigInteger partialDecryption(BigInteger c, BigInteger partialSecretKey, Group group) {
+        return group.exponentiate(c, partialSecretKey);
+    }
+
     /**
      * Homomorphic addition
      * <br/>
@@ -109,21 +146,30 @@ public class ElGamal {
     }
 
     public static int homomorphicDecryptionFromPartials(BigInteger d, BigInteger combinedPartials, BigInteger g, BigInteger p, int max) throws UnableToDecryptException {
-        BigInteger gPowMessage = d.multiply(combinedPartials.modInverse(p)).mod(p);
+        return homomorphicDecryptionFromPartials(d, combinedPartials, new ModPGroup(p), g, max);
+    }
 
-        return findDecryptionValue(gPowMessage, g, p, max);
+    /**
+     * Decrypts using the combination of partial decryptions
+     *
+     * @param d                d value of the cipher text
+     * @param combinedPartials the partial decryptions, combined using Lagrange interpolation
+     * @param publicKey        the public key the cipher text is encrypted under
+     * @param max              max value for the decryption value to be
+     * @return the original number which were encrypted
+     * @throws UnableToDecryptException if no valid decryption value is found between 0 and max
+     */
+    public static int homomorphicDecryptionFromPartials(BigInteger d, BigInteger combinedPartials, PublicKey publicKey, int max) throws UnableToDecryptException {
+        return homomorphicDecryptionFromPartials(d, combinedPartials, Groups.forKey(publicKey), publicKey.getG(), max);
     }
 
-    private static int findDecryptionValue(BigInteger gPowMessage, BigInteger g, BigInteger p, int max) throws UnableToDecryptException {
-        int b = 0;
+    private static int homomorphicDecryptionFromPartials(BigInteger d, BigInteger combinedPartials, Group group, BigInteger g, int max) throws UnableToDecryptException {
+        BigInteger gPowMessage = group.divide(d, combinedPartials);
 
-        while (b <= max) {
-            if (gPowMessage.equals(g.modPow(BigInteger.valueOf(b), p))) {
-                return b;
-            }
-            b++;
-        }
+        return findDecryptionValue(gPowMessage, group, g, max);
+    }
 
-        throw new UnableToDecryptException("Could not decrypt message");
+    private static int findDecryptionValue(BigInteger gPowMessage, Group group, BigInteger g, int max) throws UnableToDecryptException {
+        return DiscreteLogTable.forGroup(group, g, max).solve(gPowMessage, max);
     }
 }
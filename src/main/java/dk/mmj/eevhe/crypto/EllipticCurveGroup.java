@@ -0,0 +1,193 @@
+package dk.mmj.eevhe.crypto;
+
+import org.bouncycastle.asn1.x9.ECNamedCurveTable;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Group of points on a named elliptic curve of prime order, e.g. {@value #P256}.
+ * <br>
+ * A point is represented by its compressed SEC1 encoding, read as an unsigned integer.
+ * The point at infinity, being the identity, is represented by zero.
+ * <br>
+ * Exponentiation is scalar multiplication, and the group operation is point addition.
+ * Compared to Z_p^*, the same security level is reached with far smaller elements and exponents,
+ * which makes every exponentiation considerably cheaper.
+ */
+public class EllipticCurveGroup implements Group {
+    public static final String P256 = "P-256";
+    private final String name;
+    private final ECCurve curve;
+    private final ECPoint generator;
+    private final BigInteger order;
+    private final int encodedLength;
+
+    /**
+     * @param name name of the curve, e.g. {@value #P256}. Only curves with cofactor one are supported
+     */
+    public EllipticCurveGroup(String name) {
+        X9ECParameters parameters = CustomNamedCurves.getByName(name);
+        if (parameters == null) {
+            parameters = ECNamedCurveTable.getByName(name);
+        }
+        if (parameters == null) {
+            throw new IllegalArgumentException("Unknown curve: " + name);
+        }
+        if (!BigInteger.ONE.equals(parameters.getH())) {
+            throw new IllegalArgumentException("Curve " + name + " does not have prime order");
+        }
+
+        this.name = name;
+        this.curve = parameters.getCurve();
+        this.generator = parameters.getG().normalize();
+        this.order = parameters.getN();
+        this.encodedLength = (curve.getFieldSize() + 7) / 8 + 1;
+    }
+
+    /**
+     * @return the generator of the group, encoded
+     */
+    public BigInteger getGenerator() {
+        return encode(generator);
+    }
+
+    /**
+     * @return characteristic of the field the curve is defined over
+     */
+    public BigInteger getFieldCharacteristic() {
+        return curve.getField().getCharacteristic();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public BigInteger getOrder() {
+        return order;
+    }
+
+    @Override
+    public int getElementLength() {
+        return encodedLength;
+    }
+
+    @Override
+    public BigInteger getIdentity() {
+        return BigInteger.ZERO;
+    }
+
+    @Override
+    public BigInteger operate(BigInteger a, BigInteger b) {
+        return encode(decode(a).add(decode(b)));
+    }
+
+    @Override
+    public BigInteger exponentiate(BigInteger element, BigInteger exponent) {
+        return encode(decode(element).multiply(exponent.mod(order)));
+    }
+
+    @Override
+    public BigInteger invert(BigInteger element) {
+        return encode(decode(element).negate());
+    }
+
+    @Override
+    public boolean isElement(BigInteger value) {
+        try {
+            decode(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public BigInteger multiExponentiate(BigInteger[] bases, BigInteger[] exponents) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Number of bases and exponents did not match. Bases: "
+                    + bases.length + ", exponents: " + exponents.length);
+        }
+        if (bases.length == 0) {
+            return getIdentity();
+        }
+
+        ECPoint[] points = new ECPoint[bases.length];
+        BigInteger[] scalars = new BigInteger[exponents.length];
+        for (int i = 0; i < bases.length; i++) {
+            points[i] = decode(bases[i]);
+            scalars[i] = exponents[i].mod(order);
+        }
+
+        return encode(ECAlgorithms.sumOfMultiplies(points, scalars));
+    }
+
+    @Override
+    public UnaryOperator<BigInteger> fixedBase(BigInteger base) {
+        ECPoint point = decode(base);
+        FixedPointCombMultiplier multiplier = new FixedPointCombMultiplier();
+
+        return exponent -> encode(multiplier.multiply(point, exponent.mod(order)));
+    }
+
+    /**
+     * @param point the point
+     * @return compressed encoding of the point, as an unsigned integer
+     */
+    private BigInteger encode(ECPoint point) {
+        if (point.isInfinity()) {
+            return BigInteger.ZERO;
+        }
+        return new BigInteger(1, point.getEncoded(true));
+    }
+
+    /**
+     * @param value compressed encoding of a point, as an unsigned integer
+     * @return the point
+     * @throws IllegalArgumentException if the value is not the encoding of a point on the curve
+     */
+    private ECPoint decode(BigInteger value) {
+        if (value.signum() == 0) {
+            return curve.getInfinity();
+        }
+        if (value.signum() < 0 || value.bitLength() > 8 * encodedLength) {
+            throw new IllegalArgumentException("Value is not an encoded point on " + name);
+        }
+
+        try {
+            return curve.decodePoint(BigIntegers.asUnsignedByteArray(encodedLength, value));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Value is not an encoded point on " + name, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EllipticCurveGroup that = (EllipticCurveGroup) o;
+        return Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public String toString() {
+        return "EllipticCurveGroup{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+}
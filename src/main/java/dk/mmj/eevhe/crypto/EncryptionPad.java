@@ -0,0 +1,143 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputed randomness for encrypting a single vote, and proving it to be either 0 or 1.
+ * <br>
+ * The encryption part is (r, g^r, h^r), such that the ciphertext is (g^r, g^m * h^r).
+ * <br>
+ * The proof part is (y, g^y, h^y) for the commitment of the real branch, and (e, w, g^w, h^w, g^e, g^-e)
+ * for the simulated branch. The simulated commitment g^z * c^e equals g^w when z = w - r*e,
+ * so the simulated branch needs no exponentiation once the witness is known.
+ * <br>
+ * All values depend only on the public key, which allows pads to be computed ahead of time,
+ * see {@link EncryptionPadPool}.
+ */
+public class EncryptionPad {
+    private final BigInteger r;
+    private final BigInteger gR;
+    private final BigInteger hR;
+    private final BigInteger y;
+    private final BigInteger gY;
+    private final BigInteger hY;
+    private final BigInteger e;
+    private final BigInteger w;
+    private final BigInteger gW;
+    private final BigInteger hW;
+    private final BigInteger gE;
+    private final BigInteger gEInverse;
+
+    private EncryptionPad(FixedBaseExponentiation exponentiation, BigInteger q) {
+        r = SecurityUtils.getRandomNumModN(q);
+        gR = exponentiation.powG(r);
+        hR = exponentiation.powH(r);
+
+        y = SecurityUtils.getRandomNumModN(q);
+        gY = exponentiation.powG(y);
+        hY = exponentiation.powH(y);
+
+        e = SecurityUtils.getRandomNumModN(q);
+        w = SecurityUtils.getRandomNumModN(q);
+        gW = exponentiation.powG(w);
+        hW = exponentiation.powH(w);
+        gE = exponentiation.powG(e);
+        gEInverse = exponentiation.getGroup().invert(gE);
+    }
+
+    /**
+     * Computes a fresh pad
+     *
+     * @param publicKey the public key votes are to be encrypted under
+     * @return the pad
+     */
+    public static EncryptionPad compute(PublicKey publicKey) {
+        return new EncryptionPad(FixedBaseExponentiation.forKey(publicKey), publicKey.getQ());
+    }
+
+    /**
+     * @return the encryption randomness r
+     */
+    public BigInteger getR() {
+        return r;
+    }
+
+    /**
+     * @return g^r
+     */
+    public BigInteger getGR() {
+        return gR;
+    }
+
+    /**
+     * @return h^r
+     */
+    public BigInteger getHR() {
+        return hR;
+    }
+
+    /**
+     * @return the randomness y of the real proof branch
+     */
+    public BigInteger getY() {
+        return y;
+    }
+
+    /**
+     * @return g^y
+     */
+    public BigInteger getGY() {
+        return gY;
+    }
+
+    /**
+     * @return h^y
+     */
+    public BigInteger getHY() {
+        return hY;
+    }
+
+    /**
+     * @return the challenge e of the simulated proof branch
+     */
+    public BigInteger getE() {
+        return e;
+    }
+
+    /**
+     * @return the exponent w = z + r*e of the simulated proof branch
+     */
+    public BigInteger getW() {
+        return w;
+    }
+
+    /**
+     * @return g^w
+     */
+    public BigInteger getGW() {
+        return gW;
+    }
+
+    /**
+     * @return h^w
+     */
+    public BigInteger getHW() {
+        return hW;
+    }
+
+    /**
+     * @return g^e
+     */
+    public BigInteger getGE() {
+        return gE;
+    }
+
+    /**
+     * @return g^-e
+     */
+    public BigInteger getGEInverse() {
+        return gEInverse;
+    }
+}
@@ -0,0 +1,144 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of {@link EncryptionPad}s for a single public key, filled by background threads.
+ * <br>
+ * Taking a pad from the pool moves all exponentiations of a vote encryption and its proof off the calling thread.
+ * If the pool is empty, a pad is computed synchronously instead, and counted as a starvation.
+ * A pool is sized to a few ballots of pads, and the starvation count shows whether the background threads keep up.
+ */
+public class EncryptionPadPool implements AutoCloseable {
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+    private final PublicKey publicKey;
+    private final BlockingQueue<EncryptionPad> pads;
+    private final ExecutorService executor;
+    private final AtomicLong taken = new AtomicLong();
+    private final AtomicLong starvations = new AtomicLong();
+
+    /**
+     * Creates a pool, and starts filling it
+     *
+     * @param publicKey public key votes are to be encrypted under
+     * @param capacity  maximum number of pads held by the pool
+     * @param threads   number of background threads computing pads. If zero, all pads are computed on demand
+     */
+    public EncryptionPadPool(PublicKey publicKey, int capacity, int threads) {
+        if (capacity < 1 || threads < 0) {
+            throw new IllegalArgumentException("Capacity must be positive, and threads non-negative. Capacity: "
+                    + capacity + ", threads: " + threads);
+        }
+
+        this.publicKey = publicKey;
+        this.pads = new ArrayBlockingQueue<>(capacity);
+
+        if (threads == 0) {
+            executor = null;
+            return;
+        }
+
+        String namePrefix = "encryption-pad-pool-" + poolCounter.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::fill);
+        }
+    }
+
+    /**
+     * Computes pads until the pool is closed, blocking while the pool is full
+     */
+    private void fill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                pads.put(EncryptionPad.compute(publicKey));
+            }
+        } catch (InterruptedException ignored) {
+            //Pool was closed
+        }
+    }
+
+    /**
+     * Takes a pad from the pool, or computes one if the pool is empty
+     *
+     * @return a pad, never handed out before
+     */
+    public EncryptionPad take() {
+        taken.incrementAndGet();
+        EncryptionPad pad = pads.poll();
+        if (pad != null) {
+            return pad;
+        }
+
+        starvations.incrementAndGet();
+        return EncryptionPad.compute(publicKey);
+    }
+
+    /**
+     * @return the public key pads are computed for
+     */
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * @return number of pads currently held by the pool
+     */
+    public int getFillLevel() {
+        return pads.size();
+    }
+
+    /**
+     * @return maximum number of pads held by the pool
+     */
+    public int getCapacity() {
+        return pads.size() + pads.remainingCapacity();
+    }
+
+    /**
+     * @return number of pads taken from the pool, including those computed on demand
+     */
+    public long getTakenCount() {
+        return taken.get();
+    }
+
+    /**
+     * @return number of times the pool was empty, and a pad had to be computed on demand
+     */
+    public long getStarvationCount() {
+        return starvations.get();
+    }
+
+    /**
+     * Stops the background threads. Pads can still be taken, but are computed on demand once the pool is empty
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EncryptionPadPool{" +
+                "fillLevel=" + getFillLevel() +
+                ", capacity=" + getCapacity() +
+                ", taken=" + getTakenCount() +
+                ", starvations=" + getStarvationCount() +
+                '}';
+    }
+}
@@ -13,10 +13,20 @@ public class FeldmanVSSUtils {
      * @return Coefficient commitment g^coefficient for all coefficients in polynomial
      */
     public static BigInteger[] computeCoefficientCommitments(BigInteger g, BigInteger p, BigInteger[] polynomial) {
+        return computeCoefficientCommitments(new ModPGroup(p), g, polynomial);
+    }
+
+    /**
+     * @param group      The group
+     * @param g          The generator
+     * @param polynomial The polynomial
+     * @return Coefficient commitment g^coefficient for all coefficients in polynomial
+     */
+    public static BigInteger[] computeCoefficientCommitments(Group group, BigInteger g, BigInteger[] polynomial) {
         BigInteger[] coefficientCommitments = new BigInteger[polynomial.length];
 
         for (int i = 0; i < polynomial.length; i++) {
-            coefficientCommitments[i] = g.modPow(polynomial[i], p);
+            coefficientCommitments[i] = group.exponentiate(g, polynomial[i]);
         }
 
         return coefficientCommitments;
@@ -29,14 +39,23 @@ public class FeldmanVSSUtils {
      * @return Combined coefficient commitments g^f_i(j)
      */
     static BigInteger combineCoefficientCommitments(BigInteger[] coefficientCommitments, BigInteger j, BigInteger p) {
-        BigInteger acc = BigInteger.ONE;
+        return combineCoefficientCommitments(coefficientCommitments, j, new ModPGroup(p));
+    }
+
+    /**
+     * @param coefficientCommitments Coefficient commitments
+     * @param j                      DA id > 0
+     * @param group                  The group
+     * @return Combined coefficient commitments g^f_i(j)
+     */
+    static BigInteger combineCoefficientCommitments(BigInteger[] coefficientCommitments, BigInteger j, Group group) {
+        BigInteger[] exponents = new BigInteger[coefficientCommitments.length];
 
         for (int t = 0; t < coefficientCommitments.length; t++) {
-            BigInteger jExp = j.pow(t);
-            acc = acc.multiply(coefficientCommitments[t].modPow(jExp, p));
+            exponents[t] = j.pow(t);
         }
 
-        return acc.mod(p);
+        return group.multiExponentiate(coefficientCommitments, exponents);
     }
 
 
@@ -50,9 +69,28 @@ public class FeldmanVSSUtils {
      */
     public static boolean verifyCommitmentRespected(BigInteger g, BigInteger u, BigInteger[] coefficientCommitments,
                                                     BigInteger j, BigInteger p) {
-        BigInteger combinedCoefficientCommitments = combineCoefficientCommitments(coefficientCommitments, j, p);
+        return verifyCommitmentRespected(new ModPGroup(p), g, u, coefficientCommitments, j);
+    }
+
+    /**
+     * @param group                  The group
+     * @param g                      Generator g
+     * @param u                      u_i, which is equal to f_i(j)
+     * @param coefficientCommitments Coefficient commitments
+     * @param j                      DA id &#62; 0
+     * @return Whether g^u_i equals g^combinedCoefficientCommitments or not
+     */
+    public static boolean verifyCommitmentRespected(Group group, BigInteger g, BigInteger u,
+                                                    BigInteger[] coefficientCommitments, BigInteger j) {
+        BigInteger combinedCoefficientCommitments;
+        try {
+            combinedCoefficientCommitments = combineCoefficientCommitments(coefficientCommitments, j, group);
+        } catch (IllegalArgumentException e) {
+            //Commitments were not group elements
+            return false;
+        }
 
-        BigInteger gU = g.modPow(u, p);
+        BigInteger gU = group.exponentiate(g, u);
 
         return gU.equals(combinedCoefficientCommitments);
     }
@@ -0,0 +1,206 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fixed-base exponentiation for the bases <code>g</code> and <code>h</code> of a {@link PublicKey}.
+ * <br>
+ * Each base is expanded into a precomputed table by the {@link Group} of the key. In Z_p^* this is a comb table,
+ * so an exponentiation needs only a fraction of the squarings and multiplications
+ * used by {@link BigInteger#modPow(BigInteger, BigInteger)}.
+ * <br>
+ * Tables are built lazily on first use, and instances are cached per public key,
+ * so all encryptions and proofs under the same key share them.
+ */
+public class FixedBaseExponentiation {
+    private static final int CACHE_SIZE = 16;
+    private static final Map<PublicKey, FixedBaseExponentiation> cache = Collections.synchronizedMap(
+            new LinkedHashMap<PublicKey, FixedBaseExponentiation>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PublicKey, FixedBaseExponentiation> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final BigInteger g;
+    private final BigInteger h;
+    private final Group group;
+    private volatile UnaryOperator<BigInteger> gTable;
+    private volatile UnaryOperator<BigInteger> hTable;
+    private volatile BigInteger gInverse;
+
+    private FixedBaseExponentiation(PublicKey publicKey) {
+        this.g = publicKey.getG();
+        this.h = publicKey.getH();
+        this.group = Groups.forKey(publicKey);
+    }
+
+    /**
+     * Returns the, possibly cached, fixed-base exponentiation instance for the given public key
+     *
+     * @param publicKey public key containing the bases g and h, and the group
+     * @return fixed-base exponentiation for g and h under the public key
+     */
+    public static FixedBaseExponentiation forKey(PublicKey publicKey) {
+        return cache.computeIfAbsent(publicKey, FixedBaseExponentiation::new);
+    }
+
+    /**
+     * @return the group of the public key
+     */
+    public Group getGroup() {
+        return group;
+    }
+
+    /**
+     * Computes g^exponent
+     *
+     * @param exponent the exponent
+     * @return g^exponent
+     */
+    public BigInteger powG(BigInteger exponent) {
+        UnaryOperator<BigInteger> table = gTable;
+        if (table == null) {
+            synchronized (this) {
+                if (gTable == null) {
+                    gTable = group.fixedBase(g);
+                }
+                table = gTable;
+            }
+        }
+        return table.apply(exponent);
+    }
+
+    /**
+     * Computes h^exponent
+     *
+     * @param exponent the exponent
+     * @return h^exponent
+     */
+    public BigInteger powH(BigInteger exponent) {
+        UnaryOperator<BigInteger> table = hTable;
+        if (table == null) {
+            synchronized (this) {
+                if (hTable == null) {
+                    hTable = group.fixedBase(h);
+                }
+                table = hTable;
+            }
+        }
+        return table.apply(exponent);
+    }
+
+    /**
+     * @return g^-1
+     */
+    public BigInteger getGInverse() {
+        BigInteger inverse = gInverse;
+        if (inverse == null) {
+            inverse = gInverse = group.invert(g);
+        }
+        return inverse;
+    }
+
+    /**
+     * Lim-Lee comb table for a single base.
+     * <br>
+     * The exponent is split into {@value #ROWS} rows of <code>a</code> bits, and each row into {@value #BLOCKS}
+     * blocks of <code>b</code> bits. The table holds every combination of the row bases g^(2^(i*a)) for each block,
+     * meaning an exponentiation costs <code>b</code> squarings and at most <code>a</code> multiplications.
+     */
+    static class FixedBaseTable {
+        private static final int ROWS = 8;
+        private static final int BLOCKS = 4;
+        private final BigInteger base;
+        private final BarrettReducer reducer;
+        private final int maxBits;
+        private final int rowLength;
+        private final int blockLength;
+        private final BigInteger[][] table;
+
+        /**
+         * @param base    the fixed base
+         * @param modulus the modulus
+         * @param maxBits largest bit-length of exponents handled by the table. Larger exponents fall back to modPow
+         */
+        FixedBaseTable(BigInteger base, BigInteger modulus, int maxBits) {
+            this.base = base;
+            this.reducer = new BarrettReducer(modulus);
+            this.maxBits = maxBits;
+            this.rowLength = (maxBits + ROWS - 1) / ROWS;
+            this.blockLength = (rowLength + BLOCKS - 1) / BLOCKS;
+            this.table = new BigInteger[BLOCKS][1 << ROWS];
+
+            //Single-bit entries g^(2^(i*a + j*b)), found by repeated squaring
+            BigInteger current = base.mod(modulus);
+            int position = 0;
+            for (int i = 0; i < ROWS; i++) {
+                for (int j = 0; j < BLOCKS && j * blockLength < rowLength; j++) {
+                    int target = i * rowLength + j * blockLength;
+                    for (; position < target; position++) {
+                        current = reducer.square(current);
+                    }
+                    table[j][1 << i] = current;
+                }
+            }
+
+            //Remaining entries are products of the single-bit entries. Blocks past the row length are never used
+            for (BigInteger[] block : table) {
+                if (block[1] == null) {
+                    continue;
+                }
+
+                block[0] = BigInteger.ONE;
+                for (int u = 3; u < block.length; u++) {
+                    if (block[u] == null) {
+                        int lowestBit = u & -u;
+                        block[u] = reducer.multiply(block[u ^ lowestBit], block[lowestBit]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes base^exponent mod modulus
+         *
+         * @param exponent the exponent
+         * @return base^exponent mod modulus
+         */
+        BigInteger pow(BigInteger exponent) {
+            if (exponent.signum() < 0 || exponent.bitLength() > maxBits) {
+                return base.modPow(exponent, reducer.getModulus());
+            }
+
+            BigInteger acc = BigInteger.ONE;
+            for (int k = blockLength - 1; k >= 0; k--) {
+                acc = reducer.square(acc);
+
+                for (int j = BLOCKS - 1; j >= 0; j--) {
+                    int offset = j * blockLength + k;
+                    if (offset >= rowLength) {
+                        continue;
+                    }
+
+                    int index = 0;
+                    for (int i = 0; i < ROWS; i++) {
+                        if (exponent.testBit(i * rowLength + offset)) {
+                            index |= 1 << i;
+                        }
+                    }
+
+                    if (index != 0) {
+                        acc = reducer.multiply(acc, table[j][index]);
+                    }
+                }
+            }
+
+            return acc.mod(reducer.getModulus());
+        }
+    }
+}
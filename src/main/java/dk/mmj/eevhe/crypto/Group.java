@@ -0,0 +1,94 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cyclic group of prime order q, in which El-Gamal encryption, proofs and key generation take place.
+ * <br>
+ * The group operation is written multiplicatively. Elements are represented as {@link BigInteger}s,
+ * such that they fit the existing entities, and exponents are integers mod q.
+ * <br>
+ * Implementations are {@link ModPGroup}, the subgroup of order q in Z_p^*,
+ * and {@link EllipticCurveGroup}, a named elliptic curve of prime order.
+ */
+public interface Group {
+
+    /**
+     * @return name identifying the group in a public key, or null if the group is identified by its parameters
+     */
+    String getName();
+
+    /**
+     * @return the order q of the group
+     */
+    BigInteger getOrder();
+
+    /**
+     * @return maximum length in bytes of a reduced element, as an unsigned integer
+     */
+    int getElementLength();
+
+    /**
+     * @return the identity element
+     */
+    BigInteger getIdentity();
+
+    /**
+     * Applies the group operation
+     *
+     * @param a first element
+     * @param b second element
+     * @return the element a*b
+     */
+    BigInteger operate(BigInteger a, BigInteger b);
+
+    /**
+     * Exponentiates an element. Negative exponents are supported
+     *
+     * @param element  the element
+     * @param exponent the exponent
+     * @return the element element^exponent
+     */
+    BigInteger exponentiate(BigInteger element, BigInteger exponent);
+
+    /**
+     * @param element the element
+     * @return the inverse element^-1
+     */
+    BigInteger invert(BigInteger element);
+
+    /**
+     * Determines whether a value represents an element of the group, i.e. an element of order q or the identity
+     *
+     * @param value the value
+     * @return whether the value is a valid element
+     */
+    boolean isElement(BigInteger value);
+
+    /**
+     * Computes the product of bases[i]^exponents[i]
+     *
+     * @param bases     the bases
+     * @param exponents the exponents, where exponents[i] belongs to bases[i]
+     * @return the product of all bases raised to their exponents
+     */
+    BigInteger multiExponentiate(BigInteger[] bases, BigInteger[] exponents);
+
+    /**
+     * Precomputes values for repeated exponentiations of the same base
+     *
+     * @param base the fixed base
+     * @return function mapping an exponent e to base^e
+     */
+    UnaryOperator<BigInteger> fixedBase(BigInteger base);
+
+    /**
+     * @param a first element
+     * @param b second element
+     * @return the element a*b^-1
+     */
+    default BigInteger divide(BigInteger a, BigInteger b) {
+        return operate(a, invert(b));
+    }
+}
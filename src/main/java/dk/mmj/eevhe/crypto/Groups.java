@@ -0,0 +1,76 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the {@link Group} a public key belongs to.
+ * <br>
+ * Keys without a group name belong to the subgroup of order q in Z_p^*, with p = 2q+1 unless the key
+ * holds a modulus p = kq+1 of a Schnorr group. Keys with a group name belong to the named group. Names are looked up among the registered groups,
+ * and otherwise taken to be the name of an elliptic curve, such as {@value EllipticCurveGroup#P256}.
+ */
+public class Groups {
+    private static final int CACHE_SIZE = 16;
+    private static final Map<String, Supplier<Group>> registry = new ConcurrentHashMap<>();
+    private static final Map<String, Group> named = new ConcurrentHashMap<>();
+    private static final Map<List<BigInteger>, Group> unnamed = Collections.synchronizedMap(
+            new LinkedHashMap<List<BigInteger>, Group>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<BigInteger>, Group> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Registers a named group, which is created on first use
+     *
+     * @param name    name of the group, as used in {@link PublicKey#getGroup()}
+     * @param factory creates the group
+     */
+    public static void register(String name, Supplier<Group> factory) {
+        registry.put(name, factory);
+        named.remove(name);
+    }
+
+    /**
+     * @param name name of the group
+     * @return the named group
+     * @throws IllegalArgumentException if no group with the given name is known
+     */
+    public static Group named(String name) {
+        return named.computeIfAbsent(name, n -> registry.getOrDefault(n, () -> new EllipticCurveGroup(n)).get());
+    }
+
+    /**
+     * @param publicKey the public key
+     * @return the group the key belongs to
+     * @throws IllegalArgumentException if the key names a group which is not known
+     */
+    public static Group forKey(PublicKey publicKey) {
+        if (publicKey.getGroup() != null) {
+            return named(publicKey.getGroup());
+        }
+
+        return unnamed.computeIfAbsent(Arrays.asList(publicKey.getP(), publicKey.getQ()), k -> new ModPGroup(k.get(0), k.get(1)));
+    }
+
+    /**
+     * Creates a public key in the given group, such that {@link #forKey(PublicKey)} resolves the group again
+     *
+     * @param h     the public value h
+     * @param g     the generator g
+     * @param group the group
+     * @return the public key
+     */
+    public static PublicKey publicKey(BigInteger h, BigInteger g, Group group) {
+        if (group instanceof ModPGroup && !((ModPGroup) group).isSafePrimeGroup()) {
+            return new PublicKey(h, g, group.getOrder(), ((ModPGroup) group).getModulus());
+        }
+        return new PublicKey(h, g, group.getOrder(), group.getName());
+    }
+}
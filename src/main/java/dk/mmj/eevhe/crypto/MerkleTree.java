@@ -0,0 +1,370 @@
+package dk.mmj.eevhe.crypto;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Append-only Merkle tree, as specified for Certificate Transparency in RFC 6962, using SHA-256.
+ * <br>
+ * Leaves are hashed as H(0x00 || data), and nodes as H(0x01 || left || right), so a leaf can never be mistaken for a node.
+ * The tree over n leaves splits at the largest power of two smaller than n, so the tree over the first m leaves
+ * is contained in the tree over all n leaves, which lets a single signed root commit to the whole log,
+ * and every earlier root.
+ * <br>
+ * The hash of each complete subtree is kept when it is completed, so appending a leaf takes amortized constant time,
+ * and roots, inclusion proofs, range proofs and consistency proofs, for any size up to the current one, take logarithmic time.
+ * <br>
+ * The tree is not thread-safe.
+ */
+public class MerkleTree {
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+    /**
+     * levels.get(k).get(i) is the hash of the complete subtree over leaves [i * 2^k, (i+1) * 2^k)
+     */
+    private final List<List<byte[]>> levels = new ArrayList<>();
+
+    /**
+     * Appends a leaf
+     *
+     * @param data the data of the leaf
+     */
+    public void append(byte[] data) {
+        byte[] hash = leafHash(data);
+        for (int level = 0; ; level++) {
+            if (levels.size() == level) {
+                levels.add(new ArrayList<>());
+            }
+
+            List<byte[]> hashes = levels.get(level);
+            hashes.add(hash);
+            if (hashes.size() % 2 == 1) {
+                return;
+            }
+            hash = nodeHash(hashes.get(hashes.size() - 2), hash);
+        }
+    }
+
+    /**
+     * @return number of leaves
+     */
+    public int size() {
+        return levels.isEmpty() ? 0 : levels.get(0).size();
+    }
+
+    /**
+     * @param size number of leaves in the tree, at most {@link #size()}
+     * @return root hash of the tree over the first size leaves
+     */
+    public byte[] root(int size) {
+        checkSize(size);
+        if (size == 0) {
+            return hash(new byte[0]);
+        }
+        return subtree(0, size);
+    }
+
+    /**
+     * Returns the audit path for a leaf, from the leaf towards the root
+     *
+     * @param index index of the leaf
+     * @param size  number of leaves in the tree, at most {@link #size()}
+     * @return hashes needed to compute the root from the leaf
+     */
+    public List<byte[]> inclusionProof(int index, int size) {
+        checkSize(size);
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Leaf " + index + " is not in a tree of size " + size);
+        }
+
+        List<byte[]> path = new ArrayList<>();
+        inclusionProof(index, 0, size, path);
+        return path;
+    }
+
+    private void inclusionProof(int index, int from, int to, List<byte[]> path) {
+        if (to - from == 1) {
+            return;
+        }
+
+        int split = from + largestPowerOfTwoBelow(to - from);
+        if (index < split) {
+            inclusionProof(index, from, split, path);
+            path.add(subtree(split, to));
+        } else {
+            inclusionProof(index, split, to, path);
+            path.add(subtree(from, split));
+        }
+    }
+
+    /**
+     * Returns the hashes proving that a range of consecutive leaves is in the tree, so a page of leaves
+     * is proven by a logarithmic number of hashes, instead of an audit path for each leaf.
+     * <br>
+     * The proof holds the hash of each maximal subtree with no leaves in the range, from left to right
+     *
+     * @param from index of the first leaf in the range
+     * @param to   index after the last leaf in the range
+     * @param size number of leaves in the tree, at most {@link #size()}
+     * @return hashes needed to compute the root from the leaves in the range
+     */
+    public List<byte[]> rangeProof(int from, int to, int size) {
+        checkSize(size);
+        if (from < 0 || from >= to || to > size) {
+            throw new IllegalArgumentException("Leaves [" + from + ";" + to + ") are not a range in a tree of size " + size);
+        }
+
+        List<byte[]> proof = new ArrayList<>();
+        rangeProof(from, to, 0, size, proof);
+        return proof;
+    }
+
+    private void rangeProof(int from, int to, int lo, int hi, List<byte[]> proof) {
+        if (hi <= from || to <= lo) {
+            proof.add(subtree(lo, hi));
+            return;
+        }
+        if (from <= lo && hi <= to) {
+            return;
+        }
+
+        int split = lo + largestPowerOfTwoBelow(hi - lo);
+        rangeProof(from, to, lo, split, proof);
+        rangeProof(from, to, split, hi, proof);
+    }
+
+    /**
+     * Returns the hashes proving that the tree over the first oldSize leaves is a prefix of the tree over newSize leaves
+     *
+     * @param oldSize size of the old tree
+     * @param newSize size of the new tree, at most {@link #size()}
+     * @return hashes needed to compute both roots
+     */
+    public List<byte[]> consistencyProof(int oldSize, int newSize) {
+        checkSize(newSize);
+        if (oldSize < 0 || oldSize > newSize) {
+            throw new IllegalArgumentException("A tree of size " + oldSize + " is not a prefix of a tree of size " + newSize);
+        }
+
+        List<byte[]> proof = new ArrayList<>();
+        if (oldSize > 0 && oldSize < newSize) {
+            consistencyProof(oldSize, 0, newSize, true, proof);
+        }
+        return proof;
+    }
+
+    private void consistencyProof(int oldSize, int from, int to, boolean complete, List<byte[]> proof) {
+        if (from + oldSize == to) {
+            if (!complete) {
+                proof.add(subtree(from, to));
+            }
+            return;
+        }
+
+        int k = largestPowerOfTwoBelow(to - from);
+        if (oldSize <= k) {
+            consistencyProof(oldSize, from, from + k, complete, proof);
+            proof.add(subtree(from + k, to));
+        } else {
+            consistencyProof(oldSize - k, from + k, to, false, proof);
+            proof.add(subtree(from, from + k));
+        }
+    }
+
+    /**
+     * Hash of the subtree over leaves [from, to), computed from the stored complete subtrees.
+     * <br>
+     * Subtrees visited when splitting the tree from the left always start at a multiple of their size,
+     * so every complete subtree needed is stored
+     */
+    private byte[] subtree(int from, int to) {
+        int size = to - from;
+        if (Integer.bitCount(size) == 1) {
+            int level = Integer.numberOfTrailingZeros(size);
+            return levels.get(level).get(from >>> level);
+        }
+
+        int split = from + largestPowerOfTwoBelow(size);
+        return nodeHash(subtree(from, split), subtree(split, to));
+    }
+
+    private void checkSize(int size) {
+        if (size < 0 || size > size()) {
+            throw new IllegalArgumentException("Tree of size " + size() + " has no root for size " + size);
+        }
+    }
+
+    /**
+     * Verifies an inclusion proof, following RFC 9162 section 2.1.3.2
+     *
+     * @param leafData data of the leaf
+     * @param index    index of the leaf
+     * @param size     number of leaves in the tree
+     * @param path     the audit path, as given by {@link #inclusionProof(int, int)}
+     * @param root     the root hash of the tree
+     * @return whether the leaf is in the tree with the given root
+     */
+    public static boolean verifyInclusion(byte[] leafData, long index, long size, List<byte[]> path, byte[] root) {
+        if (index < 0 || index >= size || path == null || root == null) {
+            return false;
+        }
+
+        long fn = index;
+        long sn = size - 1;
+        byte[] r = leafHash(leafData);
+        for (byte[] p : path) {
+            if (sn == 0) {
+                return false;
+            }
+
+            if ((fn & 1) == 1 || fn == sn) {
+                r = nodeHash(p, r);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>= 1;
+                    sn >>= 1;
+                }
+            } else {
+                r = nodeHash(r, p);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+
+        return sn == 0 && Arrays.equals(r, root);
+    }
+
+    /**
+     * Verifies a range proof, by computing the root from the leaves in the range and the hashes of the other subtrees
+     *
+     * @param leavesData data of the consecutive leaves in the range
+     * @param from       index of the first leaf in the range
+     * @param size       number of leaves in the tree
+     * @param proof      the proof, as given by {@link #rangeProof(int, int, int)}
+     * @param root       the root hash of the tree
+     * @return whether the leaves are in the tree with the given root, at the given indices
+     */
+    public static boolean verifyRange(List<byte[]> leavesData, long from, long size, List<byte[]> proof, byte[] root) {
+        if (leavesData == null || leavesData.isEmpty() || proof == null || root == null
+                || from < 0 || from + leavesData.size() > size || size > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        Iterator<byte[]> hashes = proof.iterator();
+        byte[] computed = rootOfRange(leavesData, (int) from, 0, (int) size, hashes);
+        return computed != null && !hashes.hasNext() && Arrays.equals(computed, root);
+    }
+
+    /**
+     * @return hash of the subtree over leaves [lo, hi), or null if the proof has too few hashes
+     */
+    private static byte[] rootOfRange(List<byte[]> leavesData, int from, int lo, int hi, Iterator<byte[]> proof) {
+        int to = from + leavesData.size();
+        if (hi <= from || to <= lo) {
+            return proof.hasNext() ? proof.next() : null;
+        }
+        if (hi - lo == 1) {
+            return leafHash(leavesData.get(lo - from));
+        }
+
+        int split = lo + largestPowerOfTwoBelow(hi - lo);
+        byte[] left = rootOfRange(leavesData, from, lo, split, proof);
+        byte[] right = left != null ? rootOfRange(leavesData, from, split, hi, proof) : null;
+        return right != null ? nodeHash(left, right) : null;
+    }
+
+    /**
+     * Verifies a consistency proof, following RFC 9162 section 2.1.4.2
+     *
+     * @param oldSize size of the old tree
+     * @param newSize size of the new tree
+     * @param oldRoot root hash of the old tree
+     * @param newRoot root hash of the new tree
+     * @param proof   the proof, as given by {@link #consistencyProof(int, int)}
+     * @return whether the old tree is a prefix of the new tree
+     */
+    public static boolean verifyConsistency(long oldSize, long newSize, byte[] oldRoot, byte[] newRoot, List<byte[]> proof) {
+        if (oldSize < 0 || oldSize > newSize || proof == null || oldRoot == null || newRoot == null) {
+            return false;
+        }
+        if (oldSize == newSize) {
+            return proof.isEmpty() && Arrays.equals(oldRoot, newRoot);
+        }
+        if (oldSize == 0) {
+            //The empty tree is a prefix of every tree
+            return proof.isEmpty();
+        }
+        if (proof.isEmpty()) {
+            return false;
+        }
+
+        List<byte[]> path = new ArrayList<>(proof);
+        if (Long.bitCount(oldSize) == 1) {
+            path.add(0, oldRoot);
+        }
+
+        long fn = oldSize - 1;
+        long sn = newSize - 1;
+        while ((fn & 1) == 1) {
+            fn >>= 1;
+            sn >>= 1;
+        }
+
+        byte[] fr = path.get(0);
+        byte[] sr = path.get(0);
+        for (byte[] c : path.subList(1, path.size())) {
+            if (sn == 0) {
+                return false;
+            }
+
+            if ((fn & 1) == 1 || fn == sn) {
+                fr = nodeHash(c, fr);
+                sr = nodeHash(c, sr);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>= 1;
+                    sn >>= 1;
+                }
+            } else {
+                sr = nodeHash(sr, c);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+
+        return sn == 0 && Arrays.equals(fr, oldRoot) && Arrays.equals(sr, newRoot);
+    }
+
+    /**
+     * @param data data of a leaf
+     * @return hash of the leaf
+     */
+    public static byte[] leafHash(byte[] data) {
+        return hash(new byte[]{LEAF_PREFIX}, data);
+    }
+
+    private static byte[] nodeHash(byte[] left, byte[] right) {
+        return hash(new byte[]{NODE_PREFIX}, left, right);
+    }
+
+    private static byte[] hash(byte[]... parts) {
+        SHA256Digest digest = new SHA256Digest();
+        for (byte[] part : parts) {
+            digest.update(part, 0, part.length);
+        }
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    /**
+     * @param n number larger than 1
+     * @return the largest power of two strictly smaller than n
+     */
+    private static int largestPowerOfTwoBelow(int n) {
+        return Integer.highestOneBit(n - 1);
+    }
+}
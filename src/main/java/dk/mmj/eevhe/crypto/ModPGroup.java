@@ -0,0 +1,136 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * The subgroup of order q in Z_p^*, where q divides p-1.
+ * <br>
+ * Elements are residues mod p. Operations accept any non-negative representative, and return values reduced mod p.
+ */
+public class ModPGroup implements Group {
+    private final BigInteger p;
+    private final BigInteger q;
+    private final BarrettReducer reducer;
+
+    /**
+     * @param p the prime modulus
+     * @param q the prime order of the subgroup, dividing p-1
+     */
+    public ModPGroup(BigInteger p, BigInteger q) {
+        if (!p.subtract(BigInteger.ONE).mod(q).equals(BigInteger.ZERO)) {
+            throw new IllegalArgumentException("q must divide p-1");
+        }
+
+        this.p = p;
+        this.q = q;
+        this.reducer = new BarrettReducer(p);
+    }
+
+    /**
+     * Creates the group of quadratic residues mod the safe prime p = 2q+1
+     *
+     * @param p the safe prime modulus
+     */
+    public ModPGroup(BigInteger p) {
+        this(p, p.subtract(BigInteger.ONE).shiftRight(1));
+    }
+
+    /**
+     * @return the modulus p
+     */
+    public BigInteger getModulus() {
+        return p;
+    }
+
+    /**
+     * @return whether p = 2q+1
+     */
+    public boolean isSafePrimeGroup() {
+        return p.equals(q.shiftLeft(1).add(BigInteger.ONE));
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public BigInteger getOrder() {
+        return q;
+    }
+
+    @Override
+    public int getElementLength() {
+        return (p.bitLength() + 7) / 8;
+    }
+
+    @Override
+    public BigInteger getIdentity() {
+        return BigInteger.ONE;
+    }
+
+    @Override
+    public BigInteger operate(BigInteger a, BigInteger b) {
+        return reducer.multiply(a, b);
+    }
+
+    @Override
+    public BigInteger exponentiate(BigInteger element, BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            return element.modInverse(p).modPow(exponent.negate(), p);
+        }
+        return element.modPow(exponent, p);
+    }
+
+    @Override
+    public BigInteger invert(BigInteger element) {
+        return element.modInverse(p);
+    }
+
+    @Override
+    public boolean isElement(BigInteger value) {
+        if (value.signum() <= 0 || value.compareTo(p) >= 0) {
+            return false;
+        }
+
+        //For a safe prime, the subgroup of order q is exactly the quadratic residues
+        if (isSafePrimeGroup()) {
+            return SecurityUtils.jacobiSymbol(value, p) == 1;
+        }
+        return value.modPow(q, p).equals(BigInteger.ONE);
+    }
+
+    @Override
+    public BigInteger multiExponentiate(BigInteger[] bases, BigInteger[] exponents) {
+        return MultiExponentiation.product(bases, exponents, p);
+    }
+
+    @Override
+    public UnaryOperator<BigInteger> fixedBase(BigInteger base) {
+        return new FixedBaseExponentiation.FixedBaseTable(base, p, q.bitLength())::pow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ModPGroup modPGroup = (ModPGroup) o;
+        return Objects.equals(p, modPGroup.p) &&
+                Objects.equals(q, modPGroup.q);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(p, q);
+    }
+
+    @Override
+    public String toString() {
+        return "ModPGroup{" +
+                "p=" + p +
+                ", q=" + q +
+                '}';
+    }
+}
@@ -0,0 +1,179 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+
+/**
+ * Simultaneous multi-exponentiation, computing products on the form b_1^e_1 * b_2^e_2 * ... * b_n^e_n mod p.
+ * <br>
+ * Three strategies are used, depending on the number of bases:
+ * <ul>
+ *     <li>Few bases: one {@link BigInteger#modPow(BigInteger, BigInteger)} per base.
+ *     The JDK computes these using intrinsic Montgomery multiplication,
+ *     which beats any interleaving implemented on top of {@link BigInteger} arithmetic</li>
+ *     <li>Moderate number of bases: Straus' interleaving, where all bases share the squarings of a single accumulator</li>
+ *     <li>Many bases: Pippenger's bucket method, where each base only costs about one multiplication per window</li>
+ * </ul>
+ */
+public class MultiExponentiation {
+    static final int STRAUS_THRESHOLD = 8;
+    static final int PIPPENGER_THRESHOLD = 128;
+
+    /**
+     * Computes the product of bases[i]^exponents[i] mod modulus.
+     * <br>
+     * Negative exponents are supported, in which case the corresponding base must be invertible.
+     *
+     * @param bases     the bases
+     * @param exponents the exponents, where exponents[i] belongs to bases[i]
+     * @param modulus   the modulus
+     * @return the product of all bases raised to their exponents, mod modulus
+     */
+    public static BigInteger product(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Number of bases and exponents did not match. Bases: "
+                    + bases.length + ", exponents: " + exponents.length);
+        }
+
+        BigInteger[] normalizedBases = new BigInteger[bases.length];
+        BigInteger[] normalizedExponents = new BigInteger[exponents.length];
+        for (int i = 0; i < bases.length; i++) {
+            if (exponents[i].signum() < 0) {
+                normalizedBases[i] = bases[i].modInverse(modulus);
+                normalizedExponents[i] = exponents[i].negate();
+            } else {
+                normalizedBases[i] = bases[i].mod(modulus);
+                normalizedExponents[i] = exponents[i];
+            }
+        }
+
+        BarrettReducer reducer = new BarrettReducer(modulus);
+        if (bases.length < STRAUS_THRESHOLD) {
+            return individually(normalizedBases, normalizedExponents, reducer);
+        } else if (bases.length < PIPPENGER_THRESHOLD) {
+            return straus(normalizedBases, normalizedExponents, reducer);
+        } else {
+            return pippenger(normalizedBases, normalizedExponents, reducer);
+        }
+    }
+
+    /**
+     * Computes g^a * h^b mod modulus
+     *
+     * @param g       first base
+     * @param a       exponent for first base
+     * @param h       second base
+     * @param b       exponent for second base
+     * @param modulus the modulus
+     * @return g^a * h^b mod modulus
+     */
+    public static BigInteger product(BigInteger g, BigInteger a, BigInteger h, BigInteger b, BigInteger modulus) {
+        return product(new BigInteger[]{g, h}, new BigInteger[]{a, b}, modulus);
+    }
+
+    /**
+     * Multiplies together individually computed powers
+     */
+    static BigInteger individually(BigInteger[] bases, BigInteger[] exponents, BarrettReducer reducer) {
+        BigInteger acc = BigInteger.ONE;
+        for (int i = 0; i < bases.length; i++) {
+            acc = reducer.multiply(acc, bases[i].modPow(exponents[i], reducer.getModulus()));
+        }
+
+        return acc.mod(reducer.getModulus());
+    }
+
+    /**
+     * Straus' method; a fixed-window exponentiation where every base has its own table of small powers,
+     * and all bases share the squarings of the accumulator
+     */
+    static BigInteger straus(BigInteger[] bases, BigInteger[] exponents, BarrettReducer reducer) {
+        int maxBits = maxBitLength(exponents);
+        int windowSize = maxBits > 256 ? 5 : 3;
+        int windows = (maxBits + windowSize - 1) / windowSize;
+
+        BigInteger[][] tables = new BigInteger[bases.length][1 << windowSize];
+        for (int i = 0; i < bases.length; i++) {
+            BigInteger[] table = tables[i];
+            table[1] = bases[i];
+            for (int d = 2; d < table.length; d++) {
+                table[d] = reducer.multiply(table[d - 1], bases[i]);
+            }
+        }
+
+        BigInteger acc = BigInteger.ONE;
+        for (int window = windows - 1; window >= 0; window--) {
+            for (int s = 0; s < windowSize; s++) {
+                acc = reducer.square(acc);
+            }
+
+            for (int i = 0; i < bases.length; i++) {
+                int digit = digit(exponents[i], window * windowSize, windowSize);
+                if (digit != 0) {
+                    acc = reducer.multiply(acc, tables[i][digit]);
+                }
+            }
+        }
+
+        return acc.mod(reducer.getModulus());
+    }
+
+    /**
+     * Pippenger's bucket method. For each window, bases are multiplied into a bucket determined by their digit,
+     * and the buckets are combined using a running product such that bucket d is raised to the power d
+     */
+    static BigInteger pippenger(BigInteger[] bases, BigInteger[] exponents, BarrettReducer reducer) {
+        int maxBits = maxBitLength(exponents);
+        int windowSize = Math.max(4, Math.min(16, 31 - Integer.numberOfLeadingZeros(bases.length) - 2));
+        int windows = (maxBits + windowSize - 1) / windowSize;
+
+        BigInteger acc = BigInteger.ONE;
+        for (int window = windows - 1; window >= 0; window--) {
+            for (int s = 0; s < windowSize; s++) {
+                acc = reducer.square(acc);
+            }
+
+            BigInteger[] buckets = new BigInteger[1 << windowSize];
+            for (int i = 0; i < bases.length; i++) {
+                int digit = digit(exponents[i], window * windowSize, windowSize);
+                if (digit != 0) {
+                    buckets[digit] = buckets[digit] == null ? bases[i] : reducer.multiply(buckets[digit], bases[i]);
+                }
+            }
+
+            BigInteger running = null;
+            BigInteger windowProduct = null;
+            for (int d = buckets.length - 1; d > 0; d--) {
+                if (buckets[d] != null) {
+                    running = running == null ? buckets[d] : reducer.multiply(running, buckets[d]);
+                }
+                if (running != null) {
+                    windowProduct = windowProduct == null ? running : reducer.multiply(windowProduct, running);
+                }
+            }
+
+            if (windowProduct != null) {
+                acc = reducer.multiply(acc, windowProduct);
+            }
+        }
+
+        return acc.mod(reducer.getModulus());
+    }
+
+    private static int maxBitLength(BigInteger[] exponents) {
+        int maxBits = 1;
+        for (BigInteger exponent : exponents) {
+            maxBits = Math.max(maxBits, exponent.bitLength());
+        }
+        return maxBits;
+    }
+
+    private static int digit(BigInteger exponent, int offset, int length) {
+        int digit = 0;
+        for (int b = 0; b < length; b++) {
+            if (exponent.testBit(offset + b)) {
+                digit |= 1 << b;
+            }
+        }
+        return digit;
+    }
+}
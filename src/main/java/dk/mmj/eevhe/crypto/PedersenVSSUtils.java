@@ -20,6 +20,17 @@ public class PedersenVSSUtils {
         return generator.modPow(new BigInteger(p.bitLength(), random), p);
     }
 
+    /**
+     * Returns a random element in the group generated by generator g.
+     *
+     * @param group     The group
+     * @param generator A group generator
+     * @return Random element in the group
+     */
+    public static BigInteger generateElementInSubgroup(Group group, BigInteger generator) {
+        return group.exponentiate(generator, SecurityUtils.getRandomNumModN(group.getOrder()));
+    }
+
     /**
      * Computes the coefficient commitments, which are denoted C_ik in the Gennaro paper.
      *
@@ -33,13 +44,26 @@ public class PedersenVSSUtils {
     public static BigInteger[] computeCoefficientCommitments(BigInteger g, BigInteger e,
                                                              BigInteger p, BigInteger[] polynomial1,
                                                              BigInteger[] polynomial2) {
+        return computeCoefficientCommitments(new ModPGroup(p), g, e, polynomial1, polynomial2);
+    }
+
+    /**
+     * Computes the coefficient commitments, which are denoted C_ik in the Gennaro paper.
+     *
+     * @param group       The group
+     * @param g           Generator g of the group
+     * @param e           Chosen random element of the group
+     * @param polynomial1 The polynomial f()
+     * @param polynomial2 The polynomial f'()
+     * @return Coefficient commitments
+     */
+    public static BigInteger[] computeCoefficientCommitments(Group group, BigInteger g, BigInteger e,
+                                                             BigInteger[] polynomial1, BigInteger[] polynomial2) {
         BigInteger[] coefficientCommitments = new BigInteger[polynomial1.length];
 
         for (int i = 0; i < polynomial1.length; i++) {
-            BigInteger gPow = g.modPow(polynomial1[i], p);
-            BigInteger ePow = e.modPow(polynomial2[i], p);
-
-            coefficientCommitments[i] = gPow.multiply(ePow).mod(p);
+            coefficientCommitments[i] = group.multiExponentiate(
+                    new BigInteger[]{g, e}, new BigInteger[]{polynomial1[i], polynomial2[i]});
         }
 
         return coefficientCommitments;
@@ -58,6 +82,18 @@ public class PedersenVSSUtils {
         return FeldmanVSSUtils.combineCoefficientCommitments(coefficientCommitments, j, p);
     }
 
+    /**
+     * Calls the Feldman-VSS implementation to combine coefficient commitments.
+     *
+     * @param coefficientCommitments The coefficient commitments to combine
+     * @param j                      The DA's ID &#62; 0
+     * @param group                  The group
+     * @return Combined coefficient commitments g^(f_i(j)) * e^(f'_i(j))
+     */
+    public static BigInteger combineCoefficientCommitments(BigInteger[] coefficientCommitments, BigInteger j, Group group) {
+        return FeldmanVSSUtils.combineCoefficientCommitments(coefficientCommitments, j, group);
+    }
+
     /**
      * @param g                      Generator g
      * @param e                      Randomly chosen element in subgroup Z_p^*
@@ -73,10 +109,30 @@ public class PedersenVSSUtils {
                                                     BigInteger u1, BigInteger u2,
                                                     BigInteger[] coefficientCommitments,
                                                     BigInteger j, BigInteger p, BigInteger q) {
-        BigInteger gU = g.modPow(u1, p);
-        BigInteger eU = e.modPow(u2, p);
-        BigInteger leftSide = gU.multiply(eU).mod(p);
-        BigInteger combinedCoefficientCommitments = combineCoefficientCommitments(coefficientCommitments, j, p);
+        return verifyCommitmentRespected(new ModPGroup(p), g, e, u1, u2, coefficientCommitments, j);
+    }
+
+    /**
+     * @param group                  The group
+     * @param g                      Generator g
+     * @param e                      Randomly chosen element in the group
+     * @param u1                     u_j, which is equal to f_i(j)
+     * @param u2                     u'_j, which is equal to f'_i(j)
+     * @param coefficientCommitments The coefficient commitments to combine
+     * @param j                      The DA's ID &#62; 0
+     * @return Whether g^u_j * e^u'_j equals C_j or not
+     */
+    public static boolean verifyCommitmentRespected(Group group, BigInteger g, BigInteger e,
+                                                    BigInteger u1, BigInteger u2,
+                                                    BigInteger[] coefficientCommitments, BigInteger j) {
+        BigInteger leftSide = group.multiExponentiate(new BigInteger[]{g, e}, new BigInteger[]{u1, u2});
+        BigInteger combinedCoefficientCommitments;
+        try {
+            combinedCoefficientCommitments = combineCoefficientCommitments(coefficientCommitments, j, group);
+        } catch (IllegalArgumentException ex) {
+            //Commitments were not group elements
+            return false;
+        }
 
         return leftSide.equals(combinedCoefficientCommitments);
     }
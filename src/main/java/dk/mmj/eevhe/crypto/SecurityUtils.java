@@ -2,14 +2,14 @@ package dk.mmj.eevhe.crypto;
 
 import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
 import dk.mmj.eevhe.entities.*;
-import org.apache.commons.collections4.ListUtils;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.math.BigInteger.valueOf;
 
@@ -17,6 +17,8 @@ import static java.math.BigInteger.valueOf;
  * Class used for methods not tied directly to ElGamal
  */
 public class SecurityUtils {
+    private static final SecureRandom random = new SecureRandom();
+
     /**
      * Find a random number in the range [1;n)
      *
@@ -24,7 +26,6 @@ public class SecurityUtils {
      * @return random number in range [1;n)
      */
     public static BigInteger getRandomNumModN(BigInteger n) {
-        Random random = new SecureRandom();
         BigInteger result = null;
 
         while (result == null || result.compareTo(new BigInteger("0")) == 0) {
@@ -69,34 +70,63 @@ public class SecurityUtils {
         return new CandidateVoteDTO(ciphertext, id, proof);
     }
 
+    /**
+     * Generates a ballot, with a vote for each candidate and a proof that at most one candidate is voted for
+     *
+     * @param vote       index of the candidate voted for. Any index outside the list of candidates is a blank vote
+     * @param candidates number of candidates
+     * @param id         the ID of the person voting
+     * @param publicKey  the public key used to encrypt the votes
+     * @return the ballot
+     */
     public static BallotDTO generateBallot(int vote, int candidates, String id, PublicKey publicKey) {
-        ArrayList<CandidateVoteDTO> votes = new ArrayList<>();
-        BigInteger[] rVals = new BigInteger[candidates];
-        List<CipherText> cipherTexts = new ArrayList<>();
+        return generateBallot(vote, candidates, id, publicKey, () -> EncryptionPad.compute(publicKey));
+    }
 
-        boolean voted = false;
-        for (int i = 0; i < candidates; i++) {
-            int isYes = i == vote ? 1 : 0;
-            //If votes is yes, flip voted boolean as to register vote is not blank
-            voted |= i == vote;
+    /**
+     * Generates a ballot using pads from a pool, such that only multiplications and hashes are needed,
+     * as long as the pool is not empty
+     *
+     * @param vote       index of the candidate voted for. Any index outside the list of candidates is a blank vote
+     * @param candidates number of candidates
+     * @param id         the ID of the person voting
+     * @param pool       pool of pads for the public key used to encrypt the votes
+     * @return the ballot
+     */
+    public static BallotDTO generateBallot(int vote, int candidates, String id, EncryptionPadPool pool) {
+        return generateBallot(vote, candidates, id, pool.getPublicKey(), pool::take);
+    }
 
-            BigInteger r = SecurityUtils.getRandomNumModN(publicKey.getQ());
-            rVals[i] = r;
+    /**
+     * Encrypts and proves the vote for each candidate in parallel on the common {@link java.util.concurrent.ForkJoinPool},
+     * which is shared by all ballots being generated, and bounded by its parallelism.
+     * <br>
+     * The ciphertexts and randomness are then summed in a running product, for the proof that at most one candidate is voted for
+     */
+    private static BallotDTO generateBallot(int vote, int candidates, String id, PublicKey publicKey, Supplier<EncryptionPad> pads) {
+        EncryptionPad[] candidatePads = new EncryptionPad[candidates];
+        List<CandidateVoteDTO> votes = IntStream.range(0, candidates).parallel().mapToObj(i -> {
+            BigInteger isYes = i == vote ? BigInteger.ONE : BigInteger.ZERO;
+            EncryptionPad pad = pads.get();
+            candidatePads[i] = pad;
 
-            CipherText ciphertext = ElGamal.homomorphicEncryption(publicKey, valueOf(isYes), r);
-            cipherTexts.add(ciphertext);
+            CipherText ciphertext = ElGamal.homomorphicEncryption(publicKey, isYes, pad);
+            Proof proof = VoteProofUtils.generateProof(ciphertext, publicKey, pad.getR(), id, isYes, pad);
 
-            Proof proof = VoteProofUtils.generateProof(ciphertext, publicKey, r, id, valueOf(isYes));
+            return new CandidateVoteDTO(ciphertext, id, proof);
+        }).collect(Collectors.toList());
 
-            votes.add(new CandidateVoteDTO(ciphertext, id, proof));
+        CipherTextAccumulator cipherTextSum = new CipherTextAccumulator(Groups.forKey(publicKey));
+        BigInteger rSum = BigInteger.ZERO;
+        for (int i = 0; i < candidates; i++) {
+            cipherTextSum.add(votes.get(i).getCipherText());
+            rSum = rSum.add(candidatePads[i].getR());
         }
 
-        BigInteger rSum = Arrays.stream(rVals).reduce(BigInteger.ZERO, BigInteger::add);
-        CipherText cipherTextSum = concurrentSum(cipherTexts, 500);
-
         //Sum of votes is one if a vote was cast, zero if the votes was blank (outside range of candidate list)
+        boolean voted = vote >= 0 && vote < candidates;
         BigInteger sumOfVotes = voted ? BigInteger.ONE : BigInteger.ZERO;
-        Proof proof = VoteProofUtils.generateProof(cipherTextSum, publicKey, rSum, id, sumOfVotes);
+        Proof proof = VoteProofUtils.generateProof(cipherTextSum.getSum(), publicKey, rSum, id, sumOfVotes, pads.get());
 
         return new BallotDTO(votes, id, proof);
     }
@@ -215,12 +245,56 @@ public class SecurityUtils {
      * @return the combination of the partials
      */
     public static BigInteger lagrangeInterpolate(Map<Integer, BigInteger> partialsMap, BigInteger p) {
-        BigInteger q = p.subtract(BigInteger.ONE).divide(valueOf(2));
-        int[] authorityIndexes = partialsMap.keySet().stream().mapToInt(Integer::valueOf).toArray();
+        return lagrangeInterpolate(partialsMap, new ModPGroup(p));
+    }
+
+    /**
+     * Combines partials using Lagrange interpolation, see {@link ThresholdCombiner}
+     *
+     * @param partialsMap a map where the key is an authority index and value is a corresponding partial
+     * @param group       the group the partials belong to
+     * @return the combination of the partials
+     */
+    public static BigInteger lagrangeInterpolate(Map<Integer, BigInteger> partialsMap, Group group) {
+        return new ThresholdCombiner(group).combine(partialsMap);
+    }
+
+    /**
+     * Computes the Jacobi symbol (a/n). When n is prime, this is the Legendre symbol,
+     * which is 1 when a is a quadratic residue mod n, -1 when it is not, and 0 when n divides a.
+     * <br>
+     * Computed using quadratic reciprocity, which is much cheaper than Euler's criterion a^((n-1)/2) mod n
+     *
+     * @param a the value
+     * @param n an odd positive modulus
+     * @return the Jacobi symbol (a/n), being either -1, 0 or 1
+     */
+    public static int jacobiSymbol(BigInteger a, BigInteger n) {
+        if (n.signum() <= 0 || !n.testBit(0)) {
+            throw new IllegalArgumentException("Jacobi symbol is only defined for odd positive n, was: " + n);
+        }
+
+        BigInteger x = a.mod(n);
+        BigInteger m = n;
+        int result = 1;
+        while (x.signum() != 0) {
+            int twos = x.getLowestSetBit();
+            x = x.shiftRight(twos);
+
+            int mMod8 = m.intValue() & 7;
+            if ((twos & 1) == 1 && (mMod8 == 3 || mMod8 == 5)) {
+                result = -result;
+            }
+            if ((x.intValue() & 3) == 3 && (mMod8 & 3) == 3) {
+                result = -result;
+            }
+
+            BigInteger tmp = x;
+            x = m.mod(x);
+            m = tmp;
+        }
 
-        return partialsMap.keySet().stream()
-                .map(key -> partialsMap.get(key).modPow(generateLagrangeCoefficient(authorityIndexes, key, q), p))
-                .reduce(BigInteger.ONE, BigInteger::multiply).mod(p);
+        return m.equals(BigInteger.ONE) ? result : 0;
     }
 
     /**
@@ -235,12 +309,14 @@ public class SecurityUtils {
      * @return sum of all votes - meaning the product of the ciphertexts
      */
     static CipherText voteSum(List<? extends CandidateVoteDTO> votes, PublicKey publicKey) {
-        CipherText acc = new CipherText(BigInteger.ONE, BigInteger.ONE);
+        CipherTextAccumulator acc = new CipherTextAccumulator(Groups.forKey(publicKey));
 
-        return votes.stream()
+        votes.stream()
                 .filter(v -> VoteProofUtils.verifyProof(v, publicKey))
                 .map(CandidateVoteDTO::getCipherText)
-                .reduce(acc, ElGamal::homomorphicAddition);
+                .forEach(acc::add);
+
+        return acc.getSum();
     }
 
     /**
@@ -248,8 +324,8 @@ public class SecurityUtils {
      * <br>
      * Before sum is computed all proofs are verified, and those that could not are discarded.
      * <br>
-     * The method is executed asynchronously.
-     * All votes are partitioned into subsets of size <code>partitionSize</code>, which are summed in their own thread
+     * The method is executed on the {@link TallyEngine#getDefault() default tally engine}.
+     * Votes are split into tasks of at most <code>partitionSize</code> votes, each verifying and summing its own votes
      *
      * @param votes         list of votes
      * @param publicKey     public key the votes are encrypted under
@@ -257,69 +333,35 @@ public class SecurityUtils {
      * @return sum of all votes
      */
     public static CipherText concurrentVoteSum(List<? extends CandidateVoteDTO> votes, PublicKey publicKey, int partitionSize) {
-
-        List<CipherText> cipherTexts = votes.parallelStream()
-                .filter(v -> VoteProofUtils.verifyProof(v, publicKey))
-                .map(CandidateVoteDTO::getCipherText)
-                .collect(Collectors.toList());
-
-        return concurrentSum(cipherTexts, partitionSize);
+        return TallyEngine.getDefault().verifiedSum(votes, publicKey, partitionSize);
     }
 
     /**
      * Concurrently sums votes contained in list of cipherTexts.
      * <br/>
-     * Partitions cipherTexts and sums them in different threads.
+     * Partitions cipherTexts and sums them on the {@link TallyEngine#getDefault() default tally engine},
+     * each partition using a {@link CipherTextAccumulator}.
+     * <br/>
+     * No proofs are verified, so the cipherTexts must come from already verified votes.
      *
      * @param cipherTexts   list of cipherTexts to be summed
+     * @param p             the modulus
      * @param partitionSize size of partitions.
-     * @return sum of all cipherTexts
+     * @return sum of all cipherTexts, reduced mod p
      */
-    static CipherText concurrentSum(List<CipherText> cipherTexts, int partitionSize) {
-        ConcurrentLinkedQueue<CipherText> result = new ConcurrentLinkedQueue<>();
-
-        if (cipherTexts.size() > 2 * partitionSize) {
-            List<Thread> threads = new ArrayList<>();
-
-            List<List<CipherText>> partitions = ListUtils.partition(cipherTexts, partitionSize);
-            for (List<CipherText> partition : partitions) {
-                Thread thread = new Thread(new VoteSummer(result, partition));
-                thread.start();
-                threads.add(thread);
-            }
-
-            for (Thread thread : threads) {
-                try {
-                    thread.join();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException("Filtering thread was interrupted", e);
-                }
-            }
-
-            return concurrentSum(new ArrayList<>(result), partitionSize);
-
-        } else {
-            CipherText acc = new CipherText(BigInteger.ONE, BigInteger.ONE);
-
-            return cipherTexts.stream().reduce(acc, ElGamal::homomorphicAddition);
-        }
+    public static CipherText concurrentSum(List<CipherText> cipherTexts, BigInteger p, int partitionSize) {
+        return concurrentSum(cipherTexts, new ModPGroup(p), partitionSize);
     }
 
-    private static class VoteSummer implements Runnable {
-        private final Collection<CipherText> resultRef;
-        private final List<CipherText> values;
-
-        VoteSummer(Collection<CipherText> resultRef, List<CipherText> values) {
-            this.resultRef = resultRef;
-            this.values = values;
-        }
-
-        @Override
-        public void run() {
-            CipherText acc = new CipherText(BigInteger.ONE, BigInteger.ONE);
-
-            CipherText sum = values.stream().reduce(acc, ElGamal::homomorphicAddition);
-            resultRef.add(sum);
-        }
+    /**
+     * Concurrently sums votes contained in list of cipherTexts, as {@link #concurrentSum(List, BigInteger, int)}
+     *
+     * @param cipherTexts   list of cipherTexts to be summed
+     * @param group         the group the cipherTexts belong to
+     * @param partitionSize size of partitions.
+     * @return sum of all cipherTexts
+     */
+    public static CipherText concurrentSum(List<CipherText> cipherTexts, Group group, int partitionSize) {
+        return TallyEngine.getDefault().sum(cipherTexts, group, partitionSize);
     }
 }
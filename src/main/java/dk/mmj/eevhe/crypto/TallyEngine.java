@@ -0,0 +1,359 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.zeroknowledge.ProofCache;
+import dk.mmj.eevhe.entities.BallotDTO;
+import dk.mmj.eevhe.entities.CandidateVoteDTO;
+import dk.mmj.eevhe.entities.CipherText;
+import dk.mmj.eevhe.entities.PublicKey;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Sums and verifies votes in parallel on a {@link ForkJoinPool}.
+ * <br>
+ * Work is split in halves until at most <code>threshold</code> elements remain,
+ * and each leaf sums its elements in a {@link CipherTextAccumulator}. Partial sums are combined on the way back up,
+ * so the reduction is a tree, and idle workers steal unfinished halves from busy ones.
+ * <br>
+ * The number of threads is bounded by the parallelism of the pool, no matter how many votes are tallied.
+ * The {@link #getDefault() default} engine runs on the common pool, whose parallelism is configured
+ * by the system property <code>java.util.concurrent.ForkJoinPool.common.parallelism</code>.
+ */
+public class TallyEngine implements AutoCloseable {
+    private static final TallyEngine defaultEngine = new TallyEngine(ForkJoinPool.commonPool());
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an engine with its own pool, which is shut down by {@link #close()}
+     *
+     * @param parallelism number of worker threads
+     */
+    public TallyEngine(int parallelism) {
+        this(new ForkJoinPool(parallelism));
+    }
+
+    private TallyEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return engine running on the common pool
+     */
+    public static TallyEngine getDefault() {
+        return defaultEngine;
+    }
+
+    /**
+     * Sums ciphertexts. No proofs are verified, so the cipherTexts must come from already verified votes.
+     *
+     * @param cipherTexts list of cipherTexts to be summed
+     * @param group       the group the cipherTexts belong to
+     * @param threshold   maximum number of cipherTexts summed by a single task
+     * @return sum of all cipherTexts
+     */
+    public CipherText sum(List<CipherText> cipherTexts, Group group, int threshold) {
+        return invoke(new SumTask<>(cipherTexts, 0, cipherTexts.size(), checkThreshold(threshold),
+                group, c -> true, c -> c)).getSum();
+    }
+
+    /**
+     * Sums votes, discarding those whose proof could not be verified.
+     * <br>
+     * Each vote is verified by the task summing it, so verification and summation happen in a single pass.
+     * Votes already verified are looked up in the {@link ProofCache#getDefault() default proof cache}.
+     *
+     * @param votes     list of votes
+     * @param publicKey public key the votes are encrypted under
+     * @param threshold maximum number of votes verified and summed by a single task
+     * @return sum of all votes with a valid proof
+     */
+    public CipherText verifiedSum(List<? extends CandidateVoteDTO> votes, PublicKey publicKey, int threshold) {
+        return invoke(new SumTask<>(votes, 0, votes.size(), checkThreshold(threshold), Groups.forKey(publicKey),
+                v -> ProofCache.getDefault().verify(v, publicKey), CandidateVoteDTO::getCipherText)).getSum();
+    }
+
+    /**
+     * Sums the votes for each candidate across all ballots, in a single pass over the ballots.
+     * <br>
+     * No proofs are verified, so the ballots must already be verified.
+     *
+     * @param ballots    the ballots
+     * @param candidates number of candidates on each ballot
+     * @param group      the group the votes belong to
+     * @param threshold  maximum number of ballots summed by a single task
+     * @return list with the sum of votes for each candidate
+     */
+    public List<CipherText> sumBallots(List<? extends BallotDTO> ballots, int candidates, Group group, int threshold) {
+        return toSums(invoke(new BallotSumTask(ballots, 0, ballots.size(),
+                checkThreshold(threshold), candidates, group)));
+    }
+
+    /**
+     * Sums the votes for each candidate in the given rows of a columnar store.
+     * <br>
+     * Only rows between the first and last included row are read, so summing the rows appended since the last sum
+     * does not depend on the size of the store
+     *
+     * @param columns   the store
+     * @param rows      rows to be included, e.g. {@link BallotColumns#castBefore(long, int)}
+     * @param threshold maximum number of rows summed by a single task
+     * @return list with the sum of votes for each candidate
+     */
+    public List<CipherText> sumColumns(BallotColumns columns, BitSet rows, int threshold) {
+        int to = Math.min(rows.length(), columns.size());
+        int from = Math.min(Math.max(0, rows.nextSetBit(0)), to);
+        return toSums(invoke(new ColumnSumTask(columns, rows, from, to, checkThreshold(threshold))));
+    }
+
+    /**
+     * Tests whether all elements satisfy a predicate.
+     * <br>
+     * Once an element has failed, remaining tasks stop without testing their elements.
+     *
+     * @param elements  elements to be tested, e.g. votes to be verified
+     * @param predicate the predicate
+     * @param threshold maximum number of elements tested by a single task
+     * @param <T>       type of the elements
+     * @return whether all elements satisfied the predicate
+     */
+    public <T> boolean allMatch(List<T> elements, Predicate<? super T> predicate, int threshold) {
+        return invoke(new MatchTask<>(elements, 0, elements.size(), checkThreshold(threshold),
+                predicate, new AtomicBoolean()));
+    }
+
+    /**
+     * @return number of worker threads of the pool
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Shuts down the pool, unless it is the common pool
+     */
+    @Override
+    public void close() {
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a task in the pool. When called from a worker of the pool, e.g. when verifying ballots in parallel,
+     * the task is run by the calling worker, which may then steal subtasks rather than block
+     *
+     * @param task the task
+     * @param <R>  type of the result
+     * @return result of the task
+     */
+    private <R> R invoke(ForkJoinTask<R> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+    private static List<CipherText> toSums(CipherTextAccumulator[] sums) {
+        List<CipherText> result = new ArrayList<>(sums.length);
+        for (CipherTextAccumulator sum : sums) {
+            result.add(sum.getSum());
+        }
+        return result;
+    }
+
+    private static int checkThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive, was: " + threshold);
+        }
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        return "TallyEngine{" +
+                "parallelism=" + getParallelism() +
+                ", stealCount=" + pool.getStealCount() +
+                '}';
+    }
+
+    /**
+     * Sums the cipherTexts of the elements in [from;to) satisfying a filter
+     */
+    private static class SumTask<T> extends RecursiveTask<CipherTextAccumulator> {
+        private final List<? extends T> elements;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final Group group;
+        private final Predicate<? super T> filter;
+        private final Function<? super T, CipherText> cipherText;
+
+        SumTask(List<? extends T> elements, int from, int to, int threshold, Group group,
+                Predicate<? super T> filter, Function<? super T, CipherText> cipherText) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.group = group;
+            this.filter = filter;
+            this.cipherText = cipherText;
+        }
+
+        @Override
+        protected CipherTextAccumulator compute() {
+            if (to - from <= threshold) {
+                CipherTextAccumulator acc = new CipherTextAccumulator(group);
+                for (int i = from; i < to; i++) {
+                    T element = elements.get(i);
+                    if (filter.test(element)) {
+                        acc.add(cipherText.apply(element));
+                    }
+                }
+                return acc;
+            }
+
+            int mid = (from + to) >>> 1;
+            SumTask<T> left = new SumTask<>(elements, from, mid, threshold, group, filter, cipherText);
+            left.fork();
+            CipherTextAccumulator right = new SumTask<>(elements, mid, to, threshold, group, filter, cipherText).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /**
+     * Sums the votes for each candidate of the ballots in [from;to)
+     */
+    private static class BallotSumTask extends RecursiveTask<CipherTextAccumulator[]> {
+        private final List<? extends BallotDTO> ballots;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final int candidates;
+        private final Group group;
+
+        BallotSumTask(List<? extends BallotDTO> ballots, int from, int to, int threshold, int candidates, Group group) {
+            this.ballots = ballots;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.candidates = candidates;
+            this.group = group;
+        }
+
+        @Override
+        protected CipherTextAccumulator[] compute() {
+            if (to - from <= threshold) {
+                CipherTextAccumulator[] sums = new CipherTextAccumulator[candidates];
+                for (int i = 0; i < candidates; i++) {
+                    sums[i] = new CipherTextAccumulator(group);
+                }
+
+                for (int b = from; b < to; b++) {
+                    List<CandidateVoteDTO> votes = ballots.get(b).getCandidateVotes();
+                    for (int i = 0; i < candidates; i++) {
+                        sums[i].add(votes.get(i).getCipherText());
+                    }
+                }
+                return sums;
+            }
+
+            int mid = (from + to) >>> 1;
+            BallotSumTask left = new BallotSumTask(ballots, from, mid, threshold, candidates, group);
+            left.fork();
+            CipherTextAccumulator[] right = new BallotSumTask(ballots, mid, to, threshold, candidates, group).compute();
+            CipherTextAccumulator[] sums = left.join();
+            for (int i = 0; i < candidates; i++) {
+                sums[i].add(right[i]);
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * Sums the votes for each candidate in rows [from;to) of a columnar store, reading one column at a time
+     */
+    private static class ColumnSumTask extends RecursiveTask<CipherTextAccumulator[]> {
+        private final BallotColumns columns;
+        private final BitSet rows;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ColumnSumTask(BallotColumns columns, BitSet rows, int from, int to, int threshold) {
+            this.columns = columns;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected CipherTextAccumulator[] compute() {
+            int candidates = columns.getCandidates();
+            if (to - from <= threshold) {
+                CipherTextAccumulator[] sums = new CipherTextAccumulator[candidates];
+                for (int i = 0; i < candidates; i++) {
+                    sums[i] = columns.sum(i, rows, from, to);
+                }
+                return sums;
+            }
+
+            int mid = (from + to) >>> 1;
+            ColumnSumTask left = new ColumnSumTask(columns, rows, from, mid, threshold);
+            left.fork();
+            CipherTextAccumulator[] right = new ColumnSumTask(columns, rows, mid, to, threshold).compute();
+            CipherTextAccumulator[] sums = left.join();
+            for (int i = 0; i < candidates; i++) {
+                sums[i].add(right[i]);
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * Tests the elements in [from;to), stopping early once any element has failed
+     */
+    private static class MatchTask<T> extends RecursiveTask<Boolean> {
+        private final List<T> elements;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final Predicate<? super T> predicate;
+        private final AtomicBoolean failed;
+
+        MatchTask(List<T> elements, int from, int to, int threshold, Predicate<? super T> predicate, AtomicBoolean failed) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.predicate = predicate;
+            this.failed = failed;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to && !failed.get(); i++) {
+                    if (!predicate.test(elements.get(i))) {
+                        failed.set(true);
+                    }
+                }
+                return !failed.get();
+            }
+
+            int mid = (from + to) >>> 1;
+            MatchTask<T> left = new MatchTask<>(elements, from, mid, threshold, predicate, failed);
+            left.fork();
+            boolean right = new MatchTask<>(elements, mid, to, threshold, predicate, failed).compute();
+            return left.join() && right;
+        }
+    }
+}
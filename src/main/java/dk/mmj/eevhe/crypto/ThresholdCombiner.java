@@ -0,0 +1,156 @@
+package dk.mmj.eevhe.crypto;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Combines partials from a threshold of authorities, using Lagrange interpolation in the exponent.
+ * <br>
+ * The Lagrange coefficients depend only on the group order and the set of authorities whose partials are combined,
+ * so they are computed once per set, using a single modular inversion, and cached across instances.
+ * Partials are then combined using a single multi-exponentiation, rather than an exponentiation per partial.
+ */
+public class ThresholdCombiner {
+    private static final int CACHE_SIZE = 64;
+    private static final Map<CoefficientKey, BigInteger[]> coefficientCache = Collections.synchronizedMap(
+            new LinkedHashMap<CoefficientKey, BigInteger[]>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CoefficientKey, BigInteger[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final Group group;
+
+    /**
+     * @param group the group the partials belong to
+     */
+    public ThresholdCombiner(Group group) {
+        this.group = group;
+    }
+
+    /**
+     * Combines partials using Lagrange interpolation
+     *
+     * @param partialsMap a map where the key is an authority index and value is a corresponding partial
+     * @return the combination of the partials
+     */
+    public BigInteger combine(Map<Integer, BigInteger> partialsMap) {
+        if (partialsMap.isEmpty()) {
+            return group.getIdentity();
+        }
+
+        int[] authorityIndexes = partialsMap.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        BigInteger[] coefficients = coefficients(authorityIndexes);
+        BigInteger[] partials = new BigInteger[authorityIndexes.length];
+        for (int i = 0; i < authorityIndexes.length; i++) {
+            partials[i] = partialsMap.get(authorityIndexes[i]);
+        }
+
+        return group.multiExponentiate(partials, coefficients);
+    }
+
+    /**
+     * Combines the partials for several values, e.g. all candidates, in parallel.
+     * <br>
+     * Values with partials from the same set of authorities share the Lagrange coefficients
+     *
+     * @param partialsMaps list of maps, from authority index to partial, one for each value
+     * @return the combination of the partials for each value
+     */
+    public List<BigInteger> combineAll(List<Map<Integer, BigInteger>> partialsMaps) {
+        return partialsMaps.parallelStream()
+                .map(this::combine)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the Lagrange coefficients, for interpolating at zero, for a set of authorities
+     *
+     * @param authorityIndexes the authorities' indexes, corresponding to x-values
+     * @return the lagrange coefficient for each index, in the order of authorityIndexes
+     */
+    public BigInteger[] getCoefficients(int[] authorityIndexes) {
+        int[] sorted = authorityIndexes.clone();
+        Arrays.sort(sorted);
+        BigInteger[] coefficients = coefficients(sorted);
+
+        BigInteger[] result = new BigInteger[authorityIndexes.length];
+        for (int i = 0; i < authorityIndexes.length; i++) {
+            result[i] = coefficients[Arrays.binarySearch(sorted, authorityIndexes[i])];
+        }
+        return result;
+    }
+
+    /**
+     * @param sortedIndexes sorted authority indexes
+     * @return the, possibly cached, coefficients in the order of sortedIndexes. Must not be modified
+     */
+    private BigInteger[] coefficients(int[] sortedIndexes) {
+        BigInteger q = group.getOrder();
+        return coefficientCache.computeIfAbsent(new CoefficientKey(q, sortedIndexes), k -> computeCoefficients(sortedIndexes, q));
+    }
+
+    /**
+     * Computes the coefficient prod_{j != i} j / (j - i) for each index i.
+     * <br>
+     * All denominators are inverted at once, using Montgomery's trick,
+     * instead of inverting each difference as {@link SecurityUtils#generateLagrangeCoefficient(int[], int, BigInteger)} does
+     */
+    private static BigInteger[] computeCoefficients(int[] authorityIndexes, BigInteger q) {
+        int n = authorityIndexes.length;
+        BigInteger[] numerators = new BigInteger[n];
+        BigInteger[] denominators = new BigInteger[n];
+        for (int i = 0; i < n; i++) {
+            BigInteger numerator = BigInteger.ONE;
+            BigInteger denominator = BigInteger.ONE;
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    numerator = numerator.multiply(BigInteger.valueOf(authorityIndexes[j])).mod(q);
+                    denominator = denominator.multiply(BigInteger.valueOf(authorityIndexes[j] - authorityIndexes[i])).mod(q);
+                }
+            }
+            numerators[i] = numerator;
+            denominators[i] = denominator;
+        }
+
+        BigInteger[] prefix = new BigInteger[n];
+        BigInteger acc = BigInteger.ONE;
+        for (int i = 0; i < n; i++) {
+            prefix[i] = acc;
+            acc = acc.multiply(denominators[i]).mod(q);
+        }
+
+        BigInteger inverse = acc.modInverse(q);
+        BigInteger[] coefficients = new BigInteger[n];
+        for (int i = n - 1; i >= 0; i--) {
+            coefficients[i] = numerators[i].multiply(inverse).multiply(prefix[i]).mod(q);
+            inverse = inverse.multiply(denominators[i]).mod(q);
+        }
+        return coefficients;
+    }
+
+    private static final class CoefficientKey {
+        private final BigInteger q;
+        private final int[] authorityIndexes;
+
+        private CoefficientKey(BigInteger q, int[] authorityIndexes) {
+            this.q = q;
+            this.authorityIndexes = authorityIndexes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CoefficientKey that = (CoefficientKey) o;
+            return q.equals(that.q) && Arrays.equals(authorityIndexes, that.authorityIndexes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * q.hashCode() + Arrays.hashCode(authorityIndexes);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dk.mmj.eevhe.crypto.keygeneration;
+
+import dk.mmj.eevhe.crypto.EllipticCurveGroup;
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.PedersenVSSUtils;
+import dk.mmj.eevhe.entities.PrimePair;
+
+import java.math.BigInteger;
+
+/**
+ * Key generation parameters for a named elliptic curve, e.g. {@value EllipticCurveGroup#P256}.
+ * <br>
+ * The {@link PrimePair} holds the characteristic of the field the curve is defined over as p,
+ * and the order of the curve as q. All group operations must go through {@link #getGroup()}.
+ */
+public class EllipticCurveKeyGenerationParameters implements ExtendedKeyGenerationParameters {
+    private final EllipticCurveGroup group;
+    private final BigInteger e;
+
+    /**
+     * @param curveName name of the curve
+     */
+    public EllipticCurveKeyGenerationParameters(String curveName) {
+        group = new EllipticCurveGroup(curveName);
+        e = PedersenVSSUtils.generateElementInSubgroup(group, group.getGenerator());
+    }
+
+    @Override
+    public PrimePair getPrimePair() {
+        return new PrimePair(group.getFieldCharacteristic(), group.getOrder());
+    }
+
+    @Override
+    public BigInteger getGenerator() {
+        return group.getGenerator();
+    }
+
+    @Override
+    public Group getGroup() {
+        return group;
+    }
+
+    @Override
+    public BigInteger getGroupElement() {
+        return e;
+    }
+}
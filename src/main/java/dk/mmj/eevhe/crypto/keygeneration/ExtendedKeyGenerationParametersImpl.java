@@ -12,7 +12,19 @@ public class ExtendedKeyGenerationParametersImpl extends KeyGenerationParameters
 
     public ExtendedKeyGenerationParametersImpl(int primeBitLength, int primeCertainty) {
         super(primeBitLength, primeCertainty);
-        e = PedersenVSSUtils.generateElementInSubgroup(getGenerator(), getPrimePair().getP());
+        e = PedersenVSSUtils.generateElementInSubgroup(getGroup(), getGenerator());
+    }
+
+    /**
+     * Generates parameters for a Schnorr group, see {@link KeyGenerationParametersImpl#KeyGenerationParametersImpl(int, int, int)}
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param orderBitLength bit length of prime number q, being the order of the group
+     * @param primeCertainty certainty of p and q being prime numbers (1 - 1/2^certainty)
+     */
+    public ExtendedKeyGenerationParametersImpl(int primeBitLength, int orderBitLength, int primeCertainty) {
+        super(primeBitLength, orderBitLength, primeCertainty);
+        e = PedersenVSSUtils.generateElementInSubgroup(getGroup(), getGenerator());
     }
 
     @Override
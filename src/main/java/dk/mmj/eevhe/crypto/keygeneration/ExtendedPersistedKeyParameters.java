@@ -15,7 +15,19 @@ public class ExtendedPersistedKeyParameters extends PersistedKeyParameters imple
      */
     public ExtendedPersistedKeyParameters(String pString, String gString) {
         super(pString, gString);
-        e = PedersenVSSUtils.generateElementInSubgroup(getGenerator(), getPrimePair().getP());
+        e = PedersenVSSUtils.generateElementInSubgroup(getGroup(), getGenerator());
+    }
+
+    /**
+     * Generates persisted key parameters for a Schnorr group, from primes p and q, and a generator g
+     *
+     * @param pString hexadecimal encoding of prime p
+     * @param gString generator g as string
+     * @param qString hexadecimal encoding of prime q, which must divide p-1
+     */
+    public ExtendedPersistedKeyParameters(String pString, String gString, String qString) {
+        super(pString, gString, qString);
+        e = PedersenVSSUtils.generateElementInSubgroup(getGroup(), getGenerator());
     }
 
     @Override
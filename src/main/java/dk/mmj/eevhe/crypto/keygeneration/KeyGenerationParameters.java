@@ -1,5 +1,7 @@
 package dk.mmj.eevhe.crypto.keygeneration;
 
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.ModPGroup;
 import dk.mmj.eevhe.entities.PrimePair;
 
 import java.math.BigInteger;
@@ -23,5 +25,14 @@ public interface KeyGenerationParameters {
      */
     BigInteger getGenerator();
 
-
+    /**
+     * returns the group keys are generated in.
+     * Defaults to the subgroup of order q in Z_p^*, given by the {@link PrimePair}
+     *
+     * @return the {@link Group}
+     */
+    default Group getGroup() {
+        PrimePair primePair = getPrimePair();
+        return new ModPGroup(primePair.getP(), primePair.getQ());
+    }
 }
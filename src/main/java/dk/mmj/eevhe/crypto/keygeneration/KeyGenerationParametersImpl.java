@@ -15,31 +15,94 @@ public class KeyGenerationParametersImpl implements KeyGenerationParameters {
     private final BigInteger g;
     private final PrimePair primePair;
 
+    /**
+     * Generates parameters for the group of quadratic residues mod a safe prime p = 2q + 1
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param primeCertainty certainty of p and q being prime numbers (1 - 1/2^certainty)
+     */
     public KeyGenerationParametersImpl(int primeBitLength, int primeCertainty) {
         primePair = findPrimes(primeBitLength, primeCertainty);
         g = findGeneratorForGq(primePair);
     }
 
     /**
-     * Finds primes p and q such that p = 2q + 1
+     * Generates parameters for a Schnorr group, being the subgroup of order q in Z_p^*, where p = kq + 1.
+     * <br>
+     * As exponents are only as long as q, a q of 256 bits makes exponentiations far cheaper than
+     * in the group of quadratic residues mod a safe prime of the same length as p
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param orderBitLength bit length of prime number q, being the order of the group
+     * @param primeCertainty certainty of p and q being prime numbers (1 - 1/2^certainty)
+     */
+    public KeyGenerationParametersImpl(int primeBitLength, int orderBitLength, int primeCertainty) {
+        if (orderBitLength >= primeBitLength) {
+            throw new IllegalArgumentException("Order must be shorter than the prime. Prime bit length: "
+                    + primeBitLength + ", order bit length: " + orderBitLength);
+        }
+
+        primePair = findSchnorrPrimes(primeBitLength, orderBitLength, primeCertainty);
+        g = findGeneratorForSchnorrGroup(primePair);
+    }
+
+    /**
+     * Finds primes p and q such that p = 2q + 1, using a sieved search on all available processors
      *
      * @param primeBitLength bit length of prime number p
      * @param primeCertainty certainty of p being a prime number (1 - 1/2^certainty)
      * @return PrimePair containing p and q
+     * @see SafePrimeSearch
      */
     private PrimePair findPrimes(int primeBitLength, int primeCertainty) {
+        return SafePrimeSearch.find(primeBitLength, primeCertainty);
+    }
+
+    /**
+     * Finds primes p and q such that p = kq + 1, for some even k
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param orderBitLength bit length of prime number q
+     * @param primeCertainty certainty of p being a prime number (1 - 1/2^certainty)
+     * @return PrimePair containing p and q
+     */
+    private PrimePair findSchnorrPrimes(int primeBitLength, int orderBitLength, int primeCertainty) {
         Random randomBits = new SecureRandom();
-        BigInteger q = null;
+        BigInteger q = BigInteger.probablePrime(orderBitLength, randomBits);
+
+        //k is chosen in [2^(l-1)/q; 2^l/q), such that p = kq + 1 has bit length l
+        BigInteger kMin = BigInteger.ONE.shiftLeft(primeBitLength - 1).divide(q).add(BigInteger.ONE);
         BigInteger p = null;
 
-        while (p == null || !p.isProbablePrime(primeCertainty)) {
-            q = BigInteger.probablePrime(primeBitLength - 1, randomBits);
-            p = q.multiply(new BigInteger("2")).add(BigInteger.ONE);
+        while (p == null || p.bitLength() != primeBitLength || !p.isProbablePrime(primeCertainty)) {
+            BigInteger k = kMin.add(getRandomNumModN(kMin));
+            if (k.testBit(0)) {
+                k = k.add(BigInteger.ONE);
+            }
+            p = k.multiply(q).add(BigInteger.ONE);
         }
 
         return new PrimePair(p, q);
     }
 
+    /**
+     * Finds a generator g of the subgroup of order q in Z_p^*, by raising a random element to the power (p-1)/q
+     *
+     * @param primePair primes p and q, where q divides p-1
+     * @return generator g of the subgroup of order q
+     */
+    private BigInteger findGeneratorForSchnorrGroup(PrimePair primePair) {
+        BigInteger p = primePair.getP();
+        BigInteger cofactor = p.subtract(BigInteger.ONE).divide(primePair.getQ());
+
+        while (true) {
+            BigInteger g = getRandomNumModN(p).modPow(cofactor, p);
+            if (g.compareTo(BigInteger.ONE) > 0) {
+                return g;
+            }
+        }
+    }
+
     /**
      * Finds a suitable generator g for the cyclic group Gq
      *
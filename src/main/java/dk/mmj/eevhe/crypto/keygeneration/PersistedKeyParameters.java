@@ -29,6 +29,25 @@ public class PersistedKeyParameters implements KeyGenerationParameters {
         this.primePair = new PrimePair(p, q);
     }
 
+    /**
+     * Generates persisted key parameters for a Schnorr group, from primes p and q, and a generator g
+     *
+     * @param pString hexadecimal encoding of prime p
+     * @param gString generator g as string
+     * @param qString hexadecimal encoding of prime q, which must divide p-1
+     */
+    public PersistedKeyParameters(String pString, String gString, String qString) {
+        this.g = new BigInteger(gString);
+
+        BigInteger p = new BigInteger(1, Hex.decode(pString.replaceAll(" ", "")));
+        BigInteger q = new BigInteger(1, Hex.decode(qString.replaceAll(" ", "")));
+        if (!p.subtract(ONE).mod(q).equals(BigInteger.ZERO)) {
+            throw new IllegalArgumentException("q must divide p-1");
+        }
+
+        this.primePair = new PrimePair(p, q);
+    }
+
     @Override
     public PrimePair getPrimePair() {
         return primePair;
@@ -0,0 +1,177 @@
+package dk.mmj.eevhe.crypto.keygeneration;
+
+import dk.mmj.eevhe.entities.PrimePair;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Search for safe primes p = 2q + 1, where q is also prime.
+ * <br>
+ * Rather than drawing random primes q until 2q + 1 happens to be prime, each worker picks a random odd starting point,
+ * and sieves a window of candidates q, removing every q where q or 2q + 1 has a small prime factor.
+ * Only the few remaining candidates are tested, first with a single Fermat test to base 2, which is cheap,
+ * and only then with Miller-Rabin at the requested certainty.
+ * <br>
+ * Windows are searched by several threads at once, and the first safe prime found is returned.
+ */
+public class SafePrimeSearch {
+    private static final int SIEVE_LIMIT = 1 << 16;
+    private static final int WINDOW_SIZE = 1 << 14;
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final int[] SMALL_PRIMES = smallPrimes();
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Finds a safe prime using a thread per available processor
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param primeCertainty certainty of p and q being prime numbers (1 - 1/2^certainty)
+     * @return PrimePair containing p and q
+     */
+    public static PrimePair find(int primeBitLength, int primeCertainty) {
+        return find(primeBitLength, primeCertainty, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Finds a safe prime
+     *
+     * @param primeBitLength bit length of prime number p
+     * @param primeCertainty certainty of p and q being prime numbers (1 - 1/2^certainty)
+     * @param threads        number of threads to search with
+     * @return PrimePair containing p and q
+     */
+    public static PrimePair find(int primeBitLength, int primeCertainty, int threads) {
+        if (primeBitLength < 3) {
+            throw new IllegalArgumentException("No safe prime has bit length " + primeBitLength);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, was: " + threads);
+        }
+        if (primeBitLength <= 32) {
+            //Too short to sieve, as q may itself be one of the small primes
+            return searchSmall(primeBitLength, primeCertainty);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "SafePrimeSearch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<PrimePair>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(() -> searchWindows(primeBitLength, primeCertainty));
+            }
+            return executor.invokeAny(workers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching for safe prime", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to find safe prime", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Searches random windows until a safe prime is found, or the thread is interrupted
+     */
+    private static PrimePair searchWindows(int primeBitLength, int primeCertainty) {
+        while (!Thread.currentThread().isInterrupted()) {
+            BigInteger start = new BigInteger(primeBitLength - 1, random)
+                    .setBit(primeBitLength - 2)
+                    .setBit(0);
+            PrimePair found = searchWindow(start, primeBitLength, primeCertainty);
+            if (found != null) {
+                return found;
+            }
+        }
+        throw new IllegalStateException("Interrupted while searching for safe prime");
+    }
+
+    /**
+     * Sieves and tests the candidates q = start + 2i, for i in [0;{@value #WINDOW_SIZE})
+     *
+     * @param start odd starting point
+     * @return the first safe prime in the window, or null if there is none
+     */
+    static PrimePair searchWindow(BigInteger start, int primeBitLength, int primeCertainty) {
+        BitSet composite = new BitSet(WINDOW_SIZE);
+        for (int r : SMALL_PRIMES) {
+            int startMod = start.mod(BigInteger.valueOf(r)).intValue();
+            //q = start + 2i is divisible by r when 2i = -start (mod r)
+            markMultiples(composite, r, (r - startMod) % r);
+            //2q + 1 is divisible by r when q = (r - 1) / 2 (mod r), i.e. 2i = (r - 1) / 2 - start (mod r)
+            markMultiples(composite, r, ((r - 1) / 2 - startMod + r) % r);
+        }
+
+        for (int i = composite.nextClearBit(0); i < WINDOW_SIZE; i = composite.nextClearBit(i + 1)) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+
+            BigInteger q = start.add(BigInteger.valueOf(2L * i));
+            BigInteger p = q.shiftLeft(1).add(BigInteger.ONE);
+            if (p.bitLength() != primeBitLength) {
+                return null;
+            }
+            if (!TWO.modPow(q.subtract(BigInteger.ONE), q).equals(BigInteger.ONE)
+                    || !TWO.modPow(p.subtract(BigInteger.ONE), p).equals(BigInteger.ONE)) {
+                continue;
+            }
+            if (q.isProbablePrime(primeCertainty) && p.isProbablePrime(primeCertainty)) {
+                return new PrimePair(p, q);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks every i in the window where 2i = residue (mod r)
+     */
+    private static void markMultiples(BitSet composite, int r, int residue) {
+        //2 is invertible mod odd r, with inverse (r + 1) / 2
+        int first = (int) ((long) residue * ((r + 1) / 2) % r);
+        for (int i = first; i < WINDOW_SIZE; i += r) {
+            composite.set(i);
+        }
+    }
+
+    /**
+     * Finds a safe prime of at most 32 bits, without sieving
+     */
+    private static PrimePair searchSmall(int primeBitLength, int primeCertainty) {
+        while (true) {
+            BigInteger q = BigInteger.probablePrime(primeBitLength - 1, random);
+            BigInteger p = q.shiftLeft(1).add(BigInteger.ONE);
+            if (p.bitLength() == primeBitLength && p.isProbablePrime(primeCertainty)) {
+                return new PrimePair(p, q);
+            }
+        }
+    }
+
+    /**
+     * @return all odd primes below {@value #SIEVE_LIMIT}
+     */
+    private static int[] smallPrimes() {
+        BitSet composite = new BitSet(SIEVE_LIMIT);
+        List<Integer> primes = new ArrayList<>();
+        for (int i = 3; i < SIEVE_LIMIT; i += 2) {
+            if (!composite.get(i)) {
+                primes.add(i);
+                for (long j = (long) i * i; j < SIEVE_LIMIT; j += 2L * i) {
+                    composite.set((int) j);
+                }
+            }
+        }
+        return primes.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -1,10 +1,12 @@
 package dk.mmj.eevhe.crypto.signature;
 
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
 import org.bouncycastle.crypto.util.PublicKeyFactory;
 import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -73,6 +75,23 @@ public class CertificateHelper {
                 + "\n-----END CERTIFICATE-----";
     }
 
+    /**
+     * Computes the fingerprint of a certificate, which identifies it independently of how it is encoded as .pem
+     *
+     * @param certificateHolder the certificate
+     * @return hex encoded SHA-256 digest of the DER encoding of the certificate
+     * @throws IOException if unable to get Encoded cert from certificateHolder
+     */
+    public static String fingerprint(X509CertificateHolder certificateHolder) throws IOException {
+        byte[] encoded = certificateHolder.getEncoded();
+        SHA256Digest digest = new SHA256Digest();
+        digest.update(encoded, 0, encoded.length);
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return Hex.toHexString(hash);
+    }
+
     /**
      * Loads the public-key from a certificate in a .pem file
      *
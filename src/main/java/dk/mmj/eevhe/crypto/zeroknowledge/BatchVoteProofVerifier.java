@@ -0,0 +1,285 @@
+package dk.mmj.eevhe.crypto.zeroknowledge;
+
+import dk.mmj.eevhe.crypto.FixedBaseExponentiation;
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.ModPGroup;
+import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.entities.CandidateVoteDTO;
+import dk.mmj.eevhe.entities.Proof;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.apache.commons.collections4.ListUtils;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Batch verifier for the proofs generated by {@link VoteProofUtils}, that a vote is either 0 or 1.
+ * <br>
+ * Each proof must satisfy the relations a0 = g^z0 * c^e0, b0 = h^z0 * d^e0, a1 = g^z1 * c^e1 and
+ * b1 = h^z1 * (d/g)^e1. In a batch, every relation is raised to a random {@value #CHALLENGE_BITS}-bit exponent,
+ * and all of them are multiplied together, so the entire batch is checked using a single multi-exponentiation.
+ * An invalid proof passes the combined check with probability at most 2^-{@value #CHALLENGE_BITS}.
+ * If the combined check fails, the batch is bisected to find the invalid proofs.
+ * <br>
+ * The random combination only tests the relations in the subgroup of order q.
+ * In Z_p^*, the remaining component, of order two, is checked separately using Legendre symbols,
+ * which is why batching requires p = 2q+1. Elliptic curve groups have prime order, so no further checks are needed.
+ * Proofs without commitments, or under any other subgroup of Z_p^*, are verified one at a time.
+ */
+public class BatchVoteProofVerifier {
+    private static final int CHALLENGE_BITS = 64;
+    private static final int MIN_BATCH_SIZE = 64;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final SecureRandom random = new SecureRandom();
+    private final PublicKey publicKey;
+    private final Group group;
+    private final BigInteger p;
+    private final BigInteger q;
+    private final BigInteger order;
+    private final int gSymbol;
+    private final int hSymbol;
+    private final boolean batchable;
+
+    /**
+     * @param publicKey key the votes are encrypted under
+     */
+    public BatchVoteProofVerifier(PublicKey publicKey) {
+        this.publicKey = publicKey;
+        this.group = FixedBaseExponentiation.forKey(publicKey).getGroup();
+        this.q = publicKey.getQ();
+        if (group instanceof ModPGroup) {
+            ModPGroup modPGroup = (ModPGroup) group;
+            this.p = modPGroup.getModulus();
+            this.order = p.subtract(BigInteger.ONE);
+            this.batchable = modPGroup.isSafePrimeGroup();
+        } else {
+            this.p = null;
+            this.order = q;
+            this.batchable = true;
+        }
+        this.gSymbol = batchable && p != null ? SecurityUtils.jacobiSymbol(publicKey.getG(), p) : 0;
+        this.hSymbol = batchable && p != null ? SecurityUtils.jacobiSymbol(publicKey.getH(), p) : 0;
+    }
+
+    /**
+     * Verifies the proofs of a list of votes, with the same result as calling
+     * {@link VoteProofUtils#verifyProof(CandidateVoteDTO, PublicKey)} for each of them.
+     *
+     * @param votes the votes to be verified
+     * @return array where index i is whether the proof of the i'th vote could be verified
+     */
+    public boolean[] verify(List<? extends CandidateVoteDTO> votes) {
+        boolean[] valid = new boolean[votes.size()];
+
+        List<Statement> statements = IntStream.range(0, votes.size()).parallel()
+                .mapToObj(i -> {
+                    CandidateVoteDTO vote = votes.get(i);
+                    if (!isWellFormed(vote)) {
+                        return null;
+                    }
+                    if (!batchable || !VoteProofUtils.hasCommitments(vote.getProof())) {
+                        valid[i] = VoteProofUtils.verifyProof(vote, publicKey);
+                        return null;
+                    }
+
+                    return prepare(i, vote);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int batchSize = Math.min(MAX_BATCH_SIZE, Math.max(MIN_BATCH_SIZE, (statements.size() + parallelism - 1) / parallelism));
+        ListUtils.partition(statements, batchSize).parallelStream()
+                .forEach(batch -> verifyBatch(batch, valid));
+
+        return valid;
+    }
+
+    /**
+     * Verifies a batch, bisecting it if the combined check fails
+     *
+     * @param batch statements to be verified
+     * @param valid array to write results into
+     */
+    private void verifyBatch(List<Statement> batch, boolean[] valid) {
+        if (batch.size() == 1) {
+            Statement statement = batch.get(0);
+            valid[statement.index] = VoteProofUtils.verifyProof(statement.vote, publicKey);
+            return;
+        }
+
+        if (combinedCheck(batch)) {
+            for (Statement statement : batch) {
+                valid[statement.index] = true;
+            }
+            return;
+        }
+
+        int half = batch.size() / 2;
+        verifyBatch(batch.subList(0, half), valid);
+        verifyBatch(batch.subList(half, batch.size()), valid);
+    }
+
+    /**
+     * Checks the random linear combination of all relations in the batch.
+     * <br>
+     * For random d1..d4 per proof, the check is that the product of
+     * a0^d1 * c^(-d1*e0) * a1^d3 * c^(-d3*e1) * b0^d2 * d^(-d2*e0) * b1^d4 * d^(-d4*e1)
+     * equals g^(d1*z0 + d3*z1 - d4*e1) * h^(d2*z0 + d4*z1).
+     * In Z_p^*, exponents are reduced modulo p-1, so the check is exact in all of Z_p^*.
+     * In a group of prime order, they are reduced modulo the order.
+     *
+     * @param batch statements to be checked
+     * @return whether the combined relation holds
+     */
+    private boolean combinedCheck(List<Statement> batch) {
+        BigInteger[] bases = new BigInteger[6 * batch.size()];
+        BigInteger[] exponents = new BigInteger[6 * batch.size()];
+        BigInteger gExponent = BigInteger.ZERO;
+        BigInteger hExponent = BigInteger.ZERO;
+
+        int i = 0;
+        for (Statement s : batch) {
+            BigInteger d1 = new BigInteger(CHALLENGE_BITS, random);
+            BigInteger d2 = new BigInteger(CHALLENGE_BITS, random);
+            BigInteger d3 = new BigInteger(CHALLENGE_BITS, random);
+            BigInteger d4 = new BigInteger(CHALLENGE_BITS, random);
+
+            bases[i] = s.a0;
+            exponents[i++] = d1;
+            bases[i] = s.b0;
+            exponents[i++] = d2;
+            bases[i] = s.a1;
+            exponents[i++] = d3;
+            bases[i] = s.b1;
+            exponents[i++] = d4;
+            bases[i] = s.c;
+            exponents[i++] = order.subtract(d1.multiply(s.e0).add(d3.multiply(s.e1)).mod(order));
+            bases[i] = s.d;
+            exponents[i++] = order.subtract(d2.multiply(s.e0).add(d4.multiply(s.e1)).mod(order));
+
+            gExponent = gExponent.add(d1.multiply(s.z0)).add(d3.multiply(s.z1)).subtract(d4.multiply(s.e1));
+            hExponent = hExponent.add(d2.multiply(s.z0)).add(d4.multiply(s.z1));
+        }
+
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+        BigInteger expected = group.operate(
+                exponentiation.powG(gExponent.mod(order)), exponentiation.powH(hExponent.mod(order)));
+
+        return group.multiExponentiate(bases, exponents).equals(expected);
+    }
+
+    /**
+     * @param vote the vote
+     * @return whether the vote has all the values needed to verify it
+     */
+    private boolean isWellFormed(CandidateVoteDTO vote) {
+        Proof proof = vote.getProof();
+        return proof != null && vote.getCipherText() != null && vote.getId() != null
+                && vote.getCipherText().getC() != null && vote.getCipherText().getD() != null
+                && proof.getE0() != null && proof.getE1() != null && proof.getZ0() != null && proof.getZ1() != null;
+    }
+
+    /**
+     * Performs all checks that are not part of the combined check.
+     * These are the hash of the commitments, and in Z_p^* the order two component of every relation
+     *
+     * @param index index of the vote
+     * @param vote  the vote
+     * @return statement for the combined check, or null if the proof is invalid
+     */
+    private Statement prepare(int index, CandidateVoteDTO vote) {
+        Statement s = new Statement(index, vote, p);
+        if (!inRange(s.a0) || !inRange(s.b0) || !inRange(s.a1) || !inRange(s.b1) || !hashMatches(s, vote)) {
+            return null;
+        }
+        if (p == null) {
+            //Every element of a prime order group is in the subgroup of order q, so only membership is checked
+            return group.isElement(s.c) && group.isElement(s.d) ? s : null;
+        }
+
+        //Legendre symbols are multiplicative and c^2 has symbol 1, so moving c^e to the left hand side
+        //leaves one symbol per relation, where only the parity of e matters
+        BigInteger a0 = s.e0.testBit(0) ? s.a0.multiply(s.c) : s.a0;
+        BigInteger b0 = s.e0.testBit(0) ? s.b0.multiply(s.d) : s.b0;
+        BigInteger a1 = s.e1.testBit(0) ? s.a1.multiply(s.c) : s.a1;
+        BigInteger b1 = s.e1.testBit(0) ? s.b1.multiply(s.d) : s.b1;
+
+        boolean symbolsMatch = SecurityUtils.jacobiSymbol(a0, p) == pow(gSymbol, s.z0)
+                && SecurityUtils.jacobiSymbol(b0, p) == pow(hSymbol, s.z0)
+                && SecurityUtils.jacobiSymbol(a1, p) == pow(gSymbol, s.z1)
+                && SecurityUtils.jacobiSymbol(b1, p) == pow(hSymbol, s.z1) * pow(gSymbol, s.e1);
+
+        return symbolsMatch ? s : null;
+    }
+
+    /**
+     * @param s    the statement
+     * @param vote the vote the statement was created from
+     * @return whether the challenges of the proof sum to the hash of the commitments
+     */
+    private boolean hashMatches(Statement s, CandidateVoteDTO vote) {
+        BigInteger rawC = vote.getCipherText().getC();
+        BigInteger rawD = vote.getCipherText().getD();
+        BigInteger hash = new BigInteger(SecurityUtils.hash(
+                s.a0.toByteArray(), s.b0.toByteArray(), s.a1.toByteArray(), s.b1.toByteArray(),
+                rawC.toByteArray(), rawD.toByteArray(), vote.getId().getBytes())).mod(q);
+
+        return hash.equals(s.e0.add(s.e1).mod(q));
+    }
+
+    private boolean inRange(BigInteger value) {
+        if (p == null) {
+            return group.isElement(value);
+        }
+        return value.signum() > 0 && value.compareTo(p) < 0;
+    }
+
+    /**
+     * @param symbol   a Legendre symbol, either 1 or -1
+     * @param exponent the exponent
+     * @return symbol^exponent
+     */
+    private static int pow(int symbol, BigInteger exponent) {
+        return symbol == -1 && exponent.testBit(0) ? -1 : 1;
+    }
+
+    /**
+     * Values of a single proof, with the ciphertext reduced mod p when in Z_p^*
+     */
+    private static class Statement {
+        private final int index;
+        private final CandidateVoteDTO vote;
+        private final BigInteger c;
+        private final BigInteger d;
+        private final BigInteger e0;
+        private final BigInteger e1;
+        private final BigInteger z0;
+        private final BigInteger z1;
+        private final BigInteger a0;
+        private final BigInteger b0;
+        private final BigInteger a1;
+        private final BigInteger b1;
+
+        private Statement(int index, CandidateVoteDTO vote, BigInteger p) {
+            Proof proof = vote.getProof();
+            this.index = index;
+            this.vote = vote;
+            this.c = p != null ? vote.getCipherText().getC().mod(p) : vote.getCipherText().getC();
+            this.d = p != null ? vote.getCipherText().getD().mod(p) : vote.getCipherText().getD();
+            this.e0 = proof.getE0();
+            this.e1 = proof.getE1();
+            this.z0 = proof.getZ0();
+            this.z1 = proof.getZ1();
+            this.a0 = proof.getA0();
+            this.b0 = proof.getB0();
+            this.a1 = proof.getA1();
+            this.b1 = proof.getB1();
+        }
+    }
+}
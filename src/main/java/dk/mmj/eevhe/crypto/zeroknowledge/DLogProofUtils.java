@@ -1,13 +1,16 @@
 package dk.mmj.eevhe.crypto.zeroknowledge;
 
+import dk.mmj.eevhe.crypto.FixedBaseExponentiation;
+import dk.mmj.eevhe.crypto.Group;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.entities.CipherText;
 import dk.mmj.eevhe.entities.PublicKey;
+import org.bouncycastle.crypto.digests.SHA256Digest;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Objects;
 
-import static dk.mmj.eevhe.crypto.SecurityUtils.computePartial;
 import static dk.mmj.eevhe.crypto.SecurityUtils.getRandomNumModN;
 
 /**
@@ -42,13 +45,14 @@ public class DLogProofUtils {
      */
     static Proof generateProof(CipherText cipherText, BigInteger secretValue, PublicKey partialPublicKey, BigInteger y, int id) {
         BigInteger c = cipherText.getC();
-        BigInteger p = partialPublicKey.getP();
         BigInteger q = partialPublicKey.getQ();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(partialPublicKey);
+        Group group = exponentiation.getGroup();
 
-        BigInteger a = c.modPow(y, p);
-        BigInteger b = partialPublicKey.getG().modPow(y, p);
+        BigInteger a = group.exponentiate(c, y);
+        BigInteger b = exponentiation.powG(y);
         BigInteger e = new BigInteger(
-                SecurityUtils.hash(a.toByteArray(), b.toByteArray(), computePartial(c, secretValue, p).toByteArray(), partialPublicKey.getH().toByteArray(), BigInteger.valueOf(id).toByteArray())).mod(q);
+                SecurityUtils.hash(a.toByteArray(), b.toByteArray(), group.exponentiate(c, secretValue).toByteArray(), partialPublicKey.getH().toByteArray(), BigInteger.valueOf(id).toByteArray())).mod(q);
         BigInteger z = y.add(secretValue.multiply(e)).mod(q);
 
         return new Proof(e, z);
@@ -65,11 +69,18 @@ public class DLogProofUtils {
      * @return whether the partial decryption could be verified
      */
     public static boolean verifyProof(CipherText cipherText, CipherText partialDecryption, PublicKey partialPublicKey, Proof proof, int id) {
-        BigInteger p = partialPublicKey.getP();
-        BigInteger a = cipherText.getC().modPow(proof.getZ(), p)
-                .multiply(partialDecryption.getC().modPow(proof.getE(), p).modInverse(p)).mod(p);
-        BigInteger b = partialPublicKey.getG().modPow(proof.getZ(), p)
-                .multiply(partialPublicKey.getH().modPow(proof.getE(), p).modInverse(p)).mod(p);
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(partialPublicKey);
+        Group group = exponentiation.getGroup();
+        BigInteger a, b;
+        try {
+            a = group.multiExponentiate(
+                    new BigInteger[]{cipherText.getC(), partialDecryption.getC()},
+                    new BigInteger[]{proof.getZ(), proof.getE().negate()});
+            b = group.divide(exponentiation.powG(proof.getZ()), exponentiation.powH(proof.getE()));
+        } catch (IllegalArgumentException e) {
+            //Partial decryption was not a group element
+            return false;
+        }
 
         BigInteger s = new BigInteger(
                 SecurityUtils.hash(a.toByteArray(), b.toByteArray(), partialDecryption.getC().toByteArray(), partialPublicKey.getH().toByteArray(), BigInteger.valueOf(id).toByteArray())).mod(partialPublicKey.getQ());
@@ -77,6 +88,99 @@ public class DLogProofUtils {
         return proof.getE().equals(s);
     }
 
+    /**
+     * Generates a single proof of discrete logarithms equality for the partial decryptions of several cipher texts,
+     * e.g. the sums for all candidates.
+     * <br>
+     * The cipher texts and partial decryptions are combined as C = prod c_j^l_j and R = prod (c_j^s_i)^l_j,
+     * where the weights l_j are derived from a hash of all values. A proof that log_C R = log_g h_i then shows,
+     * except with negligible probability, that every partial decryption was computed using s_i.
+     *
+     * @param cipherTexts        the cipher texts computed using homomorphic addition
+     * @param partialDecryptions partial decryption c_j^s_i of each cipher text
+     * @param secretValue        the secret value s_i
+     * @param partialPublicKey   the public key containing g, q, p and h_i which is specific for authority i
+     * @param id                 the decryption authority's id
+     * @return the proof containing the challenge e and answer z
+     */
+    public static Proof generateAggregateProof(List<CipherText> cipherTexts, List<BigInteger> partialDecryptions,
+                                               BigInteger secretValue, PublicKey partialPublicKey, int id) {
+        Group group = FixedBaseExponentiation.forKey(partialPublicKey).getGroup();
+        CipherText combined = combine(cipherTexts, partialDecryptions, partialPublicKey, group, id);
+
+        return generateProof(combined, secretValue, partialPublicKey, id);
+    }
+
+    /**
+     * Verifies a proof generated by {@link #generateAggregateProof(List, List, BigInteger, PublicKey, int)}
+     * using a single verification, regardless of the number of cipher texts
+     *
+     * @param cipherTexts        the cipher texts computed using homomorphic addition
+     * @param partialDecryptions claimed partial decryption of each cipher text
+     * @param partialPublicKey   the public key containing g, q, p and h_i which is specific for authority i
+     * @param proof              the aggregated proof
+     * @param id                 the decryption authority's id
+     * @return whether all partial decryptions could be verified
+     */
+    public static boolean verifyAggregateProof(List<CipherText> cipherTexts, List<BigInteger> partialDecryptions,
+                                               PublicKey partialPublicKey, Proof proof, int id) {
+        if (proof == null || cipherTexts.size() != partialDecryptions.size() || cipherTexts.isEmpty()) {
+            return false;
+        }
+
+        Group group = FixedBaseExponentiation.forKey(partialPublicKey).getGroup();
+        //A component outside the group, e.g. of order 2, vanishes whenever its weight is even, so such values are rejected up front
+        for (BigInteger partialDecryption : partialDecryptions) {
+            if (partialDecryption == null || !group.isElement(partialDecryption)) {
+                return false;
+            }
+        }
+
+        CipherText combined = combine(cipherTexts, partialDecryptions, partialPublicKey, group, id);
+        return verifyProof(new CipherText(combined.getC(), null), new CipherText(combined.getD(), null),
+                partialPublicKey, proof, id);
+    }
+
+    /**
+     * Combines cipher texts and their partial decryptions using weights derived from all values
+     *
+     * @return the cipher text (C, R), with C the combined cipher texts and R the combined partial decryptions
+     */
+    private static CipherText combine(List<CipherText> cipherTexts, List<BigInteger> partialDecryptions,
+                                      PublicKey partialPublicKey, Group group, int id) {
+        int n = cipherTexts.size();
+        SHA256Digest digest = new SHA256Digest();
+        update(digest, partialPublicKey.getH());
+        update(digest, BigInteger.valueOf(id));
+        for (int j = 0; j < n; j++) {
+            update(digest, cipherTexts.get(j).getC());
+            update(digest, partialDecryptions.get(j));
+        }
+        byte[] seed = new byte[digest.getDigestSize()];
+        digest.doFinal(seed, 0);
+
+        BigInteger q = partialPublicKey.getQ();
+        BigInteger[] weights = new BigInteger[n];
+        BigInteger[] cs = new BigInteger[n];
+        BigInteger[] partials = new BigInteger[n];
+        for (int j = 0; j < n; j++) {
+            weights[j] = new BigInteger(1, SecurityUtils.hash(seed, BigInteger.valueOf(j).toByteArray())).mod(q);
+            cs[j] = cipherTexts.get(j).getC();
+            partials[j] = partialDecryptions.get(j);
+        }
+
+        return new CipherText(group.multiExponentiate(cs, weights), group.multiExponentiate(partials, weights));
+    }
+
+    private static void update(SHA256Digest digest, BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes, 0, bytes.length);
+    }
+
     @SuppressWarnings("JavaDocs, unused, WeakerAccess")
     public static class Proof {
         private BigInteger e;
@@ -0,0 +1,199 @@
+package dk.mmj.eevhe.crypto.zeroknowledge;
+
+import dk.mmj.eevhe.entities.*;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static dk.mmj.eevhe.crypto.BallotDigest.update;
+
+/**
+ * Bounded cache of verification results for ballots and votes, so each proof is checked once per process.
+ * <br>
+ * Entries are addressed by a SHA-256 hash of the content of the ballot or vote, and of the public key
+ * it is verified under. Two equal ballots, e.g. fetched twice from the bulletin board, therefore share an entry,
+ * while a ballot which differs in any value is verified again.
+ * <br>
+ * Both valid and invalid results are cached. When full, the least recently used entry is evicted,
+ * so memory is bounded by the capacity, at roughly 100 bytes per entry.
+ */
+public class ProofCache {
+    private static final int DEFAULT_CAPACITY = 1 << 17;
+    private static final ProofCache defaultCache = new ProofCache(DEFAULT_CAPACITY);
+    private final int capacity;
+    private final Map<ByteBuffer, Boolean> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of cached results
+     */
+    public ProofCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, was: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.results = Collections.synchronizedMap(new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > ProofCache.this.capacity;
+            }
+        });
+    }
+
+    /**
+     * @return cache shared by the verification pipeline of the process
+     */
+    public static ProofCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Verifies the proof of a vote, unless the result is cached
+     *
+     * @param vote      the vote
+     * @param publicKey key the vote is encrypted under
+     * @return whether the proof of the vote is valid
+     */
+    public boolean verify(CandidateVoteDTO vote, PublicKey publicKey) {
+        return lookup(key(publicKey, d -> update(d, vote)), () -> VoteProofUtils.verifyProof(vote, publicKey));
+    }
+
+    /**
+     * Verifies a ballot, unless the result is cached
+     *
+     * @param ballot    the ballot
+     * @param publicKey key the ballot is encrypted under
+     * @param verifier  verifies the ballot on a cache miss
+     * @return whether the ballot is valid
+     */
+    public boolean verify(BallotDTO ballot, PublicKey publicKey, Predicate<BallotDTO> verifier) {
+        return lookup(key(publicKey, d -> update(d, ballot)), () -> verifier.test(ballot));
+    }
+
+    /**
+     * Determines which ballots are valid. Ballots without a cached result are verified together by the verifier,
+     * e.g. in a single batch
+     *
+     * @param ballots   the ballots
+     * @param publicKey key the ballots are encrypted under
+     * @param verifier  given the ballots without a cached result, returns those which are valid
+     * @param <T>       type of the ballots
+     * @return the valid ballots, in their original order
+     */
+    public <T extends BallotDTO> List<T> verifyAll(List<T> ballots, PublicKey publicKey, Function<List<T>, List<T>> verifier) {
+        List<ByteBuffer> keys = new ArrayList<>(ballots.size());
+        List<Integer> unknownIndices = new ArrayList<>();
+        List<T> unknown = new ArrayList<>();
+        for (int i = 0; i < ballots.size(); i++) {
+            T ballot = ballots.get(i);
+            ByteBuffer key = key(publicKey, d -> update(d, ballot));
+            keys.add(key);
+            if (results.get(key) == null) {
+                unknownIndices.add(i);
+                unknown.add(ballot);
+            }
+        }
+        hits.addAndGet(ballots.size() - unknown.size());
+        misses.addAndGet(unknown.size());
+
+        Map<ByteBuffer, Boolean> verified = new HashMap<>();
+        if (!unknown.isEmpty()) {
+            Set<T> valid = Collections.newSetFromMap(new IdentityHashMap<>());
+            valid.addAll(verifier.apply(unknown));
+            for (int i = 0; i < unknown.size(); i++) {
+                verified.put(keys.get(unknownIndices.get(i)), valid.contains(unknown.get(i)));
+            }
+            results.putAll(verified);
+        }
+
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < ballots.size(); i++) {
+            Boolean isValid = verified.get(keys.get(i));
+            if (isValid == null) {
+                isValid = results.get(keys.get(i));
+            }
+            if (Boolean.TRUE.equals(isValid)) {
+                result.add(ballots.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    private boolean lookup(ByteBuffer key, BooleanSupplier verification) {
+        Boolean cached = results.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        boolean valid = verification.getAsBoolean();
+        results.put(key, valid);
+        return valid;
+    }
+
+    /**
+     * @return number of cached results
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @return maximum number of cached results
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of results found in the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of results which had to be verified
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ProofCache{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                '}';
+    }
+
+    private static ByteBuffer key(PublicKey publicKey, Consumer<SHA256Digest> content) {
+        SHA256Digest digest = new SHA256Digest();
+        update(digest, publicKey.getH(), publicKey.getG(), publicKey.getQ(), publicKey.getModulus());
+        update(digest, publicKey.getGroup());
+        content.accept(digest);
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return ByteBuffer.wrap(hash);
+    }
+}
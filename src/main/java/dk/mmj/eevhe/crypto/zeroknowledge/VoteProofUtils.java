@@ -1,9 +1,16 @@
 package dk.mmj.eevhe.crypto.zeroknowledge;
 
+import dk.mmj.eevhe.crypto.CipherTextAccumulator;
+import dk.mmj.eevhe.crypto.EncryptionPad;
+import dk.mmj.eevhe.crypto.FixedBaseExponentiation;
+import dk.mmj.eevhe.crypto.Group;
 import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.TallyEngine;
 import dk.mmj.eevhe.entities.*;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 public class VoteProofUtils {
 
@@ -25,12 +32,11 @@ public class VoteProofUtils {
         BigInteger[] z = new BigInteger[2];
         BigInteger[] a = new BigInteger[2];
         BigInteger[] b = new BigInteger[2];
-        BigInteger g = publicKey.getG();
-        BigInteger h = publicKey.getH();
         BigInteger c = cipherText.getC();
         BigInteger d = cipherText.getD();
         BigInteger q = publicKey.getQ();
-        BigInteger p = publicKey.getP();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+        Group group = exponentiation.getGroup();
 
         int fakeIndex = (1 - v);
 
@@ -38,16 +44,17 @@ public class VoteProofUtils {
         e[fakeIndex] = SecurityUtils.getRandomNumModN(q);
         z[fakeIndex] = SecurityUtils.getRandomNumModN(q);
 
-        a[fakeIndex] = g.modPow(z[fakeIndex], p).multiply(c.modPow(e[fakeIndex], p)).mod(p);
+        a[fakeIndex] = group.operate(exponentiation.powG(z[fakeIndex]), group.exponentiate(c, e[fakeIndex]));
 
         if (v == 1) {
-            b[fakeIndex] = h.modPow(z[fakeIndex], p).multiply(d.modPow(e[fakeIndex], p)).mod(p);
+            b[fakeIndex] = group.operate(exponentiation.powH(z[fakeIndex]), group.exponentiate(d, e[fakeIndex]));
         } else {
-            b[fakeIndex] = h.modPow(z[fakeIndex], p).multiply(d.multiply(g.modInverse(p)).modPow(e[fakeIndex], p)).mod(p);
+            b[fakeIndex] = group.operate(exponentiation.powH(z[fakeIndex]),
+                    group.exponentiate(group.operate(d, exponentiation.getGInverse()), e[fakeIndex]));
         }
 
-        a[v] = g.modPow(y, p);
-        b[v] = h.modPow(y, p);
+        a[v] = exponentiation.powG(y);
+        b[v] = exponentiation.powH(y);
 
         BigInteger s = new BigInteger(
                 SecurityUtils.hash(a[0].toByteArray(), b[0].toByteArray(), a[1].toByteArray(), b[1].toByteArray(), c.toByteArray(), d.toByteArray(), id.getBytes())).mod(q);
@@ -55,7 +62,60 @@ public class VoteProofUtils {
         e[v] = s.subtract(e[fakeIndex]).mod(q);
         z[v] = y.subtract(e[v].multiply(witness)).mod(q);
 
-        return new Proof(e[0], e[1], z[0], z[1]);
+        return new Proof(e[0], e[1], z[0], z[1], a[0], b[0], a[1], b[1]);
+    }
+
+    /**
+     * Method for generating zero-knowledge proof for vote that is either 0 or 1, using the precomputed
+     * commitments of a pad.
+     * <br>
+     * The ciphertext must be an encryption of the vote using the witness, but need not use the randomness of the pad.
+     * Only multiplications and a hash are needed to generate the proof
+     *
+     * @param cipherText ciphertext from encrypted vote
+     * @param publicKey  public key the vote is encrypted under, and the pad computed for
+     * @param witness    the r value from encryption
+     * @param id         voter id
+     * @param vote       what was voted - either 0 or 1
+     * @param pad        the pad, which must not be used for other proofs
+     * @return the zero-knowledge proof
+     */
+    public static Proof generateProof(CipherText cipherText, PublicKey publicKey, BigInteger witness, String id, BigInteger vote, EncryptionPad pad) {
+        int v = (vote.intValue() > 0) ? 1 : 0;
+
+        BigInteger[] e = new BigInteger[2];
+        BigInteger[] z = new BigInteger[2];
+        BigInteger[] a = new BigInteger[2];
+        BigInteger[] b = new BigInteger[2];
+        BigInteger c = cipherText.getC();
+        BigInteger d = cipherText.getD();
+        BigInteger q = publicKey.getQ();
+        Group group = FixedBaseExponentiation.forKey(publicKey).getGroup();
+
+        int fakeIndex = (1 - v);
+
+        //With c = g^r, the simulated commitment g^z * c^e is g^w for z = w - r*e
+        e[fakeIndex] = pad.getE();
+        z[fakeIndex] = pad.getW().subtract(pad.getE().multiply(witness)).mod(q);
+        a[fakeIndex] = pad.getGW();
+
+        //d is g*h^r when voting 1, and h^r when voting 0, which makes h^z * (d/g^(1-fakeIndex))^e = h^w * g^(+-e)
+        if (v == 1) {
+            b[fakeIndex] = group.operate(pad.getHW(), pad.getGE());
+        } else {
+            b[fakeIndex] = group.operate(pad.getHW(), pad.getGEInverse());
+        }
+
+        a[v] = pad.getGY();
+        b[v] = pad.getHY();
+
+        BigInteger s = new BigInteger(
+                SecurityUtils.hash(a[0].toByteArray(), b[0].toByteArray(), a[1].toByteArray(), b[1].toByteArray(), c.toByteArray(), d.toByteArray(), id.getBytes())).mod(q);
+
+        e[v] = s.subtract(e[fakeIndex]).mod(q);
+        z[v] = pad.getY().subtract(e[v].multiply(witness)).mod(q);
+
+        return new Proof(e[0], e[1], z[0], z[1], a[0], b[0], a[1], b[1]);
     }
 
     /**
@@ -65,20 +125,85 @@ public class VoteProofUtils {
      *     <li>The proof that the sum of all ciphertexts is either 0 or 1 must be verifiable</li>
      * </ul>
      *
+     * <br>
+     * The result is cached in the {@link ProofCache#getDefault() default proof cache},
+     * as are the results for the individual votes, so the ballot and its votes are only verified once.
+     *
      * @param ballot    the ballot object to be verified
      * @param publicKey key the votes is encrypted under
      * @return whether or not the ballot is valid
      */
     public static boolean verifyBallot(BallotDTO ballot, PublicKey publicKey) {
-        for (CandidateVoteDTO candidateVote : ballot.getCandidateVotes()) {
-            if (!verifyProof(candidateVote, publicKey)) {
-                return false;
+        return ProofCache.getDefault().verify(ballot, publicKey, b -> verifyBallotUncached(b, publicKey));
+    }
+
+    private static boolean verifyBallotUncached(BallotDTO ballot, PublicKey publicKey) {
+        ProofCache cache = ProofCache.getDefault();
+        List<CandidateVoteDTO> candidateVotes = ballot.getCandidateVotes();
+        if (!TallyEngine.getDefault().allMatch(candidateVotes, v -> cache.verify(v, publicKey), 1)) {
+            return false;
+        }
+
+        //All proofs are verified, so the votes are summed without verifying them again
+        CipherTextAccumulator sum = new CipherTextAccumulator(FixedBaseExponentiation.forKey(publicKey).getGroup());
+        candidateVotes.forEach(v -> sum.add(v.getCipherText()));
+
+        return verifyProof(ballot.getSumIsOneProof(), sum.getSum(), ballot.getId(), publicKey);
+    }
+
+    /**
+     * Verifies a list of ballots, using the same criteria as {@link #verifyBallot(BallotDTO, PublicKey)}.
+     * <br>
+     * All proofs of all ballots are checked together using a {@link BatchVoteProofVerifier},
+     * which is considerably cheaper than verifying the ballots one at a time.
+     * <br>
+     * Ballots already verified, e.g. by an earlier call, are looked up in the {@link ProofCache#getDefault() default proof cache},
+     * and only the remaining ballots are verified.
+     *
+     * @param ballots   the ballots to be verified
+     * @param publicKey key the votes are encrypted under
+     * @param <T>       type of the ballots
+     * @return the valid ballots, in their original order
+     */
+    public static <T extends BallotDTO> List<T> verifyBallots(List<T> ballots, PublicKey publicKey) {
+        return ProofCache.getDefault().verifyAll(ballots, publicKey, b -> verifyBallotsUncached(b, publicKey));
+    }
+
+    private static <T extends BallotDTO> List<T> verifyBallotsUncached(List<T> ballots, PublicKey publicKey) {
+        List<CandidateVoteDTO> votes = new ArrayList<>();
+        int[] offsets = new int[ballots.size() + 1];
+        for (int i = 0; i < ballots.size(); i++) {
+            BallotDTO ballot = ballots.get(i);
+            offsets[i] = votes.size();
+
+            List<CandidateVoteDTO> candidateVotes = ballot.getCandidateVotes();
+            if (candidateVotes == null || candidateVotes.stream().anyMatch(v -> v == null || v.getCipherText() == null)) {
+                continue;
             }
+
+            CipherTextAccumulator sum = new CipherTextAccumulator(FixedBaseExponentiation.forKey(publicKey).getGroup());
+            candidateVotes.forEach(v -> sum.add(v.getCipherText()));
+
+            votes.addAll(candidateVotes);
+            votes.add(new CandidateVoteDTO(sum.getSum(), ballot.getId(), ballot.getSumIsOneProof()));
         }
+        offsets[ballots.size()] = votes.size();
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < ballots.size(); i++) {
+            boolean ballotValid = offsets[i] < offsets[i + 1];
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                ballotValid &= valid[j];
+            }
 
-        CipherText sum = SecurityUtils.concurrentVoteSum(ballot.getCandidateVotes(), publicKey, 200);
+            if (ballotValid) {
+                result.add(ballots.get(i));
+            }
+        }
 
-        return verifyProof(ballot.getSumIsOneProof(), sum, ballot.getId(), publicKey);
+        return result;
     }
 
     /**
@@ -106,16 +231,27 @@ public class VoteProofUtils {
         BigInteger e1 = proof.getE1();
         BigInteger z0 = proof.getZ0();
         BigInteger z1 = proof.getZ1();
-        BigInteger g = publicKey.getG();
-        BigInteger h = publicKey.getH();
-        BigInteger p = publicKey.getP();
         BigInteger c = cipherText.getC();
         BigInteger d = cipherText.getD();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+        Group group = exponentiation.getGroup();
 
-        BigInteger a0 = g.modPow(z0, p).multiply(c.modPow(e0, p)).mod(p);
-        BigInteger b0 = h.modPow(z0, p).multiply(d.modPow(e0, p)).mod(p);
-        BigInteger a1 = g.modPow(z1, p).multiply(c.modPow(e1, p)).mod(p);
-        BigInteger b1 = h.modPow(z1, p).multiply(d.multiply(g.modInverse(p)).modPow(e1, p)).mod(p);
+        BigInteger a0, b0, a1, b1;
+        try {
+            a0 = group.operate(exponentiation.powG(z0), group.exponentiate(c, e0));
+            b0 = group.operate(exponentiation.powH(z0), group.exponentiate(d, e0));
+            a1 = group.operate(exponentiation.powG(z1), group.exponentiate(c, e1));
+            b1 = group.operate(exponentiation.powH(z1),
+                    group.exponentiate(group.operate(d, exponentiation.getGInverse()), e1));
+        } catch (IllegalArgumentException e) {
+            //Ciphertext was not a group element
+            return false;
+        }
+
+        if (hasCommitments(proof) && !(a0.equals(proof.getA0()) && b0.equals(proof.getB0())
+                && a1.equals(proof.getA1()) && b1.equals(proof.getB1()))) {
+            return false;
+        }
 
         BigInteger s = new BigInteger(
                 SecurityUtils.hash(a0.toByteArray(), b0.toByteArray(), a1.toByteArray(), b1.toByteArray(), c.toByteArray(), d.toByteArray(), id.getBytes())).mod(publicKey.getQ());
@@ -124,5 +260,14 @@ public class VoteProofUtils {
 
         return e.mod(publicKey.getQ()).equals(s);
     }
-}
 
+    /**
+     * Determines whether a proof carries its commitments, which is required for it to be batch verified
+     *
+     * @param proof the proof
+     * @return whether all of a0, b0, a1 and b1 are present
+     */
+    static boolean hasCommitments(Proof proof) {
+        return proof.getA0() != null && proof.getB0() != null && proof.getA1() != null && proof.getB1() != null;
+    }
+}
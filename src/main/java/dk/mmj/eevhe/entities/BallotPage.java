@@ -0,0 +1,91 @@
+package dk.mmj.eevhe.entities;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Consecutive ballots from the list of a Bulletin Board Peer, proven to be in the Merkle tree with a signed {@link TreeHead}.
+ * <br>
+ * The page itself is not signed. The tree head is only signed once each time ballots are added,
+ * and the proof shows that the ballots, with their timestamps, are at the positions [start, start + ballots) of that tree,
+ * see {@link dk.mmj.eevhe.crypto.MerkleTree#verifyRange}. A page can therefore not be passed off as starting at another position
+ */
+@SuppressWarnings("unused")
+public class BallotPage {
+    private SignedEntity<TreeHead> treeHead;
+    private long start;
+    private List<PersistedBallot> ballots;
+    private List<String> proof;
+
+    BallotPage() {
+    }
+
+    /**
+     * @param treeHead the signed head of the tree the ballots are proven against
+     * @param start    sequence number of the first ballot
+     * @param ballots  the ballots, in order
+     * @param proof    hex encoded hashes of the range proof, or empty if there are no ballots
+     */
+    public BallotPage(SignedEntity<TreeHead> treeHead, long start, List<PersistedBallot> ballots, List<String> proof) {
+        this.treeHead = treeHead;
+        this.start = start;
+        this.ballots = ballots;
+        this.proof = proof;
+    }
+
+    public SignedEntity<TreeHead> getTreeHead() {
+        return treeHead;
+    }
+
+    public void setTreeHead(SignedEntity<TreeHead> treeHead) {
+        this.treeHead = treeHead;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    public List<PersistedBallot> getBallots() {
+        return ballots;
+    }
+
+    public void setBallots(List<PersistedBallot> ballots) {
+        this.ballots = ballots;
+    }
+
+    public List<String> getProof() {
+        return proof;
+    }
+
+    public void setProof(List<String> proof) {
+        this.proof = proof;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BallotPage that = (BallotPage) o;
+        return start == that.start && Objects.equals(treeHead, that.treeHead)
+                && Objects.equals(ballots, that.ballots) && Objects.equals(proof, that.proof);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(treeHead, start, ballots, proof);
+    }
+
+    @Override
+    public String toString() {
+        return "BallotPage{" +
+                "treeHead=" + treeHead +
+                ", start=" + start +
+                ", ballots=" + ballots +
+                ", proof=" + proof +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+package dk.mmj.eevhe.entities;
+
+import java.util.Objects;
+
+/**
+ * Receipt from a Bulletin Board Peer, stating that a ballot has been included in its list of ballots.
+ * <br>
+ * The ballot is identified by the hash from {@link dk.mmj.eevhe.crypto.BallotDigest#hash(BallotDTO)},
+ * so a voter can check the receipt against the ballot it cast, without fetching the ballot
+ */
+@SuppressWarnings("unused")
+public class BallotReceipt {
+    private String id;
+    private String ballotHash;
+    private long position;
+    private long timestamp;
+
+    BallotReceipt() {
+    }
+
+    /**
+     * @param id         id of the voter
+     * @param ballotHash hex encoded hash of the ballot
+     * @param position   position of the ballot in the list of ballots
+     * @param timestamp  time in ms the ballot was cast, which is part of its leaf in the Merkle tree,
+     *                   see {@link dk.mmj.eevhe.crypto.BallotDigest#leaf(String, long)}
+     */
+    public BallotReceipt(String id, String ballotHash, long position, long timestamp) {
+        this.id = id;
+        this.ballotHash = ballotHash;
+        this.position = position;
+        this.timestamp = timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getBallotHash() {
+        return ballotHash;
+    }
+
+    public void setBallotHash(String ballotHash) {
+        this.ballotHash = ballotHash;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BallotReceipt that = (BallotReceipt) o;
+        return position == that.position && timestamp == that.timestamp
+                && Objects.equals(id, that.id) && Objects.equals(ballotHash, that.ballotHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, ballotHash, position, timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "BallotReceipt{" +
+                "id='" + id + '\'' +
+                ", ballotHash='" + ballotHash + '\'' +
+                ", position=" + position +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package dk.mmj.eevhe.entities;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Proof that the Merkle tree with one {@link TreeHead} is a prefix of the tree with a later head,
+ * meaning no ballot has been removed or changed between the two
+ */
+@SuppressWarnings("unused")
+public class ConsistencyProof {
+    private long oldSize;
+    private long newSize;
+    private List<String> path;
+
+    ConsistencyProof() {
+    }
+
+    /**
+     * @param oldSize number of ballots in the old tree
+     * @param newSize number of ballots in the new tree
+     * @param path    hex encoded hashes needed to compute both roots
+     */
+    public ConsistencyProof(long oldSize, long newSize, List<String> path) {
+        this.oldSize = oldSize;
+        this.newSize = newSize;
+        this.path = path;
+    }
+
+    public long getOldSize() {
+        return oldSize;
+    }
+
+    public void setOldSize(long oldSize) {
+        this.oldSize = oldSize;
+    }
+
+    public long getNewSize() {
+        return newSize;
+    }
+
+    public void setNewSize(long newSize) {
+        this.newSize = newSize;
+    }
+
+    public List<String> getPath() {
+        return path;
+    }
+
+    public void setPath(List<String> path) {
+        this.path = path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConsistencyProof that = (ConsistencyProof) o;
+        return oldSize == that.oldSize && newSize == that.newSize && Objects.equals(path, that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(oldSize, newSize, path);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistencyProof{" +
+                "oldSize=" + oldSize +
+                ", newSize=" + newSize +
+                ", path=" + path +
+                '}';
+    }
+}
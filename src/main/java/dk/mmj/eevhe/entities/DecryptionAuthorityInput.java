@@ -1,5 +1,7 @@
 package dk.mmj.eevhe.entities;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 import java.util.Objects;
 
@@ -9,6 +11,8 @@ import java.util.Objects;
 @SuppressWarnings("unused")
 public class DecryptionAuthorityInput {
     private String pHex;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String qHex;
     private String gHex;
     private String eHex;
     private long endTime;
@@ -24,6 +28,20 @@ public class DecryptionAuthorityInput {
         this.encodedElectionCertificate = encodedElectionCertificate;
     }
 
+    /**
+     * @param pHex                       hexadecimal encoding of prime p
+     * @param qHex                       hexadecimal encoding of the group order q, or null if q = (p-1)/2
+     * @param gHex                       hexadecimal encoding of generator g
+     * @param eHex                       hexadecimal encoding of group element e
+     * @param endTime                    when the vote ends
+     * @param infos                      information on all decryption authorities
+     * @param encodedElectionCertificate the election certificate
+     */
+    public DecryptionAuthorityInput(String pHex, String qHex, String gHex, String eHex, long endTime, List<PeerInfo> infos, String encodedElectionCertificate) {
+        this(pHex, gHex, eHex, endTime, infos, encodedElectionCertificate);
+        this.qHex = qHex;
+    }
+
     public DecryptionAuthorityInput() {
     }
 
@@ -35,6 +53,14 @@ public class DecryptionAuthorityInput {
         this.pHex = pHex;
     }
 
+    public String getqHex() {
+        return qHex;
+    }
+
+    public void setqHex(String qHex) {
+        this.qHex = qHex;
+    }
+
     public String getgHex() {
         return gHex;
     }
@@ -80,18 +106,19 @@ public class DecryptionAuthorityInput {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         DecryptionAuthorityInput that = (DecryptionAuthorityInput) o;
-        return endTime == that.endTime && Objects.equals(pHex, that.pHex) && Objects.equals(gHex, that.gHex) && Objects.equals(eHex, that.eHex) && Objects.equals(infos, that.infos) && Objects.equals(encodedElectionCertificate, that.encodedElectionCertificate);
+        return endTime == that.endTime && Objects.equals(pHex, that.pHex) && Objects.equals(qHex, that.qHex) && Objects.equals(gHex, that.gHex) && Objects.equals(eHex, that.eHex) && Objects.equals(infos, that.infos) && Objects.equals(encodedElectionCertificate, that.encodedElectionCertificate);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(pHex, gHex, eHex, endTime, infos, encodedElectionCertificate);
+        return Objects.hash(pHex, qHex, gHex, eHex, endTime, infos, encodedElectionCertificate);
     }
 
     @Override
     public String toString() {
         return "DecryptionAuthorityInput{" +
                 "pHex='" + pHex + '\'' +
+                ", qHex='" + qHex + '\'' +
                 ", gHex='" + gHex + '\'' +
                 ", eHex='" + eHex + '\'' +
                 ", endTime=" + endTime +
@@ -22,9 +22,13 @@ public class DistKeyGenResult {
     }
 
     public DistKeyGenResult(BigInteger g, BigInteger q, Map<Integer, BigInteger> secretValues, Map<Integer, BigInteger> publicValues) {
+        this(g, q, q.multiply(BigInteger.valueOf(2)).add(BigInteger.ONE), secretValues, publicValues);
+    }
+
+    public DistKeyGenResult(BigInteger g, BigInteger q, BigInteger p, Map<Integer, BigInteger> secretValues, Map<Integer, BigInteger> publicValues) {
         this.g = g;
         this.q = q;
-        this.p = q.multiply(BigInteger.valueOf(2)).add(BigInteger.ONE);
+        this.p = p;
         this.secretValues = secretValues;
         this.publicValues = publicValues;
     }
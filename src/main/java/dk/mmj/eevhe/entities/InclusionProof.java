@@ -0,0 +1,76 @@
+package dk.mmj.eevhe.entities;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Proof that a ballot is included in the Merkle tree with a given {@link TreeHead}.
+ * <br>
+ * The proof needs no signature, as it can only be verified against the root of the tree it was created from
+ */
+@SuppressWarnings("unused")
+public class InclusionProof {
+    private long leafIndex;
+    private long treeSize;
+    private List<String> path;
+
+    InclusionProof() {
+    }
+
+    /**
+     * @param leafIndex position of the ballot in the list of ballots
+     * @param treeSize  number of ballots in the tree
+     * @param path      hex encoded hashes of the audit path, from the ballot towards the root
+     */
+    public InclusionProof(long leafIndex, long treeSize, List<String> path) {
+        this.leafIndex = leafIndex;
+        this.treeSize = treeSize;
+        this.path = path;
+    }
+
+    public long getLeafIndex() {
+        return leafIndex;
+    }
+
+    public void setLeafIndex(long leafIndex) {
+        this.leafIndex = leafIndex;
+    }
+
+    public long getTreeSize() {
+        return treeSize;
+    }
+
+    public void setTreeSize(long treeSize) {
+        this.treeSize = treeSize;
+    }
+
+    public List<String> getPath() {
+        return path;
+    }
+
+    public void setPath(List<String> path) {
+        this.path = path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InclusionProof that = (InclusionProof) o;
+        return leafIndex == that.leafIndex && treeSize == that.treeSize && Objects.equals(path, that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(leafIndex, treeSize, path);
+    }
+
+    @Override
+    public String toString() {
+        return "InclusionProof{" +
+                "leafIndex=" + leafIndex +
+                ", treeSize=" + treeSize +
+                ", path=" + path +
+                '}';
+    }
+}
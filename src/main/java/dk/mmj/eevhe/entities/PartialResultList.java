@@ -1,5 +1,8 @@
 package dk.mmj.eevhe.entities;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
+
 import java.util.List;
 import java.util.Objects;
 
@@ -8,11 +11,24 @@ public class PartialResultList {
     private List<PartialResult> results;
     private int voteCount;
     private int daId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private DLogProofUtils.Proof aggregateProof;
 
     public PartialResultList(List<PartialResult> results, int voteCount, int daId) {
+        this(results, voteCount, daId, null);
+    }
+
+    /**
+     * @param results        partial decryption for each candidate
+     * @param voteCount      number of votes included in the sums
+     * @param daId           id of the decryption authority
+     * @param aggregateProof single proof for all partial decryptions, in which case the results hold no proofs of their own
+     */
+    public PartialResultList(List<PartialResult> results, int voteCount, int daId, DLogProofUtils.Proof aggregateProof) {
         this.results = results;
         this.voteCount = voteCount;
         this.daId = daId;
+        this.aggregateProof = aggregateProof;
     }
 
     public PartialResultList() {
@@ -42,17 +58,26 @@ public class PartialResultList {
         this.daId = daId;
     }
 
+    public DLogProofUtils.Proof getAggregateProof() {
+        return aggregateProof;
+    }
+
+    public void setAggregateProof(DLogProofUtils.Proof aggregateProof) {
+        this.aggregateProof = aggregateProof;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PartialResultList that = (PartialResultList) o;
-        return voteCount == that.voteCount && daId == that.daId && Objects.equals(results, that.results);
+        return voteCount == that.voteCount && daId == that.daId && Objects.equals(results, that.results)
+                && Objects.equals(aggregateProof, that.aggregateProof);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(results, voteCount, daId);
+        return Objects.hash(results, voteCount, daId, aggregateProof);
     }
 
     @Override
@@ -61,6 +86,7 @@ public class PartialResultList {
                 "results=" + results +
                 ", voteCount=" + voteCount +
                 ", daId=" + daId +
+                ", aggregateProof=" + aggregateProof +
                 '}';
     }
 }
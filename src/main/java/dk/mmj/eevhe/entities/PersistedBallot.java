@@ -49,10 +49,8 @@ public class PersistedBallot extends BallotDTO implements BulletinBoardUpdatable
 
     @Override
     public void update(BulletinBoardState bb) {
-        boolean exists = bb.getBallots().stream().anyMatch(this::isSameBallot);
-        if (!exists) {
-            bb.addBallot(this);
-        }
+        //Ignored by the state, if the same ballot has already been added
+        bb.addBallot(this);
     }
 
     public boolean isSameBallot(BallotDTO that) {
@@ -5,12 +5,20 @@ import java.util.Objects;
 
 /**
  * DTO class for proof that votes is either 0 or 1
+ * <br>
+ * Besides the challenges and answers, the proof carries the commitments a0, b0, a1 and b1.
+ * These are redundant for verifying a single proof, but allow proofs to be verified in batches.
+ * Proofs without commitments are still accepted, and verified one at a time.
  */
 public class Proof {
     private BigInteger e0;
     private BigInteger e1;
     private BigInteger z0;
     private BigInteger z1;
+    private BigInteger a0;
+    private BigInteger b0;
+    private BigInteger a1;
+    private BigInteger b1;
 
     public Proof() {
     }
@@ -22,6 +30,15 @@ public class Proof {
         this.z1 = z1;
     }
 
+    public Proof(BigInteger e0, BigInteger e1, BigInteger z0, BigInteger z1,
+                 BigInteger a0, BigInteger b0, BigInteger a1, BigInteger b1) {
+        this(e0, e1, z0, z1);
+        this.a0 = a0;
+        this.b0 = b0;
+        this.a1 = a1;
+        this.b1 = b1;
+    }
+
     public BigInteger getE0() {
         return e0;
     }
@@ -54,6 +71,38 @@ public class Proof {
         this.z1 = z1;
     }
 
+    public BigInteger getA0() {
+        return a0;
+    }
+
+    public void setA0(BigInteger a0) {
+        this.a0 = a0;
+    }
+
+    public BigInteger getB0() {
+        return b0;
+    }
+
+    public void setB0(BigInteger b0) {
+        this.b0 = b0;
+    }
+
+    public BigInteger getA1() {
+        return a1;
+    }
+
+    public void setA1(BigInteger a1) {
+        this.a1 = a1;
+    }
+
+    public BigInteger getB1() {
+        return b1;
+    }
+
+    public void setB1(BigInteger b1) {
+        this.b1 = b1;
+    }
+
     @Override
     public String toString() {
         return "Proof{" +
@@ -61,6 +110,10 @@ public class Proof {
                 ", e1=" + e1 +
                 ", z0=" + z0 +
                 ", z1=" + z1 +
+                ", a0=" + a0 +
+                ", b0=" + b0 +
+                ", a1=" + a1 +
+                ", b1=" + b1 +
                 '}';
     }
 
@@ -72,11 +125,15 @@ public class Proof {
         return Objects.equals(e0, proof.e0) &&
                 Objects.equals(e1, proof.e1) &&
                 Objects.equals(z0, proof.z0) &&
-                Objects.equals(z1, proof.z1);
+                Objects.equals(z1, proof.z1) &&
+                Objects.equals(a0, proof.a0) &&
+                Objects.equals(b0, proof.b0) &&
+                Objects.equals(a1, proof.a1) &&
+                Objects.equals(b1, proof.b1);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(e0, e1, z0, z1);
+        return Objects.hash(e0, e1, z0, z1, a0, b0, a1, b1);
     }
 }
@@ -1,6 +1,7 @@
 package dk.mmj.eevhe.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.math.BigInteger;
 import java.util.Objects;
@@ -8,6 +9,10 @@ import java.util.Objects;
 @SuppressWarnings("unused")
 public class PublicKey {
     private BigInteger h, g, q;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String group;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigInteger modulus;
 
     /**
      * Unused object mapper constructor
@@ -22,6 +27,17 @@ public class PublicKey {
         this.h = h;
     }
 
+    /**
+     * @param h     the public value h
+     * @param g     the generator g
+     * @param q     the order of the group
+     * @param group name of the group, or null for the subgroup of order q in Z_p^*, where p = 2q+1
+     */
+    public PublicKey(BigInteger h, BigInteger g, BigInteger q, String group) {
+        this(h, g, q);
+        this.group = group;
+    }
+
     public BigInteger getH() {
         return h;
     }
@@ -46,8 +62,46 @@ public class PublicKey {
         this.q = q;
     }
 
+    /**
+     * @param h       the public value h
+     * @param g       the generator g
+     * @param q       the order of the group
+     * @param modulus the modulus p of the subgroup of order q in Z_p^*, or null if p = 2q+1
+     */
+    public PublicKey(BigInteger h, BigInteger g, BigInteger q, BigInteger modulus) {
+        this(h, g, q);
+        this.modulus = modulus;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    /**
+     * @return the modulus p, when the group is a Schnorr group with p = kq+1, otherwise null
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    public void setModulus(BigInteger modulus) {
+        this.modulus = modulus;
+    }
+
+    /**
+     * Only meaningful when the key does not name a group, in which case the group is a subgroup of Z_p^*
+     *
+     * @return the modulus p, which is 2q+1 unless a modulus is given explicitly
+     */
     @JsonIgnore
     public BigInteger getP() {
+        if (modulus != null) {
+            return modulus;
+        }
         return q.multiply(BigInteger.valueOf(2)).add(BigInteger.ONE);
     }
 
@@ -57,6 +111,8 @@ public class PublicKey {
                 "h=" + h +
                 ", g=" + g +
                 ", q=" + q +
+                ", group='" + group + '\'' +
+                ", modulus=" + modulus +
                 '}';
     }
 
@@ -67,11 +123,13 @@ public class PublicKey {
         PublicKey publicKey = (PublicKey) o;
         return Objects.equals(h, publicKey.h) &&
                 Objects.equals(g, publicKey.g) &&
-                Objects.equals(q, publicKey.q);
+                Objects.equals(q, publicKey.q) &&
+                Objects.equals(group, publicKey.group) &&
+                Objects.equals(modulus, publicKey.modulus);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(h, g, q);
+        return Objects.hash(h, g, q, group, modulus);
     }
 }
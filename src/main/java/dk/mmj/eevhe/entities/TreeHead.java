@@ -0,0 +1,65 @@
+package dk.mmj.eevhe.entities;
+
+import java.util.Objects;
+
+/**
+ * Head of the Merkle tree over the ballots on a Bulletin Board Peer, see {@link dk.mmj.eevhe.crypto.MerkleTree}.
+ * <br>
+ * A signed tree head commits the peer to every ballot in its list of ballots, in order,
+ * so inclusion of a single ballot can be proven against it, without the peer signing the ballot.
+ * Peers order ballots differently, so heads of different peers are not comparable
+ */
+@SuppressWarnings("unused")
+public class TreeHead {
+    private long size;
+    private String rootHash;
+
+    TreeHead() {
+    }
+
+    /**
+     * @param size     number of ballots in the tree
+     * @param rootHash hex encoded root hash of the tree
+     */
+    public TreeHead(long size, String rootHash) {
+        this.size = size;
+        this.rootHash = rootHash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getRootHash() {
+        return rootHash;
+    }
+
+    public void setRootHash(String rootHash) {
+        this.rootHash = rootHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TreeHead treeHead = (TreeHead) o;
+        return size == treeHead.size && Objects.equals(rootHash, treeHead.rootHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, rootHash);
+    }
+
+    @Override
+    public String toString() {
+        return "TreeHead{" +
+                "size=" + size +
+                ", rootHash='" + rootHash + '\'' +
+                '}';
+    }
+}
@@ -5,6 +5,7 @@ import dk.eSoftware.commandLineParser.AbstractInstanceCreatingConfiguration;
 import dk.mmj.eevhe.Application;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParametersImpl;
+import dk.mmj.eevhe.crypto.keygeneration.StandardGroups;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.entities.BBInput;
@@ -46,12 +47,17 @@ import java.util.zip.ZipOutputStream;
  */
 public class SystemConfigurer implements Application {
     private static final Logger logger = LogManager.getLogger(SystemConfigurer.class);
+    private static final int PRIME_BIT_LENGTH = 1024;
+    private static final int SCHNORR_ORDER_BIT_LENGTH = 256;
+    private static final int PRIME_CERTAINTY = 50;
     private final long endTime;
     private final Path outputFolderPath;
     private final Map<Integer, String> daAddresses;
     private final Map<Integer, String> bbPeerAddresses;
     private final Path skFilePath;
     private final Path certFilePath;
+    private final boolean schnorrGroup;
+    private final String standardGroup;
 
     public SystemConfigurer(SystemConfiguration config) {
         this.endTime = config.endTime;
@@ -60,6 +66,8 @@ public class SystemConfigurer implements Application {
         this.certFilePath = config.certFilePath;
         this.daAddresses = config.daAddresses;
         this.bbPeerAddresses = config.bbPeerAddresses;
+        this.schnorrGroup = config.schnorrGroup;
+        this.standardGroup = config.standardGroup;
     }
 
     @Override
@@ -68,9 +76,18 @@ public class SystemConfigurer implements Application {
 
         ObjectMapper mapper = new ObjectMapper();
         logger.info("Starting key-param generation");
-        ExtendedKeyGenerationParameters params = new ExtendedKeyGenerationParametersImpl(1024, 50);
+        ExtendedKeyGenerationParameters params;
+        if (standardGroup != null) {
+            logger.info("Using standardized group " + standardGroup);
+            params = StandardGroups.parameters(standardGroup);
+        } else if (schnorrGroup) {
+            params = new ExtendedKeyGenerationParametersImpl(PRIME_BIT_LENGTH, SCHNORR_ORDER_BIT_LENGTH, PRIME_CERTAINTY);
+        } else {
+            params = new ExtendedKeyGenerationParametersImpl(PRIME_BIT_LENGTH, PRIME_CERTAINTY);
+        }
         String gHex = new String(Hex.encode(params.getGenerator().toByteArray()));
         String pHex = new String(Hex.encode(params.getPrimePair().getP().toByteArray()));
+        String qHex = new String(Hex.encode(params.getPrimePair().getQ().toByteArray()));
         String eHex = new String(Hex.encode(params.getGroupElement().toByteArray()));
 
         List<PeerInfo> daInfos = daAddresses.entrySet()
@@ -84,7 +101,7 @@ public class SystemConfigurer implements Application {
             logger.error("Failed to read certificate file");
             return;
         }
-        DecryptionAuthorityInput daInput = new DecryptionAuthorityInput(pHex, gHex, eHex, endTime, daInfos, certPem);
+        DecryptionAuthorityInput daInput = new DecryptionAuthorityInput(pHex, qHex, gHex, eHex, endTime, daInfos, certPem);
 
         logger.info("Writing common_input.json file");
         try (OutputStream ous = Files.newOutputStream(outputFolderPath.resolve("common_input.json"))) {
@@ -215,6 +232,8 @@ public class SystemConfigurer implements Application {
         private final Path outputFolderPath;
         private final Path skFilePath;
         private final Path certFilePath;
+        private final boolean schnorrGroup;
+        private final String standardGroup;
 
         /**
          * Constructor for the Trusted Dealer configuration
@@ -225,6 +244,8 @@ public class SystemConfigurer implements Application {
          * @param daAddresses       Map linking ids to addresses for DAs
          * @param bbPeerAddresses   Map linking ids to addresses for BB Peers
          * @param endTime           When the vote comes to an end. ms since January 1, 1970, 00:00:00 GMT
+         * @param schnorrGroup      Whether to use a Schnorr group with a 256-bit order, instead of a safe prime group
+         * @param standardGroup     Name of a group from {@link StandardGroups} to use instead of generating one, or null
          */
         SystemConfiguration(
                 Path candidateListPath,
@@ -232,7 +253,9 @@ public class SystemConfigurer implements Application {
                 Path certFilePath,
                 Map<Integer, String> daAddresses,
                 Map<Integer, String> bbPeerAddresses,
-                long endTime) {
+                long endTime,
+                boolean schnorrGroup,
+                String standardGroup) {
             super(SystemConfigurer.class);
             this.outputFolderPath = candidateListPath;
             this.skFilePath = skFilePath;
@@ -240,6 +263,8 @@ public class SystemConfigurer implements Application {
             this.daAddresses = daAddresses;
             this.bbPeerAddresses = bbPeerAddresses;
             this.endTime = endTime;
+            this.schnorrGroup = schnorrGroup;
+            this.standardGroup = standardGroup;
         }
 
         public long getEndTime() {
@@ -265,5 +290,13 @@ public class SystemConfigurer implements Application {
         public Path getCertFilePath() {
             return certFilePath;
         }
+
+        public boolean isSchnorrGroup() {
+            return schnorrGroup;
+        }
+
+        public String getStandardGroup() {
+            return standardGroup;
+        }
     }
 }
@@ -2,6 +2,7 @@ package dk.mmj.eevhe.initialization;
 
 import dk.eSoftware.commandLineParser.CommandLineParser;
 import dk.mmj.eevhe.TestableConfigurationBuilder;
+import dk.mmj.eevhe.crypto.keygeneration.StandardGroups;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -23,6 +24,9 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
     private static final String TIME_DAY = "day=";
     private static final String TIME_HR = "hour=";
     private static final String TIME_MIN = "min=";
+    private static final String GROUP = "group=";
+    private static final String GROUP_SAFE_PRIME = "safeprime";
+    private static final String GROUP_SCHNORR = "schnorr";
 
     //state
     private Path outputFolderPath = Paths.get("./conf/");
@@ -31,6 +35,8 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
     private Path skFilePath = Paths.get("./certs/test_glob_key.pem");
     private Path certFilePath = Paths.get("./certs/test_glob.pem");
     private long time = 10_000 * 60;
+    private boolean schnorrGroup = false;
+    private String standardGroup = null;
 
     @Override
     public void applyCommand(CommandLineParser.Command command) {
@@ -67,6 +73,21 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
             certFilePath = Paths.get(cmd.substring(CERT_PATH.length()));
         } else if (cmd.startsWith(CERT_KEY_PATH)) {
             skFilePath = Paths.get(cmd.substring(CERT_KEY_PATH.length()));
+        } else if (cmd.startsWith(GROUP)) {
+            String group = cmd.substring(GROUP.length());
+            if (group.equalsIgnoreCase(GROUP_SCHNORR)) {
+                schnorrGroup = true;
+                standardGroup = null;
+            } else if (group.equalsIgnoreCase(GROUP_SAFE_PRIME)) {
+                schnorrGroup = false;
+                standardGroup = null;
+            } else if (StandardGroups.isKnown(group)) {
+                schnorrGroup = false;
+                standardGroup = group.toLowerCase();
+            } else {
+                String current = standardGroup != null ? standardGroup : (schnorrGroup ? GROUP_SCHNORR : GROUP_SAFE_PRIME);
+                logger.warn("Did not recognize group " + group + ". Using " + current);
+            }
         } else if (!cmd.equals(SELF)) {
             logger.warn("Did not recognize command " + command.getCommand());
         }
@@ -80,7 +101,9 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
                 certFilePath,
                 daAddresses,
                 bbPeerAddresses,
-                new Date().getTime() + time);
+                new Date().getTime() + time,
+                schnorrGroup,
+                standardGroup);
     }
 
     @Override
@@ -92,7 +115,10 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
                 "\t --" + DA_ADDRESSES + "\t\t defines addresses for the DAs. Supplied on the form -id_url\n" +
                 "\t --" + OUTPUT_FOLDER_PATH + "\t\t defines output folder using relative path\n" +
                 "\t --" + CERT_PATH + "\t\t specifies .pem file with certificate" +
-                "\t --" + CERT_KEY_PATH + "\t\t specifies .pem file with certificate private-key\n";
+                "\t --" + CERT_KEY_PATH + "\t\t specifies .pem file with certificate private-key\n" +
+                "\t --" + GROUP + "\t\t group for El-Gamal keys. '" + GROUP_SAFE_PRIME + "' (default) uses p = 2q+1, " +
+                "'" + GROUP_SCHNORR + "' uses p = kq+1 with a 256-bit q, for shorter exponents. " +
+                "A standardized group can be used instead of generating one, by giving one of " + StandardGroups.getNames() + "\n";
     }
 
     @Override
@@ -101,6 +127,7 @@ public class SystemConfigurerConfigBuilder implements CommandLineParser.ConfigBu
                 OUTPUT_FOLDER_PATH,
                 CERT_KEY_PATH,
                 CERT_PATH,
+                GROUP,
                 TIME,
                 TIME_DAY,
                 TIME_HR,
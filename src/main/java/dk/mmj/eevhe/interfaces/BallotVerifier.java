@@ -2,6 +2,9 @@ package dk.mmj.eevhe.interfaces;
 
 import dk.mmj.eevhe.entities.BallotDTO;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * interface for verifying cast ballots
  */
@@ -14,4 +17,18 @@ public interface BallotVerifier {
      * @return whether the ballot is valid, and should be included
      */
     boolean verifyBallot(BallotDTO ballotDTO);
+
+    /**
+     * Determines which of the given ballots are valid.
+     * <br>
+     * Verifies each ballot using {@link #verifyBallot(BallotDTO)} unless overridden,
+     * e.g. by an implementation verifying all ballots in a single batch.
+     *
+     * @param ballots the ballots
+     * @param <T>     type of the ballots
+     * @return the valid ballots, in their original order
+     */
+    default <T extends BallotDTO> List<T> verifyBallots(List<T> ballots) {
+        return ballots.parallelStream().filter(this::verifyBallot).collect(Collectors.toList());
+    }
 }
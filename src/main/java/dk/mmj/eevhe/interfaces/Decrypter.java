@@ -17,5 +17,14 @@ public interface Decrypter {
      */
     PartialResultList generatePartialResult(long endTime, PartialKeyPair keyPair);
 
+    /**
+     * Prepares for {@link #generatePartialResult(long, PartialKeyPair)} while voting is still open,
+     * e.g. by summing the ballots cast so far. Does nothing unless overridden
+     *
+     * @param endTime endTime for the election
+     * @param keyPair keys used - output from DKG protocol
+     */
+    default void update(long endTime, PartialKeyPair keyPair) {
+    }
 
 }
@@ -1,5 +1,6 @@
 package dk.mmj.eevhe.protocols;
 
+import dk.mmj.eevhe.crypto.Group;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.entities.PartialSecretMessageDTO;
 import dk.mmj.eevhe.protocols.connectors.interfaces.DKGBroadcaster;
@@ -20,6 +21,7 @@ public class AbstractVSS {
     protected final DKGIncomingChannel incoming;
     protected final Map<Integer, DKGPeerCommunicator> peerMap;
     protected final int id;
+    protected final Group group;
     protected final BigInteger g;
     protected final BigInteger q;
     protected final BigInteger p;
@@ -35,8 +37,9 @@ public class AbstractVSS {
         this.incoming = incoming;
         this.peerMap = peerCommunicatorMap;
         this.id = id;
+        this.group = params.getGroup();
         this.g = params.getGenerator();
-        this.q = params.getPrimePair().getQ();
+        this.q = group.getOrder();
         this.p = params.getPrimePair().getP();
         this.e = params.getGroupElement();
         logger = LogManager.getLogger(getClass().getName() + " " + logPrefix + ":");
@@ -1,5 +1,7 @@
 package dk.mmj.eevhe.protocols;
 
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.Groups;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.entities.*;
@@ -24,6 +26,7 @@ public class GennaroDKG implements DKG<PartialKeyPair> {
     protected final int id;
     protected final ExtendedKeyGenerationParameters params;
     protected final String logPrefix;
+    private final Group group;
     private final BigInteger g;
     private final BigInteger q;
     private final BigInteger p;
@@ -53,8 +56,9 @@ public class GennaroDKG implements DKG<PartialKeyPair> {
         this.id = id;
         this.params = params;
         this.logPrefix = logPrefix;
+        this.group = params.getGroup();
         this.g = params.getGenerator();
-        this.q = params.getPrimePair().getQ();
+        this.q = group.getOrder();
         this.p = params.getPrimePair().getP();
         this.t = ((peerMap.size()) / 2);
 
@@ -133,7 +137,7 @@ public class GennaroDKG implements DKG<PartialKeyPair> {
     PartialKeyPair computeKeyPair(DKGBroadcaster broadcaster, Set<Integer> honestParties, GennaroFeldmanVSS feldmanVSS) {
         logger.info("Computing PartialKeyPair");
         BigInteger partialSecretKey = feldmanVSS.output();
-        BigInteger partialPublicKey = g.modPow(partialSecretKey, p);
+        BigInteger partialPublicKey = group.exponentiate(g, partialSecretKey);
 
         // Computes Y = prod_i y_i mod p
         List<CommitmentDTO> commitments = broadcaster.getCommitments().stream()
@@ -150,11 +154,11 @@ public class GennaroDKG implements DKG<PartialKeyPair> {
         }
 
         BigInteger publicKey = partialPublicKeys
-                .stream().reduce(BigInteger::multiply).orElse(BigInteger.ZERO).mod(p);
+                .stream().reduce(group::operate).orElse(BigInteger.ZERO);
         return new PartialKeyPair(
                 new PartialSecretKey(partialSecretKey, p),
                 partialPublicKey,
-                new PublicKey(publicKey, g, q)
+                Groups.publicKey(publicKey, g, group)
         );
     }
 
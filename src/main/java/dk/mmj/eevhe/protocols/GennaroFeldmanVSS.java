@@ -1,6 +1,6 @@
 package dk.mmj.eevhe.protocols;
 
-import dk.mmj.eevhe.crypto.PedersenVSSUtils;
+import dk.mmj.eevhe.crypto.BatchShareVerifier;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.entities.CommitmentDTO;
 import dk.mmj.eevhe.entities.FeldmanComplaintDTO;
@@ -15,7 +15,6 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static dk.mmj.eevhe.crypto.FeldmanVSSUtils.computeCoefficientCommitments;
-import static dk.mmj.eevhe.crypto.FeldmanVSSUtils.verifyCommitmentRespected;
 import static dk.mmj.eevhe.protocols.PedersenVSS.PEDERSEN;
 
 public class GennaroFeldmanVSS extends AbstractVSS implements VSS {
@@ -46,7 +45,7 @@ public class GennaroFeldmanVSS extends AbstractVSS implements VSS {
         honestParties.addAll(peerMap.keySet());
 
         logger.debug("Calculating coefficient commitments");
-        BigInteger[] commitment = computeCoefficientCommitments(g, p, polynomial);
+        BigInteger[] commitment = computeCoefficientCommitments(group, g, polynomial);
 
         logger.info("Broadcasting commitments");
         broadcaster.commit(new CommitmentDTO(commitment, id, FELDMAN));
@@ -74,6 +73,8 @@ public class GennaroFeldmanVSS extends AbstractVSS implements VSS {
         honestParties.removeIf(i -> !this.feldmanCommitments.containsKey(i) || !this.pedersenCommitments.containsKey(i));
 
         logger.info("Verifying secret shares, using commitments");
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g);
+        List<Integer> senders = new ArrayList<>();
         for (Map.Entry<Integer, PartialSecretMessageDTO> entry : new ArrayList<>(secrets.entrySet())) {
             int senderId = entry.getKey();
             if (senderId == id) {
@@ -88,9 +89,14 @@ public class GennaroFeldmanVSS extends AbstractVSS implements VSS {
                 continue;
             }
 
-            boolean matches = verifyCommitmentRespected(g, partialSecret, feldmanCommitment, BigInteger.valueOf(id), p);
-            if (!matches) {
-                complain(senderId);
+            verifier.add(partialSecret, feldmanCommitment, BigInteger.valueOf(id));
+            senders.add(senderId);
+        }
+
+        boolean[] matches = verifier.verify();
+        for (int i = 0; i < matches.length; i++) {
+            if (!matches[i]) {
+                complain(senders.get(i));
             }
         }
     }
@@ -109,20 +115,24 @@ public class GennaroFeldmanVSS extends AbstractVSS implements VSS {
         List<FeldmanComplaintDTO> complaints = broadcaster.getFeldmanComplaints();
 
         logger.debug("Received " + complaints.size() + " complaints");
+        BatchShareVerifier pedersenVerifier = new BatchShareVerifier(group, g, e);
+        BatchShareVerifier feldmanVerifier = new BatchShareVerifier(group, g);
         for (FeldmanComplaintDTO complaint : complaints) {
-            // Check 1
-            BigInteger[] pedersenCommitment = pedersenCommitments.get(complaint.getTargetId());
-            BigInteger[] feldmanCommitment = feldmanCommitments.get(complaint.getTargetId());
             BigInteger partialSecret1 = complaint.getVal1();
             BigInteger partialSecret2 = complaint.getVal2();
-
             BigInteger complainerId = BigInteger.valueOf(complaint.getSenderId());
-            boolean matches1 = PedersenVSSUtils.verifyCommitmentRespected(g, e,
-                    partialSecret1, partialSecret2, pedersenCommitment, complainerId, p, q);
-            // Check 2
-            boolean matches2 = verifyCommitmentRespected(g, partialSecret1, feldmanCommitment, complainerId, p);
 
-            if (matches1 && !matches2) {
+            pedersenVerifier.add(partialSecret1, partialSecret2, pedersenCommitments.get(complaint.getTargetId()), complainerId);
+            feldmanVerifier.add(partialSecret1, feldmanCommitments.get(complaint.getTargetId()), complainerId);
+        }
+        // Check 1
+        boolean[] matches1 = pedersenVerifier.verify();
+        // Check 2
+        boolean[] matches2 = feldmanVerifier.verify();
+
+        for (int i = 0; i < complaints.size(); i++) {
+            FeldmanComplaintDTO complaint = complaints.get(i);
+            if (matches1[i] && !matches2[i]) {
                 logger.info("Removing party with ID " + complaint.getTargetId() + " from honest parties");
                 honestParties.remove(complaint.getTargetId());
             }
@@ -1,5 +1,6 @@
 package dk.mmj.eevhe.protocols;
 
+import dk.mmj.eevhe.crypto.BatchShareVerifier;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.entities.CommitmentDTO;
@@ -16,7 +17,6 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static dk.mmj.eevhe.crypto.PedersenVSSUtils.computeCoefficientCommitments;
-import static dk.mmj.eevhe.crypto.PedersenVSSUtils.verifyCommitmentRespected;
 
 /**
  * Pedersen-DKG protocol
@@ -52,7 +52,7 @@ public class PedersenVSS extends AbstractVSS implements VSS {
 
         logger.debug("Calculating coefficient commitments.");
         //Calculates commitments
-        BigInteger[] commitment = computeCoefficientCommitments(g, e, p, pol1, pol2);
+        BigInteger[] commitment = computeCoefficientCommitments(group, g, e, pol1, pol2);
 
         logger.info("Broadcasting commitments");
         broadcaster.commit(new CommitmentDTO(commitment, id, PEDERSEN));
@@ -98,6 +98,8 @@ public class PedersenVSS extends AbstractVSS implements VSS {
 
         honestParties.removeIf(i -> !this.commitments.containsKey(i));
 
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g, e);
+        List<Integer> senders = new ArrayList<>();
         for (Map.Entry<Integer, PartialSecretMessageDTO> entry : new ArrayList<>(secrets.entrySet())) {
             int senderId = entry.getKey();
 
@@ -111,9 +113,14 @@ public class PedersenVSS extends AbstractVSS implements VSS {
                 continue;
             }
 
-            boolean matches = verifyCommitmentRespected(
-                    g, e, partialSecret1, partialSecret2, commitment, BigInteger.valueOf(id), p, q);
-            if (!matches) {
+            verifier.add(partialSecret1, partialSecret2, commitment, BigInteger.valueOf(id));
+            senders.add(senderId);
+        }
+
+        boolean[] matches = verifier.verify();
+        for (int i = 0; i < matches.length; i++) {
+            if (!matches[i]) {
+                int senderId = senders.get(i);
                 logger.info("" + this.id + ": Sending complaint about DA=" + senderId);
                 final PedersenComplaintDTO complaint = new PedersenComplaintDTO(this.id, senderId);
                 broadcaster.pedersenComplain(complaint);
@@ -168,13 +175,17 @@ public class PedersenVSS extends AbstractVSS implements VSS {
             }
         }
 
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g, e);
         for (ComplaintResolveDTO resolve : resolves) {
-            int resolverId = resolve.getComplaintResolverId();
+            verifier.add(resolve.getValue().getPartialSecret1(), resolve.getValue().getPartialSecret2(),
+                    commitments.get(resolve.getComplaintResolverId()), BigInteger.valueOf(resolve.getComplaintSenderId()));
+        }
+        boolean[] verifiable = verifier.verify();
 
-            BigInteger[] commit = commitments.get(resolverId);
-            boolean resolveIsVerifiable = verifyCommitmentRespected(
-                    g, e, resolve.getValue().getPartialSecret1(), resolve.getValue().getPartialSecret2(),
-                    commit, BigInteger.valueOf(resolve.getComplaintSenderId()), p, q);
+        for (int i = 0; i < resolves.size(); i++) {
+            ComplaintResolveDTO resolve = resolves.get(i);
+            int resolverId = resolve.getComplaintResolverId();
+            boolean resolveIsVerifiable = verifiable[i];
 
             if (resolveIsVerifiable && resolve.getComplaintSenderId() == id) {
                 logger.info("Applying resolve: " + resolve);
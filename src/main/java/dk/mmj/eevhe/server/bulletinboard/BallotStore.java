@@ -0,0 +1,163 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
+import dk.mmj.eevhe.entities.*;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only store of ballots, kept in the order they were added.
+ * <br>
+ * Ballots are indexed by the id of the voter, and by the digest of their content,
+ * so checking for duplicates and looking up the ballots of a voter takes constant time, instead of a scan of all ballots.
+ * <br>
+ * The digests, with the time each ballot was cast, are also the leaves of a {@link MerkleTree}, in the same order as the ballots,
+ * so the root commits to every ballot, and inclusion of a ballot, or a page of ballots, can be proven with a logarithmic number of hashes.
+ * <br>
+ * All methods are synchronized on the store.
+ */
+class BallotStore {
+    private final List<PersistedBallot> ballots = new ArrayList<>();
+    private final Map<String, List<PersistedBallot>> byVoter = new HashMap<>();
+    private final Map<String, Integer> byDigest = new HashMap<>();
+    private final MerkleTree tree = new MerkleTree();
+
+    /**
+     * Adds a ballot, unless a ballot with the same content has already been added
+     *
+     * @param ballot the ballot
+     * @param digest digest of the content of the ballot, as given by {@link dk.mmj.eevhe.crypto.BallotDigest#hash}
+     * @return position of the ballot, or -1 if it was already added
+     */
+    synchronized int add(PersistedBallot ballot, String digest) {
+        if (byDigest.containsKey(digest)) {
+            return -1;
+        }
+
+        int position = ballots.size();
+        ballots.add(ballot);
+        byDigest.put(digest, position);
+        byVoter.computeIfAbsent(ballot.getId(), id -> new ArrayList<>(1)).add(ballot);
+        tree.append(BallotDigest.leaf(digest, ballot.getTs().getTime()));
+        return position;
+    }
+
+    /**
+     * @param id id of the voter
+     * @return whether any ballot has been added for the voter
+     */
+    synchronized boolean hasVoted(String id) {
+        return byVoter.containsKey(id);
+    }
+
+    /**
+     * @param id id of the voter
+     * @return ballots added for the voter, in the order they were added
+     */
+    synchronized List<PersistedBallot> getByVoter(String id) {
+        List<PersistedBallot> voterBallots = byVoter.get(id);
+        return voterBallots != null ? new ArrayList<>(voterBallots) : new ArrayList<>();
+    }
+
+    /**
+     * @param id id of the voter
+     * @return receipt for the first ballot added for the voter, or null if none has been added
+     */
+    synchronized BallotReceipt getReceipt(String id) {
+        List<PersistedBallot> voterBallots = byVoter.get(id);
+        if (voterBallots == null) {
+            return null;
+        }
+
+        PersistedBallot ballot = voterBallots.get(0);
+        String digest = BallotDigest.hash(ballot);
+        return new BallotReceipt(id, digest, byDigest.get(digest), ballot.getTs().getTime());
+    }
+
+    /**
+     * @param id id of the voter
+     * @return position of the first ballot added for the voter, or -1 if none has been added
+     */
+    synchronized int getPosition(String id) {
+        List<PersistedBallot> voterBallots = byVoter.get(id);
+        return voterBallots == null ? -1 : byDigest.get(BallotDigest.hash(voterBallots.get(0)));
+    }
+
+    /**
+     * @return all ballots, in the order they were added
+     */
+    synchronized List<PersistedBallot> getAll() {
+        return new ArrayList<>(ballots);
+    }
+
+    /**
+     * @param from  position of the first ballot to return
+     * @param limit maximal number of ballots to return
+     * @return ballots from the given position, in the order they were added
+     */
+    synchronized List<PersistedBallot> getRange(int from, int limit) {
+        int start = Math.max(0, Math.min(from, ballots.size()));
+        int end = (int) Math.min(ballots.size(), (long) start + Math.max(0, limit));
+        return new ArrayList<>(ballots.subList(start, end));
+    }
+
+    /**
+     * Returns ballots from a position, with a proof that they are in the tree with the given head
+     *
+     * @param treeHead head of a tree over at most the ballots in this store, signed by this peer
+     * @param from     position of the first ballot to return
+     * @param limit    maximal number of ballots to return
+     * @return the ballots from the given position, within the tree with the given head.
+     * Empty if the position is not in the tree
+     */
+    synchronized BallotPage getPage(SignedEntity<TreeHead> treeHead, int from, int limit) {
+        int size = (int) treeHead.getEntity().getSize();
+        if (from < 0 || from >= size || limit <= 0) {
+            return new BallotPage(treeHead, from, new ArrayList<>(), new ArrayList<>());
+        }
+
+        int to = (int) Math.min(size, (long) from + limit);
+        return new BallotPage(treeHead, from, new ArrayList<>(ballots.subList(from, to)), toHex(tree.rangeProof(from, to, size)));
+    }
+
+    /**
+     * @return number of ballots
+     */
+    synchronized int size() {
+        return ballots.size();
+    }
+
+    /**
+     * @return size and root of the Merkle tree over all ballots
+     */
+    synchronized TreeHead getTreeHead() {
+        return new TreeHead(tree.size(), Hex.toHexString(tree.root(tree.size())));
+    }
+
+    /**
+     * @param position position of the ballot
+     * @param size     number of ballots in the tree to prove inclusion in
+     * @return proof that the ballot is included in the tree over the first size ballots
+     * @throws IllegalArgumentException if the position is not in such a tree, or the store has fewer ballots
+     */
+    synchronized InclusionProof getInclusionProof(int position, int size) {
+        return new InclusionProof(position, size, toHex(tree.inclusionProof(position, size)));
+    }
+
+    /**
+     * @param oldSize number of ballots in the old tree
+     * @param newSize number of ballots in the new tree
+     * @return proof that the tree over the first oldSize ballots is a prefix of the tree over the first newSize ballots
+     * @throws IllegalArgumentException if oldSize is larger than newSize, or the store has fewer ballots
+     */
+    synchronized ConsistencyProof getConsistencyProof(int oldSize, int newSize) {
+        return new ConsistencyProof(oldSize, newSize, toHex(tree.consistencyProof(oldSize, newSize)));
+    }
+
+    private static List<String> toHex(List<byte[]> hashes) {
+        return hashes.stream().map(Hex::toHexString).collect(Collectors.toList());
+    }
+}
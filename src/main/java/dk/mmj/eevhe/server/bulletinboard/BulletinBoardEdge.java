@@ -3,6 +3,7 @@ package dk.mmj.eevhe.server.bulletinboard;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.eSoftware.commandLineParser.AbstractInstanceCreatingConfiguration;
+import dk.mmj.eevhe.client.SmileProvider;
 import dk.mmj.eevhe.entities.BBInput;
 import dk.mmj.eevhe.entities.BBPeerInfo;
 import dk.mmj.eevhe.server.AbstractServer;
@@ -45,9 +46,12 @@ public class BulletinBoardEdge extends AbstractServer {
 
     @Override
     protected void configure(ServletHolder servletHolder) {
+        //Receipts are long-polled using suspended responses
+        servletHolder.setAsyncSupported(true);
         servletHolder.setInitParameter(
                 "jersey.config.server.provider.classnames",
-                BulletinBoardEdgeResource.class.getCanonicalName() + ";" + "org.glassfish.jersey.jackson.JacksonFeature");
+                BulletinBoardEdgeResource.class.getCanonicalName() + ";" + "org.glassfish.jersey.jackson.JacksonFeature"
+                        + ";" + SmileProvider.class.getCanonicalName());
     }
 
     @Override
@@ -3,7 +3,7 @@ package dk.mmj.eevhe.server.bulletinboard;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.mmj.eevhe.client.SmileProvider;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.entities.wrappers.*;
 import dk.mmj.eevhe.server.ServerState;
@@ -13,22 +13,27 @@ import org.glassfish.jersey.client.JerseyWebTarget;
 
 import javax.ws.rs.*;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static dk.mmj.eevhe.client.SSLHelper.configureWebTarget;
+import static dk.mmj.eevhe.client.SmileProvider.APPLICATION_SMILE;
+import static dk.mmj.eevhe.client.SmileProvider.APPLICATION_SMILE_TYPE;
 
 @Path("/")
 public class BulletinBoardEdgeResource {
     private final static Logger logger = LogManager.getLogger(BulletinBoardEdgeResource.class);
     private final ServerState state = ServerState.getInstance();
     private final List<JerseyWebTarget> targets = new ArrayList<>();
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final long RECEIPT_TIMEOUT_MARGIN = 2_000;
 
     private List<String> getPeerAddresses() {
         return state.get(BulletinBoardEdge.PEER_ADDRESSES, List.class);
@@ -61,6 +66,8 @@ public class BulletinBoardEdgeResource {
 
     /**
      * Fetches list of objects from Bulletin Board Peers using given REST endpoint
+     * <br>
+     * Responses are requested as Smile, but JSON is accepted as well
      *
      * @param path          REST endpoint
      * @param typeReference Type reference needed for casting
@@ -68,20 +75,42 @@ public class BulletinBoardEdgeResource {
      * @return Fetched object of type T
      */
     private <T> List<T> fetchFromPeers(String path, TypeReference<T> typeReference) {
+        return fetchFromPeers(path, Collections.emptyMap(), typeReference);
+    }
+
+    /**
+     * Fetches list of objects from Bulletin Board Peers using given REST endpoint and query parameters
+     *
+     * @param path          REST endpoint
+     * @param queryParams   query parameters passed on to the peers
+     * @param typeReference Type reference needed for casting
+     * @param <T>           Generic type parameter
+     * @return Fetched object of type T
+     */
+    private <T> List<T> fetchFromPeers(String path, Map<String, Object> queryParams, TypeReference<T> typeReference) {
         List<T> result = Collections.synchronizedList(new ArrayList<>());
         List<Thread> threads = new ArrayList<>();
 
-        for (JerseyWebTarget target : getTargets()) {
+        for (JerseyWebTarget peer : getTargets()) {
+            JerseyWebTarget queryTarget = peer.path(path);
+            for (Map.Entry<String, Object> param : queryParams.entrySet()) {
+                Object value = param.getValue();
+                queryTarget = value instanceof Collection
+                        ? queryTarget.queryParam(param.getKey(), ((Collection<?>) value).toArray())
+                        : queryTarget.queryParam(param.getKey(), value);
+            }
+            JerseyWebTarget target = queryTarget;
+
             Thread thread = new Thread(() -> {
                 try {
-                    Response response = target.path(path).request().get();
+                    Response response = target.request(APPLICATION_SMILE, MediaType.APPLICATION_JSON).get();
                     if (response.getStatus() >= 400) {
-                        logger.error("Received non-200 status:" + response.getStatus() + " from target: " + target.path(path));
+                        logger.error("Received non-200 status:" + response.getStatus() + " from target: " + target);
                         return;
                     }
-                    String responseString = response.readEntity(String.class);
+                    byte[] responseBytes = response.readEntity(byte[].class);
                     T responseObject;
-                    responseObject = mapper.readValue(responseString, typeReference);
+                    responseObject = SmileProvider.readValue(responseBytes, typeReference);
                     result.add(responseObject);
                 } catch (JsonProcessingException e) {
                     logger.error("Failed to query " + path + " from bulletin board peer: " + target, e);
@@ -122,9 +151,9 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("postBallot")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postBallot(BallotDTO ballot) {
-        postToPeers("postBallot", Entity.entity(ballot, MediaType.APPLICATION_JSON));
+        postToPeers("postBallot", Entity.entity(ballot, APPLICATION_SMILE_TYPE));
     }
 
     /**
@@ -132,7 +161,7 @@ public class BulletinBoardEdgeResource {
      */
     @GET
     @Path("result")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<PartialResultWrapper>> getResult() {
         return fetchFromPeers("result", new TypeReference<SignedEntity<PartialResultWrapper>>() {
         });
@@ -140,37 +169,125 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("result")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postResult(SignedEntity<PartialResultList> partialDecryptions) {
-        postToPeers("result", Entity.entity(partialDecryptions, MediaType.APPLICATION_JSON));
+        postToPeers("result", Entity.entity(partialDecryptions, APPLICATION_SMILE_TYPE));
     }
 
+    /**
+     * Fetches ballots from all peers, see {@link BulletinBoardPeerResource#getBallots(List, int)}
+     *
+     * @param after sequence numbers of the last ballot already known, for each peer
+     * @param limit maximal number of ballots to return, or 0 for no limit
+     * @return the ballots from each peer
+     */
     @GET
     @Path("getBallots")
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<SignedEntity<BallotWrapper>> getBallots() {
-        return fetchFromPeers("getBallots", new TypeReference<SignedEntity<BallotWrapper>>() {
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public List<BallotPage> getBallots(@QueryParam("after") List<String> after,
+                                       @QueryParam("limit") @DefaultValue("0") int limit) {
+        Map<String, Object> queryParams = new HashMap<>();
+        queryParams.put("after", after);
+        queryParams.put("limit", limit);
+
+        return fetchFromPeers("getBallots", queryParams, new TypeReference<BallotPage>() {
         });
     }
 
     @GET
     @Path("getBallot/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<SignedEntity<PersistedBallot>> getBallot(@PathParam("id") String id) {
-        return fetchFromPeers("getBallot/" + id, new TypeReference<SignedEntity<PersistedBallot>>() {
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public List<BallotPage> getBallot(@PathParam("id") String id) {
+        return fetchFromPeers("getBallot/" + id, new TypeReference<BallotPage>() {
         });
     }
 
+    @GET
+    @Path("treeHead")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public List<SignedEntity<TreeHead>> getTreeHead() {
+        return fetchFromPeers("treeHead", new TypeReference<SignedEntity<TreeHead>>() {
+        });
+    }
+
+    @GET
+    @Path("inclusionProof/{position}")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public List<InclusionProof> getInclusionProof(@PathParam("position") long position, @QueryParam("size") long size) {
+        return fetchFromPeers("inclusionProof/" + position, Collections.singletonMap("size", size),
+                new TypeReference<InclusionProof>() {
+                });
+    }
+
+    @GET
+    @Path("consistencyProof")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public List<ConsistencyProof> getConsistencyProof(@QueryParam("from") long from, @QueryParam("to") long to) {
+        Map<String, Object> queryParams = new HashMap<>();
+        queryParams.put("from", from);
+        queryParams.put("to", to);
+
+        return fetchFromPeers("consistencyProof", queryParams, new TypeReference<ConsistencyProof>() {
+        });
+    }
+
+    /**
+     * Long-polls all peers for signed receipts for the ballot cast by a voter.
+     * <br>
+     * The response is sent as soon as a majority of peers have sent receipts for the same ballot,
+     * with only those receipts. Otherwise, it is sent when all peers have answered, or the timeout has passed,
+     * with all receipts received until then.
+     *
+     * @param id       id of the voter
+     * @param timeout  time in ms the peers should wait for the ballot, see {@link BulletinBoardPeerResource#getReceiptTimeout(long)}
+     * @param response the suspended response
+     */
+    @GET
+    @Path("receipt/{id}")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public void getReceipt(@PathParam("id") String id, @QueryParam("timeout") @DefaultValue("10000") long timeout,
+                           @Suspended AsyncResponse response) {
+        List<JerseyWebTarget> peers = getTargets();
+        ReceiptQuorum quorum = new ReceiptQuorum(peers.size(), response);
+
+        long peerTimeout = BulletinBoardPeerResource.getReceiptTimeout(timeout);
+        response.setTimeout(peerTimeout + RECEIPT_TIMEOUT_MARGIN, TimeUnit.MILLISECONDS);
+        response.setTimeoutHandler(r -> quorum.finish());
+
+        for (JerseyWebTarget peer : peers) {
+            peer.path("receipt").path(id).queryParam("timeout", peerTimeout)
+                    .request(APPLICATION_SMILE, MediaType.APPLICATION_JSON).async()
+                    .get(new InvocationCallback<byte[]>() {
+                        @Override
+                        public void completed(byte[] responseBytes) {
+                            try {
+                                quorum.add(SmileProvider.readValue(responseBytes, new TypeReference<SignedEntity<BallotReceipt>>() {
+                                }));
+                            } catch (IOException e) {
+                                logger.error("Failed to deserialize receipt from bulletin board peer: " + peer, e);
+                                quorum.failed();
+                            }
+                        }
+
+                        @Override
+                        public void failed(Throwable throwable) {
+                            logger.debug("No receipt for voter with id " + id + " from bulletin board peer: " + peer, throwable);
+                            quorum.failed();
+                        }
+                    });
+        }
+    }
+
     @POST
     @Path("commitments")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postCommitments(SignedEntity<CommitmentDTO> commitment) {
-        postToPeers("commitments", Entity.entity(commitment, MediaType.APPLICATION_JSON));
+        postToPeers("commitments", Entity.entity(commitment, APPLICATION_SMILE_TYPE));
     }
 
     @GET
     @Path("commitments")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<CommitmentWrapper>> getCommitments() {
         return fetchFromPeers("commitments", new TypeReference<SignedEntity<CommitmentWrapper>>() {
         });
@@ -178,21 +295,21 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("pedersenComplain")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postPedersenComplaint(SignedEntity<PedersenComplaintDTO> complaint) {
-        postToPeers("pedersenComplain", Entity.entity(complaint, MediaType.APPLICATION_JSON));
+        postToPeers("pedersenComplain", Entity.entity(complaint, APPLICATION_SMILE_TYPE));
     }
 
     @POST
     @Path("feldmanComplain")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postFeldmanComplaint(SignedEntity<FeldmanComplaintDTO> complaint) {
-        postToPeers("feldmanComplain", Entity.entity(complaint, MediaType.APPLICATION_JSON));
+        postToPeers("feldmanComplain", Entity.entity(complaint, APPLICATION_SMILE_TYPE));
     }
 
     @GET
     @Path("pedersenComplaints")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<PedersenComplaintWrapper>> getPedersenComplaints() {
         return fetchFromPeers("pedersenComplaints", new TypeReference<SignedEntity<PedersenComplaintWrapper>>() {
         });
@@ -200,7 +317,7 @@ public class BulletinBoardEdgeResource {
 
     @GET
     @Path("feldmanComplaints")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<FeldmanComplaintWrapper>> getFeldmanComplaints() {
         return fetchFromPeers("feldmanComplaints", new TypeReference<SignedEntity<FeldmanComplaintWrapper>>() {
         });
@@ -208,14 +325,14 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("resolveComplaint")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void resolveComplaint(SignedEntity<ComplaintResolveDTO> resolveDTO) {
-        postToPeers("resolveComplaint", Entity.entity(resolveDTO, MediaType.APPLICATION_JSON));
+        postToPeers("resolveComplaint", Entity.entity(resolveDTO, APPLICATION_SMILE_TYPE));
     }
 
     @GET
     @Path("complaintResolves")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<ComplaintResolveWrapper>> getComplaintResolves() {
         return fetchFromPeers("complaintResolves", new TypeReference<SignedEntity<ComplaintResolveWrapper>>() {
         });
@@ -223,14 +340,14 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("publicInfo")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postPublicInfo(SignedEntity<PartialPublicInfo> info) {
-        postToPeers("publicInfo", Entity.entity(info, MediaType.APPLICATION_JSON));
+        postToPeers("publicInfo", Entity.entity(info, APPLICATION_SMILE_TYPE));
     }
 
     @GET
     @Path("publicInfo")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<PublicInfoWrapper>> getPublicInfo() {
         return fetchFromPeers("publicInfo", new TypeReference<SignedEntity<PublicInfoWrapper>>() {
         });
@@ -238,14 +355,14 @@ public class BulletinBoardEdgeResource {
 
     @POST
     @Path("certificates")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postCertificate(SignedEntity<CertificateDTO> cert) {
-        postToPeers("certificates", Entity.entity(cert, MediaType.APPLICATION_JSON));
+        postToPeers("certificates", Entity.entity(cert, APPLICATION_SMILE_TYPE));
     }
 
     @GET
     @Path("certificates")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<CertificatesWrapper>> getCertificate() {
         return fetchFromPeers("certificates", new TypeReference<SignedEntity<CertificatesWrapper>>() {
         });
@@ -253,16 +370,72 @@ public class BulletinBoardEdgeResource {
 
     @GET
     @Path("getCurrentTime")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public String getCurrentTime() {
         return Long.toString(new Date().getTime());
     }
 
     @GET
     @Path("peerCertificates")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public List<SignedEntity<StringListWrapper>> getPeerCertificateList() {
         return fetchFromPeers("peerCertificates", new TypeReference<SignedEntity<StringListWrapper>>() {
         });
     }
+
+    /**
+     * Collects receipts from peers, and resumes a response once a majority agree on the ballot, or all have answered
+     */
+    private static class ReceiptQuorum {
+        private final int peers;
+        private final int threshold;
+        private final AsyncResponse response;
+        private final List<SignedEntity<BallotReceipt>> receipts = new ArrayList<>();
+        private final Map<String, List<SignedEntity<BallotReceipt>>> byHash = new HashMap<>();
+        private int answered = 0;
+
+        private ReceiptQuorum(int peers, AsyncResponse response) {
+            this.peers = peers;
+            this.threshold = (int) Math.ceil(((float) peers) / 2);
+            this.response = response;
+            if (peers == 0) {
+                finish();
+            }
+        }
+
+        private synchronized void add(SignedEntity<BallotReceipt> receipt) {
+            receipts.add(receipt);
+            List<SignedEntity<BallotReceipt>> agreeing = byHash.computeIfAbsent(
+                    receipt.getEntity().getBallotHash(), h -> new ArrayList<>());
+            agreeing.add(receipt);
+
+            if (agreeing.size() >= threshold) {
+                resume(agreeing);
+            } else {
+                answer();
+            }
+        }
+
+        private synchronized void failed() {
+            answer();
+        }
+
+        private void answer() {
+            if (++answered >= peers) {
+                finish();
+            }
+        }
+
+        private synchronized void finish() {
+            resume(receipts);
+        }
+
+        /**
+         * Resumes with the generic type given, so receipts are serialized with their type information
+         */
+        private void resume(List<SignedEntity<BallotReceipt>> list) {
+            response.resume(new GenericEntity<List<SignedEntity<BallotReceipt>>>(new ArrayList<>(list)) {
+            });
+        }
+    }
 }
@@ -3,6 +3,7 @@ package dk.mmj.eevhe.server.bulletinboard;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.eSoftware.commandLineParser.AbstractInstanceCreatingConfiguration;
+import dk.mmj.eevhe.client.SmileProvider;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.interfaces.BrachaConsumer;
@@ -26,6 +27,7 @@ import org.eclipse.jetty.servlet.ServletHolder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -49,6 +51,7 @@ public class BulletinBoardPeer extends AbstractServer {
     private final Map<Integer, RestBBPeerCommunicator> communicators;
     private final AgreementHelper agreementHelper;
     private final List<Consumer<Incoming<String>>> broadcastListeners;
+    private final WriteAheadLog log;
 
     // Server state keys
     static final String PEER_CERTIFICATES = "peerCertificates";
@@ -93,6 +96,8 @@ public class BulletinBoardPeer extends AbstractServer {
             throw new RuntimeException("Failed to read private input from file");
         }
 
+        log = openLog(configuration);
+
         communicators = bbInput.getPeers().stream()
                 .filter(p -> p.getId() != id)
                 .collect(Collectors.toMap(
@@ -121,6 +126,35 @@ public class BulletinBoardPeer extends AbstractServer {
         ServerState.getInstance().put(SECRET_KEY + "." + id, sk);
     }
 
+    /**
+     * Opens the write-ahead log, if configured, replaying the updates in it into the state
+     *
+     * @return the log, or null if the state is only kept in memory
+     */
+    private WriteAheadLog openLog(BulletinBoardPeerConfiguration configuration) {
+        if (configuration.walPath == null) {
+            return null;
+        }
+
+        Path dir = Paths.get(configuration.walPath).resolve("BB_peer" + id);
+        logger.info("Replaying write-ahead log from: " + dir);
+        try {
+            return WriteAheadLog.open(dir, WriteAheadLog.DEFAULT_SEGMENT_SIZE,
+                    configuration.walSyncInterval, configuration.walSyncBatch, this::replay);
+        } catch (IOException e) {
+            logger.error("Failed to open write-ahead log in " + dir, e);
+            throw new RuntimeException("Failed to open write-ahead log", e);
+        }
+    }
+
+    private void replay(byte[] record) {
+        try {
+            mapper.readValue(record, BulletinBoardUpdatable.class).update(getState());
+        } catch (IOException e) {
+            logger.error("Failed to deserialize BulletinBoardUpdatable from write-ahead log", e);
+        }
+    }
+
     private BroadcastManager getBroadcastManager(Map<Integer, Consumer<String>> peers) {
         if (peers.size() > 0) {
             BrachaBroadcastManager brachaBroadcastManager = new BrachaBroadcastManager(peers, peers.size() / 3);
@@ -149,7 +183,11 @@ public class BulletinBoardPeer extends AbstractServer {
         try {
             BulletinBoardUpdatable updatable = mapper.readValue(str, BulletinBoardUpdatable.class);
 
-            updatable.update(getState());
+            if (log != null) {
+                log.commit(str.getBytes(StandardCharsets.UTF_8), () -> updatable.update(getState()));
+            } else {
+                updatable.update(getState());
+            }
         } catch (JsonProcessingException e) {
             logger.error("Failed to deserialize BulletinBoardUpdatable", e);
         }
@@ -176,11 +214,21 @@ public class BulletinBoardPeer extends AbstractServer {
                         () -> Utils.validate(message, identifier))));
     }
 
+    @Override
+    public void terminate() {
+        super.terminate();
+        if (log != null) {
+            log.close();
+        }
+    }
+
     @Override
     protected void configure(ServletHolder servletHolder) {
+        //Receipts are long-polled using suspended responses
+        servletHolder.setAsyncSupported(true);
         servletHolder.setInitParameter(
                 "jersey.config.server.provider.classnames",
-                BulletinBoardPeerResource.class.getCanonicalName());
+                BulletinBoardPeerResource.class.getCanonicalName() + ";" + SmileProvider.class.getCanonicalName());
         servletHolder.setInitParameter("id", id.toString());
     }
 
@@ -196,12 +244,22 @@ public class BulletinBoardPeer extends AbstractServer {
         private final int port;
         private final String confPath;
         private final int id;
+        private final String walPath;
+        private final long walSyncInterval;
+        private final int walSyncBatch;
 
         BulletinBoardPeerConfiguration(int port, String confPath, int id) {
+            this(port, confPath, id, null, 0, 1);
+        }
+
+        BulletinBoardPeerConfiguration(int port, String confPath, int id, String walPath, long walSyncInterval, int walSyncBatch) {
             super(BulletinBoardPeer.class);
             this.port = port;
             this.confPath = confPath;
             this.id = id;
+            this.walPath = walPath;
+            this.walSyncInterval = walSyncInterval;
+            this.walSyncBatch = walSyncBatch;
         }
 
         public int getPort() {
@@ -216,5 +274,17 @@ public class BulletinBoardPeer extends AbstractServer {
             return id;
         }
 
+        public String getWalPath() {
+            return walPath;
+        }
+
+        public long getWalSyncInterval() {
+            return walSyncInterval;
+        }
+
+        public int getWalSyncBatch() {
+            return walSyncBatch;
+        }
+
     }
 }
@@ -17,11 +17,17 @@ public class BulletinBoardPeerConfigBuilder implements CommandLineParser.ConfigB
     private static final String ID = "id=";
     private static final String PORT = "port=";
     private static final String CONF = "conf=";
+    private static final String WAL = "wal=";
+    private static final String WAL_SYNC_INTERVAL = "walSyncInterval=";
+    private static final String WAL_SYNC_BATCH = "walSyncBatch=";
 
     //State
     private Integer port = 8080;
     private Integer id = null;
     private String confPath = "conf";
+    private String walPath = null;
+    private long walSyncInterval = 0;
+    private int walSyncBatch = 1000;
 
 
     @Override
@@ -33,6 +39,12 @@ public class BulletinBoardPeerConfigBuilder implements CommandLineParser.ConfigB
             port = Integer.parseInt(intString);
         } else if (cmd.startsWith(CONF)) {
             confPath = cmd.substring(CONF.length());
+        } else if (cmd.startsWith(WAL_SYNC_INTERVAL)) {
+            walSyncInterval = Long.parseLong(cmd.substring(WAL_SYNC_INTERVAL.length()));
+        } else if (cmd.startsWith(WAL_SYNC_BATCH)) {
+            walSyncBatch = Integer.parseInt(cmd.substring(WAL_SYNC_BATCH.length()));
+        } else if (cmd.startsWith(WAL)) {
+            walPath = cmd.substring(WAL.length());
         } else if (cmd.startsWith(ID)) {
             id = Integer.parseInt(cmd.substring(ID.length()));
         } else if (!cmd.equals(SELF)) {
@@ -47,7 +59,12 @@ public class BulletinBoardPeerConfigBuilder implements CommandLineParser.ConfigB
             return null;
         }
 
-        return new BulletinBoardPeer.BulletinBoardPeerConfiguration(port, confPath, id);
+        if (walSyncInterval < 0 || walSyncBatch < 1) {
+            logger.error("walSyncInterval must be non-negative, and walSyncBatch positive. Use -h for help");
+            return null;
+        }
+
+        return new BulletinBoardPeer.BulletinBoardPeerConfiguration(port, confPath, id, walPath, walSyncInterval, walSyncBatch);
     }
 
     @Override
@@ -57,7 +74,13 @@ public class BulletinBoardPeerConfigBuilder implements CommandLineParser.ConfigB
                 "\t  --" + ID + "int\t\tSpecifies the BBPeer's ID in the system\n" +
                 "\t  --" + PORT + "int\t\tSpecifies port to be used. Standard=8081\n" +
                 "\t  --" + CONF + "Path\t\tRelative path to config folder containing; zip file with certificate named BBPeer{id}.zip," +
-                " a file denoted 'BB_input.json' containing common input to all BBPeers'.\n";
+                " a file denoted 'BB_input.json' containing common input to all BBPeers'.\n" +
+                "\t  --" + WAL + "Path\t\tFolder for the write-ahead log of the state, which is replayed on startup." +
+                " If not given, the state is only kept in memory\n" +
+                "\t  --" + WAL_SYNC_INTERVAL + "long\tMilliseconds between syncs of the write-ahead log to disk." +
+                " Standard=0, which syncs every batch of updates before applying them\n" +
+                "\t  --" + WAL_SYNC_BATCH + "int\tNumber of unsynced updates which triggers a sync before the interval has passed." +
+                " Standard=1000\n";
     }
 
     @Override
@@ -65,7 +88,10 @@ public class BulletinBoardPeerConfigBuilder implements CommandLineParser.ConfigB
         return new ArrayList<>(Arrays.asList(
                 ID,
                 PORT,
-                CONF
+                CONF,
+                WAL,
+                WAL_SYNC_INTERVAL,
+                WAL_SYNC_BATCH
         ));
     }
 }
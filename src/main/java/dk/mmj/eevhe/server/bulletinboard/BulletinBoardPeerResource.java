@@ -1,6 +1,7 @@
 package dk.mmj.eevhe.server.bulletinboard;
 
 
+import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.entities.wrappers.*;
 import dk.mmj.eevhe.interfaces.BrachaConsumer;
@@ -12,12 +13,23 @@ import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
 
 import javax.servlet.ServletConfig;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+
+import static dk.mmj.eevhe.client.SmileProvider.APPLICATION_SMILE;
+import static dk.mmj.eevhe.client.SmileProvider.APPLICATION_SMILE_TYPE;
 
 /**
  * Handles requests from Edges
@@ -25,8 +37,12 @@ import java.util.stream.Collectors;
 @Path("/")
 public class BulletinBoardPeerResource {
     private final static Logger logger = LogManager.getLogger(BulletinBoardPeerResource.class);
+    static final long MIN_RECEIPT_TIMEOUT = 1;
+    static final long MAX_RECEIPT_TIMEOUT = 30_000;
     @Context
     ServletConfig servletConfig;
+    @Context
+    HttpHeaders headers;
 
     private BulletinBoardState getState() {
         ServerState serverState = ServerState.getInstance();
@@ -50,9 +66,43 @@ public class BulletinBoardPeerResource {
         return serverState.get(BulletinBoardPeer.SECRET_KEY + "." + getId(), AsymmetricKeyParameter.class);
     }
 
+    private SignedResponseCache getResponseCache() {
+        ServerState serverState = ServerState.getInstance();
+        return serverState.computeIfAbsent("bbResponseCache." + getId(), s -> new SignedResponseCache());
+    }
+
+    /**
+     * Serves a signed response, which is only built, signed and serialized once for each generation of the state,
+     * in the format requested by the client
+     *
+     * @param key        identifies the response
+     * @param generation generation of the state the response is built from, read before building the response
+     * @param response   builds and signs the response
+     * @return the serialized response
+     */
+    private Response cached(String key, long generation, Supplier<SignedEntity<?>> response) {
+        MediaType mediaType = getResponseType();
+        return Response.ok(getResponseCache().get(key, generation, mediaType, response), mediaType).build();
+    }
+
+    /**
+     * @return Smile, if the client prefers it over JSON, otherwise JSON. Wildcards are answered with JSON
+     */
+    private MediaType getResponseType() {
+        for (MediaType accepted : headers.getAcceptableMediaTypes()) {
+            if (!accepted.isWildcardSubtype() && accepted.isCompatible(APPLICATION_SMILE_TYPE)) {
+                return APPLICATION_SMILE_TYPE;
+            }
+            if (accepted.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return MediaType.APPLICATION_JSON_TYPE;
+            }
+        }
+        return MediaType.APPLICATION_JSON_TYPE;
+    }
+
     @GET
     @Path("type")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public SignedEntity<String> getType() {
         logger.info("Received request for server type");
 
@@ -61,7 +111,7 @@ public class BulletinBoardPeerResource {
 
     @POST
     @Path("postBallot")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postBallot(BallotDTO ballot) {
 //        TODO: Issue med Timestamp i PersistedBallot i forhold til MVBA protokol - send evt. ballot rundt i stedet for
 //        TODO: Consensus om timestamp?? unpleasant
@@ -82,51 +132,199 @@ public class BulletinBoardPeerResource {
      */
     @GET
     @Path("result")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<PartialResultWrapper> getResult() {
-        try {
-            return new SignedEntity<>(new PartialResultWrapper(getState().getResults()), getSecretKey());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getResult() {
+        BulletinBoardState state = getState();
+        return cached("result", state.getResultsGeneration(),
+                () -> new SignedEntity<>(new PartialResultWrapper(state.getResults()), getSecretKey()));
     }
 
     @POST
     @Path("result")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postResult(SignedEntity<PartialResultList> partialDecryptions) {
         getConsumer().accept(partialDecryptions);
     }
 
+    /**
+     * Returns ballots in the order they were added, optionally only those after a sequence number,
+     * so readers can fetch only ballots they have not seen before.
+     * <br>
+     * The sequence number of a ballot is its position in the list of all ballots of this peer, starting from 0.
+     * Peers add ballots in the order they reach agreement on them, so sequence numbers differ between peers.
+     * Readers fetching from all peers through an edge therefore give a sequence number for each peer,
+     * as {@code fingerprint:sequenceNumber}, with the fingerprint of the peer's certificate,
+     * see {@link CertificateHelper#fingerprint}. A sequence number without a fingerprint applies to any peer.
+     * <br>
+     * The page is not signed. Instead it holds the signed tree head, which is only signed when ballots are added,
+     * and a proof that the ballots are at their sequence numbers in that tree. A reader can therefore check that a page
+     * continues where it left off, and a stale or replayed page can not make it skip ballots.
+     *
+     * @param after sequence numbers of the last ballot already known. Without one for this peer, ballots are returned from the first
+     * @param limit maximal number of ballots to return, or 0 for no limit
+     * @return the ballots after the sequence number, proven against the current tree head
+     */
     @GET
     @Path("getBallots")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<BallotWrapper> getBallots() {
-        return new SignedEntity<>(new BallotWrapper(getState().getBallots()), getSecretKey());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public BallotPage getBallots(@QueryParam("after") List<String> after,
+                                 @QueryParam("limit") @DefaultValue("0") int limit) {
+        long position;
+        try {
+            position = getPosition(after);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid sequence number: " + e.getMessage());
+        }
+
+        return getState().getBallotPage(position, limit > 0 ? limit : Integer.MAX_VALUE, getSecretKey());
+    }
+
+    /**
+     * @param after sequence numbers, as given to {@link #getBallots(List, int)}
+     * @return the sequence number for this peer, or -1 if none was given
+     */
+    private long getPosition(List<String> after) {
+        long position = -1;
+        for (String value : after) {
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                position = Long.parseLong(value);
+            } else if (value.substring(0, separator).equals(getFingerprint())) {
+                return Long.parseLong(value.substring(separator + 1));
+            }
+        }
+        return position;
+    }
+
+    private String getFingerprint() {
+        ServerState serverState = ServerState.getInstance();
+        return serverState.computeIfAbsent("bbFingerprint." + getId(), s -> {
+            Map<?, ?> peerCertificates = serverState.get(BulletinBoardPeer.PEER_CERTIFICATES, Map.class);
+            try {
+                String certificate = (String) peerCertificates.get(getId());
+                return CertificateHelper.fingerprint(CertificateHelper.readCertificate(certificate.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read own certificate", e);
+            }
+        });
     }
 
+    /**
+     * Like {@link #getBallots(List, int)}, the ballot is proven against the signed tree head, instead of being signed
+     *
+     * @param id id of the voter
+     * @return page with the first ballot cast by the voter
+     */
     @GET
     @Path("getBallot/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<PersistedBallot> getBallot(@PathParam("id") String id) {
-        List<PersistedBallot> ballots = getState().getBallots().stream().filter(b -> b.getId().equals(id)).collect(Collectors.toList());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public BallotPage getBallot(@PathParam("id") String id) {
+        BallotPage page = getState().getBallotPage(id, getSecretKey());
 
-        if (ballots.isEmpty()) {
+        if (page == null) {
             logger.warn("Failed to locate vote with id= " + id);
             throw new NotFoundException("Voter with id " + id + " has not cast a vote");
         }
 
-        if (ballots.size() > 1) {
-            logger.warn("Expected one ballot for voter with id " + id + ", but found " + ballots.size() + " ballots.");
+        return page;
+    }
+
+    /**
+     * Peers add ballots in the order they reach agreement on them, so the head only commits this peer to its own list,
+     * and is checked against the positions in receipts and proofs from this peer only
+     *
+     * @return head of the Merkle tree over all ballots, signed once each time ballots have been added
+     */
+    @GET
+    @Path("treeHead")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public SignedEntity<TreeHead> getTreeHead() {
+        return getState().getSignedTreeHead(getSecretKey());
+    }
+
+    /**
+     * Proves that a ballot is included in the Merkle tree with a given size.
+     * <br>
+     * The proof is not signed, as it is verified against a signed tree head
+     *
+     * @param position sequence number of the ballot, as given in its receipt
+     * @param size     number of ballots in the tree, as given in a tree head
+     * @return the inclusion proof
+     */
+    @GET
+    @Path("inclusionProof/{position}")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public InclusionProof getInclusionProof(@PathParam("position") long position, @QueryParam("size") long size) {
+        try {
+            return getState().getInclusionProof(position, size);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Proves that the Merkle tree with one size is a prefix of the tree with a larger size.
+     * <br>
+     * The proof is not signed, as it is verified against two signed tree heads
+     *
+     * @param from number of ballots in the old tree
+     * @param to   number of ballots in the new tree
+     * @return the consistency proof
+     */
+    @GET
+    @Path("consistencyProof")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public ConsistencyProof getConsistencyProof(@QueryParam("from") long from, @QueryParam("to") long to) {
+        try {
+            return getState().getConsistencyProof(from, to);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
         }
+    }
+
+    /**
+     * Long-polls for a signed receipt for the ballot cast by a voter.
+     * <br>
+     * The response is sent as soon as the ballot is added, or immediately if it already has been.
+     * If no ballot is added before the timeout, the response is 404 NOT FOUND
+     *
+     * @param id       id of the voter
+     * @param timeout  time in ms to wait, see {@link #getReceiptTimeout(long)}
+     * @param response the suspended response
+     */
+    @GET
+    @Path("receipt/{id}")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public void getReceipt(@PathParam("id") String id, @QueryParam("timeout") @DefaultValue("10000") long timeout,
+                           @Suspended AsyncResponse response) {
+        BulletinBoardState state = getState();
+        AsymmetricKeyParameter sk = getSecretKey();
+        CompletableFuture<BallotReceipt> receipt = state.getReceipt(id);
+
+        response.setTimeout(getReceiptTimeout(timeout), TimeUnit.MILLISECONDS);
+        response.setTimeoutHandler(r -> {
+            state.discardPendingReceipt(id, receipt);
+            r.resume(new NotFoundException("Voter with id " + id + " has not cast a vote"));
+        });
+        receipt.thenAccept(r -> response.resume(new SignedEntity<>(r, sk)));
+    }
 
-        return new SignedEntity<>(ballots.get(0), getSecretKey());
+    /**
+     * Limits the time to wait for a receipt to [{@value #MIN_RECEIPT_TIMEOUT};{@value #MAX_RECEIPT_TIMEOUT}] ms.
+     * <br>
+     * A suspended response with a timeout of zero never times out, so a timeout of zero or less
+     * only checks whether the ballot has already been added
+     *
+     * @param timeout requested time in ms to wait
+     * @return the time in ms to wait
+     */
+    static long getReceiptTimeout(long timeout) {
+        return Math.max(MIN_RECEIPT_TIMEOUT, Math.min(timeout, MAX_RECEIPT_TIMEOUT));
     }
 
     @POST
     @Path("commitments")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postCommitments(SignedEntity<CommitmentDTO> commitment) {
         logger.debug("Received commitment from DA with id=" + commitment.getEntity().getId() +
                 ", for protocol=" + commitment.getEntity().getProtocol());
@@ -136,120 +334,117 @@ public class BulletinBoardPeerResource {
 
     @GET
     @Path("commitments")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<CommitmentWrapper> getCommitments() {
-        List<SignedEntity<CommitmentDTO>> list = getState().getSignedCommitments();
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getCommitments() {
+        BulletinBoardState state = getState();
+        long generation = state.getSignedCommitmentsGeneration();
 
-        if (list.isEmpty()) {
+        //Entities are never removed, so the list is empty until the first one is added
+        if (generation == 0) {
             throw new NotFoundException("Voting has not been initialized");
         }
 
-        return new SignedEntity<>(new CommitmentWrapper(list), getSecretKey());
+        return cached("commitments", generation,
+                () -> new SignedEntity<>(new CommitmentWrapper(state.getSignedCommitments()), getSecretKey()));
     }
 
     @POST
     @Path("pedersenComplain")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postPedersenComplaint(SignedEntity<PedersenComplaintDTO> complaint) {
         getConsumer().accept(complaint);
     }
 
     @POST
     @Path("feldmanComplain")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postFeldmanComplaint(SignedEntity<FeldmanComplaintDTO> complaint) {
         getConsumer().accept(complaint);
     }
 
     @GET
     @Path("pedersenComplaints")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<PedersenComplaintWrapper> getPedersenComplaints() {
-        List<SignedEntity<PedersenComplaintDTO>> list = getState().getSignedPedersenComplaints();
-
-        PedersenComplaintWrapper wrapper = new PedersenComplaintWrapper(list != null ? list : new ArrayList<>());
-
-        return new SignedEntity<>(wrapper, getSecretKey());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getPedersenComplaints() {
+        BulletinBoardState state = getState();
+        return cached("pedersenComplaints", state.getSignedPedersenComplaintsGeneration(),
+                () -> new SignedEntity<>(new PedersenComplaintWrapper(state.getSignedPedersenComplaints()), getSecretKey()));
     }
 
     @GET
     @Path("feldmanComplaints")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<FeldmanComplaintWrapper> getFeldmanComplaints() {
-        List<SignedEntity<FeldmanComplaintDTO>> list = getState().getSignedFeldmanComplaints();
-
-        FeldmanComplaintWrapper wrapper = new FeldmanComplaintWrapper(list != null ? list : new ArrayList<>());
-
-        return new SignedEntity<>(wrapper, getSecretKey());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getFeldmanComplaints() {
+        BulletinBoardState state = getState();
+        return cached("feldmanComplaints", state.getSignedFeldmanComplaintsGeneration(),
+                () -> new SignedEntity<>(new FeldmanComplaintWrapper(state.getSignedFeldmanComplaints()), getSecretKey()));
     }
 
     @POST
     @Path("resolveComplaint")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void resolveComplaint(SignedEntity<ComplaintResolveDTO> resolveDTO) {
         getConsumer().accept(resolveDTO);
     }
 
     @GET
     @Path("complaintResolves")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<ComplaintResolveWrapper> getComplaintResolves() {
-        List<SignedEntity<ComplaintResolveDTO>> list = getState().getSignedComplaintResolves();
-
-        ComplaintResolveWrapper wrapper = new ComplaintResolveWrapper(list != null ? list : new ArrayList<>());
-
-        return new SignedEntity<>(wrapper, getSecretKey());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getComplaintResolves() {
+        BulletinBoardState state = getState();
+        return cached("complaintResolves", state.getSignedComplaintResolvesGeneration(),
+                () -> new SignedEntity<>(new ComplaintResolveWrapper(state.getSignedComplaintResolves()), getSecretKey()));
     }
 
     @POST
     @Path("publicInfo")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postPublicInfo(SignedEntity<PartialPublicInfo> info) {
         getConsumer().accept(info);
     }
 
     @GET
     @Path("publicInfo")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<PublicInfoWrapper> getPublicInfo() {
-        List<SignedEntity<PartialPublicInfo>> list = getState().getSignedPartialPublicInfos();
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getPublicInfo() {
+        BulletinBoardState state = getState();
+        long generation = state.getSignedPartialPublicInfosGeneration();
 
-        if (list.isEmpty()) {
+        if (generation == 0) {
             logger.warn("Attempt to fetch public infos before they were created");
             throw new NotFoundException();
         }
 
-        return new SignedEntity<>(new PublicInfoWrapper(list), getSecretKey());
+        return cached("publicInfo", generation,
+                () -> new SignedEntity<>(new PublicInfoWrapper(state.getSignedPartialPublicInfos()), getSecretKey()));
     }
 
     @POST
     @Path("certificates")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postDACertificate(SignedEntity<CertificateDTO> certificate) {
         getConsumer().accept(certificate);
     }
 
     @GET
     @Path("certificates")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<CertificatesWrapper> getDACertificate() {
-        List<SignedEntity<CertificateDTO>> list = getState().getSignedCertificates();
-
-        CertificatesWrapper wrapper = new CertificatesWrapper(list != null ? list : new ArrayList<>());
-
-        return new SignedEntity<>(wrapper, getSecretKey());
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getDACertificate() {
+        BulletinBoardState state = getState();
+        return cached("certificates", state.getSignedCertificatesGeneration(),
+                () -> new SignedEntity<>(new CertificatesWrapper(state.getSignedCertificates()), getSecretKey()));
     }
 
     @GET
     @Path("getCurrentTime")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public SignedEntity<String> getCurrentTime() {
         return new SignedEntity<>(Long.toString(new Date().getTime()), getSecretKey());
     }
 
     @POST
     @Path("BAMessage")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postBAMessage(SignedEntity<BAMessage> message) {
         Communicator communicator = ServerState.getInstance().get("mvba.communicator." + getId(), Communicator.class);
         message.getEntity().getCommunicatorConsumer().accept(communicator, message);
@@ -257,7 +452,7 @@ public class BulletinBoardPeerResource {
 
     @POST
     @Path("BroadcastMessage/{id}")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
     public void postBroadcastMessage(SignedEntity<String> message, @PathParam("id") String identifier) {
         ServerState serverState = ServerState.getInstance();
         BrachaConsumer brachaConsumer = serverState.get("bracha.consumer." + getId(), BrachaConsumer.class);
@@ -267,10 +462,12 @@ public class BulletinBoardPeerResource {
     @SuppressWarnings("unchecked")
     @GET
     @Path("peerCertificates")
-    @Produces(MediaType.APPLICATION_JSON)
-    public SignedEntity<StringListWrapper> getBBPeerCertificates() {
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE})
+    public Response getBBPeerCertificates() {
         Map<Integer, String> peerCertificates = ServerState.getInstance().get(BulletinBoardPeer.PEER_CERTIFICATES, Map.class);
 
-        return new SignedEntity<>(new StringListWrapper(new ArrayList<>(peerCertificates.values())), getSecretKey());
+        //Peer certificates are set once, when the peer is started
+        return cached("peerCertificates", 0,
+                () -> new SignedEntity<>(new StringListWrapper(new ArrayList<>(peerCertificates.values())), getSecretKey()));
     }
 }
@@ -1,38 +1,218 @@
 package dk.mmj.eevhe.server.bulletinboard;
 
+import dk.mmj.eevhe.crypto.BallotDigest;
 import dk.mmj.eevhe.entities.*;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * State wrapper for the Bulletin Board
+ * <br>
+ * Each list of signed entities has a generation, which increases each time an entity is added,
+ * so responses built from a list can be reused until it changes
  */
 public class BulletinBoardState {
-    private final Set<PersistedBallot> ballots = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<PartialResultList>> results = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<PartialPublicInfo>> signedPartialPublicInfos = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<CommitmentDTO>> signedCommitments = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<PedersenComplaintDTO>> signedPedersenComplaints = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<FeldmanComplaintDTO>> signedFeldmanComplaints = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<ComplaintResolveDTO>> signedComplaintResolves = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<SignedEntity<CertificateDTO>> signedCertificates = Collections.synchronizedSet(new LinkedHashSet<>());
-    private final Set<String> hasVoted = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final BallotStore ballots = new BallotStore();
+    private final VersionedSet<SignedEntity<PartialResultList>> results = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<PartialPublicInfo>> signedPartialPublicInfos = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<CommitmentDTO>> signedCommitments = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<PedersenComplaintDTO>> signedPedersenComplaints = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<FeldmanComplaintDTO>> signedFeldmanComplaints = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<ComplaintResolveDTO>> signedComplaintResolves = new VersionedSet<>();
+    private final VersionedSet<SignedEntity<CertificateDTO>> signedCertificates = new VersionedSet<>();
+    private final Map<String, PendingReceipt> receipts = new ConcurrentHashMap<>();
+    private SignedEntity<TreeHead> signedTreeHead;
 
     public List<PersistedBallot> getBallots() {
-        return new ArrayList<>(ballots);
+        return ballots.getAll();
     }
 
+    /**
+     * Returns ballots by their sequence number, which is the position they were added in, as given in their {@link BallotReceipt}.
+     * <br>
+     * Sequence numbers are assigned when ballots are added, and never change,
+     * so readers can fetch only the ballots added since they last asked.
+     * They are local to this state, as each peer adds ballots in the order it reaches agreement on them
+     *
+     * @param after sequence number of the last ballot already known by the reader, or -1 for none
+     * @param limit maximal number of ballots to return
+     * @return ballots with sequence number after the given one, in order
+     */
+    public List<PersistedBallot> getBallots(long after, int limit) {
+        return ballots.getRange((int) Math.min(Integer.MAX_VALUE, Math.max(-1, after) + 1), limit);
+    }
+
+    /**
+     * Returns ballots by their sequence number, like {@link #getBallots(long, int)},
+     * with a proof that they are in the tree with the current signed tree head, see {@link #getSignedTreeHead}.
+     * <br>
+     * The tree head is only signed when ballots have been added, so serving a page signs nothing
+     *
+     * @param after sequence number of the last ballot already known by the reader, or -1 for none
+     * @param limit maximal number of ballots to return
+     * @param sk    key to sign the tree head with
+     * @return ballots with sequence number after the given one, in order
+     */
+    public BallotPage getBallotPage(long after, int limit, AsymmetricKeyParameter sk) {
+        long from = Math.max(-1, after) + 1;
+        return ballots.getPage(getSignedTreeHead(sk), (int) Math.min(Integer.MAX_VALUE, from), limit);
+    }
+
+    /**
+     * @param id id of the voter
+     * @param sk key to sign the tree head with
+     * @return page with the first ballot cast by the voter, proven against the current signed tree head,
+     * or null if the voter has not cast a ballot
+     */
+    public BallotPage getBallotPage(String id, AsymmetricKeyParameter sk) {
+        int position = ballots.getPosition(id);
+        if (position < 0) {
+            return null;
+        }
+
+        //Read after the position, so the tree includes the ballot
+        return ballots.getPage(getSignedTreeHead(sk), position, 1);
+    }
+
+    /**
+     * @param id id of the voter
+     * @return ballots cast by the voter, in the order they were added
+     */
+    public List<PersistedBallot> getBallots(String id) {
+        return ballots.getByVoter(id);
+    }
+
+    /**
+     * Adds a ballot, unless a ballot with the same content has already been added, as determined by {@link BallotDigest}
+     *
+     * @param ballot the ballot
+     */
     public void addBallot(PersistedBallot ballot) {
-        ballots.add(ballot);
-        hasVoted.add(ballot.getId());
+        String digest = BallotDigest.hash(ballot);
+        int position = ballots.add(ballot, digest);
+
+        if (position >= 0) {
+            PendingReceipt pending = receipts.remove(ballot.getId());
+            if (pending != null) {
+                pending.receipt.complete(ballots.getReceipt(ballot.getId()));
+            }
+        }
+    }
+
+    /**
+     * The tree is over the ballots in the order this state added them, so states which added the same ballots
+     * in different orders have different heads
+     *
+     * @return size and root of the Merkle tree over all ballots
+     */
+    public TreeHead getTreeHead() {
+        return ballots.getTreeHead();
+    }
+
+    /**
+     * Returns the current tree head, signed with the given key.
+     * <br>
+     * The signature is only computed when ballots have been added since the last call,
+     * so the cost of signing does not depend on the number of requests, or the number of ballots
+     *
+     * @param sk key to sign the tree head with
+     * @return the signed tree head
+     */
+    public synchronized SignedEntity<TreeHead> getSignedTreeHead(AsymmetricKeyParameter sk) {
+        TreeHead head = ballots.getTreeHead();
+        if (signedTreeHead == null || !signedTreeHead.getEntity().equals(head)) {
+            signedTreeHead = new SignedEntity<>(head, sk);
+        }
+        return signedTreeHead;
+    }
+
+    /**
+     * @param position sequence number of the ballot
+     * @param size     number of ballots in the tree to prove inclusion in
+     * @return proof that the ballot is included in the tree over the first size ballots
+     * @throws IllegalArgumentException if the position is not in such a tree, or fewer ballots have been added
+     */
+    public InclusionProof getInclusionProof(long position, long size) {
+        return ballots.getInclusionProof(toPosition(position), toPosition(size));
+    }
+
+    /**
+     * @param oldSize number of ballots in the old tree
+     * @param newSize number of ballots in the new tree
+     * @return proof that the tree over the first oldSize ballots is a prefix of the tree over the first newSize ballots
+     * @throws IllegalArgumentException if oldSize is larger than newSize, or fewer ballots have been added
+     */
+    public ConsistencyProof getConsistencyProof(long oldSize, long newSize) {
+        return ballots.getConsistencyProof(toPosition(oldSize), toPosition(newSize));
+    }
+
+    private static int toPosition(long value) {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid position or size: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the receipt for the first ballot cast by a voter, which is completed once the ballot is added.
+     * <br>
+     * Receipts for added ballots are built from the ballots, so only receipts still waited for are kept,
+     * and removed once completed.
+     * <br>
+     * Concurrent callers waiting for the same voter share the receipt, and each must call
+     * {@link #discardPendingReceipt(String, CompletableFuture)} if it stops waiting before it is completed
+     *
+     * @param id id of the voter
+     * @return future receipt
+     */
+    public CompletableFuture<BallotReceipt> getReceipt(String id) {
+        BallotReceipt added = ballots.getReceipt(id);
+        if (added != null) {
+            return CompletableFuture.completedFuture(added);
+        }
+
+        PendingReceipt pending = receipts.compute(id, (k, p) -> {
+            PendingReceipt result = p != null ? p : new PendingReceipt();
+            result.waiters++;
+            return result;
+        });
+        //The ballot may have been added after the lookup, before the pending receipt was registered
+        added = ballots.getReceipt(id);
+        if (added != null) {
+            receipts.remove(id, pending);
+            pending.receipt.complete(added);
+        }
+        return pending.receipt;
+    }
+
+    /**
+     * Stops waiting for a receipt, and discards it once no one waits for it, if no ballot has been added for the voter,
+     * so waiting for receipts for voters who never cast a ballot does not use memory.
+     * <br>
+     * Must be called at most once for each call to {@link #getReceipt(String)}
+     *
+     * @param id      id of the voter
+     * @param receipt the receipt returned by {@link #getReceipt(String)}
+     */
+    public void discardPendingReceipt(String id, CompletableFuture<BallotReceipt> receipt) {
+        if (!receipt.isDone()) {
+            receipts.computeIfPresent(id, (k, p) -> p.receipt != receipt || --p.waiters > 0 ? p : null);
+        }
     }
 
     public boolean hasVoted(PersistedBallot ballot) {
-        return hasVoted.contains(ballot.getId());
+        return ballots.hasVoted(ballot.getId());
     }
 
     public List<SignedEntity<PartialResultList>> getResults() {
-        return new ArrayList<>(results);
+        return results.toList();
+    }
+
+    public long getResultsGeneration() {
+        return results.getGeneration();
     }
 
     public void addResult(SignedEntity<PartialResultList> result) {
@@ -40,7 +220,11 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<PartialPublicInfo>> getSignedPartialPublicInfos() {
-        return new ArrayList<>(signedPartialPublicInfos);
+        return signedPartialPublicInfos.toList();
+    }
+
+    public long getSignedPartialPublicInfosGeneration() {
+        return signedPartialPublicInfos.getGeneration();
     }
 
     public void addSignedPartialPublicInfo(SignedEntity<PartialPublicInfo> signedPartialPublicInfo) {
@@ -48,7 +232,11 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<CommitmentDTO>> getSignedCommitments() {
-        return new ArrayList<>(signedCommitments);
+        return signedCommitments.toList();
+    }
+
+    public long getSignedCommitmentsGeneration() {
+        return signedCommitments.getGeneration();
     }
 
     public void addSignedCommitment(SignedEntity<CommitmentDTO> signedCommitment) {
@@ -56,7 +244,11 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<PedersenComplaintDTO>> getSignedPedersenComplaints() {
-        return new ArrayList<>(signedPedersenComplaints);
+        return signedPedersenComplaints.toList();
+    }
+
+    public long getSignedPedersenComplaintsGeneration() {
+        return signedPedersenComplaints.getGeneration();
     }
 
     public void addSignedPedersenComplaint(SignedEntity<PedersenComplaintDTO> signedPedersenComplaint) {
@@ -64,7 +256,11 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<FeldmanComplaintDTO>> getSignedFeldmanComplaints() {
-        return new ArrayList<>(signedFeldmanComplaints);
+        return signedFeldmanComplaints.toList();
+    }
+
+    public long getSignedFeldmanComplaintsGeneration() {
+        return signedFeldmanComplaints.getGeneration();
     }
 
     public void addSignedFeldmanComplaint(SignedEntity<FeldmanComplaintDTO> signedFeldmanComplaint) {
@@ -72,7 +268,11 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<ComplaintResolveDTO>> getSignedComplaintResolves() {
-        return new ArrayList<>(signedComplaintResolves);
+        return signedComplaintResolves.toList();
+    }
+
+    public long getSignedComplaintResolvesGeneration() {
+        return signedComplaintResolves.getGeneration();
     }
 
     public void addSignedComplaintResolve(SignedEntity<ComplaintResolveDTO> signedComplaintResolve) {
@@ -80,10 +280,22 @@ public class BulletinBoardState {
     }
 
     public List<SignedEntity<CertificateDTO>> getSignedCertificates() {
-        return new ArrayList<>(signedCertificates);
+        return signedCertificates.toList();
+    }
+
+    public long getSignedCertificatesGeneration() {
+        return signedCertificates.getGeneration();
     }
 
     public void addSignedCertificate(SignedEntity<CertificateDTO> signedCertificate) {
         signedCertificates.add(signedCertificate);
     }
+
+    /**
+     * A receipt which has not yet been completed, and the number of callers waiting for it
+     */
+    private static class PendingReceipt {
+        private final CompletableFuture<BallotReceipt> receipt = new CompletableFuture<>();
+        private int waiters;
+    }
 }
@@ -0,0 +1,68 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.mmj.eevhe.client.SmileProvider;
+import dk.mmj.eevhe.entities.SignedEntity;
+
+import javax.ws.rs.core.MediaType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of signed, serialized responses from a Bulletin Board Peer.
+ * <br>
+ * Each response is identified by a key, and the generation of the state it was built from.
+ * A response is only built, signed and serialized the first time it is requested for a generation,
+ * and the same bytes are served to every later request, until the generation increases.
+ * Concurrent requests for a stale response wait for a single signature, instead of each signing the same data.
+ */
+class SignedResponseCache {
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the serialized response for the given generation, building it if the cached response is older
+     *
+     * @param key        identifies the response, e.g. the path of the endpoint
+     * @param generation generation of the state the response is built from.
+     *                   Must be read before the state, so a response is never older than its generation
+     * @param mediaType  the media type to serialize the response as, either JSON or Smile
+     * @param response   builds and signs the response
+     * @return the serialized response
+     */
+    byte[] get(String key, long generation, MediaType mediaType, Supplier<SignedEntity<?>> response) {
+        return slots.computeIfAbsent(key, k -> new Slot()).get(generation, isSmile(mediaType), response);
+    }
+
+    private static boolean isSmile(MediaType mediaType) {
+        return SmileProvider.APPLICATION_SMILE_TYPE.isCompatible(mediaType);
+    }
+
+    private static class Slot {
+        private long generation = -1;
+        private SignedEntity<?> entity;
+        private byte[] json;
+        private byte[] smile;
+
+        private synchronized byte[] get(long generation, boolean asSmile, Supplier<SignedEntity<?>> response) {
+            //A request may have read its generation before a concurrent request built a newer response
+            if (entity == null || generation > this.generation) {
+                this.entity = response.get();
+                this.generation = generation;
+                this.json = null;
+                this.smile = null;
+            }
+
+            try {
+                if (asSmile) {
+                    return smile != null ? smile : (smile = SmileProvider.getMapper().writeValueAsBytes(entity));
+                }
+                return json != null ? json : (json = jsonMapper.writeValueAsBytes(entity));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to serialize response", e);
+            }
+        }
+    }
+}
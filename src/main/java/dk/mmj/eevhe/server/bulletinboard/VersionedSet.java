@@ -0,0 +1,47 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set kept in insertion order, which counts how many times it has changed.
+ * <br>
+ * The set only grows, so the generation is also the number of elements,
+ * and responses built from the set can be reused for as long as the generation is unchanged.
+ * <br>
+ * All methods are synchronized on the set.
+ *
+ * @param <T> type of the elements
+ */
+class VersionedSet<T> {
+    private final Set<T> items = new LinkedHashSet<>();
+    private long generation = 0;
+
+    /**
+     * @param item element to add
+     * @return whether the element was added, or was already in the set
+     */
+    synchronized boolean add(T item) {
+        boolean added = items.add(item);
+        if (added) {
+            generation++;
+        }
+        return added;
+    }
+
+    /**
+     * @return copy of the elements, in the order they were added
+     */
+    synchronized List<T> toList() {
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * @return number of times the set has changed
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+}
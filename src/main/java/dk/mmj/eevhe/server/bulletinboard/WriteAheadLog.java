@@ -0,0 +1,424 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only log of the updates applied to a {@link BulletinBoardState}, so a peer can rebuild its state after a restart.
+ * <br>
+ * The log is split into segments, which are files of a fixed size, named by the sequence number of their first record.
+ * Segments are memory-mapped, so appending a record is a copy into memory, and records survive the process crashing
+ * even before they are synced. Each record is its length, a CRC32 of its content and the content.
+ * A record that was only partially written when the machine crashed fails its checksum, and ends the log.
+ * Anything after the end of the log in the last segment is removed on replay, so new records are never followed by old ones.
+ * <br>
+ * Records are synced to disk in batches, with a single fsync covering every record appended since the last one:
+ * <ul>
+ *     <li>With a sync interval of zero, a commit waits for its record to be synced before applying it.
+ *     Concurrent commits share the sync, so the cost is one sequential write per batch of updates, not per update</li>
+ *     <li>With a positive sync interval, commits are applied at once, and a background thread syncs every interval,
+ *     or as soon as the given number of records are waiting. A machine crash can lose at most that window of updates</li>
+ * </ul>
+ * A full segment is synced before the next one is created, so only the last segment can end in a torn record.
+ * <br>
+ * Updates are applied in the order their records are in the log, so replaying the log rebuilds the same state,
+ * with ballots at the same positions.
+ */
+class WriteAheadLog implements Closeable {
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final Logger logger = LogManager.getLogger(WriteAheadLog.class);
+    private static final String SUFFIX = ".wal";
+    private static final int HEADER = 8;
+    private final Path dir;
+    private final int segmentSize;
+    private final long syncInterval;
+    private final int syncBatch;
+    private final ScheduledExecutorService flusher;
+    private final Object applyLock = new Object();
+    private final Set<Segment> unsynced = new LinkedHashSet<>();
+    private Segment current;
+    private long written;
+    private long durable;
+    private long applied;
+    private boolean syncing;
+    private boolean syncRequested;
+    private boolean closed;
+
+    private WriteAheadLog(Path dir, int segmentSize, long syncInterval, int syncBatch) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+        this.syncBatch = syncBatch;
+
+        if (syncInterval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "write-ahead-log-" + dir.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens the log in a directory, creating it if it does not exist, and replays the records already in it
+     *
+     * @param dir          directory holding the segments of the log
+     * @param segmentSize  size of a segment in bytes. Records larger than this get a segment of their own
+     * @param syncInterval milliseconds between syncs. If zero, every commit waits for its record to be synced
+     * @param syncBatch    number of unsynced records which triggers a sync before the interval has passed
+     * @param replay       receives the content of every record in the log, in order
+     * @return the log, ready to have records appended after the replayed ones
+     * @throws IOException if the log could not be read or created, or a record before the last segment is corrupt
+     */
+    static WriteAheadLog open(Path dir, int segmentSize, long syncInterval, int syncBatch, Consumer<byte[]> replay) throws IOException {
+        if (segmentSize <= HEADER || syncInterval < 0 || syncBatch < 1) {
+            throw new IllegalArgumentException("Segment size must exceed " + HEADER + ", sync interval must be non-negative, " +
+                    "and sync batch positive. Segment size: " + segmentSize + ", sync interval: " + syncInterval + ", sync batch: " + syncBatch);
+        }
+
+        Files.createDirectories(dir);
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        //Names are zero-padded, so they sort by sequence number
+        Collections.sort(segments);
+
+        WriteAheadLog log = new WriteAheadLog(dir, segmentSize, syncInterval, syncBatch);
+        try {
+            for (Iterator<Path> it = segments.iterator(); it.hasNext(); ) {
+                Path path = it.next();
+                log.replay(Segment.open(path), !it.hasNext(), replay);
+            }
+            if (log.current == null) {
+                log.current = log.createSegment(segmentSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+
+        log.durable = log.written;
+        log.applied = log.written;
+        logger.info("Replayed " + log.written + " records from " + segments.size() + " segments in " + dir);
+        return log;
+    }
+
+    private void replay(Segment segment, boolean last, Consumer<byte[]> replay) throws IOException {
+        if (segment.firstSequence != written) {
+            segment.close();
+            throw new IOException("Segment " + segment.path + " should start at record " + written);
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        while (buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length == 0) {
+                //Segments are zero-filled, so this is the end of the log.
+                //After a machine crash, pages may have reached the disk out of order, so records can remain after the end.
+                //They must be removed, or appends could end on one of their boundaries, and replay would continue into them
+                if (last && truncate(buffer, start)) {
+                    logger.warn("Discarding data after the end of the log at record " + written + " in " + segment.path);
+                }
+                break;
+            }
+
+            int checksum = buffer.getInt();
+            byte[] record = length > 0 && length <= buffer.remaining() ? new byte[length] : null;
+            if (record != null) {
+                buffer.get(record);
+            }
+            if (record == null || checksum(record) != checksum) {
+                buffer.position(start);
+                if (!last) {
+                    segment.close();
+                    throw new IOException("Corrupt record " + written + " in " + segment.path);
+                }
+
+                logger.warn("Discarding partially written record " + written + " at the end of " + segment.path);
+                truncate(buffer, start);
+                break;
+            }
+
+            replay.accept(record);
+            written++;
+        }
+
+        if (last) {
+            current = segment;
+        } else {
+            segment.close();
+        }
+    }
+
+    /**
+     * Zero-fills a segment from a position, and syncs it if anything was removed
+     *
+     * @param buffer the mapped segment
+     * @param start  position of the new end of the log, where the buffer is left
+     * @return whether any data was removed
+     */
+    private static boolean truncate(MappedByteBuffer buffer, int start) {
+        boolean removed = false;
+        for (int i = start; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                removed = true;
+            }
+        }
+        if (removed) {
+            buffer.force();
+        }
+        buffer.position(start);
+        return removed;
+    }
+
+    /**
+     * Appends a record, and applies the update it describes once every earlier record has been applied.
+     * <br>
+     * If the sync interval is zero, the update is only applied once the record has been synced.
+     *
+     * @param record content of the record, as given to the replay consumer when the log is opened. Must not be empty
+     * @param apply  applies the update to the state
+     */
+    void commit(byte[] record, Runnable apply) {
+        long sequence = append(record);
+
+        synchronized (applyLock) {
+            boolean interrupted = false;
+            while (applied < sequence) {
+                try {
+                    applyLock.wait();
+                } catch (InterruptedException e) {
+                    //The update must still be applied, or every later update would wait forever
+                    interrupted = true;
+                }
+            }
+
+            try {
+                if (syncInterval == 0) {
+                    sync(sequence);
+                }
+                apply.run();
+            } finally {
+                applied++;
+                applyLock.notifyAll();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private synchronized long append(byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("Log in " + dir + " is closed");
+        }
+        if (record.length == 0) {
+            throw new IllegalArgumentException("Records must not be empty");
+        }
+
+        int size = HEADER + record.length;
+        if (current.buffer.remaining() < size) {
+            try {
+                current = createSegment(Math.max(segmentSize, size));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create segment in " + dir, e);
+            }
+        }
+
+        MappedByteBuffer buffer = current.buffer;
+        buffer.putInt(record.length);
+        buffer.putInt(checksum(record));
+        buffer.put(record);
+        unsynced.add(current);
+
+        if (flusher != null && !syncRequested && written + 1 - durable >= syncBatch) {
+            syncRequested = true;
+            flusher.execute(this::sync);
+        }
+        return written++;
+    }
+
+    /**
+     * Syncs every record appended so far
+     */
+    void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = written - 1;
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Waits until the record with the given sequence number is synced.
+     * <br>
+     * If no sync is running, the caller syncs every record appended so far. Otherwise it waits for the running sync,
+     * which may already cover the record
+     */
+    private void sync(long sequence) {
+        boolean interrupted = false;
+        while (true) {
+            List<Segment> segments;
+            long target;
+            synchronized (this) {
+                while (syncing && durable <= sequence) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (durable > sequence) {
+                    break;
+                }
+
+                syncing = true;
+                syncRequested = false;
+                target = written;
+                segments = new ArrayList<>(unsynced);
+                unsynced.clear();
+            }
+
+            //Appends continue while syncing, and are covered by the next sync
+            boolean success = false;
+            try {
+                for (Segment segment : segments) {
+                    segment.buffer.force();
+                }
+                success = true;
+            } finally {
+                synchronized (this) {
+                    syncing = false;
+                    if (success) {
+                        durable = target;
+                    } else {
+                        unsynced.addAll(segments);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Segment createSegment(int capacity) throws IOException {
+        if (current != null) {
+            //Replay refuses a torn record before the last segment, so the old segment must be durable before the new one is
+            current.buffer.force();
+            unsynced.remove(current);
+        }
+
+        Segment segment = Segment.create(dir.resolve(String.format("%020d", written) + SUFFIX), written, capacity);
+
+        //Makes the new file itself durable, not just its content
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            logger.debug("Unable to sync directory " + dir + ", which is not supported on all platforms", e);
+        }
+
+        if (current != null) {
+            logger.info("Log in " + dir + " continues in segment starting at record " + written);
+            current.close();
+        }
+        return segment;
+    }
+
+    /**
+     * Syncs all records, and closes the log. Closing a closed log has no effect
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (current != null) {
+            sync();
+            current.close();
+        }
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A memory-mapped file of the log
+     */
+    private static class Segment {
+        private final Path path;
+        private final long firstSequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            long firstSequence;
+            try {
+                firstSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Unexpected segment name " + path, e);
+            }
+
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+
+        private static Segment create(Path path, long firstSequence, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            //Mapping beyond the end grows the file, filled with zeroes
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            channel.force(true);
+            return new Segment(path, firstSequence, channel, buffer);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close segment " + path, e);
+            }
+        }
+    }
+}
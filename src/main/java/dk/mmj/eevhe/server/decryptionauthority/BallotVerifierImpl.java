@@ -0,0 +1,32 @@
+package dk.mmj.eevhe.server.decryptionauthority;
+
+import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
+import dk.mmj.eevhe.entities.BallotDTO;
+import dk.mmj.eevhe.entities.PublicKey;
+import dk.mmj.eevhe.interfaces.BallotVerifier;
+
+import java.util.List;
+
+/**
+ * Verifies ballots under a public key, using batch verification when given a list of ballots
+ */
+public class BallotVerifierImpl implements BallotVerifier {
+    private final PublicKey publicKey;
+
+    /**
+     * @param publicKey key the votes are encrypted under
+     */
+    public BallotVerifierImpl(PublicKey publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    @Override
+    public boolean verifyBallot(BallotDTO ballotDTO) {
+        return VoteProofUtils.verifyBallot(ballotDTO, publicKey);
+    }
+
+    @Override
+    public <T extends BallotDTO> List<T> verifyBallots(List<T> ballots) {
+        return VoteProofUtils.verifyBallots(ballots, publicKey);
+    }
+}
@@ -1,7 +1,9 @@
 package dk.mmj.eevhe.server.decryptionauthority;
 
 import dk.mmj.eevhe.crypto.ElGamal;
-import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.Groups;
+import dk.mmj.eevhe.crypto.TallyEngine;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.interfaces.BallotFetcher;
@@ -12,10 +14,9 @@ import org.apache.logging.log4j.Logger;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class DecrypterImpl implements Decrypter {
 
@@ -23,14 +24,41 @@ public class DecrypterImpl implements Decrypter {
     private final BallotFetcher ballotFetcher;
     private final BallotVerifier ballotVerifier;
     private final List<Candidate> candidates;
+    private final TallyEngine tallyEngine;
+    private final boolean aggregateProofs;
     private final int id;
+    private IncrementalTally tally;
 
     public DecrypterImpl(int id, BallotFetcher ballotFetcher, BallotVerifier ballotVerifier, List<Candidate> candidates) {
+        this(id, ballotFetcher, ballotVerifier, candidates, TallyEngine.getDefault(), false);
+    }
+
+    /**
+     * @param id              id of the decryption authority
+     * @param ballotFetcher   fetches ballots from the bulletin board
+     * @param ballotVerifier  verifies the fetched ballots
+     * @param candidates      list of candidates
+     * @param tallyEngine     engine summing the votes for all candidates
+     * @param aggregateProofs whether to prove all partial decryptions using a single aggregated proof,
+     *                        rather than a proof for each candidate
+     */
+    public DecrypterImpl(int id, BallotFetcher ballotFetcher, BallotVerifier ballotVerifier, List<Candidate> candidates,
+                         TallyEngine tallyEngine, boolean aggregateProofs) {
         this.id = id;
         this.logger = LogManager.getLogger(DecrypterImpl.class.getName() + " ID=" + id);
         this.ballotFetcher = ballotFetcher;
         this.ballotVerifier = ballotVerifier;
         this.candidates = candidates;
+        this.tallyEngine = tallyEngine;
+        this.aggregateProofs = aggregateProofs;
+    }
+
+    @Override
+    public void update(long endTime, PartialKeyPair keyPair) {
+        int added = getTally(keyPair.getPublicKey()).update(endTime);
+        if (added > 0) {
+            logger.info("Added " + added + " ballots to running tally");
+        }
     }
 
     @Override
@@ -39,47 +67,61 @@ public class DecrypterImpl implements Decrypter {
         PublicKey pk = keyPair.getPublicKey();
         PartialSecretKey sk = keyPair.getPartialSecretKey();
 
-        logger.info("Terminating voting - Fetching ballots");
-        List<PersistedBallot> receivedBallots = ballotFetcher.getBallots();
+        logger.info("Terminating voting - Adding remaining ballots to tally");
+        IncrementalTally tally = getTally(pk);
+        int added = tally.update(endTime);
+        logger.info("Added " + added + " remaining ballots");
 
-        if (receivedBallots == null || receivedBallots.size() < 1) {
+        if (tally.getSeenCount() < 1) {
             logger.error("No votes registered. Terminating server without result");
             return null;
         }
 
-        logger.info("Verifying ballots");
-        List<PersistedBallot> ballots = receivedBallots.parallelStream()
-                .filter(v -> v.getTs().getTime() < endTime)
-                .filter(ballotVerifier::verifyBallot).collect(Collectors.toList());
-
-        if (ballots.isEmpty()) {
+        if (tally.getBallotCount() < 1) {
             logger.error("No votes - returning null");
             return null;
         }
 
-        logger.info("Summing votes");
-        Map<Integer, List<CandidateVoteDTO>> votes = new HashMap<>(candidates.size());
-        ballots.forEach(b -> {
-            for (int i = 0; i < candidates.size(); i++) {
-                List<CandidateVoteDTO> lst = votes.computeIfAbsent(i, j -> new ArrayList<>());
-                lst.add(b.getCandidateVotes().get(i));
-            }
-        });
-
         logger.info("Beginning partial decryption");
 
-        PublicKey partialPublicKey = new PublicKey(keyPair.getPartialPublicKey(), pk.getG(), pk.getQ());
+        List<CipherText> sums = tally.getSums();
+        Group group = Groups.forKey(pk);
+        PublicKey partialPublicKey = Groups.publicKey(keyPair.getPartialPublicKey(), pk.getG(), group);
+
+        BigInteger secretValue = sk.getSecretValue();
+        List<BigInteger> decryptions = IntStream.range(0, candidates.size()).parallel()
+                .mapToObj(i -> ElGamal.partialDecryption(sums.get(i).getC(), secretValue, group))
+                .collect(Collectors.toList());
+        logger.info("Partially decrypted " + candidates.size() + " candidates");
 
         ArrayList<PartialResult> partialResults = new ArrayList<>();
+        if (aggregateProofs) {
+            DLogProofUtils.Proof proof = DLogProofUtils.generateAggregateProof(sums, decryptions, secretValue, partialPublicKey, id);
+            for (int i = 0; i < candidates.size(); i++) {
+                partialResults.add(new PartialResult(id, decryptions.get(i), null, sums.get(i)));
+            }
+
+            return new PartialResultList(partialResults, tally.getBallotCount(), id, proof);
+        }
+
         for (int i = 0; i < candidates.size(); i++) {
-            CipherText sum = SecurityUtils.concurrentVoteSum(votes.get(i), pk, 1000);
-            BigInteger result = ElGamal.partialDecryption(sum.getC(), sk.getSecretValue(), sk.getP());
-            DLogProofUtils.Proof proof = DLogProofUtils.generateProof(sum, sk.getSecretValue(), partialPublicKey, id);
+            CipherText sum = sums.get(i);
+            DLogProofUtils.Proof proof = DLogProofUtils.generateProof(sum, secretValue, partialPublicKey, id);
 
-            partialResults.add(new PartialResult(id, result, proof, sum));
-            logger.info("Partially decrypted " + (i + 1) + "/" + candidates.size() + " candidates");
+            partialResults.add(new PartialResult(id, decryptions.get(i), proof, sum));
         }
 
-        return new PartialResultList(partialResults, ballots.size(), id);
+        return new PartialResultList(partialResults, tally.getBallotCount(), id);
+    }
+
+    /**
+     * @param publicKey key the votes are encrypted under
+     * @return the running tally, created on first use
+     */
+    private synchronized IncrementalTally getTally(PublicKey publicKey) {
+        if (tally == null) {
+            tally = new IncrementalTally(ballotFetcher, ballotVerifier, candidates.size(), publicKey, tallyEngine);
+        }
+        return tally;
     }
 }
@@ -3,12 +3,13 @@ package dk.mmj.eevhe.server.decryptionauthority;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.eSoftware.commandLineParser.AbstractInstanceCreatingConfiguration;
+import dk.mmj.eevhe.client.BallotCursor;
 import dk.mmj.eevhe.client.FetchingUtilities;
+import dk.mmj.eevhe.crypto.TallyEngine;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.CertificateProviderImpl;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
-import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
 import dk.mmj.eevhe.entities.*;
 import dk.mmj.eevhe.entities.wrappers.CertificatesWrapper;
 import dk.mmj.eevhe.interfaces.Decrypter;
@@ -44,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
@@ -55,6 +57,7 @@ import static dk.mmj.eevhe.client.SSLHelper.configureWebTarget;
  * Decryption Authority Implementation
  */
 public class DecryptionAuthority extends AbstractServer {
+    private static final long TALLY_UPDATE_INTERVAL_SECONDS = 10;
     private final Logger logger;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final JerseyWebTarget bulletinBoard;
@@ -64,6 +67,8 @@ public class DecryptionAuthority extends AbstractServer {
     private final DecryptionAuthorityInput input;
     private final long endTime;
     private final List<Candidate> candidates;
+    private final TallyEngine tallyEngine;
+    private final boolean aggregateProofs;
     private String certString;
     private AsymmetricKeyParameter electionPk;
     private AsymmetricKeyParameter sk;
@@ -73,6 +78,7 @@ public class DecryptionAuthority extends AbstractServer {
     private Iterator<DKG.Step> dkgSteps;
     private PartialKeyPair keyPair;
     private List<X509CertificateHolder> bbCertificates;
+    private ScheduledFuture<?> tallyUpdates;
 
     public DecryptionAuthority(DecryptionAuthorityConfiguration configuration) {
         logger = LogManager.getLogger(DecryptionAuthority.class + " " + configuration.id + ":");
@@ -84,6 +90,8 @@ public class DecryptionAuthority extends AbstractServer {
         }
 
         bulletinBoard = configureWebTarget(logger, configuration.bulletinBoard);
+        tallyEngine = configuration.tallyThreads > 0 ? new TallyEngine(configuration.tallyThreads) : TallyEngine.getDefault();
+        aggregateProofs = configuration.aggregateProofs;
 
         Path conf = Paths.get(configuration.confPath);
         if (!Files.exists(conf) || !Files.exists(conf)) {
@@ -125,7 +133,9 @@ public class DecryptionAuthority extends AbstractServer {
             BigInteger p = new BigInteger(Hex.decode(input.getpHex()));
             BigInteger g = new BigInteger(Hex.decode(input.getgHex()));
             BigInteger e = new BigInteger(Hex.decode(input.geteHex()));
-            BigInteger q = p.subtract(BigInteger.ONE).divide(BigInteger.valueOf(2));
+            BigInteger q = input.getqHex() != null
+                    ? new BigInteger(Hex.decode(input.getqHex()))
+                    : p.subtract(BigInteger.ONE).divide(BigInteger.valueOf(2));
             params = new KeyGenParams(p, q, g, e);
             endTime = input.getEndTime();
             long relativeEndTime = endTime - new Date().getTime();
@@ -222,10 +232,14 @@ public class DecryptionAuthority extends AbstractServer {
             );
 
             decrypter = new DecrypterImpl(id,
-                    () -> FetchingUtilities.getBallots(logger, bulletinBoard, getBBPeerCertificates()),
-                    b -> VoteProofUtils.verifyBallot(b, keyPair.getPublicKey()),
-                    candidates
+                    new BallotCursor(logger, bulletinBoard, this::getBBPeerCertificates),
+                    new BallotVerifierImpl(keyPair.getPublicKey()),
+                    candidates,
+                    tallyEngine,
+                    aggregateProofs
             );
+            tallyUpdates = scheduler.scheduleWithFixedDelay(this::updateTally,
+                    TALLY_UPDATE_INTERVAL_SECONDS, TALLY_UPDATE_INTERVAL_SECONDS, TimeUnit.SECONDS);
 
             Response resp = bulletinBoard.path("publicInfo").request().post(Entity.entity(new SignedEntity<>(ppi, sk), MediaType.APPLICATION_JSON));
             if (resp.getStatus() != 204) {
@@ -250,6 +264,21 @@ public class DecryptionAuthority extends AbstractServer {
         return this.id + "secret:" + id;
     }
 
+    /**
+     * Adds ballots cast since last update to the running tally, leaving only the final delta for {@link #terminateVoting()}
+     */
+    private void updateTally() {
+        if (new Date().getTime() >= endTime) {
+            return;
+        }
+
+        try {
+            decrypter.update(endTime, keyPair);
+        } catch (Exception e) {
+            logger.warn("Failed to update running tally. Retrying in " + TALLY_UPDATE_INTERVAL_SECONDS + "s", e);
+        }
+    }
+
     private void terminateVoting() {
         Long bulletinBoardTime = new Long(bulletinBoard.path("getCurrentTime").request().get(String.class));
 
@@ -261,6 +290,10 @@ public class DecryptionAuthority extends AbstractServer {
             return;
         }
 
+        if (tallyUpdates != null) {
+            tallyUpdates.cancel(false);
+        }
+
         PartialResultList res = decrypter.generatePartialResult(endTime, keyPair);
         if (res == null) {
             logger.info("No result to post");
@@ -313,14 +346,19 @@ public class DecryptionAuthority extends AbstractServer {
         private final String confPath;
         private final int timeCorrupt;
         private final int id;
+        private final int tallyThreads;
+        private final boolean aggregateProofs;
 
-        DecryptionAuthorityConfiguration(int port, String bulletinBoard, String confPath, int id, int timeCorrupt) {
+        DecryptionAuthorityConfiguration(int port, String bulletinBoard, String confPath, int id, int timeCorrupt,
+                                         int tallyThreads, boolean aggregateProofs) {
             super(DecryptionAuthority.class);
             this.port = port;
             this.bulletinBoard = bulletinBoard;
             this.id = id;
             this.confPath = confPath;
             this.timeCorrupt = timeCorrupt;
+            this.tallyThreads = tallyThreads;
+            this.aggregateProofs = aggregateProofs;
         }
 
         public int getPort() {
@@ -343,6 +381,14 @@ public class DecryptionAuthority extends AbstractServer {
             return id;
         }
 
+        public int getTallyThreads() {
+            return tallyThreads;
+        }
+
+        public boolean isAggregateProofs() {
+            return aggregateProofs;
+        }
+
     }
 
     public static class KeyGenParams implements ExtendedKeyGenerationParameters {
@@ -20,6 +20,8 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
     private static final String BULLETIN_BOARD_2 = "bulletinBoard=";
     private static final String CONF = "conf=";
     private static final String CORRUPT = "timeCorrupt=";
+    private static final String TALLY_THREADS = "tallyThreads=";
+    private static final String AGGREGATE_PROOFS = "aggregateProofs=";
 
     //State
     private Integer port = 8080;
@@ -27,6 +29,8 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
     private String bulletinBoard = "https://localhost:8080";
     private String confPath = "";
     private Integer timeCorrupt = 0;
+    private Integer tallyThreads = 0;
+    private boolean aggregateProofs = true;
 
     @Override
     public void applyCommand(CommandLineParser.Command command) {
@@ -43,6 +47,10 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
             confPath = cmd.substring(CONF.length());
         } else if (cmd.startsWith(CORRUPT)) {
             timeCorrupt = Integer.parseInt(cmd.substring(CORRUPT.length()));
+        } else if (cmd.startsWith(TALLY_THREADS)) {
+            tallyThreads = Integer.parseInt(cmd.substring(TALLY_THREADS.length()));
+        } else if (cmd.startsWith(AGGREGATE_PROOFS)) {
+            aggregateProofs = Boolean.parseBoolean(cmd.substring(AGGREGATE_PROOFS.length()));
         } else if (cmd.startsWith(ID)) {
             id = Integer.parseInt(cmd.substring(ID.length()));
         } else if (!cmd.equals(SELF)) {
@@ -57,7 +65,7 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
             return null;
         }
 
-        return new DecryptionAuthority.DecryptionAuthorityConfiguration(port, bulletinBoard, confPath, id, timeCorrupt);
+        return new DecryptionAuthority.DecryptionAuthorityConfiguration(port, bulletinBoard, confPath, id, timeCorrupt, tallyThreads, aggregateProofs);
     }
 
     @Override
@@ -69,7 +77,9 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
                 "\t  --" + BULLETIN_BOARD_2 + "/" + BULLETIN_BOARD_1 + "ip:port location bulletin board to be used\n" +
                 "\t  --" + CORRUPT + "int\t\tInteger specifying with what offset a timeCorrupt DA tries to decrypt with." +
                 "\t  --" + CONF + "Path\t\tRelative path to config folder containing; zip file with certificate and private key named DA{id}.zip," +
-                " a file denoted 'common_input.json' containing common input to all DAs and list of candidates 'candidates.json'.\n";
+                " a file denoted 'common_input.json' containing common input to all DAs and list of candidates 'candidates.json'.\n" +
+                "\t  --" + TALLY_THREADS + "int\tNumber of threads used for tallying votes. Standard=0, sharing the common fork-join pool\n" +
+                "\t  --" + AGGREGATE_PROOFS + "bool\tWhether to prove all partial decryptions with a single proof. Standard=true\n";
 
     }
 
@@ -81,7 +91,9 @@ public class DecryptionAuthorityConfigBuilder implements CommandLineParser.Confi
                 BULLETIN_BOARD_1,
                 BULLETIN_BOARD_2,
                 CONF,
-                CORRUPT
+                CORRUPT,
+                TALLY_THREADS,
+                AGGREGATE_PROOFS
         ));
     }
 }
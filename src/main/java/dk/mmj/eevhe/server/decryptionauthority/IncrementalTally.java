@@ -0,0 +1,143 @@
+package dk.mmj.eevhe.server.decryptionauthority;
+
+import dk.mmj.eevhe.crypto.BallotColumns;
+import dk.mmj.eevhe.crypto.CipherTextAccumulator;
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.Groups;
+import dk.mmj.eevhe.crypto.TallyEngine;
+import dk.mmj.eevhe.entities.CipherText;
+import dk.mmj.eevhe.entities.PersistedBallot;
+import dk.mmj.eevhe.entities.PublicKey;
+import dk.mmj.eevhe.interfaces.BallotFetcher;
+import dk.mmj.eevhe.interfaces.BallotVerifier;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Running, verified, per-candidate sum of the ballots on the bulletin board.
+ * <br>
+ * Each {@link #update(long)} fetches the ballots, and verifies and sums only those not seen before,
+ * so ballots can be folded in while voting is still open, leaving only the final delta once it closes.
+ * <br>
+ * The fetcher must only ever append to the list of ballots it returns, like {@link dk.mmj.eevhe.client.BallotCursor},
+ * which also removes duplicates. Ballots are then recognized by their position in the list, so the tally holds no ids.
+ * <br>
+ * Valid ballots are appended to a {@link BallotColumns} store, rather than kept as objects, so the tally holds no proofs.
+ * Ballots cast too late are filtered out by the store, using {@link BallotColumns#castBefore(long, int)}.
+ * <br>
+ * Updates are synchronized, so a final update waits for one in progress rather than folding ballots twice.
+ */
+public class IncrementalTally {
+    private final BallotFetcher ballotFetcher;
+    private final BallotVerifier ballotVerifier;
+    private final int candidates;
+    private final PublicKey publicKey;
+    private final TallyEngine tallyEngine;
+    private BallotColumns columns;
+    private CipherTextAccumulator[] sums;
+    private int seen;
+    private int counted;
+
+    /**
+     * @param ballotFetcher  fetches all ballots from the bulletin board
+     * @param ballotVerifier verifies new ballots
+     * @param candidates     number of candidates on each ballot
+     * @param publicKey      key the votes are encrypted under
+     * @param tallyEngine    engine summing new ballots
+     */
+    public IncrementalTally(BallotFetcher ballotFetcher, BallotVerifier ballotVerifier, int candidates,
+                            PublicKey publicKey, TallyEngine tallyEngine) {
+        this.ballotFetcher = ballotFetcher;
+        this.ballotVerifier = ballotVerifier;
+        this.candidates = candidates;
+        this.publicKey = publicKey;
+        this.tallyEngine = tallyEngine;
+    }
+
+    /**
+     * Fetches ballots, and folds those cast before endTime, which were not seen by a previous update, into the tally.
+     * <br>
+     * Invalid ballots, including those without a vote for each candidate, are discarded, and not verified again by later updates.
+     * The same is true for ballots cast after endTime, so endTime must be the same in every update.
+     *
+     * @param endTime end of the election. Ballots cast later are ignored
+     * @return number of ballots added to the tally
+     */
+    public synchronized int update(long endTime) {
+        List<PersistedBallot> fetched = ballotFetcher.getBallots();
+        if (fetched == null || fetched.size() <= seen) {
+            return 0;
+        }
+
+        List<PersistedBallot> newBallots = fetched.subList(seen, fetched.size()).stream()
+                .filter(b -> b.getCandidateVotes() != null && b.getCandidateVotes().size() == candidates)
+                .collect(Collectors.toList());
+        seen = fetched.size();
+        if (newBallots.isEmpty()) {
+            return 0;
+        }
+
+        List<PersistedBallot> valid = ballotVerifier.verifyBallots(newBallots);
+        if (valid.isEmpty()) {
+            return 0;
+        }
+
+        if (columns == null) {
+            Group group = Groups.forKey(publicKey);
+            columns = new BallotColumns(group, candidates);
+            sums = new CipherTextAccumulator[candidates];
+            for (int i = 0; i < candidates; i++) {
+                sums[i] = new CipherTextAccumulator(group);
+            }
+        }
+
+        int from = columns.size();
+        columns.appendAll(valid);
+        BitSet rows = columns.castBefore(endTime, from);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<CipherText> delta = tallyEngine.sumColumns(columns, rows, 1000);
+        for (int i = 0; i < candidates; i++) {
+            sums[i].add(delta.get(i));
+        }
+
+        int added = rows.cardinality();
+        counted += added;
+        return added;
+    }
+
+    /**
+     * @return number of valid ballots in the tally
+     */
+    public synchronized int getBallotCount() {
+        return counted;
+    }
+
+    /**
+     * @return number of ballots seen, valid or not
+     */
+    public synchronized int getSeenCount() {
+        return seen;
+    }
+
+    /**
+     * @return the sum of votes for each candidate, or an empty list if no valid ballots have been added
+     */
+    public synchronized List<CipherText> getSums() {
+        if (sums == null) {
+            return Collections.emptyList();
+        }
+
+        List<CipherText> result = new ArrayList<>(candidates);
+        for (CipherTextAccumulator sum : sums) {
+            result.add(sum.getSum());
+        }
+        return result;
+    }
+}
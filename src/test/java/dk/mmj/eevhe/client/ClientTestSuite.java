@@ -12,6 +12,10 @@ import org.junit.runners.Suite;
         TestFetchingUtilities.class,
         TestSSLHelper.class,
         TestVoter.class,
+        TestLatencyHistogram.class,
+        TestLoadGenerator.class,
+        TestSmileProvider.class,
+        TestBallotCursor.class,
 })
 public class ClientTestSuite {
 }
@@ -0,0 +1,298 @@
+package dk.mmj.eevhe.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import dk.mmj.eevhe.TestUsingBouncyCastle;
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
+import dk.mmj.eevhe.crypto.signature.CertificateHelper;
+import dk.mmj.eevhe.crypto.signature.KeyHelper;
+import dk.mmj.eevhe.entities.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.util.PrivateKeyFactory;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestBallotCursor extends TestUsingBouncyCastle {
+    private static final Logger logger = LogManager.getLogger(TestBallotCursor.class);
+    private final List<Peer> peers = new ArrayList<>();
+    private List<X509CertificateHolder> certificates;
+    private WebTarget bulletinBoard;
+
+    /**
+     * Simulates the bulletin board with a number of peers, each with its own list of ballots, and its own key
+     */
+    private void setUp(int peerCount) throws Exception {
+        AsymmetricKeyParameter electionSk = KeyHelper.readKey(Paths.get("certs/test_glob_key.pem"));
+        AlgorithmIdentifier signatureAlgorithm = new DefaultSignatureAlgorithmIdentifierFinder().find("SHA256WITHRSA");
+        AlgorithmIdentifier digestAlgorithm = new DefaultDigestAlgorithmIdentifierFinder().find("SHA-256");
+
+        for (int i = 1; i <= peerCount; i++) {
+            java.security.KeyPair keyPair = KeyHelper.generateRSAKeyPair();
+            X509CertificateHolder cert = new X509v3CertificateBuilder(
+                    new X500Name("CN=EEVHE_TESTSUITE"),
+                    BigInteger.valueOf(i),
+                    new Date(), new Date(System.currentTimeMillis() + (60 * 1000)),
+                    new X500Name("CN=BB_PEER" + i),
+                    new SubjectPublicKeyInfo(signatureAlgorithm, keyPair.getPublic().getEncoded())
+            ).build(new BcRSAContentSignerBuilder(signatureAlgorithm, digestAlgorithm).build(electionSk));
+
+            peers.add(new Peer(cert, PrivateKeyFactory.createKey(keyPair.getPrivate().getEncoded())));
+        }
+        certificates = new ArrayList<>();
+        peers.forEach(p -> certificates.add(p.cert));
+
+        WebTarget ballotsTarget = target(new ArrayList<>());
+        bulletinBoard = mock(WebTarget.class);
+        when(bulletinBoard.path("getBallots")).thenReturn(ballotsTarget);
+    }
+
+    /**
+     * @param params query parameters given so far, as alternating names and values
+     * @return target which answers with a page from each peer, based on the query parameters
+     */
+    private WebTarget target(List<Object> params) throws JsonProcessingException {
+        WebTarget target = mock(WebTarget.class);
+        when(target.queryParam(anyString(), any())).thenAnswer(invocation -> {
+            List<Object> extended = new ArrayList<>(params);
+            extended.add(invocation.getArgument(0));
+            extended.add(invocation.getArgument(1));
+            return target(extended);
+        });
+
+        Invocation.Builder builder = mock(Invocation.Builder.class);
+        when(target.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenAnswer(invocation -> respond(params));
+        return target;
+    }
+
+    private byte[] respond(List<Object> params) throws IOException {
+        int limit = Integer.MAX_VALUE;
+        List<String> after = new ArrayList<>();
+        for (int i = 0; i < params.size(); i += 2) {
+            if ("limit".equals(params.get(i))) {
+                limit = (int) params.get(i + 1);
+            } else if ("after".equals(params.get(i))) {
+                after.add((String) params.get(i + 1));
+            }
+        }
+
+        List<BallotPage> response = new ArrayList<>();
+        for (Peer peer : peers) {
+            String fingerprint = CertificateHelper.fingerprint(peer.cert);
+            long position = after.stream()
+                    .filter(a -> a.startsWith(fingerprint + ":"))
+                    .mapToLong(a -> Long.parseLong(a.substring(fingerprint.length() + 1)))
+                    .findAny().orElse(-1);
+            peer.requested.add(position);
+
+            MerkleTree tree = new MerkleTree();
+            peer.ballots.forEach(b -> tree.append(BallotDigest.leaf(b)));
+            int size = tree.size();
+            SignedEntity<TreeHead> head = new SignedEntity<>(new TreeHead(size, Hex.toHexString(tree.root(size))), peer.sk);
+
+            int from = peer.replayFrom >= 0 ? peer.replayFrom : (int) position + 1;
+            int to = (int) Math.min(size, (long) from + limit);
+            BallotPage page = from < to
+                    ? new BallotPage(head, from, new ArrayList<>(peer.ballots.subList(from, to)), hex(tree.rangeProof(from, to, size)))
+                    : new BallotPage(head, from, new ArrayList<>(), new ArrayList<>());
+            if (peer.tamper != null) {
+                peer.tamper.accept(page);
+            }
+            response.add(page);
+        }
+
+        return SmileProvider.getMapper().writerFor(new TypeReference<List<BallotPage>>() {
+        }).writeValueAsBytes(response);
+    }
+
+    private static List<String> hex(List<byte[]> hashes) {
+        return hashes.stream().map(Hex::toHexString).collect(Collectors.toList());
+    }
+
+    private PersistedBallot ballot(String id, long ts) {
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO candidateVote = new CandidateVoteDTO(new CipherText(valueOf(1), valueOf(684983)), id, proof);
+        return new PersistedBallot(new BallotDTO(Collections.singletonList(candidateVote), id, proof)).setTs(new Date(ts));
+    }
+
+    @Test
+    public void shouldOnlyFetchNewBallots() throws Exception {
+        setUp(1);
+        Peer peer = peers.get(0);
+        for (int i = 0; i < 5; i++) {
+            peer.ballots.add(ballot("voter" + i, i));
+        }
+
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates, 2);
+
+        assertEquals("Wrong ballots fetched", peer.ballots, cursor.getBallots());
+        assertEquals("Should fetch pages until one is not full", Arrays.asList(-1L, 1L, 3L), peer.requested);
+
+        peer.requested.clear();
+        peer.ballots.add(ballot("voter5", 5));
+        peer.ballots.add(ballot("voter6", 6));
+
+        assertEquals("New ballots should be added to the fetched ones", peer.ballots, cursor.getBallots());
+        assertEquals("Should only fetch ballots after the last one fetched", Arrays.asList(4L, 6L), peer.requested);
+    }
+
+    @Test
+    public void shouldAcceptBallotsOnceReportedByMajorityInAnyOrder() throws Exception {
+        setUp(4);
+        PersistedBallot x = ballot("x", 1000);
+        PersistedBallot y = ballot("y", 2000);
+        peers.get(0).ballots.add(x);
+        peers.get(1).ballots.add(ballot("x", 1100));
+        peers.get(2).ballots.add(y);
+        peers.get(3).ballots.add(y);
+
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates);
+        assertEquals("Ballots reported by only half of the peers should not be accepted", Collections.emptyList(), cursor.getBallots());
+
+        peers.get(0).ballots.add(y);
+        peers.get(1).ballots.add(y);
+        peers.get(2).ballots.add(ballot("x", 1200));
+        peers.get(3).ballots.add(x);
+        peers.forEach(p -> p.requested.clear());
+
+        List<PersistedBallot> ballots = cursor.getBallots();
+        assertEquals("Each ballot should be accepted exactly once", 2, ballots.size());
+        assertEquals("Ballots should be accepted in the order they reach a majority", "y", ballots.get(0).getId());
+        assertEquals("Ballots should be accepted in the order they reach a majority", "x", ballots.get(1).getId());
+        assertEquals("Ballot should have the latest timestamp of the majority accepting it", 1200, ballots.get(1).getTs().getTime());
+        for (Peer peer : peers) {
+            assertEquals("Each peer should be asked from its own position", Collections.singletonList(0L), peer.requested);
+        }
+
+        peers.forEach(p -> p.ballots.add(ballot("z", 3000)));
+        assertEquals("Accepted ballots should never be reordered", Arrays.asList("y", "x", "z"),
+                cursor.getBallots().stream().map(BallotDTO::getId).collect(java.util.stream.Collectors.toList()));
+    }
+
+    @Test
+    public void shouldNotAdvanceWithoutValidTreeHeads() throws Exception {
+        setUp(1);
+        Peer peer = peers.get(0);
+        peer.ballots.add(ballot("voter0", 0));
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates, 2);
+        assertEquals("Wrong ballots fetched", peer.ballots, cursor.getBallots());
+
+        peer.ballots.add(ballot("voter1", 1));
+        List<X509CertificateHolder> valid = certificates;
+        certificates = Collections.emptyList();
+        assertNull("Ballots without validly signed tree heads should not be returned", cursor.getBallots());
+
+        peer.requested.clear();
+        certificates = valid;
+        assertEquals("Should fetch the ballots again, once they are validly signed", peer.ballots, cursor.getBallots());
+        assertEquals("Cursor should not have moved", Collections.singletonList(0L), peer.requested);
+    }
+
+    @Test
+    public void shouldIgnorePagesNotStartingAtPosition() throws Exception {
+        setUp(1);
+        Peer peer = peers.get(0);
+        for (int i = 0; i < 3; i++) {
+            peer.ballots.add(ballot("voter" + i, i));
+        }
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates, 2);
+        assertEquals("Wrong ballots fetched", peer.ballots, cursor.getBallots());
+
+        //A validly proven, but stale, page is served instead of the requested one
+        List<PersistedBallot> fetched = new ArrayList<>(peer.ballots);
+        peer.ballots.add(ballot("voter3", 3));
+        peer.ballots.add(ballot("voter4", 4));
+        peer.replayFrom = 0;
+        assertEquals("Stale pages should not add ballots", fetched, cursor.getBallots());
+
+        peer.replayFrom = -1;
+        peer.requested.clear();
+        assertEquals("Ballots after the stale page should not be skipped", peer.ballots, cursor.getBallots());
+        assertEquals("Cursor should not have moved", Arrays.asList(2L, 4L), peer.requested);
+    }
+
+    @Test
+    public void shouldIgnorePagesNotProvenAtTheirStart() throws Exception {
+        setUp(1);
+        Peer peer = peers.get(0);
+        for (int i = 0; i < 3; i++) {
+            peer.ballots.add(ballot("voter" + i, i));
+        }
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates, 2);
+        assertEquals("Wrong ballots fetched", peer.ballots, cursor.getBallots());
+
+        //A stale page is passed off as continuing where the cursor left off
+        peer.ballots.add(ballot("voter3", 3));
+        peer.replayFrom = 0;
+        peer.tamper = p -> p.setStart(3);
+        assertNull("Pages not proven at their start should not be accepted", cursor.getBallots());
+
+        peer.replayFrom = -1;
+        peer.tamper = null;
+        assertEquals("Ballots after the rejected page should not be skipped", peer.ballots, cursor.getBallots());
+    }
+
+    @Test
+    public void shouldIgnorePagesWithTamperedTimestamps() throws Exception {
+        setUp(1);
+        Peer peer = peers.get(0);
+        peer.ballots.add(ballot("voter0", 1000));
+        peer.tamper = p -> p.setBallots(Collections.singletonList(ballot("voter0", 500)));
+
+        BallotCursor cursor = new BallotCursor(logger, bulletinBoard, () -> certificates);
+        assertNull("Ballots with timestamps not in the tree should not be accepted", cursor.getBallots());
+
+        peer.tamper = null;
+        List<PersistedBallot> ballots = cursor.getBallots();
+        assertEquals("Wrong ballots fetched", peer.ballots, ballots);
+        assertEquals("Ballot should have the timestamp in the tree", 1000, ballots.get(0).getTs().getTime());
+    }
+
+    private static class Peer {
+        private final X509CertificateHolder cert;
+        private final AsymmetricKeyParameter sk;
+        private final List<PersistedBallot> ballots = new ArrayList<>();
+        private final List<Long> requested = new ArrayList<>();
+        /**
+         * If not negative, pages are served from this position, regardless of the position requested
+         */
+        private int replayFrom = -1;
+        /**
+         * If set, applied to each page after it is proven, before it is served
+         */
+        private Consumer<BallotPage> tamper;
+
+        private Peer(X509CertificateHolder cert, AsymmetricKeyParameter sk) {
+            this.cert = cert;
+            this.sk = sk;
+        }
+    }
+}
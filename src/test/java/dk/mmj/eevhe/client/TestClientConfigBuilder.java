@@ -36,7 +36,8 @@ public class TestClientConfigBuilder extends AbstractConfigTest {
         ClientConfigBuilder builder = new ClientConfigBuilder();
 
         try {
-            String args = "--read=" + read + " --forceCalculations=" + force + " --server=" + serverString + " --electionCertificate=" + certPath;
+            String args = "--read=" + read + " --forceCalculations=" + force + " --server=" + serverString + " --electionCertificate=" + certPath
+                    + " --dlogTable=tables/dlog.table";
             Client.ClientConfiguration<?> config =
                     new SingletonCommandLineParser<>(builder).parse(args.split(" "));
 
@@ -47,6 +48,7 @@ public class TestClientConfigBuilder extends AbstractConfigTest {
             assertEquals("Force parameter not respected", force, fetchConfig.isForceCalculations());
             assertEquals("Server parameter not respected", serverString, config.getTargetUrl());
             assertEquals("Election cert parameter not respected", Paths.get(certPath), config.getElectionCertPath());
+            assertEquals("Discrete log table parameter not respected", Paths.get("tables/dlog.table"), fetchConfig.getDlogTablePath());
 
             ResultFetcher resultFetcher = fetchConfig.produceInstance();
             assertNotNull("Failed to produce resultFetcher", resultFetcher);
@@ -112,6 +114,31 @@ public class TestClientConfigBuilder extends AbstractConfigTest {
         }
     }
 
+    @Test
+    public void parametersAreRespectedLoadGenerator() {
+        String targetUrl = "https://wioaougwnwoieqwengw.com:68541";
+
+        try {
+            String args = "--server=" + targetUrl + " --load=16 --rate=12.5 --rampUp=10 --duration=30 --vote=1";
+            Client.ClientConfiguration<?> config =
+                    new SingletonCommandLineParser<>(new ClientConfigBuilder()).parse(args.split(" "));
+
+            assertTrue("Should be load generator as load was set", config instanceof LoadGenerator.LoadGeneratorConfiguration);
+
+            LoadGenerator.LoadGeneratorConfiguration loadConfig = (LoadGenerator.LoadGeneratorConfiguration) config;
+
+            assertEquals("Target URL parameter not respected", targetUrl, loadConfig.getTargetUrl());
+            assertEquals("Load parameter not respected", 16, loadConfig.getSessions());
+            assertEquals("Rate parameter not respected", 12.5, loadConfig.getRate(), 0);
+            assertEquals("Ramp-up parameter not respected", 10_000, loadConfig.getRampUp());
+            assertEquals("Duration parameter not respected", 30_000, loadConfig.getDuration());
+
+            assertNotNull("Failed to produce instance", loadConfig.produceInstance());
+        } catch (NoSuchBuilderException | WrongFormatException e) {
+            fail("failed to build config: " + e);
+        }
+    }
+
     @Override
     protected List<String> getParams() {
         return new ClientConfigBuilder().getParameters();
@@ -1,15 +1,17 @@
 package dk.mmj.eevhe.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.mmj.eevhe.TestUsingBouncyCastle;
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.crypto.TestUtils;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.crypto.signature.SignatureHelper;
 import dk.mmj.eevhe.entities.*;
-import dk.mmj.eevhe.entities.wrappers.BallotWrapper;
 import dk.mmj.eevhe.entities.wrappers.PublicInfoWrapper;
 import dk.mmj.eevhe.entities.wrappers.StringListWrapper;
 import org.apache.logging.log4j.LogManager;
@@ -25,11 +27,13 @@ import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -39,6 +43,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -176,6 +182,15 @@ public class TestFetchingUtilities extends TestUsingBouncyCastle {
 
     @Test
     public void fetchBallots() throws JsonProcessingException {
+        assertFetchesBallots(new ObjectMapper());
+    }
+
+    @Test
+    public void fetchBallotsAsSmile() throws JsonProcessingException {
+        assertFetchesBallots(SmileProvider.getMapper());
+    }
+
+    private void assertFetchesBallots(ObjectMapper mapper) throws JsonProcessingException {
         KeyPair keyPair = TestUtils.generateKeysFromP2048bitsG2();
 
         List<PersistedBallot> ballots = Arrays.asList(
@@ -189,28 +204,106 @@ public class TestFetchingUtilities extends TestUsingBouncyCastle {
                 new PersistedBallot(SecurityUtils.generateBallot(2, 5, "4", keyPair.getPublicKey()))
         );
 
-        List<SignedEntity<BallotWrapper>> ballotList = Arrays.asList(
-                new SignedEntity<>(new BallotWrapper(ballots), bbOneSk),
-                new SignedEntity<>(new BallotWrapper(ballots), bbTwoSk),
-                new SignedEntity<>(new BallotWrapper(ballotsCorrupt), bbThreeSk),
-                new SignedEntity<>(new BallotWrapper(ballotsCorrupt), bbThreeSk)
+        List<BallotPage> ballotList = Arrays.asList(
+                page(ballots, 0, ballots.size(), bbOneSk),
+                page(ballots, 0, ballots.size(), bbTwoSk),
+                page(ballotsCorrupt, 0, ballotsCorrupt.size(), bbThreeSk),
+                page(ballotsCorrupt, 0, ballotsCorrupt.size(), bbThreeSk)
         );
 
-        ObjectMapper mapper = new ObjectMapper();
         WebTarget bulletinBoard = mock(WebTarget.class);
 
         WebTarget ballotsTarget = mock(WebTarget.class);
         when(bulletinBoard.path("getBallots")).thenReturn(ballotsTarget);
+        when(ballotsTarget.queryParam(anyString(), any())).thenReturn(ballotsTarget);
 
         final Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
-        when(ballotsTarget.request()).thenReturn(invocationBuilder);
-        when(invocationBuilder.get(String.class)).thenReturn(mapper.writeValueAsString(ballotList.toArray()));
+        when(ballotsTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(invocationBuilder);
+        when(invocationBuilder.get(byte[].class)).thenReturn(mapper.writerFor(new TypeReference<List<BallotPage>>() {
+        }).writeValueAsBytes(ballotList));
 
         List<PersistedBallot> fetched = FetchingUtilities.getBallots(logger, bulletinBoard, Arrays.asList(bbOneCert, bbTwoCert, bbThreeCert));
 
         assertEquals("Fetched ballots did not match expected", ballots, fetched);
     }
 
+    @Test
+    public void fetchBallotByIdWithProof() throws JsonProcessingException {
+        KeyPair keyPair = TestUtils.generateKeysFromP2048bitsG2();
+        List<PersistedBallot> ballots = Arrays.asList(
+                new PersistedBallot(SecurityUtils.generateBallot(1, 5, "1", keyPair.getPublicKey())),
+                new PersistedBallot(SecurityUtils.generateBallot(2, 5, "2", keyPair.getPublicKey())),
+                new PersistedBallot(SecurityUtils.generateBallot(3, 5, "3", keyPair.getPublicKey()))
+        );
+
+        BallotPage forged = page(ballots, 1, 2, bbThreeSk);
+        forged.setBallots(Collections.singletonList(
+                new PersistedBallot(SecurityUtils.generateBallot(2, 5, "2", keyPair.getPublicKey()))));
+        List<BallotPage> pages = Arrays.asList(
+                page(ballots, 1, 2, bbOneSk),
+                page(Arrays.asList(ballots.get(1), ballots.get(0)), 0, 1, bbTwoSk),
+                forged
+        );
+
+        WebTarget bulletinBoard = mock(WebTarget.class);
+        WebTarget getBallotTarget = mock(WebTarget.class);
+        WebTarget idTarget = mock(WebTarget.class);
+        when(bulletinBoard.path("getBallot")).thenReturn(getBallotTarget);
+        when(getBallotTarget.path("2")).thenReturn(idTarget);
+
+        final Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
+        when(idTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(invocationBuilder);
+        when(invocationBuilder.get(byte[].class)).thenReturn(SmileProvider.getMapper().writerFor(new TypeReference<List<BallotPage>>() {
+        }).writeValueAsBytes(pages));
+
+        Map<X509CertificateHolder, PersistedBallot> fetched = FetchingUtilities.getBallot(
+                logger, bulletinBoard, "2", Arrays.asList(bbOneCert, bbTwoCert, bbThreeCert));
+
+        assertNotNull("Should fetch ballots", fetched);
+        assertEquals("Ballot should be returned for each peer proving it", new HashSet<>(Arrays.asList(bbOneCert, bbTwoCert)), fetched.keySet());
+        assertEquals("Wrong ballot fetched", ballots.get(1), fetched.get(bbOneCert));
+        assertEquals("Wrong ballot fetched", ballots.get(1), fetched.get(bbTwoCert));
+    }
+
+    /**
+     * @return page with the ballots in [from, to), proven against the signed head of a tree over all the ballots
+     */
+    private BallotPage page(List<PersistedBallot> ballots, int from, int to, AsymmetricKeyParameter sk) {
+        MerkleTree tree = new MerkleTree();
+        ballots.forEach(b -> tree.append(BallotDigest.leaf(b)));
+        TreeHead head = new TreeHead(tree.size(), Hex.toHexString(tree.root(tree.size())));
+        List<String> proof = tree.rangeProof(from, to, tree.size()).stream().map(Hex::toHexString).collect(Collectors.toList());
+
+        return new BallotPage(new SignedEntity<>(head, sk), from, new ArrayList<>(ballots.subList(from, to)), proof);
+    }
+
+    @Test
+    public void fetchTreeHeadsBySigner() throws JsonProcessingException {
+        TreeHead headOne = new TreeHead(2, "aa");
+        TreeHead headTwo = new TreeHead(2, "bb");
+        List<SignedEntity<TreeHead>> heads = Arrays.asList(
+                new SignedEntity<>(headOne, bbOneSk),
+                new SignedEntity<>(headTwo, bbTwoSk),
+                new SignedEntity<>(new TreeHead(3, "cc"), daOneSk)
+        );
+
+        WebTarget bulletinBoard = mock(WebTarget.class);
+        WebTarget headTarget = mock(WebTarget.class);
+        when(bulletinBoard.path("treeHead")).thenReturn(headTarget);
+
+        final Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
+        when(headTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(invocationBuilder);
+        when(invocationBuilder.get(byte[].class)).thenReturn(SmileProvider.getMapper().writerFor(new TypeReference<List<SignedEntity<TreeHead>>>() {
+        }).writeValueAsBytes(heads));
+
+        Map<X509CertificateHolder, TreeHead> fetched = FetchingUtilities.getTreeHeads(logger, bulletinBoard, Arrays.asList(bbOneCert, bbTwoCert, bbThreeCert));
+
+        Map<X509CertificateHolder, TreeHead> expected = new HashMap<>();
+        expected.put(bbOneCert, headOne);
+        expected.put(bbTwoCert, headTwo);
+        assertEquals("Each head should be kept with the peer that signed it", expected, fetched);
+    }
+
     @Test
     public void testFetchPublicInfos() throws IOException {
         KeyPair keyPair = TestUtils.generateKeysFromP2048bitsG2();
@@ -240,8 +333,9 @@ public class TestFetchingUtilities extends TestUsingBouncyCastle {
 
         when(bulletinBoard.path("publicInfo")).thenReturn(publicInfoTarget);
         final Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
-        when(publicInfoTarget.request()).thenReturn(invocationBuilder);
-        when(invocationBuilder.get(String.class)).thenReturn(mapper.writeValueAsString(infos.toArray()));
+        when(publicInfoTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(invocationBuilder);
+        when(invocationBuilder.get(byte[].class)).thenReturn(mapper.writerFor(new TypeReference<List<SignedEntity<PublicInfoWrapper>>>() {
+        }).writeValueAsBytes(infos));
 
         List<PartialPublicInfo> publicInfos = FetchingUtilities.getPublicInfos(
                 logger, bulletinBoard,
@@ -275,8 +369,8 @@ public class TestFetchingUtilities extends TestUsingBouncyCastle {
         WebTarget publicInfoTarget = mock(WebTarget.class);
         when(bulletinBoard.path("publicInfo")).thenReturn(publicInfoTarget);
         final Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
-        when(publicInfoTarget.request()).thenReturn(invocationBuilder);
-        when(invocationBuilder.get(String.class)).thenReturn(mapper.writeValueAsString(infos).substring(0, 68));
+        when(publicInfoTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(invocationBuilder);
+        when(invocationBuilder.get(byte[].class)).thenReturn(mapper.writeValueAsString(infos).substring(0, 68).getBytes(StandardCharsets.UTF_8));
 
         List<PartialPublicInfo> publicInfos = FetchingUtilities.getPublicInfos(
                 logger, bulletinBoard,
@@ -326,16 +420,15 @@ public class TestFetchingUtilities extends TestUsingBouncyCastle {
                 new SignedEntity<>(new StringListWrapper(expected), bbTwoSk),
                 new SignedEntity<>(new StringListWrapper(corrupt), bbThreeSk)
         );
-        String certsString = new ObjectMapper().writeValueAsString(
-                certList.toArray()
-        );
+        String certsString = new ObjectMapper().writerFor(new TypeReference<List<SignedEntity<StringListWrapper>>>() {
+        }).writeValueAsString(certList);
 
         WebTarget bulletinBoard = mock(WebTarget.class);
         WebTarget certsPath = mock(WebTarget.class);
         Invocation.Builder request = mock(Invocation.Builder.class);
         when(bulletinBoard.path("peerCertificates")).thenReturn(certsPath);
-        when(certsPath.request()).thenReturn(request);
-        when(request.get(String.class)).thenReturn(certsString);
+        when(certsPath.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(request);
+        when(request.get(byte[].class)).thenReturn(certsString.getBytes(StandardCharsets.UTF_8));
 
         List<X509CertificateHolder> bbPeerCertificates = FetchingUtilities.getBBPeerCertificates(
                 logger,
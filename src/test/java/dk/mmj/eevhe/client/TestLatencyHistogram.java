@@ -0,0 +1,78 @@
+package dk.mmj.eevhe.client;
+
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void percentilesShouldBeWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals("Wrong count", 100_000, histogram.getCount());
+        assertEquals("Wrong max", 100_000, histogram.getMax());
+        assertEquals("Wrong mean", 50_000.5, histogram.getMean(), 0.001);
+        for (double percentile : new double[]{50, 95, 99, 99.9}) {
+            long expected = (long) (percentile * 1_000);
+            long actual = histogram.getPercentile(percentile);
+            assertTrue("p" + percentile + " should be at least " + expected + ", was " + actual, actual >= expected);
+            assertTrue("p" + percentile + " should be within 1/64 of " + expected + ", was " + actual,
+                    actual <= expected + expected / 64);
+        }
+        assertEquals("p100 should be max", 100_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void smallValuesShouldBeExact() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5);
+
+        assertEquals("Negative values should count as zero", 0, histogram.getPercentile(10));
+        assertEquals("Wrong median", 3, histogram.getPercentile(50));
+        assertEquals("Wrong p99", 7, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void bucketsShouldCoverAllValues() {
+        long[] values = {0, 127, 128, 129, 255, 256, 1_000_000, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue("Upper bound of bucket should be at least " + value, LatencyHistogram.upperBoundOf(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue("Upper bound of previous bucket should be below " + value,
+                        LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRecordConcurrently() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        IntStream.range(0, 40_000).parallel().forEach(i -> histogram.record(i % 400));
+
+        assertEquals("Lost recordings", 40_000, histogram.getCount());
+        assertEquals("Wrong max", 399, histogram.getMax());
+    }
+
+    @Test
+    public void emptyHistogramShouldReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+
+        assertEquals("Wrong percentile", 0, histogram.getPercentile(99));
+        assertEquals("Wrong mean", 0, histogram.getMean(), 0);
+        assertTrue("Should include name", histogram.toString().startsWith("test"));
+        try {
+            histogram.getPercentile(0);
+            fail("Should reject percentile 0");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dk.mmj.eevhe.client;
+
+import org.junit.Test;
+
+import java.util.OptionalLong;
+
+import static org.junit.Assert.*;
+
+public class TestLoadGenerator {
+
+    @Test
+    public void pacerShouldRampUpLinearly() {
+        LoadGenerator.Pacer pacer = new LoadGenerator.Pacer(10, 4_000, 60_000, 0);
+
+        assertEquals("First ballot should be at start", 0, pacer.offsetSeconds(0), 1e-9);
+        //After ramp-up of 4 seconds to 10 ballots per second, 20 ballots have been cast
+        assertEquals("Ramp-up should end after 20 ballots", 4, pacer.offsetSeconds(20), 1e-9);
+        assertEquals("Halfway through ramp-up 5 ballots should have been cast", 2, pacer.offsetSeconds(5), 1e-9);
+        assertEquals("Should cast at target rate after ramp-up", 5, pacer.offsetSeconds(30), 1e-9);
+
+        double previousInterval = Double.MAX_VALUE;
+        for (int n = 1; n <= 20; n++) {
+            double interval = pacer.offsetSeconds(n) - pacer.offsetSeconds(n - 1);
+            assertTrue("Rate should increase during ramp-up", interval <= previousInterval);
+            previousInterval = interval;
+        }
+    }
+
+    @Test
+    public void pacerShouldStopAfterDuration() {
+        assertStopsAfterDuration(0);
+    }
+
+    /**
+     * nanoTime has an arbitrary origin, so times before the end of the test may be negative
+     */
+    @Test
+    public void pacerShouldNotStopAtNegativeTimes() {
+        assertStopsAfterDuration(-5_000_000_000L);
+    }
+
+    private void assertStopsAfterDuration(long start) {
+        LoadGenerator.Pacer pacer = new LoadGenerator.Pacer(100, 0, 1_000, start);
+
+        int dispatched = 0;
+        long previous = Long.MIN_VALUE;
+        for (OptionalLong next = pacer.next(); next.isPresent(); next = pacer.next()) {
+            assertTrue("Times should increase", next.getAsLong() > previous);
+            previous = next.getAsLong();
+            dispatched++;
+        }
+
+        assertEquals("Should dispatch rate * duration ballots", 100, dispatched);
+        assertFalse("Should stay stopped", pacer.next().isPresent());
+    }
+
+    @Test
+    public void unpacedShouldDispatchImmediately() {
+        LoadGenerator.Pacer pacer = new LoadGenerator.Pacer(0, 1_000, 60_000, System.nanoTime());
+
+        long before = System.nanoTime();
+        long next = pacer.next().getAsLong();
+
+        assertTrue("Should be scheduled now", next >= before && next <= System.nanoTime());
+    }
+}
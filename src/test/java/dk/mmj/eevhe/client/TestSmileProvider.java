@@ -0,0 +1,107 @@
+package dk.mmj.eevhe.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.mmj.eevhe.TestUsingBouncyCastle;
+import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.TestUtils;
+import dk.mmj.eevhe.crypto.signature.CertificateHelper;
+import dk.mmj.eevhe.crypto.signature.KeyHelper;
+import dk.mmj.eevhe.entities.PersistedBallot;
+import dk.mmj.eevhe.entities.PublicKey;
+import dk.mmj.eevhe.entities.SignedEntity;
+import dk.mmj.eevhe.entities.wrappers.BallotWrapper;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestSmileProvider extends TestUsingBouncyCastle {
+    private static final Type SIGNED_BALLOTS = new GenericType<List<SignedEntity<BallotWrapper>>>() {
+    }.getType();
+    private final SmileProvider provider = new SmileProvider();
+    private AsymmetricKeyParameter sk;
+    private AsymmetricKeyParameter pk;
+    private List<SignedEntity<BallotWrapper>> signedBallots;
+
+    @Before
+    public void setUp() throws IOException {
+        sk = KeyHelper.readKey(Paths.get("certs/test_glob_key.pem"));
+        pk = CertificateHelper.getPublicKeyFromCertificate(Paths.get("certs/test_glob.pem"));
+
+        PublicKey publicKey = TestUtils.generateKeysFromP2048bitsG2().getPublicKey();
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ballots.add(new PersistedBallot(SecurityUtils.generateBallot(i, 3, "voter" + i, publicKey)));
+        }
+        signedBallots = Collections.singletonList(new SignedEntity<>(new BallotWrapper(ballots), sk));
+    }
+
+    private byte[] write(Object o, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(o, o.getClass(), type, new Annotation[0], SmileProvider.APPLICATION_SMILE_TYPE, null, out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(byte[] content, Type type) throws IOException {
+        return (T) provider.readFrom(Object.class, type, new Annotation[0], SmileProvider.APPLICATION_SMILE_TYPE, null,
+                new ByteArrayInputStream(content));
+    }
+
+    @Test
+    public void shouldPreserveEntitiesAndSignatures() throws IOException {
+        byte[] smile = write(signedBallots, SIGNED_BALLOTS);
+        List<SignedEntity<BallotWrapper>> read = read(smile, SIGNED_BALLOTS);
+
+        assertEquals("Entities changed during transport", signedBallots, read);
+        assertTrue("Signature should still be valid", read.get(0).verifySignature(pk));
+    }
+
+    @Test
+    public void shouldBeSmallerThanJson() throws IOException {
+        byte[] smile = write(signedBallots, SIGNED_BALLOTS);
+        byte[] json = new ObjectMapper().writerFor(new TypeReference<List<SignedEntity<BallotWrapper>>>() {
+        }).writeValueAsBytes(signedBallots);
+
+        assertTrue("Smile should be more compact than JSON, was " + smile.length + " vs. " + json.length + " bytes",
+                smile.length < json.length * 3 / 4);
+    }
+
+    @Test
+    public void shouldReadBothSmileAndJson() throws IOException {
+        TypeReference<List<SignedEntity<BallotWrapper>>> type = new TypeReference<List<SignedEntity<BallotWrapper>>>() {
+        };
+        byte[] smile = SmileProvider.getMapper().writerFor(type).writeValueAsBytes(signedBallots);
+        byte[] json = new ObjectMapper().writerFor(type).writeValueAsBytes(signedBallots);
+
+        assertTrue("Smile content should be recognized", SmileProvider.isSmile(smile));
+        assertFalse("JSON content should not be recognized as Smile", SmileProvider.isSmile(json));
+        assertEquals("Wrong entities read from Smile", signedBallots, SmileProvider.readValue(smile, type));
+        assertEquals("Wrong entities read from JSON", signedBallots, SmileProvider.readValue(json, type));
+    }
+
+    @Test
+    public void shouldOnlyHandleSmileEntities() {
+        MediaType smile = SmileProvider.APPLICATION_SMILE_TYPE;
+        assertTrue("Should write entities as Smile", provider.isWriteable(BallotWrapper.class, BallotWrapper.class, null, smile));
+        assertTrue("Should read entities as Smile", provider.isReadable(BallotWrapper.class, BallotWrapper.class, null, smile));
+        assertFalse("Should leave JSON to Jackson", provider.isWriteable(BallotWrapper.class, BallotWrapper.class, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse("Should not match wildcards", provider.isWriteable(BallotWrapper.class, BallotWrapper.class, null, MediaType.WILDCARD_TYPE));
+        assertFalse("Should leave raw bytes to Jersey", provider.isReadable(byte[].class, byte[].class, null, smile));
+        assertFalse("Should leave strings to Jersey", provider.isWriteable(String.class, String.class, null, smile));
+    }
+}
@@ -169,4 +169,23 @@ public class TestVoter extends TestUsingBouncyCastle {
         }
     }
 
+    @Test
+    public void testLoadGenerator() throws IOException {
+        LoadGenerator.LoadGeneratorConfiguration conf = new LoadGenerator.LoadGeneratorConfiguration(
+                "https://localhost:" + edgePort, Paths.get("certs/test_glob.pem"), 4, 8, 500, 1_500);
+        LoadGenerator loadGenerator = new LoadGenerator(conf);
+
+        initializeBulletinBoard(edgeTarget);
+
+        loadGenerator.run();
+
+        List<PersistedBallot> ballots = FetchingUtilities.getBallots(logger, edgeTarget, loadGenerator.getBBPeerCertificates());
+
+        assertNotNull("Failed to fetch list of posted ballots", ballots);
+        assertTrue("Should have cast ballots", loadGenerator.getConfirmedCount() > 0);
+        assertEquals("All confirmed ballots should be on the bulletin board", loadGenerator.getConfirmedCount(), ballots.size());
+        assertEquals("Should record generation of every ballot", ballots.size(), loadGenerator.getGenerationLatency().getCount());
+        assertEquals("Should record posting of every ballot", ballots.size(), loadGenerator.getPostingLatency().getCount());
+        assertEquals("Should record confirmation of every ballot", ballots.size(), loadGenerator.getConfirmationLatency().getCount());
+    }
 }
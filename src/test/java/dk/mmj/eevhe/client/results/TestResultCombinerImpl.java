@@ -1,7 +1,10 @@
 package dk.mmj.eevhe.client.results;
 
 import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.TallyEngine;
+import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
 import dk.mmj.eevhe.entities.*;
+import dk.mmj.eevhe.server.decryptionauthority.DecrypterImpl;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -155,4 +158,38 @@ public class TestResultCombinerImpl {
         assertEquals("Candidate 1 should have 1 vote", 1, electionResult.getCandidateVotes().get(1).intValue());
         assertEquals("Candidate 2 should have 2 votes", 2, electionResult.getCandidateVotes().get(2).intValue());
     }
+
+    @Test
+    public void testCombineWithAggregateProofs() {
+        long endTime = new Date().getTime();
+        ArrayList<PartialPublicInfo> publicInfos = new ArrayList<>();
+        ArrayList<PartialResultList> res = new ArrayList<>();
+        for (int i = 1; i < 4; i++) {
+            PartialKeyPair partialKeyPair = dkgRes.get(i);
+            publicInfos.add(new PartialPublicInfo(i, partialKeyPair.getPublicKey(),
+                    partialKeyPair.getPartialPublicKey(), candidates, endTime, null));
+
+            DecrypterImpl decrypter = new DecrypterImpl(i, () -> ballots, b -> VoteProofUtils.verifyBallot(b, pk), candidates,
+                    TallyEngine.getDefault(), true);
+            res.add(decrypter.generatePartialResult(endTime, partialKeyPair));
+        }
+
+        ResultCombinerImpl combiner = new ResultCombinerImpl(
+                false,
+                pk,
+                candidates,
+                () -> publicInfos,
+                () -> ballots,
+                endTime);
+
+        //A DA with an invalid partial decryption has all of its results discarded
+        PartialResult tampered = res.get(0).getResults().get(1);
+        tampered.setResult(tampered.getResult().multiply(pk.getG()).mod(pk.getP()));
+        ElectionResult electionResult = combiner.computeResult(res);
+
+        assertEquals("4 votes were cast", 4, electionResult.getVotesTotal());
+        assertEquals("Candidate 0 should have 1 vote", 1, electionResult.getCandidateVotes().get(0).intValue());
+        assertEquals("Candidate 1 should have 1 vote", 1, electionResult.getCandidateVotes().get(1).intValue());
+        assertEquals("Candidate 2 should have 2 votes", 2, electionResult.getCandidateVotes().get(2).intValue());
+    }
 }
@@ -1,5 +1,6 @@
 package dk.mmj.eevhe.crypto;
 
+import dk.mmj.eevhe.crypto.zeroknowledge.ProofCache;
 import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
 import dk.mmj.eevhe.entities.KeyPair;
 import dk.mmj.eevhe.entities.PersistedBallot;
@@ -48,5 +49,10 @@ public class BenchmarkBallotVerification {
             ballots = generateBallots(size, publicKey, candidates);
             partitionSize = ballots.size() / 10;
         }
+
+        @Setup(Level.Iteration)
+        public void clearProofCache() {
+            ProofCache.getDefault().clear();
+        }
     }
 }
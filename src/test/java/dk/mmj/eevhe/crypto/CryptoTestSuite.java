@@ -1,6 +1,8 @@
 package dk.mmj.eevhe.crypto;
 
 import dk.mmj.eevhe.crypto.keygeneration.TestKeyGenerationsParametersImpl;
+import dk.mmj.eevhe.crypto.keygeneration.TestSafePrimeSearch;
+import dk.mmj.eevhe.crypto.keygeneration.TestStandardGroups;
 import dk.mmj.eevhe.crypto.signature.SignatureTestSuite;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -9,12 +11,30 @@ import org.junit.runners.Suite;
 
 @Suite.SuiteClasses({
         TestKeyGenerationsParametersImpl.class,
+        TestSafePrimeSearch.class,
+        TestStandardGroups.class,
         SignatureTestSuite.class,
         TestDLogProofUtils.class,
         TestElGamal.class,
         TestVoteProofUtils.class,
         TestSecurityUtils.class,
-        TestFeldmanVSSUtils.class
+        TestFeldmanVSSUtils.class,
+        TestFixedBaseExponentiation.class,
+        TestMultiExponentiation.class,
+        TestBatchVoteProofVerifier.class,
+        TestDiscreteLogTable.class,
+        TestCipherTextAccumulator.class,
+        TestModPGroup.class,
+        TestEllipticCurveGroup.class,
+        TestGroups.class,
+        TestEncryptionPadPool.class,
+        TestTallyEngine.class,
+        TestProofCache.class,
+        TestBallotColumns.class,
+        TestThresholdCombiner.class,
+        TestBatchShareVerifier.class,
+        TestBallotDigest.class,
+        TestMerkleTree.class
 })
 public class CryptoTestSuite {
 }
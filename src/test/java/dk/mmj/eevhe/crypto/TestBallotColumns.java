@@ -0,0 +1,107 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP256;
+import static org.junit.Assert.*;
+
+public class TestBallotColumns {
+    private static final int CANDIDATES = 3;
+
+    private List<PersistedBallot> generateBallots(PublicKey publicKey, int amount) {
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            BallotDTO ballot = SecurityUtils.generateBallot(i % CANDIDATES, CANDIDATES, "ID" + i, publicKey);
+            ballots.add(new PersistedBallot(ballot).setTs(new Date(1000L * i)));
+        }
+        return ballots;
+    }
+
+    private void assertStoresBallots(KeyPair keyPair) throws UnableToDecryptException {
+        PublicKey publicKey = keyPair.getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        List<PersistedBallot> ballots = generateBallots(publicKey, 40);
+
+        BallotColumns columns = new BallotColumns(group, CANDIDATES).appendAll(ballots);
+
+        assertEquals("Wrong size", ballots.size(), columns.size());
+        for (int row = 0; row < ballots.size(); row++) {
+            for (int i = 0; i < CANDIDATES; i++) {
+                assertEquals("Wrong ciphertext in row " + row + " for candidate " + i,
+                        ballots.get(row).getCandidateVotes().get(i).getCipherText(), columns.getCipherText(row, i));
+            }
+        }
+
+        List<CipherText> expected = TallyEngine.getDefault().sumBallots(ballots, CANDIDATES, group, 1000);
+        assertEquals("Column sums should match ballot sums", expected,
+                TallyEngine.getDefault().sumColumns(columns, columns.castBefore(Long.MAX_VALUE), 7));
+
+        BitSet before = columns.castBefore(10_000);
+        assertEquals("Wrong rows cast before endTime", 10, before.cardinality());
+        List<CipherText> sums = TallyEngine.getDefault().sumColumns(columns, before, 3);
+        int[] votes = {4, 3, 3};
+        for (int i = 0; i < CANDIDATES; i++) {
+            assertEquals("Wrong sum for candidate " + i, votes[i], ElGamal.homomorphicDecryption(keyPair, sums.get(i), 10));
+        }
+
+        BitSet appended = columns.castBefore(10_000, 4);
+        assertEquals("Rows before the given row should be excluded", 6, appended.cardinality());
+        assertEquals("Rows before the given row should be excluded", 4, appended.nextSetBit(0));
+        sums = TallyEngine.getDefault().sumColumns(columns, appended, 3);
+        int[] appendedVotes = {2, 2, 2};
+        for (int i = 0; i < CANDIDATES; i++) {
+            assertEquals("Wrong sum of appended rows for candidate " + i, appendedVotes[i],
+                    ElGamal.homomorphicDecryption(keyPair, sums.get(i), 10));
+        }
+    }
+
+    @Test
+    public void shouldStoreAndSumBallots() throws UnableToDecryptException {
+        assertStoresBallots(generateKeysFromP2048bitsG2());
+    }
+
+    @Test
+    public void shouldStoreAndSumBallotsOnEllipticCurve() throws UnableToDecryptException {
+        assertStoresBallots(generateKeysFromP256());
+    }
+
+    @Test
+    public void shouldReduceUnreducedElements() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        BallotDTO ballot = SecurityUtils.generateBallot(0, 1, "ID", publicKey);
+        CipherText cipherText = ballot.getCandidateVotes().get(0).getCipherText();
+        CipherText unreduced = new CipherText(cipherText.getC().add(publicKey.getP()), cipherText.getD());
+        ballot.getCandidateVotes().set(0, new CandidateVoteDTO(unreduced, "ID", null));
+
+        BallotColumns columns = new BallotColumns(group, 1);
+        columns.append(ballot, 0);
+
+        assertEquals("Element should be stored reduced", cipherText, columns.getCipherText(0, 0));
+    }
+
+    @Test
+    public void shouldRejectBallotWithWrongNumberOfVotes() {
+        PublicKey publicKey = generateKeysFromP256().getPublicKey();
+        BallotColumns columns = new BallotColumns(Groups.forKey(publicKey), CANDIDATES);
+
+        try {
+            columns.append(SecurityUtils.generateBallot(0, CANDIDATES - 1, "ID", publicKey), 0);
+            fail("Should reject ballot with too few votes");
+        } catch (IllegalArgumentException ignored) {
+        }
+        assertEquals("Rejected ballot should not be stored", 0, columns.size());
+        assertEquals("Empty store should sum to identity", Collections.nCopies(CANDIDATES, new CipherText(BigInteger.ZERO, BigInteger.ZERO)),
+                TallyEngine.getDefault().sumColumns(columns, columns.castBefore(Long.MAX_VALUE), 10));
+    }
+}
@@ -0,0 +1,38 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestBallotDigest {
+    private final Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+    private final CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id", proof);
+
+    @Test
+    public void persistedBallotShouldHaveSameHash() {
+        BallotDTO ballot = new BallotDTO(Arrays.asList(vote, vote), "voter", proof);
+
+        assertEquals("Hash should only depend on content", BallotDigest.hash(ballot), BallotDigest.hash(new PersistedBallot(ballot)));
+        assertEquals("Hash should be hex encoded SHA-256", 64, BallotDigest.hash(ballot).length());
+    }
+
+    @Test
+    public void differentBallotsShouldHaveDifferentHashes() {
+        BallotDTO ballot = new BallotDTO(Collections.singletonList(vote), "voter", proof);
+        CandidateVoteDTO otherVote = new CandidateVoteDTO(new CipherText(valueOf(166), valueOf(684983)), "id", proof);
+
+        assertNotEquals("Id should be part of hash", BallotDigest.hash(ballot),
+                BallotDigest.hash(new BallotDTO(Collections.singletonList(vote), "voter2", proof)));
+        assertNotEquals("Votes should be part of hash", BallotDigest.hash(ballot),
+                BallotDigest.hash(new BallotDTO(Collections.singletonList(otherVote), "voter", proof)));
+        assertNotEquals("Number of votes should be part of hash", BallotDigest.hash(ballot),
+                BallotDigest.hash(new BallotDTO(Arrays.asList(vote, null), "voter", proof)));
+        assertNotEquals("Missing proof should be part of hash", BallotDigest.hash(ballot),
+                BallotDigest.hash(new BallotDTO(Collections.singletonList(vote), "voter", null)));
+    }
+}
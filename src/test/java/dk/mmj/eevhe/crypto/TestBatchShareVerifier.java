@@ -0,0 +1,130 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.keygeneration.KeyGenerationParameters;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.getKeyGenParamsFromP2048bitsG2;
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestBatchShareVerifier {
+    private static final int DEALERS = 5;
+    private static final int T = 2;
+
+    private void assertVerifiesPedersenShares(Group group, BigInteger g) {
+        BigInteger q = group.getOrder();
+        BigInteger e = PedersenVSSUtils.generateElementInSubgroup(group, g);
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g, e);
+
+        for (int dealer = 1; dealer <= DEALERS; dealer++) {
+            BigInteger[] pol1 = SecurityUtils.generatePolynomial(T, q);
+            BigInteger[] pol2 = SecurityUtils.generatePolynomial(T, q);
+            BigInteger[] commitments = PedersenVSSUtils.computeCoefficientCommitments(group, g, e, pol1, pol2);
+            for (int receiver = 1; receiver <= DEALERS; receiver++) {
+                BigInteger u1 = SecurityUtils.evaluatePolynomial(pol1, receiver);
+                BigInteger u2 = SecurityUtils.evaluatePolynomial(pol2, receiver);
+                if (dealer == 2 && receiver == 3) {
+                    u1 = u1.add(BigInteger.ONE);
+                }
+                if (dealer == 4 && receiver == 1) {
+                    u2 = u2.add(BigInteger.ONE);
+                }
+                verifier.add(u1, u2, commitments, valueOf(receiver));
+            }
+        }
+
+        boolean[] valid = verifier.verify();
+        assertEquals("Wrong number of results", DEALERS * DEALERS, valid.length);
+        for (int i = 0; i < valid.length; i++) {
+            boolean tampered = i == 5 + 2 || i == 3 * DEALERS;
+            assertEquals("Wrong result for share " + i, !tampered, valid[i]);
+        }
+    }
+
+    private void assertVerifiesFeldmanShares(Group group, BigInteger g) {
+        BigInteger q = group.getOrder();
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g);
+
+        for (int dealer = 1; dealer <= DEALERS; dealer++) {
+            BigInteger[] polynomial = SecurityUtils.generatePolynomial(T, q);
+            BigInteger[] commitments = FeldmanVSSUtils.computeCoefficientCommitments(group, g, polynomial);
+            BigInteger u = SecurityUtils.evaluatePolynomial(polynomial, 1);
+            verifier.add(dealer == 3 ? u.add(q).add(BigInteger.ONE) : u, commitments, BigInteger.ONE);
+        }
+
+        boolean[] valid = verifier.verify();
+        assertArrayEquals("Only share from dealer 3 should be invalid", new boolean[]{true, true, false, true, true}, valid);
+    }
+
+    @Test
+    public void shouldVerifyPedersenShares() {
+        KeyGenerationParameters params = getKeyGenParamsFromP2048bitsG2();
+        assertVerifiesPedersenShares(new ModPGroup(params.getPrimePair().getP(), params.getPrimePair().getQ()), params.getGenerator());
+    }
+
+    @Test
+    public void shouldVerifyPedersenSharesOnEllipticCurve() {
+        EllipticCurveGroup group = new EllipticCurveGroup(EllipticCurveGroup.P256);
+        assertVerifiesPedersenShares(group, group.getGenerator());
+    }
+
+    @Test
+    public void shouldVerifyFeldmanShares() {
+        KeyGenerationParameters params = getKeyGenParamsFromP2048bitsG2();
+        assertVerifiesFeldmanShares(new ModPGroup(params.getPrimePair().getP(), params.getPrimePair().getQ()), params.getGenerator());
+    }
+
+    @Test
+    public void shouldVerifyFeldmanSharesOnEllipticCurve() {
+        EllipticCurveGroup group = new EllipticCurveGroup(EllipticCurveGroup.P256);
+        assertVerifiesFeldmanShares(group, group.getGenerator());
+    }
+
+    @Test
+    public void shouldRejectCommitmentsOutsideSubgroup() {
+        KeyGenerationParameters params = getKeyGenParamsFromP2048bitsG2();
+        BigInteger p = params.getPrimePair().getP();
+        BigInteger q = params.getPrimePair().getQ();
+        BigInteger g = params.getGenerator();
+        ModPGroup group = new ModPGroup(p, q);
+        BatchShareVerifier verifier = new BatchShareVerifier(group, g);
+
+        BigInteger[] polynomial = SecurityUtils.generatePolynomial(T, q);
+        BigInteger[] commitments = FeldmanVSSUtils.computeCoefficientCommitments(group, g, polynomial);
+        BigInteger[] tampered = commitments.clone();
+        tampered[1] = tampered[1].multiply(p.subtract(BigInteger.ONE)).mod(p);
+        for (int receiver = 1; receiver <= 4; receiver++) {
+            BigInteger u = SecurityUtils.evaluatePolynomial(polynomial, receiver);
+            verifier.add(u, commitments, valueOf(receiver));
+            verifier.add(u, tampered, valueOf(receiver));
+        }
+
+        boolean[] valid = verifier.verify();
+        for (int i = 0; i < valid.length; i++) {
+            int receiver = i / 2 + 1;
+            boolean expected = FeldmanVSSUtils.verifyCommitmentRespected(group, g,
+                    SecurityUtils.evaluatePolynomial(polynomial, receiver), i % 2 == 0 ? commitments : tampered, valueOf(receiver));
+            assertEquals("Batch should agree with single verification for share " + i, expected, valid[i]);
+        }
+        assertFalse("Order two component should be detected", valid[1]);
+    }
+
+    @Test
+    public void shouldRejectMalformedShares() {
+        KeyGenerationParameters params = getKeyGenParamsFromP2048bitsG2();
+        ModPGroup group = new ModPGroup(params.getPrimePair().getP(), params.getPrimePair().getQ());
+        BatchShareVerifier verifier = new BatchShareVerifier(group, params.getGenerator());
+
+        verifier.add(BigInteger.ONE, null, BigInteger.ONE);
+        verifier.add(BigInteger.ONE, new BigInteger[]{null}, BigInteger.ONE);
+
+        assertArrayEquals("Malformed shares should be invalid", new boolean[]{false, false}, verifier.verify());
+        try {
+            verifier.add(BigInteger.ONE, BigInteger.ONE, new BigInteger[]{BigInteger.ONE}, BigInteger.ONE);
+            fail("Should not accept Pedersen share in Feldman verifier");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}
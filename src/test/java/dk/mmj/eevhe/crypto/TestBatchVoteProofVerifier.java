@@ -0,0 +1,176 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.zeroknowledge.BatchVoteProofVerifier;
+import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP256;
+import static java.math.BigInteger.ONE;
+import static org.junit.Assert.*;
+
+public class TestBatchVoteProofVerifier {
+
+    private static List<CandidateVoteDTO> generateVotes(int amount, PublicKey publicKey) {
+        List<CandidateVoteDTO> votes = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            votes.add(SecurityUtils.generateVote(i % 2, "ID" + i, publicKey));
+        }
+        return votes;
+    }
+
+    /**
+     * Creates a proof for a vote of 0, where the real commitment a0 is negated before hashing.
+     * The proof fails regular verification, but differs from a valid proof only by a factor -1 in one relation
+     */
+    private static CandidateVoteDTO generateNegatedCommitmentVote(PublicKey publicKey, String id) {
+        BigInteger p = publicKey.getP();
+        BigInteger q = publicKey.getQ();
+        BigInteger g = publicKey.getG();
+        BigInteger h = publicKey.getH();
+        BigInteger r = SecurityUtils.getRandomNumModN(q);
+        CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.ZERO, r);
+        BigInteger c = cipherText.getC();
+        BigInteger d = cipherText.getD();
+
+        BigInteger e1 = SecurityUtils.getRandomNumModN(q);
+        BigInteger z1 = SecurityUtils.getRandomNumModN(q);
+        BigInteger a1 = g.modPow(z1, p).multiply(c.modPow(e1, p)).mod(p);
+        BigInteger b1 = h.modPow(z1, p).multiply(d.multiply(g.modInverse(p)).modPow(e1, p)).mod(p);
+
+        BigInteger y = SecurityUtils.getRandomNumModN(q);
+        BigInteger a0 = p.subtract(g.modPow(y, p));
+        BigInteger b0 = h.modPow(y, p);
+
+        BigInteger s = new BigInteger(SecurityUtils.hash(a0.toByteArray(), b0.toByteArray(), a1.toByteArray(),
+                b1.toByteArray(), c.toByteArray(), d.toByteArray(), id.getBytes())).mod(q);
+        BigInteger e0 = s.subtract(e1).mod(q);
+        BigInteger z0 = y.subtract(e0.multiply(r)).mod(q);
+
+        return new CandidateVoteDTO(cipherText, id, new Proof(e0, e1, z0, z1, a0, b0, a1, b1));
+    }
+
+    @Test
+    public void shouldAcceptValidProofs() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<CandidateVoteDTO> votes = generateVotes(20, publicKey);
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        for (int i = 0; i < valid.length; i++) {
+            assertTrue("Valid proof " + i + " was rejected", valid[i]);
+        }
+    }
+
+    @Test
+    public void shouldFindInvalidProofsInBatch() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<CandidateVoteDTO> votes = generateVotes(20, publicKey);
+        Set<Integer> invalid = new HashSet<>();
+
+        Proof proof = votes.get(3).getProof();
+        proof.setZ1(proof.getZ1().add(ONE));
+        invalid.add(3);
+
+        votes.get(11).setId("wrong id");
+        invalid.add(11);
+
+        CandidateVoteDTO vote = votes.get(17);
+        vote.setCipherText(new CipherText(vote.getCipherText().getC(), vote.getCipherText().getD().multiply(publicKey.getG())));
+        invalid.add(17);
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals("Wrong result for proof " + i, !invalid.contains(i), valid[i]);
+            assertEquals("Batch result did not match single verification for proof " + i,
+                    VoteProofUtils.verifyProof(votes.get(i), publicKey), valid[i]);
+        }
+    }
+
+    @Test
+    public void shouldRejectCommitmentsWithWrongSign() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<CandidateVoteDTO> votes = generateVotes(4, publicKey);
+        for (int i = 0; i < 8; i++) {
+            votes.add(generateNegatedCommitmentVote(publicKey, "NEG" + i));
+        }
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals("Wrong result for proof " + i, i < 4, valid[i]);
+        }
+    }
+
+    @Test
+    public void shouldVerifyProofsWithoutCommitments() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<CandidateVoteDTO> votes = generateVotes(6, publicKey);
+        for (CandidateVoteDTO vote : votes) {
+            Proof proof = vote.getProof();
+            vote.setProof(new Proof(proof.getE0(), proof.getE1(), proof.getZ0(), proof.getZ1()));
+        }
+        Proof proof = votes.get(2).getProof();
+        proof.setE0(proof.getE0().add(ONE));
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals("Wrong result for proof " + i, i != 2, valid[i]);
+        }
+    }
+
+    @Test
+    public void shouldFilterBallots() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<BallotDTO> ballots = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ballots.add(SecurityUtils.generateBallot(i % 3, 3, "ID" + i, publicKey));
+        }
+
+        Proof sumProof = ballots.get(1).getSumIsOneProof();
+        sumProof.setZ0(sumProof.getZ0().add(ONE));
+
+        Proof voteProof = ballots.get(4).getCandidateVotes().get(2).getProof();
+        voteProof.setE1(voteProof.getE1().add(ONE));
+
+        List<BallotDTO> valid = VoteProofUtils.verifyBallots(ballots, publicKey);
+
+        assertEquals("Wrong number of valid ballots", 4, valid.size());
+        assertFalse("Ballot with invalid sum proof was accepted", valid.contains(ballots.get(1)));
+        assertFalse("Ballot with invalid vote proof was accepted", valid.contains(ballots.get(4)));
+        for (BallotDTO ballot : valid) {
+            assertTrue("Batch accepted ballot rejected by single verification", VoteProofUtils.verifyBallot(ballot, publicKey));
+        }
+    }
+
+    @Test
+    public void shouldBatchVerifyOnEllipticCurve() {
+        PublicKey publicKey = generateKeysFromP256().getPublicKey();
+        List<CandidateVoteDTO> votes = generateVotes(10, publicKey);
+        Set<Integer> invalid = new HashSet<>();
+
+        Proof proof = votes.get(3).getProof();
+        proof.setZ1(proof.getZ1().add(ONE));
+        invalid.add(3);
+
+        votes.get(6).getProof().setB0(ONE);
+        invalid.add(6);
+
+        boolean[] valid = new BatchVoteProofVerifier(publicKey).verify(votes);
+
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals("Wrong result for proof " + i, !invalid.contains(i), valid[i]);
+            assertEquals("Batch result did not match single verification for proof " + i,
+                    VoteProofUtils.verifyProof(votes.get(i), publicKey), valid[i]);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.entities.CipherText;
+import dk.mmj.eevhe.entities.KeyPair;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCipherTextAccumulator {
+
+    @Test
+    public void shouldMatchUnreducedSum() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        CipherTextAccumulator accumulator = new CipherTextAccumulator(p);
+        CipherText unreduced = new CipherText(BigInteger.ONE, BigInteger.ONE);
+
+        for (int i = 0; i < 50; i++) {
+            CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.valueOf(i % 2));
+            accumulator.add(cipherText);
+            unreduced = ElGamal.homomorphicAddition(unreduced, cipherText);
+        }
+
+        CipherText sum = accumulator.getSum();
+        assertEquals("c did not match", unreduced.getC().mod(p), sum.getC());
+        assertEquals("d did not match", unreduced.getD().mod(p), sum.getD());
+        assertTrue("Sum should stay reduced", sum.getC().bitLength() <= p.bitLength());
+    }
+
+    @Test
+    public void shouldDecryptMergedSum() throws UnableToDecryptException {
+        KeyPair keyPair = generateKeysFromP2048bitsG2();
+        PublicKey publicKey = keyPair.getPublicKey();
+        List<CipherText> first = new ArrayList<>();
+        List<CipherText> second = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            first.add(ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE));
+            second.add(ElGamal.homomorphicEncryption(publicKey, BigInteger.valueOf(i % 3 == 0 ? 1 : 0)));
+        }
+
+        CipherTextAccumulator accumulator = new CipherTextAccumulator(publicKey.getP()).addAll(first);
+        accumulator.add(new CipherTextAccumulator(publicKey.getP()).addAll(second));
+
+        assertEquals("Merged sum decrypted wrongly", 40, ElGamal.homomorphicDecryption(keyPair, accumulator.getSum(), 100));
+    }
+
+    @Test
+    public void shouldReduceUnreducedInput() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE);
+        CipherText shifted = new CipherText(cipherText.getC().add(p), cipherText.getD().add(p.multiply(p)));
+
+        assertEquals("Unreduced input should give same sum",
+                new CipherTextAccumulator(p).add(cipherText).getSum(),
+                new CipherTextAccumulator(p).add(shifted).getSum());
+    }
+}
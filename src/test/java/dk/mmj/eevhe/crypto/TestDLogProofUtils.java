@@ -5,17 +5,22 @@ import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofTestUtils;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
 import dk.mmj.eevhe.entities.CipherText;
 import dk.mmj.eevhe.entities.DistKeyGenResult;
+import dk.mmj.eevhe.entities.KeyPair;
 import dk.mmj.eevhe.entities.PublicKey;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import static dk.mmj.eevhe.crypto.TestUtils.getKeyGenParamsFromP2048bitsG2;
 import static dk.mmj.eevhe.crypto.TestUtils.getKeyGenParamsFromP227G172;
 import static dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils.generateProof;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class TestDLogProofUtils {
@@ -110,4 +115,80 @@ public class TestDLogProofUtils {
         boolean verification = DLogProofUtils.verifyProof(cipherText, partialDecryption, partialPublicKey, fakeproofs.get(1), 1);
         assertTrue("Couldn't verify proof.", verification);
     }
+
+    @Test
+    public void shouldVerifyProofOnEllipticCurve() {
+        KeyPair keyPair = TestUtils.generateKeysFromP256();
+        PublicKey publicKey = keyPair.getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE);
+        CipherText partialDecryption = new CipherText(
+                ElGamal.partialDecryption(cipherText.getC(), keyPair.getSecretKey(), group), cipherText.getD());
+
+        DLogProofUtils.Proof proof = generateProof(cipherText, keyPair.getSecretKey(), publicKey, 1);
+
+        assertTrue("Couldn't verify proof.", DLogProofUtils.verifyProof(cipherText, partialDecryption, publicKey, proof, 1));
+        assertFalse("Verified proof for wrong id.", DLogProofUtils.verifyProof(cipherText, partialDecryption, publicKey, proof, 2));
+
+        CipherText invalid = new CipherText(BigInteger.ONE, cipherText.getD());
+        assertFalse("Verified partial decryption not on the curve.", DLogProofUtils.verifyProof(cipherText, invalid, publicKey, proof, 1));
+    }
+
+    private void assertAggregateProof(KeyPair keyPair) {
+        PublicKey publicKey = keyPair.getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        List<CipherText> cipherTexts = new ArrayList<>();
+        List<BigInteger> partials = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.valueOf(i % 2));
+            cipherTexts.add(cipherText);
+            partials.add(ElGamal.partialDecryption(cipherText.getC(), keyPair.getSecretKey(), group));
+        }
+
+        DLogProofUtils.Proof proof = DLogProofUtils.generateAggregateProof(cipherTexts, partials, keyPair.getSecretKey(), publicKey, 1);
+
+        assertTrue("Couldn't verify aggregated proof.", DLogProofUtils.verifyAggregateProof(cipherTexts, partials, publicKey, proof, 1));
+        assertFalse("Verified aggregated proof for wrong id.", DLogProofUtils.verifyAggregateProof(cipherTexts, partials, publicKey, proof, 2));
+
+        List<BigInteger> tampered = new ArrayList<>(partials);
+        tampered.set(2, group.operate(tampered.get(2), publicKey.getG()));
+        assertFalse("Verified tampered partial decryption.", DLogProofUtils.verifyAggregateProof(cipherTexts, tampered, publicKey, proof, 1));
+
+        List<BigInteger> swapped = new ArrayList<>(partials);
+        Collections.swap(swapped, 0, 1);
+        assertFalse("Verified swapped partial decryptions.", DLogProofUtils.verifyAggregateProof(cipherTexts, swapped, publicKey, proof, 1));
+
+        assertFalse("Verified with missing partial decryption.",
+                DLogProofUtils.verifyAggregateProof(cipherTexts, partials.subList(0, 3), publicKey, proof, 1));
+        assertFalse("Verified without proof.", DLogProofUtils.verifyAggregateProof(cipherTexts, partials, publicKey, null, 1));
+    }
+
+    @Test
+    public void shouldVerifyAggregateProof() {
+        assertAggregateProof(TestUtils.generateKeysFromP2048bitsG2());
+    }
+
+    @Test
+    public void shouldVerifyAggregateProofOnEllipticCurve() {
+        assertAggregateProof(TestUtils.generateKeysFromP256());
+    }
+
+    @Test
+    public void shouldRejectAggregateProofWithPartialOutsideGroup() {
+        KeyPair keyPair = TestUtils.generateKeysFromP2048bitsG2();
+        PublicKey publicKey = keyPair.getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        List<CipherText> cipherTexts = new ArrayList<>();
+        List<BigInteger> partials = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE);
+            cipherTexts.add(cipherText);
+            partials.add(ElGamal.partialDecryption(cipherText.getC(), keyPair.getSecretKey(), group));
+        }
+        DLogProofUtils.Proof proof = DLogProofUtils.generateAggregateProof(cipherTexts, partials, keyPair.getSecretKey(), publicKey, 1);
+
+        BigInteger p = publicKey.getP();
+        partials.set(0, partials.get(0).multiply(p.subtract(BigInteger.ONE)).mod(p));
+        assertFalse("Verified partial decryption outside the subgroup.", DLogProofUtils.verifyAggregateProof(cipherTexts, partials, publicKey, proof, 1));
+    }
 }
@@ -0,0 +1,120 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP11G2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestDiscreteLogTable {
+
+    @Test
+    public void shouldSolveLogarithms() throws UnableToDecryptException {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger g = publicKey.getG();
+        BigInteger p = publicKey.getP();
+        int max = 10_000;
+        DiscreteLogTable table = DiscreteLogTable.forGroup(g, p, max);
+
+        int m = table.getBabySteps();
+        for (int b : new int[]{0, 1, m - 1, m, m + 1, 2 * m, 4321, max}) {
+            assertEquals("Wrong logarithm", b, table.solve(g.modPow(valueOf(b), p), max));
+        }
+    }
+
+    @Test
+    public void shouldFindSmallestLogarithm() throws UnableToDecryptException {
+        PublicKey publicKey = generateKeysFromP11G2().getPublicKey();
+        BigInteger g = publicKey.getG();
+        BigInteger p = publicKey.getP();
+        DiscreteLogTable table = new DiscreteLogTable(g, p, 4);
+
+        for (int b = 0; b < 40; b++) {
+            int expected = 0;
+            while (!g.modPow(valueOf(expected), p).equals(g.modPow(valueOf(b), p))) {
+                expected++;
+            }
+
+            assertEquals("Did not find smallest logarithm of g^" + b, expected, table.solve(g.modPow(valueOf(b), p), 40));
+        }
+    }
+
+    @Test
+    public void shouldFailWhenOutOfRange() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger g = publicKey.getG();
+        BigInteger p = publicKey.getP();
+        DiscreteLogTable table = DiscreteLogTable.forGroup(g, p, 100);
+
+        try {
+            table.solve(g.modPow(valueOf(101), p), 100);
+            fail("Should not find logarithm larger than max");
+        } catch (UnableToDecryptException ignored) {
+        }
+
+        try {
+            table.solve(g.modPow(valueOf(100), p), 99);
+            fail("Should not find logarithm larger than max, even when giant step contains it");
+        } catch (UnableToDecryptException ignored) {
+        }
+    }
+
+    @Test
+    public void shouldGrowCachedTable() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        DiscreteLogTable small = DiscreteLogTable.forGroup(publicKey.getG(), publicKey.getP(), 16);
+        DiscreteLogTable large = DiscreteLogTable.forGroup(publicKey.getG(), publicKey.getP(), 1_000_000);
+
+        assertTrue("Table should grow for larger logarithms", large.getBabySteps() > small.getBabySteps());
+        assertSame("Larger table should be reused for smaller logarithms", large,
+                DiscreteLogTable.forGroup(publicKey.getG(), publicKey.getP(), 16));
+    }
+
+    @Test
+    public void shouldWriteAndReadTable() throws IOException, UnableToDecryptException {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger g = publicKey.getG();
+        BigInteger p = publicKey.getP();
+        Path path = Files.createTempFile("dlog", ".table");
+
+        try {
+            new DiscreteLogTable(g, p, 500).write(path);
+            DiscreteLogTable read = DiscreteLogTable.read(path);
+
+            assertEquals("Baby steps not preserved", 500, read.getBabySteps());
+            assertEquals("Read table solved wrongly", 499, read.solve(g.modPow(valueOf(499), p), 500));
+            assertEquals("Read table solved wrongly", 1234, read.solve(g.modPow(valueOf(1234), p), 2000));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void shouldSolveAndStoreLogarithmsOnEllipticCurve() throws IOException, UnableToDecryptException {
+        EllipticCurveGroup group = new EllipticCurveGroup(EllipticCurveGroup.P256);
+        BigInteger g = group.getGenerator();
+        DiscreteLogTable table = DiscreteLogTable.forGroup(group, g, 1000);
+
+        for (int b : new int[]{0, 1, 31, 32, 999, 1000}) {
+            assertEquals("Wrong logarithm", b, table.solve(group.exponentiate(g, valueOf(b)), 1000));
+        }
+
+        Path path = Files.createTempFile("dlog", ".table");
+        try {
+            table.write(path);
+            DiscreteLogTable read = DiscreteLogTable.read(path);
+
+            assertEquals("Read table solved wrongly", 777, read.solve(group.exponentiate(g, valueOf(777)), 1000));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -280,4 +280,35 @@ public class TestElGamal {
             return g;
         }
     }
+
+    @Test
+    public void shouldBeAbleToEncryptAndDecryptOnEllipticCurve() {
+        try {
+            KeyPair keyPair = generateKeysFromP256();
+            BigInteger message = SecurityUtils.getRandomNumModN(BigInteger.valueOf(maxIterations));
+            CipherText cipherText = ElGamal.homomorphicEncryption(keyPair.getPublicKey(), message);
+            int m = ElGamal.homomorphicDecryption(keyPair, cipherText, maxIterations);
+
+            assertEquals(message.intValue(), m);
+        } catch (UnableToDecryptException e) {
+            fail("Was unable to decrypt encrypted value, with message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldSumVotesOnEllipticCurve() {
+        try {
+            KeyPair keyPair = generateKeysFromP256();
+            List<CandidateVoteDTO> votes = Arrays.asList(
+                    SecurityUtils.generateVote(1, "ID1", keyPair.getPublicKey()),
+                    SecurityUtils.generateVote(0, "ID2", keyPair.getPublicKey()),
+                    SecurityUtils.generateVote(1, "ID3", keyPair.getPublicKey()));
+
+            CipherText sum = SecurityUtils.concurrentVoteSum(votes, keyPair.getPublicKey(), 2);
+
+            assertEquals("Wrong sum of votes", 2, ElGamal.homomorphicDecryption(keyPair, sum, votes.size()));
+        } catch (UnableToDecryptException e) {
+            fail("Was unable to decrypt encrypted value, with message: " + e.getMessage());
+        }
+    }
 }
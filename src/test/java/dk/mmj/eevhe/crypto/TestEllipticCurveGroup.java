@@ -0,0 +1,71 @@
+package dk.mmj.eevhe.crypto;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class TestEllipticCurveGroup {
+    private final EllipticCurveGroup group = new EllipticCurveGroup(EllipticCurveGroup.P256);
+
+    @Test
+    public void shouldSatisfyGroupLaws() {
+        BigInteger g = group.getGenerator();
+        BigInteger a = SecurityUtils.getRandomNumModN(group.getOrder());
+        BigInteger b = SecurityUtils.getRandomNumModN(group.getOrder());
+
+        BigInteger gA = group.exponentiate(g, a);
+        BigInteger gB = group.exponentiate(g, b);
+
+        assertEquals("g^a * g^b should be g^(a+b)", group.exponentiate(g, a.add(b)), group.operate(gA, gB));
+        assertEquals("Operation should be commutative", group.operate(gA, gB), group.operate(gB, gA));
+        assertEquals("Identity should be neutral", gA, group.operate(gA, group.getIdentity()));
+        assertEquals("Element times inverse should be identity", group.getIdentity(), group.operate(gA, group.invert(gA)));
+        assertEquals("g^q should be identity", group.getIdentity(), group.exponentiate(g, group.getOrder()));
+        assertEquals("Negative exponent should invert", group.invert(gA), group.exponentiate(g, a.negate()));
+        assertEquals("Division should multiply by inverse", gA, group.divide(group.operate(gA, gB), gB));
+    }
+
+    @Test
+    public void shouldMatchExponentiation() {
+        BigInteger g = group.getGenerator();
+        BigInteger h = group.exponentiate(g, SecurityUtils.getRandomNumModN(group.getOrder()));
+        BigInteger a = SecurityUtils.getRandomNumModN(group.getOrder());
+        BigInteger b = SecurityUtils.getRandomNumModN(group.getOrder());
+
+        assertEquals("Fixed base exponentiation did not match",
+                group.exponentiate(h, a), group.fixedBase(h).apply(a));
+        assertEquals("Multi-exponentiation did not match",
+                group.operate(group.exponentiate(g, a), group.exponentiate(h, b.negate())),
+                group.multiExponentiate(new BigInteger[]{g, h}, new BigInteger[]{a, b.negate()}));
+        assertEquals("Empty multi-exponentiation should be identity",
+                group.getIdentity(), group.multiExponentiate(new BigInteger[0], new BigInteger[0]));
+    }
+
+    @Test
+    public void shouldRejectValuesNotOnCurve() {
+        BigInteger g = group.getGenerator();
+
+        assertTrue("Generator should be an element", group.isElement(g));
+        assertTrue("Identity should be an element", group.isElement(group.getIdentity()));
+        assertFalse("Negative value should not be an element", group.isElement(BigInteger.ONE.negate()));
+        assertFalse("Too large value should not be an element", group.isElement(g.shiftLeft(8)));
+        assertFalse("Invalid prefix should not be an element", group.isElement(BigInteger.ONE));
+
+        try {
+            group.operate(g, BigInteger.ONE);
+            fail("Operating on a value not on the curve should fail");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void shouldRejectUnknownCurve() {
+        try {
+            new EllipticCurveGroup("not-a-curve");
+            fail("Unknown curve should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP256;
+import static org.junit.Assert.*;
+
+public class TestEncryptionPadPool {
+
+    private void assertValidBallots(KeyPair keyPair) throws UnableToDecryptException {
+        PublicKey publicKey = keyPair.getPublicKey();
+        int candidates = 3;
+
+        try (EncryptionPadPool pool = new EncryptionPadPool(publicKey, 8, 2)) {
+            for (int vote = 0; vote <= candidates; vote++) {
+                BallotDTO ballot = SecurityUtils.generateBallot(vote, candidates, "ID" + vote, pool);
+
+                assertTrue("Ballot for " + vote + " did not verify", VoteProofUtils.verifyBallot(ballot, publicKey));
+                for (int i = 0; i < candidates; i++) {
+                    CipherText cipherText = ballot.getCandidateVotes().get(i).getCipherText();
+                    assertEquals("Wrong encryption for candidate " + i, i == vote ? 1 : 0,
+                            ElGamal.homomorphicDecryption(keyPair, cipherText, 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldGenerateValidBallots() throws UnableToDecryptException {
+        assertValidBallots(generateKeysFromP2048bitsG2());
+    }
+
+    @Test
+    public void shouldGenerateValidBallotsOnEllipticCurve() throws UnableToDecryptException {
+        assertValidBallots(generateKeysFromP256());
+    }
+
+    @Test
+    public void shouldNotVerifyProofWithWrongWitness() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        EncryptionPad pad = EncryptionPad.compute(publicKey);
+        CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE, pad);
+
+        Proof proof = VoteProofUtils.generateProof(cipherText, publicKey, pad.getR().add(BigInteger.ONE), "ID",
+                BigInteger.ONE, EncryptionPad.compute(publicKey));
+
+        assertFalse("Verified proof with wrong witness",
+                VoteProofUtils.verifyProof(new CandidateVoteDTO(cipherText, "ID", proof), publicKey));
+    }
+
+    @Test
+    public void shouldCountStarvations() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+
+        try (EncryptionPadPool pool = new EncryptionPadPool(publicKey, 4, 0)) {
+            SecurityUtils.generateBallot(1, 2, "ID", pool);
+
+            assertEquals("Pool without threads should stay empty", 0, pool.getFillLevel());
+            assertEquals("Wrong capacity", 4, pool.getCapacity());
+            assertEquals("Ballot with two candidates should take three pads", 3, pool.getTakenCount());
+            assertEquals("Every pad should have been computed on demand", 3, pool.getStarvationCount());
+        }
+    }
+
+    @Test
+    public void shouldFillInBackground() throws InterruptedException {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+
+        try (EncryptionPadPool pool = new EncryptionPadPool(publicKey, 6, 2)) {
+            for (int i = 0; i < 200 && pool.getFillLevel() < pool.getCapacity(); i++) {
+                Thread.sleep(50);
+            }
+            assertEquals("Pool should have been filled", 6, pool.getFillLevel());
+
+            pool.close();
+            SecurityUtils.generateBallot(0, 2, "ID", pool);
+
+            assertEquals("Pads should have been taken from the pool", 3, pool.getFillLevel());
+            assertEquals("No pads should have been computed on demand", 0, pool.getStarvationCount());
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidSize() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+
+        try {
+            new EncryptionPadPool(publicKey, 0, 1);
+            fail("Should reject empty pool");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
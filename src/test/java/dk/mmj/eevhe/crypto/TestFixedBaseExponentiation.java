@@ -0,0 +1,66 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.KeyPair;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP11G2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestFixedBaseExponentiation {
+
+    @Test
+    public void shouldMatchModPow() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+
+        for (int i = 0; i < 20; i++) {
+            BigInteger exponent = SecurityUtils.getRandomNumModN(publicKey.getQ());
+
+            assertEquals("g^x did not match modPow", publicKey.getG().modPow(exponent, p), exponentiation.powG(exponent));
+            assertEquals("h^x did not match modPow", publicKey.getH().modPow(exponent, p), exponentiation.powH(exponent));
+        }
+    }
+
+    @Test
+    public void shouldHandleEdgeExponents() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+
+        assertEquals("g^0 should be one", BigInteger.ONE, exponentiation.powG(BigInteger.ZERO));
+        assertEquals("g^1 should be g", publicKey.getG().mod(p), exponentiation.powG(BigInteger.ONE));
+
+        BigInteger large = p.multiply(BigInteger.TEN);
+        assertEquals("Exponent larger than table did not match modPow", publicKey.getH().modPow(large, p), exponentiation.powH(large));
+
+        BigInteger negative = BigInteger.valueOf(-7);
+        assertEquals("Negative exponent did not match modPow", publicKey.getG().modPow(negative, p), exponentiation.powG(negative));
+        assertEquals("Inverse of g was wrong", publicKey.getG().modInverse(p), exponentiation.getGInverse());
+    }
+
+    @Test
+    public void shouldWorkForSmallGroups() {
+        KeyPair keyPair = generateKeysFromP11G2();
+        PublicKey publicKey = keyPair.getPublicKey();
+        FixedBaseExponentiation exponentiation = FixedBaseExponentiation.forKey(publicKey);
+
+        for (int i = 0; i < 100; i++) {
+            BigInteger exponent = BigInteger.valueOf(i);
+            assertEquals("g^x did not match modPow", publicKey.getG().modPow(exponent, publicKey.getP()), exponentiation.powG(exponent));
+        }
+    }
+
+    @Test
+    public void shouldCacheInstancePerKey() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        PublicKey copy = new PublicKey(publicKey.getH(), publicKey.getG(), publicKey.getQ());
+
+        assertSame("Equal keys should share instance", FixedBaseExponentiation.forKey(publicKey), FixedBaseExponentiation.forKey(copy));
+    }
+}
@@ -0,0 +1,67 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestGroups {
+
+    @Test
+    public void shouldResolveSafePrimeGroupForUnnamedKey() {
+        PublicKey publicKey = new PublicKey(valueOf(4), valueOf(2), valueOf(11));
+
+        Group group = Groups.forKey(publicKey);
+
+        assertEquals("Unnamed key should use Z_p^* with p = 2q+1", new ModPGroup(valueOf(23), valueOf(11)), group);
+        assertNull("Unnamed group should have no name", group.getName());
+    }
+
+    @Test
+    public void shouldResolveNamedCurve() {
+        Group group = Groups.named(EllipticCurveGroup.P256);
+        PublicKey publicKey = new PublicKey(BigInteger.ZERO, BigInteger.ZERO, group.getOrder(), EllipticCurveGroup.P256);
+
+        assertSame("Named groups should be cached", group, Groups.forKey(publicKey));
+        assertEquals("Group should have the requested name", EllipticCurveGroup.P256, group.getName());
+    }
+
+    @Test
+    public void shouldUseRegisteredGroup() {
+        ModPGroup registered = new ModPGroup(valueOf(23), valueOf(11));
+        Groups.register("test-group", () -> registered);
+
+        assertSame("Registered group should be returned", registered, Groups.named("test-group"));
+    }
+
+    @Test
+    public void shouldRejectUnknownGroup() {
+        try {
+            Groups.named("unknown-group");
+            fail("Unknown group name should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void shouldResolveSchnorrGroupFromModulus() {
+        ModPGroup schnorrGroup = new ModPGroup(valueOf(31), valueOf(5));
+        PublicKey publicKey = Groups.publicKey(valueOf(4), valueOf(2), schnorrGroup);
+
+        assertEquals("Key should hold the modulus", valueOf(31), publicKey.getModulus());
+        assertEquals("p should be the modulus", valueOf(31), publicKey.getP());
+        assertEquals("Key should resolve the Schnorr group", schnorrGroup, Groups.forKey(publicKey));
+    }
+
+    @Test
+    public void shouldNotStoreModulusForSafePrimeGroup() {
+        PublicKey publicKey = Groups.publicKey(valueOf(4), valueOf(2), new ModPGroup(valueOf(23)));
+
+        assertNull("Modulus of safe prime group should be implicit", publicKey.getModulus());
+        assertNull("Safe prime group should have no name", publicKey.getGroup());
+        assertEquals("p should be 2q+1", valueOf(23), publicKey.getP());
+    }
+}
@@ -0,0 +1,224 @@
+package dk.mmj.eevhe.crypto;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestMerkleTree {
+    private static final int MAX_SIZE = 33;
+
+    private static byte[] leaf(int i) {
+        return ("ballot" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MerkleTree tree(int size) {
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < size; i++) {
+            tree.append(leaf(i));
+        }
+        return tree;
+    }
+
+    /**
+     * Root computed directly from the definition in RFC 6962
+     */
+    private static byte[] referenceRoot(int from, int to) {
+        SHA256Digest digest = new SHA256Digest();
+        if (to - from == 1) {
+            digest.update((byte) 0);
+            byte[] data = leaf(from);
+            digest.update(data, 0, data.length);
+        } else if (to > from) {
+            int k = Integer.highestOneBit(to - from - 1);
+            byte[] left = referenceRoot(from, from + k);
+            byte[] right = referenceRoot(from + k, to);
+            digest.update((byte) 1);
+            digest.update(left, 0, left.length);
+            digest.update(right, 0, right.length);
+        }
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    @Test
+    public void shouldMatchKnownRoots() {
+        MerkleTree tree = new MerkleTree();
+        assertEquals("Wrong root of empty tree", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                Hex.toHexString(tree.root(0)));
+
+        tree.append(new byte[0]);
+        assertEquals("Wrong root of tree with empty leaf", "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+                Hex.toHexString(tree.root(1)));
+    }
+
+    @Test
+    public void shouldMatchDefinitionForAllSizes() {
+        MerkleTree tree = tree(MAX_SIZE);
+        for (int size = 0; size <= MAX_SIZE; size++) {
+            assertArrayEquals("Wrong root for size " + size, referenceRoot(0, size), tree.root(size));
+        }
+    }
+
+    @Test
+    public void inclusionProofsShouldVerify() {
+        MerkleTree tree = tree(MAX_SIZE);
+        for (int size = 1; size <= MAX_SIZE; size++) {
+            byte[] root = tree.root(size);
+            for (int index = 0; index < size; index++) {
+                List<byte[]> path = tree.inclusionProof(index, size);
+                assertTrue("Proof for " + index + " in tree of size " + size + " should verify",
+                        MerkleTree.verifyInclusion(leaf(index), index, size, path, root));
+                assertFalse("Proof should not verify for other leaf",
+                        MerkleTree.verifyInclusion(leaf(index + 1), index, size, path, root));
+                assertFalse("Proof should not verify against other root",
+                        MerkleTree.verifyInclusion(leaf(index), index, size, path, tree.root(size - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void inclusionProofsShouldBeLogarithmic() {
+        MerkleTree tree = tree(1000);
+        assertTrue("Proof should have at most ceil(log2(n)) hashes", tree.inclusionProof(500, 1000).size() <= 10);
+    }
+
+    @Test
+    public void tamperedInclusionProofShouldNotVerify() {
+        MerkleTree tree = tree(7);
+        List<byte[]> path = tree.inclusionProof(3, 7);
+        byte[] root = tree.root(7);
+
+        List<byte[]> tampered = new ArrayList<>(path);
+        byte[] hash = tampered.get(1).clone();
+        hash[0] ^= 1;
+        tampered.set(1, hash);
+        assertFalse("Tampered proof should not verify", MerkleTree.verifyInclusion(leaf(3), 3, 7, tampered, root));
+
+        List<byte[]> extended = new ArrayList<>(path);
+        extended.add(root);
+        assertFalse("Too long proof should not verify", MerkleTree.verifyInclusion(leaf(3), 3, 7, extended, root));
+        assertFalse("Too short proof should not verify",
+                MerkleTree.verifyInclusion(leaf(3), 3, 7, path.subList(0, path.size() - 1), root));
+    }
+
+    private static List<byte[]> leaves(int from, int to) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            leaves.add(leaf(i));
+        }
+        return leaves;
+    }
+
+    @Test
+    public void rangeProofsShouldVerify() {
+        MerkleTree tree = tree(MAX_SIZE);
+        for (int size = 1; size <= MAX_SIZE; size++) {
+            byte[] root = tree.root(size);
+            for (int from = 0; from < size; from++) {
+                for (int to = from + 1; to <= size; to++) {
+                    List<byte[]> proof = tree.rangeProof(from, to, size);
+                    assertTrue("Proof for [" + from + ";" + to + ") in tree of size " + size + " should verify",
+                            MerkleTree.verifyRange(leaves(from, to), from, size, proof, root));
+                    assertFalse("Proof should not verify for leaves at other indices",
+                            MerkleTree.verifyRange(leaves(from + 1, to + 1), from, size, proof, root));
+                    assertFalse("Proof should not verify against other root",
+                            MerkleTree.verifyRange(leaves(from, to), from, size, proof, tree.root(size - 1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rangeProofsShouldBeLogarithmic() {
+        MerkleTree tree = tree(1000);
+        assertTrue("Proof should have at most 2 * ceil(log2(n)) hashes", tree.rangeProof(300, 700, 1000).size() <= 20);
+        assertArrayEquals("A range of one leaf should be proven like its inclusion",
+                tree.inclusionProof(500, 1000).stream().map(Hex::toHexString).sorted().toArray(),
+                tree.rangeProof(500, 501, 1000).stream().map(Hex::toHexString).sorted().toArray());
+    }
+
+    @Test
+    public void tamperedRangeProofShouldNotVerify() {
+        MerkleTree tree = tree(13);
+        List<byte[]> proof = tree.rangeProof(3, 6, 13);
+        byte[] root = tree.root(13);
+
+        List<byte[]> tampered = new ArrayList<>(proof);
+        byte[] hash = tampered.get(1).clone();
+        hash[0] ^= 1;
+        tampered.set(1, hash);
+        assertFalse("Tampered proof should not verify", MerkleTree.verifyRange(leaves(3, 6), 3, 13, tampered, root));
+
+        List<byte[]> extended = new ArrayList<>(proof);
+        extended.add(root);
+        assertFalse("Too long proof should not verify", MerkleTree.verifyRange(leaves(3, 6), 3, 13, extended, root));
+        assertFalse("Too short proof should not verify",
+                MerkleTree.verifyRange(leaves(3, 6), 3, 13, proof.subList(0, proof.size() - 1), root));
+        assertFalse("Leaves outside the tree should not verify", MerkleTree.verifyRange(leaves(3, 6), 11, 13, proof, root));
+        assertFalse("Proof should not verify without leaves", MerkleTree.verifyRange(Collections.emptyList(), 3, 13, proof, root));
+    }
+
+    @Test
+    public void consistencyProofsShouldVerify() {
+        MerkleTree tree = tree(MAX_SIZE);
+        for (int newSize = 0; newSize <= MAX_SIZE; newSize++) {
+            byte[] newRoot = tree.root(newSize);
+            for (int oldSize = 0; oldSize <= newSize; oldSize++) {
+                byte[] oldRoot = tree.root(oldSize);
+                List<byte[]> proof = tree.consistencyProof(oldSize, newSize);
+                assertTrue("Proof from " + oldSize + " to " + newSize + " should verify",
+                        MerkleTree.verifyConsistency(oldSize, newSize, oldRoot, newRoot, proof));
+
+                if (oldSize > 0 && oldSize < newSize) {
+                    assertFalse("Proof should not verify for other old root",
+                            MerkleTree.verifyConsistency(oldSize, newSize, tree.root(oldSize - 1), newRoot, proof));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldDetectChangedHistory() {
+        MerkleTree tree = tree(5);
+        MerkleTree forked = tree(3);
+        forked.append(leaf(7));
+        forked.append(leaf(4));
+        forked.append(leaf(5));
+
+        assertFalse("Changed ballot should not be consistent with old root", MerkleTree.verifyConsistency(
+                5, 6, tree.root(5), forked.root(6), forked.consistencyProof(5, 6)));
+        assertTrue("Unchanged prefix should still be consistent", MerkleTree.verifyConsistency(
+                3, 6, tree.root(3), forked.root(6), forked.consistencyProof(3, 6)));
+    }
+
+    @Test
+    public void shouldRejectInvalidSizes() {
+        MerkleTree tree = tree(4);
+        for (Runnable invalid : Arrays.<Runnable>asList(
+                () -> tree.root(5),
+                () -> tree.inclusionProof(4, 4),
+                () -> tree.inclusionProof(0, 5),
+                () -> tree.rangeProof(2, 2, 4),
+                () -> tree.rangeProof(2, 5, 4),
+                () -> tree.consistencyProof(3, 2),
+                () -> tree.consistencyProof(2, 5))) {
+            try {
+                invalid.run();
+                fail("Should not accept invalid sizes");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        assertFalse("Empty tree has no leaves", MerkleTree.verifyInclusion(leaf(0), 0, 0, Collections.emptyList(), tree.root(0)));
+    }
+}
@@ -0,0 +1,61 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestModPGroup {
+
+    @Test
+    public void shouldMatchModularArithmetic() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        ModPGroup group = new ModPGroup(p, publicKey.getQ());
+        BigInteger g = publicKey.getG();
+        BigInteger h = publicKey.getH();
+        BigInteger a = SecurityUtils.getRandomNumModN(publicKey.getQ());
+        BigInteger b = SecurityUtils.getRandomNumModN(publicKey.getQ());
+
+        assertEquals("Operation should be multiplication mod p", g.multiply(h).mod(p), group.operate(g, h));
+        assertEquals("Exponentiation should be modPow", h.modPow(a, p), group.exponentiate(h, a));
+        assertEquals("Negative exponent should invert", h.modPow(a, p).modInverse(p), group.exponentiate(h, a.negate()));
+        assertEquals("Fixed base should match modPow", h.modPow(a, p), group.fixedBase(h).apply(a));
+        assertEquals("Multi-exponentiation should match modPow",
+                g.modPow(a, p).multiply(h.modPow(b, p)).mod(p),
+                group.multiExponentiate(new BigInteger[]{g, h}, new BigInteger[]{a, b}));
+        assertEquals("Unreduced operands should be reduced", g.multiply(h).mod(p), group.operate(g.add(p), h));
+    }
+
+    @Test
+    public void shouldDetermineMembership() {
+        ModPGroup safePrimeGroup = new ModPGroup(valueOf(23));
+        assertTrue("p=2q+1 should be a safe prime group", safePrimeGroup.isSafePrimeGroup());
+        assertEquals("q should be (p-1)/2", valueOf(11), safePrimeGroup.getOrder());
+        assertTrue("4 is a quadratic residue mod 23", safePrimeGroup.isElement(valueOf(4)));
+        assertFalse("5 is not a quadratic residue mod 23", safePrimeGroup.isElement(valueOf(5)));
+        assertFalse("0 is not an element", safePrimeGroup.isElement(BigInteger.ZERO));
+        assertFalse("p is not an element", safePrimeGroup.isElement(valueOf(23)));
+
+        ModPGroup schnorrGroup = new ModPGroup(valueOf(23), valueOf(11));
+        assertEquals("Groups with equal parameters should be equal", safePrimeGroup, schnorrGroup);
+
+        ModPGroup smallGroup = new ModPGroup(valueOf(31), valueOf(5));
+        assertFalse("p=31, q=5 is not a safe prime group", smallGroup.isSafePrimeGroup());
+        assertTrue("2 has order 5 mod 31", smallGroup.isElement(valueOf(2)));
+        assertFalse("3 has order 30 mod 31", smallGroup.isElement(valueOf(3)));
+    }
+
+    @Test
+    public void shouldRejectOrderNotDividingGroup() {
+        try {
+            new ModPGroup(valueOf(23), valueOf(7));
+            fail("q must divide p-1");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
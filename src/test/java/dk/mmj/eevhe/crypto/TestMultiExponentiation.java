@@ -0,0 +1,81 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestMultiExponentiation {
+
+    private static BigInteger naiveProduct(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        BigInteger acc = BigInteger.ONE;
+        for (int i = 0; i < bases.length; i++) {
+            acc = acc.multiply(bases[i].modPow(exponents[i], modulus)).mod(modulus);
+        }
+        return acc;
+    }
+
+    private static void assertMatchesNaive(int count, int exponentBits) {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BigInteger p = publicKey.getP();
+        BigInteger[] bases = new BigInteger[count];
+        BigInteger[] exponents = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            bases[i] = publicKey.getG().modPow(SecurityUtils.getRandomNumModN(publicKey.getQ()), p);
+            exponents[i] = SecurityUtils.getRandomNumModN(BigInteger.ONE.shiftLeft(exponentBits));
+        }
+
+        assertEquals("Product of " + count + " bases did not match naive computation",
+                naiveProduct(bases, exponents, p), MultiExponentiation.product(bases, exponents, p));
+    }
+
+    @Test
+    public void shouldMatchNaiveForFewBases() {
+        assertMatchesNaive(2, 2048);
+    }
+
+    @Test
+    public void shouldMatchNaiveUsingStraus() {
+        assertMatchesNaive(MultiExponentiation.STRAUS_THRESHOLD, 2048);
+        assertMatchesNaive(MultiExponentiation.STRAUS_THRESHOLD + 3, 64);
+    }
+
+    @Test
+    public void shouldMatchNaiveUsingPippenger() {
+        assertMatchesNaive(MultiExponentiation.PIPPENGER_THRESHOLD, 256);
+        assertMatchesNaive(MultiExponentiation.PIPPENGER_THRESHOLD * 2, 64);
+    }
+
+    @Test
+    public void shouldHandleNegativeAndZeroExponents() {
+        BigInteger p = BigInteger.valueOf(23);
+        BigInteger[] bases = new BigInteger[10];
+        BigInteger[] exponents = new BigInteger[10];
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = BigInteger.valueOf(i + 2);
+            exponents[i] = BigInteger.valueOf(i % 3 == 0 ? -i : i);
+            expected = expected.multiply(bases[i].modPow(exponents[i], p)).mod(p);
+        }
+
+        assertEquals("Product with negative exponents was wrong", expected, MultiExponentiation.product(bases, exponents, p));
+        assertEquals("Empty product should be one", BigInteger.ONE,
+                MultiExponentiation.product(new BigInteger[0], new BigInteger[0], p));
+        assertEquals("Two-base product was wrong", BigInteger.valueOf(3).modPow(BigInteger.valueOf(-5), p)
+                        .multiply(BigInteger.valueOf(7).modPow(BigInteger.valueOf(9), p)).mod(p),
+                MultiExponentiation.product(BigInteger.valueOf(3), BigInteger.valueOf(-5), BigInteger.valueOf(7), BigInteger.valueOf(9), p));
+    }
+
+    @Test
+    public void shouldRejectMismatchedLengths() {
+        try {
+            MultiExponentiation.product(new BigInteger[2], new BigInteger[3], BigInteger.TEN);
+            fail("Should throw on mismatched lengths");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.zeroknowledge.ProofCache;
+import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP11G2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static org.junit.Assert.*;
+
+public class TestProofCache {
+
+    @Test
+    public void shouldVerifyBallotOnce() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        BallotDTO ballot = SecurityUtils.generateBallot(1, 2, "ID", publicKey);
+        ProofCache cache = new ProofCache(10);
+        AtomicInteger verifications = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue("Ballot should be valid", cache.verify(ballot, publicKey, b -> verifications.incrementAndGet() > 0));
+        }
+        BallotDTO copy = new BallotDTO(new ArrayList<>(ballot.getCandidateVotes()), ballot.getId(), ballot.getSumIsOneProof());
+        assertTrue("Equal ballot should share entry", cache.verify(copy, publicKey, b -> verifications.incrementAndGet() > 0));
+
+        assertEquals("Ballot should only be verified once", 1, verifications.get());
+        assertEquals("Wrong hit count", 3, cache.getHitCount());
+        assertEquals("Wrong miss count", 1, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldDistinguishContentAndKey() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        PublicKey otherKey = generateKeysFromP11G2().getPublicKey();
+        CandidateVoteDTO vote = SecurityUtils.generateVote(1, "ID", publicKey);
+        CandidateVoteDTO wrongId = new CandidateVoteDTO(vote.getCipherText(), "OTHER", vote.getProof());
+        ProofCache cache = new ProofCache(10);
+
+        assertTrue("Vote should be valid", cache.verify(vote, publicKey));
+        assertFalse("Vote with other id should not be valid", cache.verify(wrongId, publicKey));
+        assertFalse("Vote should not be valid under other key", cache.verify(vote, otherKey));
+        assertTrue("Cached result should be valid", cache.verify(vote, publicKey));
+        assertFalse("Cached invalid result should stay invalid", cache.verify(wrongId, publicKey));
+
+        assertEquals("Wrong number of entries", 3, cache.size());
+        assertEquals("Wrong hit count", 2, cache.getHitCount());
+    }
+
+    @Test
+    public void shouldOnlyBatchVerifyUnknownBallots() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<BallotDTO> ballots = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ballots.add(SecurityUtils.generateBallot(i % 2, 2, "ID" + i, publicKey));
+        }
+        ProofCache cache = new ProofCache(10);
+        List<Integer> batchSizes = new ArrayList<>();
+
+        List<BallotDTO> valid = cache.verifyAll(ballots.subList(0, 2), publicKey, b -> {
+            batchSizes.add(b.size());
+            return b.subList(0, 1);
+        });
+        assertEquals("Only first ballot should be valid", ballots.subList(0, 1), valid);
+
+        valid = cache.verifyAll(ballots, publicKey, b -> {
+            batchSizes.add(b.size());
+            return b;
+        });
+        assertEquals("Cached invalid ballot should be left out", Arrays.asList(ballots.get(0), ballots.get(2), ballots.get(3)), valid);
+        assertEquals("Only unknown ballots should be batch verified", Arrays.asList(2, 2), batchSizes);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        PublicKey publicKey = generateKeysFromP11G2().getPublicKey();
+        List<CandidateVoteDTO> votes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            votes.add(SecurityUtils.generateVote(0, "ID" + i, publicKey));
+        }
+        ProofCache cache = new ProofCache(2);
+
+        cache.verify(votes.get(0), publicKey);
+        cache.verify(votes.get(1), publicKey);
+        cache.verify(votes.get(0), publicKey);
+        cache.verify(votes.get(2), publicKey);
+        assertEquals("Cache should be bounded", 2, cache.size());
+
+        long misses = cache.getMissCount();
+        cache.verify(votes.get(0), publicKey);
+        assertEquals("Recently used vote should still be cached", misses, cache.getMissCount());
+        cache.verify(votes.get(1), publicKey);
+        assertEquals("Least recently used vote should have been evicted", misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldBeConsultedByVerifyBallots() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<BallotDTO> ballots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ballots.add(SecurityUtils.generateBallot(i, 3, "cached" + i, publicKey));
+        }
+        ProofCache cache = ProofCache.getDefault();
+
+        assertEquals("All ballots should be valid", ballots,
+                VoteProofUtils.verifyBallots(ballots, publicKey));
+        long hits = cache.getHitCount();
+        List<BallotDTO> valid = ballots.stream()
+                .filter(b -> VoteProofUtils.verifyBallot(b, publicKey))
+                .collect(Collectors.toList());
+
+        assertEquals("All ballots should still be valid", ballots, valid);
+        assertTrue("Ballots should be found in the cache", cache.getHitCount() >= hits + 3);
+    }
+
+    @Test
+    public void shouldRejectInvalidCapacity() {
+        try {
+            new ProofCache(0);
+            fail("Should reject empty cache");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
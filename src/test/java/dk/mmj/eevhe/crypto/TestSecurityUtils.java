@@ -19,6 +19,24 @@ public class TestSecurityUtils {
 
     public static final int ITERATIONS = 20;
 
+    @Test
+    public void jacobiSymbolShouldMatchEulersCriterion() {
+        List<BigInteger> primes = Arrays.asList(valueOf(3), valueOf(11), valueOf(103), generateKeysFromP2048bitsG2().getPublicKey().getP());
+        for (BigInteger p : primes) {
+            BigInteger exponent = p.subtract(ONE).shiftRight(1);
+            for (int i = 0; i < ITERATIONS; i++) {
+                BigInteger a = i < 3 ? valueOf(i) : SecurityUtils.getRandomNumModN(p);
+                BigInteger euler = a.modPow(exponent, p);
+                int expected = euler.equals(ONE) ? 1 : euler.signum() == 0 ? 0 : -1;
+
+                assertEquals("Wrong symbol for a=" + a + ", p=" + p, expected, SecurityUtils.jacobiSymbol(a, p));
+            }
+        }
+
+        assertEquals("Jacobi symbol should be multiplicative in n", 1, SecurityUtils.jacobiSymbol(valueOf(2), valueOf(15)));
+        assertEquals("Non-coprime values should give 0", 0, SecurityUtils.jacobiSymbol(valueOf(6), valueOf(15)));
+    }
+
     @Test
     public void shouldCreateCorrectVote1() {
         KeyPair keyPair = generateKeysFromP2048bitsG2();
@@ -56,6 +74,22 @@ public class TestSecurityUtils {
     }
 
 
+    @Test
+    public void shouldKeepCandidateOrderInLargeBallots() throws UnableToDecryptException {
+        KeyPair keyPair = generateKeysFromP2048bitsG2();
+        int candidates = 30;
+        for (int vote : new int[]{0, 17, candidates - 1, candidates, -1}) {
+            BallotDTO ballotDTO = SecurityUtils.generateBallot(vote, candidates, "TESTID", keyPair.getPublicKey());
+
+            assertTrue("Unable to verify ballot voting for " + vote, VoteProofUtils.verifyBallot(ballotDTO, keyPair.getPublicKey()));
+            assertEquals("Wrong number of votes", candidates, ballotDTO.getCandidateVotes().size());
+            for (int i = 0; i < candidates; i++) {
+                int message = ElGamal.homomorphicDecryption(keyPair, ballotDTO.getCandidateVotes().get(i).getCipherText(), 10);
+                assertEquals("Wrong vote for candidate " + i + " when voting for " + vote, i == vote ? 1 : 0, message);
+            }
+        }
+    }
+
     /**
      * Tests that the ballot-creations used in negative test, actually works
      */
@@ -358,7 +392,7 @@ public class TestSecurityUtils {
         }
 
         BigInteger rSum = Arrays.stream(rVals).reduce(BigInteger.ZERO, BigInteger::add);
-        CipherText cipherTextSum = SecurityUtils.concurrentSum(cipherTexts, 500);
+        CipherText cipherTextSum = SecurityUtils.concurrentSum(cipherTexts, publicKey.getP(), 500);
 
         //Sum of votes is one if a vote was cast, zero if the votes was blank (outside range of candidate list)
         BigInteger sumOfVotes = voted ? BigInteger.ONE : BigInteger.ZERO;
@@ -0,0 +1,119 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static dk.mmj.eevhe.crypto.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class TestTallyEngine {
+
+    @Test
+    public void shouldSumAsSequentialSum() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        Group group = Groups.forKey(publicKey);
+
+        List<CipherText> cipherTexts = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            cipherTexts.add(ElGamal.homomorphicEncryption(publicKey, BigInteger.valueOf(i % 2)));
+        }
+        CipherText expected = new CipherTextAccumulator(group).addAll(cipherTexts).getSum();
+
+        try (TallyEngine engine = new TallyEngine(3)) {
+            for (int threshold : new int[]{1, 7, 250, 1000}) {
+                assertEquals("Wrong sum with threshold " + threshold, expected, engine.sum(cipherTexts, group, threshold));
+            }
+            assertEquals("Empty sum should be the encryption of zero with randomness zero",
+                    new CipherText(BigInteger.ONE, BigInteger.ONE), engine.sum(Collections.emptyList(), group, 10));
+        }
+    }
+
+    @Test
+    public void shouldDiscardUnverifiedVotes() throws UnableToDecryptException {
+        KeyPair keyPair = generateKeysFromP2048bitsG2();
+        PublicKey publicKey = keyPair.getPublicKey();
+
+        List<CandidateVoteDTO> votes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            votes.add(SecurityUtils.generateVote(1, "ID" + i, publicKey));
+        }
+        CandidateVoteDTO valid = votes.get(3);
+        votes.set(3, new CandidateVoteDTO(valid.getCipherText(), "WRONG_ID", valid.getProof()));
+
+        CipherText sum = TallyEngine.getDefault().verifiedSum(votes, publicKey, 4);
+
+        assertEquals("Vote with invalid proof should be discarded", 19, ElGamal.homomorphicDecryption(keyPair, sum, 20));
+    }
+
+    @Test
+    public void shouldSumBallotsPerCandidate() throws UnableToDecryptException {
+        KeyPair keyPair = generateKeysFromP256();
+        PublicKey publicKey = keyPair.getPublicKey();
+        int candidates = 3;
+
+        List<BallotDTO> ballots = new ArrayList<>();
+        int[] expected = new int[candidates];
+        for (int i = 0; i < 10; i++) {
+            ballots.add(SecurityUtils.generateBallot(i % candidates, candidates, "ID" + i, publicKey));
+            expected[i % candidates]++;
+        }
+
+        List<CipherText> sums;
+        try (TallyEngine engine = new TallyEngine(2)) {
+            sums = engine.sumBallots(ballots, candidates, Groups.forKey(publicKey), 2);
+        }
+
+        assertEquals("Wrong number of sums", candidates, sums.size());
+        for (int i = 0; i < candidates; i++) {
+            assertEquals("Wrong sum for candidate " + i, expected[i],
+                    ElGamal.homomorphicDecryption(keyPair, sums.get(i), ballots.size()));
+        }
+    }
+
+    @Test
+    public void shouldMatchAll() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add(i);
+        }
+
+        TallyEngine engine = TallyEngine.getDefault();
+        assertTrue("All values are non-negative", engine.allMatch(values, i -> i >= 0, 3));
+        assertFalse("Not all values are below 99", engine.allMatch(values, i -> i < 99, 3));
+        assertTrue("Empty list should match", engine.allMatch(Collections.<Integer>emptyList(), i -> false, 3));
+    }
+
+    @Test
+    public void shouldNotSpawnThreadsBeyondParallelism() {
+        PublicKey publicKey = generateKeysFromP11G2().getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        List<CipherText> cipherTexts = Collections.nCopies(100_000, ElGamal.homomorphicEncryption(publicKey, BigInteger.ONE));
+
+        try (TallyEngine engine = new TallyEngine(2)) {
+            engine.sum(cipherTexts, group, 10);
+
+            List<String> workers = Thread.getAllStackTraces().keySet().stream()
+                    .map(Thread::getName)
+                    .filter(n -> n.startsWith("ForkJoinPool-"))
+                    .collect(Collectors.toList());
+            assertEquals("Engine should be limited to its parallelism", 2, engine.getParallelism());
+            assertTrue("Far fewer threads than partitions should be used", workers.size() < 100);
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidThreshold() {
+        try {
+            TallyEngine.getDefault().sum(Collections.emptyList(), new ModPGroup(BigInteger.valueOf(23)), 0);
+            fail("Should reject non-positive threshold");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package dk.mmj.eevhe.crypto;
+
+import dk.mmj.eevhe.crypto.keygeneration.KeyGenerationParameters;
+import dk.mmj.eevhe.entities.KeyPair;
+import dk.mmj.eevhe.entities.PublicKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static dk.mmj.eevhe.crypto.TestUtils.getKeyGenParamsFromP2048bitsG2;
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestThresholdCombiner {
+
+    @Test
+    public void coefficientsShouldMatchLagrangeCoefficients() {
+        BigInteger q = valueOf(1019);
+        ThresholdCombiner combiner = new ThresholdCombiner(new ModPGroup(valueOf(2039), q));
+        int[] authorityIndexes = new int[]{5, 1, 3, 8};
+
+        BigInteger[] coefficients = combiner.getCoefficients(authorityIndexes);
+
+        for (int i = 0; i < authorityIndexes.length; i++) {
+            assertEquals("Wrong coefficient for index " + authorityIndexes[i],
+                    SecurityUtils.generateLagrangeCoefficient(authorityIndexes, authorityIndexes[i], q), coefficients[i]);
+        }
+        assertEquals("Coefficients should sum to one", BigInteger.ONE,
+                Arrays.stream(coefficients).reduce(BigInteger.ZERO, BigInteger::add).mod(q));
+    }
+
+    @Test
+    public void shouldCombineSharesOfSecret() {
+        KeyGenerationParameters params = getKeyGenParamsFromP2048bitsG2();
+        BigInteger p = params.getPrimePair().getP();
+        BigInteger q = params.getPrimePair().getQ();
+        BigInteger g = params.getGenerator();
+        BigInteger[] polynomial = new BigInteger[]{valueOf(1234), valueOf(56), valueOf(78)};
+        Map<Integer, BigInteger> secretValues = SecurityUtils.generateSecretValues(polynomial, 5, q);
+        Map<Integer, BigInteger> publicValues = SecurityUtils.generatePublicValues(secretValues, g, p);
+        BigInteger expected = g.modPow(polynomial[0], p);
+
+        ThresholdCombiner combiner = new ThresholdCombiner(new ModPGroup(p, q));
+        List<Map<Integer, BigInteger>> subsets = new ArrayList<>();
+        subsets.add(publicValues);
+        for (int excluded = 1; excluded <= 5; excluded++) {
+            Map<Integer, BigInteger> subset = new HashMap<>(publicValues);
+            subset.remove(excluded);
+            subset.remove(excluded % 5 + 1);
+            subsets.add(subset);
+        }
+
+        List<BigInteger> combined = combiner.combineAll(subsets);
+
+        assertEquals("Wrong number of results", subsets.size(), combined.size());
+        for (int i = 0; i < combined.size(); i++) {
+            assertEquals("Subset " + i + " did not combine to g^secret", expected, combined.get(i));
+        }
+    }
+
+    @Test
+    public void shouldCombinePartialsOnEllipticCurve() {
+        KeyPair keyPair = TestUtils.generateKeysFromP256();
+        PublicKey publicKey = keyPair.getPublicKey();
+        Group group = Groups.forKey(publicKey);
+        BigInteger q = group.getOrder();
+        BigInteger[] polynomial = new BigInteger[]{keyPair.getSecretKey(), valueOf(42)};
+        Map<Integer, BigInteger> secretValues = SecurityUtils.generateSecretValues(polynomial, 3, q);
+
+        Map<Integer, BigInteger> partials = new HashMap<>();
+        secretValues.forEach((id, secret) -> partials.put(id, group.exponentiate(publicKey.getG(), secret)));
+        partials.remove(2);
+
+        assertEquals("Partials should combine to h", publicKey.getH(), new ThresholdCombiner(group).combine(partials));
+    }
+
+    @Test
+    public void emptyShouldCombineToIdentity() {
+        Group group = new ModPGroup(valueOf(23), valueOf(11));
+
+        assertEquals("Should be identity", group.getIdentity(), new ThresholdCombiner(group).combine(Collections.emptyMap()));
+    }
+}
@@ -34,6 +34,17 @@ public class TestUtils {
         return new PublicKey(h, g, q);
     }
 
+    /**
+     * @return key pair in the elliptic curve group P-256
+     */
+    static KeyPair generateKeysFromP256() {
+        EllipticCurveGroup group = new EllipticCurveGroup(EllipticCurveGroup.P256);
+        BigInteger secretKey = generateSecretKeyForTesting(group.getOrder());
+        BigInteger h = group.exponentiate(group.getGenerator(), secretKey);
+
+        return new KeyPair(secretKey, new PublicKey(h, group.getGenerator(), group.getOrder(), group.getName()));
+    }
+
     static KeyPair generateKeysFromP11G2() {
         return generateKeysForTesting(getKeyGenParamsFromP11G2());
     }
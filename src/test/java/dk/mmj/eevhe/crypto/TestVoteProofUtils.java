@@ -8,6 +8,7 @@ import org.junit.Test;
 import java.math.BigInteger;
 
 import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP256;
 import static org.junit.Assert.assertFalse;
 
 public class TestVoteProofUtils {
@@ -102,5 +103,29 @@ public class TestVoteProofUtils {
 
         assertFalse("Verified proof where ciphertext had been replaced", verify);
     }
-}
 
+    @Test
+    public void shouldVerifyProofsOnEllipticCurve() {
+        KeyPair keyPair = generateKeysFromP256();
+
+        for (int vote = 0; vote < 2; vote++) {
+            CandidateVoteDTO candidateVoteDTO = SecurityUtils.generateVote(vote, "ID", keyPair.getPublicKey());
+            Assert.assertTrue("Failed to verify proof for vote " + vote,
+                    VoteProofUtils.verifyProof(candidateVoteDTO, keyPair.getPublicKey()));
+
+            candidateVoteDTO.setId("WRONG_ID");
+            assertFalse("Verified proof with wrong id for vote " + vote,
+                    VoteProofUtils.verifyProof(candidateVoteDTO, keyPair.getPublicKey()));
+        }
+    }
+
+    @Test
+    public void shouldNotVerifyProofWithPointNotOnCurve() {
+        KeyPair keyPair = generateKeysFromP256();
+        CandidateVoteDTO candidateVoteDTO = SecurityUtils.generateVote(1, "ID", keyPair.getPublicKey());
+        candidateVoteDTO.getProof().setA0(BigInteger.ONE);
+
+        assertFalse("Verified proof with commitment not on the curve",
+                VoteProofUtils.verifyProof(candidateVoteDTO, keyPair.getPublicKey()));
+    }
+}
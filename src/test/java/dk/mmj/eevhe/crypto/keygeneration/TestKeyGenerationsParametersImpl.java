@@ -1,5 +1,6 @@
 package dk.mmj.eevhe.crypto.keygeneration;
 
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -51,4 +52,47 @@ public class TestKeyGenerationsParametersImpl {
         List<Integer> possibleGeneratorsForQ = possibleGeneratorsForP.stream().map(i -> (int) Math.pow(i.doubleValue(), 2.0)).collect(Collectors.toList());
         Assert.assertTrue(possibleGeneratorsForQ.contains(params.getGenerator().intValue()));
     }
+
+    /**
+     * Tests that a Schnorr group has the requested bit lengths, and that g generates the subgroup of order q
+     */
+    @Test
+    public void testSchnorrGroupParameters() {
+        KeyGenerationParameters params = new KeyGenerationParametersImpl(512, 160, 50);
+        BigInteger p = params.getPrimePair().getP();
+        BigInteger q = params.getPrimePair().getQ();
+        BigInteger g = params.getGenerator();
+
+        Assert.assertEquals("Wrong bit length of p", 512, p.bitLength());
+        Assert.assertEquals("Wrong bit length of q", 160, q.bitLength());
+        Assert.assertTrue("p should be prime", p.isProbablePrime(50));
+        Assert.assertTrue("q should be prime", q.isProbablePrime(50));
+        Assert.assertEquals("q should divide p-1", BigInteger.ZERO, p.subtract(BigInteger.ONE).mod(q));
+        Assert.assertNotEquals("g should not be the identity", BigInteger.ONE, g);
+        Assert.assertEquals("g should have order q", BigInteger.ONE, g.modPow(q, p));
+    }
+
+    /**
+     * Tests that persisted parameters for a Schnorr group keep the given q, instead of deriving it as (p-1)/2
+     */
+    @Test
+    public void testPersistedSchnorrGroupParameters() {
+        KeyGenerationParameters generated = new KeyGenerationParametersImpl(256, 64, 50);
+        BigInteger p = generated.getPrimePair().getP();
+        BigInteger q = generated.getPrimePair().getQ();
+
+        ExtendedKeyGenerationParameters params = new ExtendedPersistedKeyParameters(
+                Hex.toHexString(p.toByteArray()), generated.getGenerator().toString(), Hex.toHexString(q.toByteArray()));
+
+        Assert.assertEquals("Wrong p", p, params.getPrimePair().getP());
+        Assert.assertEquals("Wrong q", q, params.getPrimePair().getQ());
+        Assert.assertEquals("Group element should have order q", BigInteger.ONE, params.getGroupElement().modPow(q, p));
+
+        try {
+            new PersistedKeyParameters(Hex.toHexString(p.toByteArray()), generated.getGenerator().toString(),
+                    Hex.toHexString(q.add(BigInteger.ONE).toByteArray()));
+            Assert.fail("Should reject q not dividing p-1");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
 }
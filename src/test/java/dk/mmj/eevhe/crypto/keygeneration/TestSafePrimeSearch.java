@@ -0,0 +1,66 @@
+package dk.mmj.eevhe.crypto.keygeneration;
+
+import dk.mmj.eevhe.entities.PrimePair;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class TestSafePrimeSearch {
+
+    private void assertSafePrime(PrimePair primePair, int bitLength) {
+        BigInteger p = primePair.getP();
+        BigInteger q = primePair.getQ();
+
+        assertEquals("Wrong bit length of p", bitLength, p.bitLength());
+        assertEquals("p should be 2q + 1", q.shiftLeft(1).add(BigInteger.ONE), p);
+        assertTrue("p should be prime", p.isProbablePrime(50));
+        assertTrue("q should be prime", q.isProbablePrime(50));
+    }
+
+    @Test
+    public void shouldFindSafePrime() {
+        assertSafePrime(SafePrimeSearch.find(256, 50), 256);
+    }
+
+    @Test
+    public void shouldFindSafePrimeWithSingleThread() {
+        assertSafePrime(SafePrimeSearch.find(128, 50, 1), 128);
+    }
+
+    @Test
+    public void shouldFindShortSafePrimes() {
+        for (int bitLength = 3; bitLength <= 40; bitLength++) {
+            assertSafePrime(SafePrimeSearch.find(bitLength, 50, 2), bitLength);
+        }
+    }
+
+    @Test
+    public void windowShouldFindFirstSafePrime() {
+        BigInteger start = new BigInteger("C90FDAA22168C235", 16);
+        BigInteger expected = start;
+        while (!expected.isProbablePrime(50) || !expected.shiftLeft(1).add(BigInteger.ONE).isProbablePrime(50)) {
+            expected = expected.add(BigInteger.valueOf(2));
+        }
+
+        PrimePair found = SafePrimeSearch.searchWindow(start, 65, 50);
+
+        assertNotNull("Window should contain a safe prime", found);
+        assertEquals("Sieve should not skip any safe prime", expected, found.getQ());
+    }
+
+    @Test
+    public void shouldRejectInvalidArguments() {
+        try {
+            SafePrimeSearch.find(2, 50);
+            fail("Should reject bit length without safe primes");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            SafePrimeSearch.find(128, 50, 0);
+            fail("Should reject non-positive number of threads");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
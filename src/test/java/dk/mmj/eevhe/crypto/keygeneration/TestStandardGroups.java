@@ -0,0 +1,44 @@
+package dk.mmj.eevhe.crypto.keygeneration;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class TestStandardGroups {
+
+    @Test
+    public void allGroupsShouldBeSafePrimeGroups() {
+        for (String name : StandardGroups.getNames()) {
+            ExtendedKeyGenerationParameters params = StandardGroups.parameters(name);
+            BigInteger p = params.getPrimePair().getP();
+            BigInteger q = params.getPrimePair().getQ();
+            BigInteger g = params.getGenerator();
+
+            assertEquals("Bit length of " + name + " should match name", Integer.parseInt(name.replaceAll("\\D", "")), p.bitLength());
+            assertTrue("p should be prime in " + name, p.isProbablePrime(50));
+            assertTrue("q should be prime in " + name, q.isProbablePrime(50));
+            assertEquals("p should be 2q + 1 in " + name, q.shiftLeft(1).add(BigInteger.ONE), p);
+            assertEquals("g should have order q in " + name, BigInteger.ONE, g.modPow(q, p));
+            assertEquals("e should have order q in " + name, BigInteger.ONE, params.getGroupElement().modPow(q, p));
+        }
+    }
+
+    @Test
+    public void shouldContainRfcGroups() {
+        assertEquals("Wrong number of groups", 7, StandardGroups.getNames().size());
+        assertTrue("Names should be case insensitive", StandardGroups.isKnown("MODP2048"));
+        assertFalse("Should not know group", StandardGroups.isKnown("modp1024"));
+        assertFalse("Should handle null", StandardGroups.isKnown(null));
+    }
+
+    @Test
+    public void shouldRejectUnknownGroup() {
+        try {
+            StandardGroups.parameters("modp1024");
+            fail("Should reject unknown group");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -69,6 +69,8 @@ public class TestSerialization {
         serializables.add(publicKey);
 
         serializables.add(new KeyPair(new BigInteger("785423"), publicKey));
+        serializables.add(new PublicKey(new BigInteger("34"), new BigInteger("3459"), new BigInteger("293857"), new BigInteger("5877141")));
+        serializables.add(new PublicKey(new BigInteger("34"), new BigInteger("3459"), new BigInteger("293857"), "P-256"));
 
         DLogProofUtils.Proof dlogProof = new DLogProofUtils.Proof(new BigInteger("654"), new BigInteger("69846"));
         PartialResult partialResult = new PartialResult(32, new BigInteger("2342"), dlogProof, cipherText);
@@ -78,6 +80,7 @@ public class TestSerialization {
         PartialResultList partialResultList = new PartialResultList(Arrays.asList(partialResult, partialResult2), 5, 1);
         PartialResultList partialResultList2 = new PartialResultList(Arrays.asList(partialResult2, partialResult), 5, 1);
         serializables.add(partialResultList);
+        serializables.add(new PartialResultList(Arrays.asList(new PartialResult(32, new BigInteger("2342"), null, cipherText)), 5, 1, dlogProof));
         serializables.add(new PartialSecretKey(new BigInteger("23422"), new BigInteger("2342124")));
 
         PersistedBallot persistedBallot = new PersistedBallot(ballot);
@@ -113,6 +116,7 @@ public class TestSerialization {
         serializables.add(complaintResolveDTO);
 
         serializables.add(new DecryptionAuthorityInput("wiughweiugnwe", "woegnweoginw", "woegnweoginwqwf", 54684654, Arrays.asList(daInfo1, daInfo2), "Some CERT"));
+        serializables.add(new DecryptionAuthorityInput("wiughweiugnwe", "qwoigwe", "woegnweoginw", "woegnweoginwqwf", 54684654, Arrays.asList(daInfo1, daInfo2), "Some CERT"));
 
         serializables.add(new PartialKeyPair(new PartialSecretKey(new BigInteger("123521"), new BigInteger("98273523"))
                 , new BigInteger("123456789"), publicKey));
@@ -144,6 +148,12 @@ public class TestSerialization {
         serializables.add(new BAMessage("7", null, true, " a very likely sender"));
 
         serializables.add(new BBPeerInfo(1, "127.0.0.1:8081", "asdasdasd"));
+        serializables.add(new BallotReceipt("ballotId", "6a09e667f3bcc908", 42, 1_600_000_000_000L));
+        serializables.add(new TreeHead(43, "bb67ae8584caa73b"));
+        serializables.add(new BallotPage(new SignedEntity<>(new TreeHead(43, "bb67ae8584caa73b"), sk), 41,
+                Arrays.asList(persistedBallot, persistedBallot2), Arrays.asList("1f83d9abfb41bd6b", "5be0cd19137e2179")));
+        serializables.add(new InclusionProof(42, 43, Arrays.asList("3c6ef372fe94f82b", "a54ff53a5f1d36f1")));
+        serializables.add(new ConsistencyProof(40, 43, Arrays.asList("510e527fade682d1", "9b05688c2b3e6c1f")));
 
         serializables.add(new BallotWrapper(Arrays.asList(persistedBallot, persistedBallot2)));
         serializables.add(new CertificatesWrapper(Arrays.asList(new SignedEntity<>(certDTO, sk), new SignedEntity<>(certDTO2, sk))));
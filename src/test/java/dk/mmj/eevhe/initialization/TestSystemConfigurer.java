@@ -3,6 +3,7 @@ package dk.mmj.eevhe.initialization;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.eSoftware.commandLineParser.SingletonCommandLineParser;
 import dk.mmj.eevhe.TestUsingBouncyCastle;
+import dk.mmj.eevhe.crypto.keygeneration.StandardGroups;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.crypto.signature.SignatureHelper;
@@ -157,6 +158,54 @@ public class TestSystemConfigurer extends TestUsingBouncyCastle {
         }
     }
 
+    @Test
+    public void testSchnorrGroupOutput() throws Exception {
+        String params = "--da_addresses -1_https://localhost:8081 -2_https://localhost:8082 -3_https://localhost:8083 "
+                + "--bb_peer_addresses -1_https://localhost:18081 -2_https://localhost:18082 -3_https://localhost:18083 "
+                + "--outputFolder=" + conf + " --group=schnorr";
+
+        SystemConfigurer.SystemConfiguration config = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                .parse(params.split(" "));
+        config.produceInstance().run();
+
+        DecryptionAuthorityInput output = new ObjectMapper()
+                .readValue(Paths.get(conf).resolve("common_input.json").toFile(), DecryptionAuthorityInput.class);
+
+        BigInteger p = new BigInteger(Hex.decode(output.getpHex()));
+        BigInteger q = new BigInteger(Hex.decode(output.getqHex()));
+        BigInteger g = new BigInteger(Hex.decode(output.getgHex()));
+        BigInteger e = new BigInteger(Hex.decode(output.geteHex()));
+
+        assertTrue("p should be prime", p.isProbablePrime(50));
+        assertTrue("q should be prime", q.isProbablePrime(50));
+        assertEquals("q should be 256 bits", 256, q.bitLength());
+        assertEquals("q should divide p-1", BigInteger.ZERO, p.subtract(BigInteger.ONE).mod(q));
+        assertEquals("g should have order q", BigInteger.ONE, g.modPow(q, p));
+        assertEquals("e should have order q", BigInteger.ONE, e.modPow(q, p));
+    }
+
+    @Test
+    public void testStandardGroupOutput() throws Exception {
+        String params = "--da_addresses -1_https://localhost:8081 -2_https://localhost:8082 -3_https://localhost:8083 "
+                + "--bb_peer_addresses -1_https://localhost:18081 -2_https://localhost:18082 -3_https://localhost:18083 "
+                + "--outputFolder=" + conf + " --group=" + StandardGroups.MODP_2048;
+
+        SystemConfigurer.SystemConfiguration config = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                .parse(params.split(" "));
+        config.produceInstance().run();
+
+        DecryptionAuthorityInput output = new ObjectMapper()
+                .readValue(Paths.get(conf).resolve("common_input.json").toFile(), DecryptionAuthorityInput.class);
+
+        BigInteger p = new BigInteger(Hex.decode(output.getpHex()));
+        BigInteger q = new BigInteger(Hex.decode(output.getqHex()));
+        BigInteger e = new BigInteger(Hex.decode(output.geteHex()));
+
+        assertEquals("Should use standardized prime", StandardGroups.parameters(StandardGroups.MODP_2048).getPrimePair().getP(), p);
+        assertEquals("g should be 2", BigInteger.valueOf(2), new BigInteger(Hex.decode(output.getgHex())));
+        assertEquals("e should have order q", BigInteger.ONE, e.modPow(q, p));
+    }
+
     private void assertIsSigned(X509CertificateHolder cert) throws IOException, OperatorCreationException, CertException {
         AsymmetricKeyParameter pk = CertificateHelper.getPublicKeyFromCertificate(Paths.get("certs/test_glob.pem"));
 
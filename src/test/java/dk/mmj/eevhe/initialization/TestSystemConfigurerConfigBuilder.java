@@ -58,6 +58,39 @@ public class TestSystemConfigurerConfigBuilder extends AbstractConfigTest {
             assertEquals("Did not respect cert path", Paths.get("certs/test_glob.pem"), config.getCertFilePath());
 
             assertNotNull("Should be able to construct configurer", config.produceInstance());
+            assertFalse("Should use safe prime group by default", config.isSchnorrGroup());
+        } catch (WrongFormatException | NoSuchBuilderException e) {
+            fail("Should not throw exception");
+        }
+    }
+
+    @Test
+    public void groupIsRespected() {
+        try {
+            SystemConfigurer.SystemConfiguration schnorr = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                    .parse("--group=schnorr".split(" "));
+            SystemConfigurer.SystemConfiguration safePrime = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                    .parse("--group=safeprime".split(" "));
+
+            assertTrue("Should use Schnorr group", schnorr.isSchnorrGroup());
+            assertFalse("Should use safe prime group", safePrime.isSchnorrGroup());
+            assertNull("Should generate group by default", safePrime.getStandardGroup());
+        } catch (WrongFormatException | NoSuchBuilderException e) {
+            fail("Should not throw exception");
+        }
+    }
+
+    @Test
+    public void standardGroupIsRespected() {
+        try {
+            SystemConfigurer.SystemConfiguration standard = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                    .parse("--group=FFDHE2048".split(" "));
+            SystemConfigurer.SystemConfiguration unknown = new SingletonCommandLineParser<>(new SystemConfigurerConfigBuilder())
+                    .parse("--group=modp1024".split(" "));
+
+            assertEquals("Should use standardized group", "ffdhe2048", standard.getStandardGroup());
+            assertFalse("Standardized group is not a Schnorr group", standard.isSchnorrGroup());
+            assertNull("Should not use unknown group", unknown.getStandardGroup());
         } catch (WrongFormatException | NoSuchBuilderException e) {
             fail("Should not throw exception");
         }
@@ -1,9 +1,14 @@
 package dk.mmj.eevhe.protocols;
 
 import dk.mmj.eevhe.crypto.ElGamal;
+import dk.mmj.eevhe.crypto.EllipticCurveGroup;
+import dk.mmj.eevhe.crypto.Group;
+import dk.mmj.eevhe.crypto.Groups;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.crypto.keygeneration.EllipticCurveKeyGenerationParameters;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParameters;
+import dk.mmj.eevhe.crypto.keygeneration.ExtendedKeyGenerationParametersImpl;
 import dk.mmj.eevhe.crypto.keygeneration.ExtendedPersistedKeyParameters;
 import dk.mmj.eevhe.entities.CipherText;
 import dk.mmj.eevhe.entities.PartialKeyPair;
@@ -143,6 +148,91 @@ public class TestGennaroDKG {
     }
 
 
+    /**
+     * Tests GennaroDKG with three non-corrupt participants, over the elliptic curve P-256
+     */
+    @Test
+    public void testProtocolRunOnEllipticCurve() {
+        final PublicKey publicKey = assertProtocolRunInGroup(new EllipticCurveKeyGenerationParameters(EllipticCurveGroup.P256));
+        assertEquals("Public key should name the curve", EllipticCurveGroup.P256, publicKey.getGroup());
+    }
+
+    /**
+     * Tests GennaroDKG with three non-corrupt participants, in a Schnorr group with p = kq+1
+     */
+    @Test
+    public void testProtocolRunInSchnorrGroup() {
+        final ExtendedKeyGenerationParameters schnorrParams = new ExtendedKeyGenerationParametersImpl(512, 160, 50);
+        final PublicKey publicKey = assertProtocolRunInGroup(schnorrParams);
+        assertEquals("Public key should hold the modulus", schnorrParams.getPrimePair().getP(), publicKey.getModulus());
+        assertEquals("Public key should resolve the group", schnorrParams.getGroup(), Groups.forKey(publicKey));
+    }
+
+    /**
+     * Runs GennaroDKG with three non-corrupt participants, and asserts that the resulting keys can be used
+     *
+     * @param groupParams parameters for the group
+     * @return the resulting public key
+     */
+    private PublicKey assertProtocolRunInGroup(ExtendedKeyGenerationParameters groupParams) {
+        final TestDKGBroadcaster testBroadcaster = new TestDKGBroadcaster();
+        final List<PrivateCommunicationChannelDKG> channels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            channels.add(new PrivateCommunicationChannelDKG());
+        }
+
+        final List<GennaroDKG> players = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            final HashMap<Integer, DKGPeerCommunicator> commMap = new HashMap<>();
+            for (int other = 1; other <= 3; other++) {
+                if (other != id) {
+                    commMap.put(other, channels.get(other - 1));
+                }
+            }
+            players.add(new GennaroDKG(testBroadcaster, channels.get(id - 1), commMap, id, groupParams, "ID=" + id));
+        }
+
+        runSteps(players.stream().map(GennaroDKG::generationPhase).collect(Collectors.toList()));
+        assertEquals("No players should have lodged a complaint", 0, testBroadcaster.getPedersenComplaints().size());
+        runSteps(players.stream().map(GennaroDKG::extractionPhase).collect(Collectors.toList()));
+
+        final List<PartialKeyPair> outputs = players.stream().map(GennaroDKG::output).collect(Collectors.toList());
+        final PublicKey publicKey = outputs.get(0).getPublicKey();
+        final Group group = Groups.forKey(publicKey);
+
+        final HashMap<Integer, BigInteger> partialSecretKeys = new HashMap<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            PartialKeyPair output = outputs.get(i);
+            assertEquals("PublicKey did not match for all instances", publicKey, output.getPublicKey());
+            assertEquals("partials for player " + (i + 1) + " did not match", output.getPartialPublicKey(),
+                    group.exponentiate(publicKey.getG(), output.getPartialSecretKey().getSecretValue()));
+            partialSecretKeys.put(i + 1, output.getPartialSecretKey().getSecretValue());
+        }
+
+        final CipherText cipherText = ElGamal.homomorphicEncryption(publicKey, BigInteger.valueOf(15));
+        final Map<Integer, BigInteger> partials = partialSecretKeys.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        e -> ElGamal.partialDecryption(cipherText.getC(), e.getValue(), group)
+                ));
+        final BigInteger cs = SecurityUtils.lagrangeInterpolate(partials, group);
+        try {
+            assertEquals("Results was incorrect", 15,
+                    ElGamal.homomorphicDecryptionFromPartials(cipherText.getD(), cs, publicKey, 15));
+        } catch (UnableToDecryptException e) {
+            fail(e.getMessage());
+        }
+        return publicKey;
+    }
+
+    private void runSteps(List<List<DKG.Step>> stepsPerPlayer) {
+        for (int i = 0; i < stepsPerPlayer.get(0).size(); i++) {
+            for (List<DKG.Step> steps : stepsPerPlayer) {
+                steps.get(i).getExecutable().run();
+            }
+        }
+    }
+
     @Test
     public void testSteps() {
         final TestDKGBroadcaster testBroadcaster = new TestDKGBroadcaster();
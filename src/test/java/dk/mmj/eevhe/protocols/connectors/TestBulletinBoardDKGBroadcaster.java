@@ -3,6 +3,7 @@ package dk.mmj.eevhe.protocols.connectors;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.mmj.eevhe.TestUsingBouncyCastle;
+import dk.mmj.eevhe.client.SmileProvider;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.entities.*;
@@ -35,6 +36,7 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.math.BigInteger;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -192,8 +194,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("commitments");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("commitments").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         final List<CommitmentDTO> commitments = broadcaster.getCommitments();
         assertEquals("Only expected one commit", 1, commitments.size());
@@ -207,8 +209,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("commitments");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("commitments").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         assertException(broadcaster::getCommitments);
     }
@@ -310,8 +312,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("pedersenComplaints");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("pedersenComplaints").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         final List<PedersenComplaintDTO> commitments = broadcaster.getPedersenComplaints();
 
@@ -335,8 +337,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("feldmanComplaints");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("feldmanComplaints").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         final List<FeldmanComplaintDTO> commitments = broadcaster.getFeldmanComplaints();
 
@@ -350,8 +352,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("pedersenComplaints");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("pedersenComplaints").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         assertException(broadcaster::getPedersenComplaints);
     }
@@ -362,8 +364,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("feldmanComplaints");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("feldmanComplaints").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         assertException(broadcaster::getFeldmanComplaints);
     }
@@ -428,8 +430,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("complaintResolves");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("complaintResolves").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         final List<ComplaintResolveDTO> commitments = broadcaster.getResolves();
 
@@ -443,8 +445,8 @@ public class TestBulletinBoardDKGBroadcaster extends TestUsingBouncyCastle {
 
         final WebTarget webTarget = targets.get("complaintResolves");
         final Invocation.Builder builder = mock(Invocation.Builder.class);
-        when(webTarget.request()).thenReturn(builder);
-        when(target.path("complaintResolves").request().get(String.class)).thenReturn(commitsString);
+        when(webTarget.request(SmileProvider.APPLICATION_SMILE, MediaType.APPLICATION_JSON)).thenReturn(builder);
+        when(builder.get(byte[].class)).thenReturn(commitsString.getBytes(StandardCharsets.UTF_8));
 
         assertException(broadcaster::getResolves);
 
@@ -3,11 +3,13 @@ package dk.mmj.eevhe.server;
 import dk.mmj.eevhe.server.bulletinboard.*;
 import dk.mmj.eevhe.server.decryptionauthority.TestDecrypterImpl;
 import dk.mmj.eevhe.server.decryptionauthority.TestDecryptionAuthorityConfigBuilder;
+import dk.mmj.eevhe.server.decryptionauthority.TestIncrementalTally;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+        TestBallotStore.class,
         TestBulletinBoardEdge.class,
         TestBulletinBoardEdgeCommunication.class,
         TestBulletinBoardPeer.class,
@@ -16,7 +18,10 @@ import org.junit.runners.Suite;
         TestBulletinBoardState.class,
         TestDecrypterImpl.class,
         TestDecryptionAuthorityConfigBuilder.class,
+        TestIncrementalTally.class,
         TestServerState.class,
+        TestSignedResponseCache.class,
+        TestWriteAheadLog.class,
 })
 public class ServerTestSuite {
 }
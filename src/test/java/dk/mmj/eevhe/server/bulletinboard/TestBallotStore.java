@@ -0,0 +1,87 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static java.math.BigInteger.valueOf;
+import static org.junit.Assert.*;
+
+public class TestBallotStore {
+
+    private PersistedBallot ballot(String id, int vote) {
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO candidateVote = new CandidateVoteDTO(new CipherText(valueOf(vote), valueOf(684983)), id, proof);
+        return new PersistedBallot(new BallotDTO(Collections.singletonList(candidateVote), id, proof));
+    }
+
+    private int add(BallotStore store, PersistedBallot ballot) {
+        return store.add(ballot, BallotDigest.hash(ballot));
+    }
+
+    @Test
+    public void shouldKeepInsertionOrder() {
+        BallotStore store = new BallotStore();
+        PersistedBallot first = ballot("b", 1);
+        PersistedBallot second = ballot("a", 2);
+        PersistedBallot third = ballot("c", 3);
+
+        assertEquals("Wrong position of first ballot", 0, add(store, first));
+        assertEquals("Wrong position of second ballot", 1, add(store, second));
+        assertEquals("Wrong position of third ballot", 2, add(store, third));
+
+        assertEquals("Ballots should be in insertion order", Arrays.asList(first, second, third), store.getAll());
+        assertEquals("Wrong size", 3, store.size());
+    }
+
+    @Test
+    public void shouldRejectSameContent() {
+        BallotStore store = new BallotStore();
+        PersistedBallot ballot = ballot("voter", 1);
+        PersistedBallot sameContent = ballot("voter", 1).setTs(new Date(ballot.getTs().getTime() + 1000));
+
+        assertEquals("First ballot should be added", 0, add(store, ballot));
+        assertEquals("Ballot with same content should not be added", -1, add(store, sameContent));
+        assertEquals("Only one ballot should be stored", Collections.singletonList(ballot), store.getAll());
+    }
+
+    @Test
+    public void shouldLookUpBallotsByVoter() {
+        BallotStore store = new BallotStore();
+        PersistedBallot first = ballot("voter", 1);
+        PersistedBallot other = ballot("other", 1);
+        PersistedBallot second = ballot("voter", 2);
+        add(store, first);
+        add(store, other);
+        add(store, second);
+
+        assertTrue("Voter should have voted", store.hasVoted("voter"));
+        assertFalse("Unknown voter should not have voted", store.hasVoted("unknown"));
+        assertEquals("Wrong ballots for voter", Arrays.asList(first, second), store.getByVoter("voter"));
+        assertEquals("Unknown voter should have no ballots", Collections.emptyList(), store.getByVoter("unknown"));
+
+        store.getByVoter("voter").clear();
+        assertEquals("Returned list should be a copy", 2, store.getByVoter("voter").size());
+    }
+
+    @Test
+    public void shouldReturnRanges() {
+        BallotStore store = new BallotStore();
+        PersistedBallot first = ballot("a", 1);
+        PersistedBallot second = ballot("b", 1);
+        PersistedBallot third = ballot("c", 1);
+        add(store, first);
+        add(store, second);
+        add(store, third);
+
+        assertEquals("Wrong range from start", Arrays.asList(first, second), store.getRange(0, 2));
+        assertEquals("Wrong range in the middle", Collections.singletonList(second), store.getRange(1, 1));
+        assertEquals("Range should be cut at the end", Collections.singletonList(third), store.getRange(2, Integer.MAX_VALUE));
+        assertEquals("Range after the end should be empty", Collections.emptyList(), store.getRange(3, 10));
+        assertEquals("Empty limit should give empty range", Collections.emptyList(), store.getRange(0, 0));
+    }
+}
@@ -178,11 +178,9 @@ public class TestBulletinBoardEdgeCommunication {
         List<PersistedBallot> lastSeenBallotList = new ArrayList<>();
         for (JerseyWebTarget target : peerTargets.values()) {
             String ballotsString = target.path("getBallots").request().get(String.class);
-            SignedEntity<BallotWrapper> signedBallotList = mapper.readValue(
-                    ballotsString,
-                    new TypeReference<SignedEntity<BallotWrapper>>() {
-                    });
-            List<PersistedBallot> fetchedBallotList = unpack(signedBallotList);
+            BallotPage ballotPage = mapper.readValue(ballotsString, BallotPage.class);
+            assertTrue("Failed to verify signature on tree head", ballotPage.getTreeHead().verifySignature(pk));
+            List<PersistedBallot> fetchedBallotList = ballotPage.getBallots();
             fetchedBallotList.sort(Comparator.comparing(BallotDTO::getId));
 
             if (!lastSeenBallotList.isEmpty()) {
@@ -197,14 +195,14 @@ public class TestBulletinBoardEdgeCommunication {
             lastSeenBallotList = fetchedBallotList;
         }
 
-        assertEdgeReceivedCorrectDataFromPeers("getBallots", new TypeReference<List<SignedEntity<BallotWrapper>>>() {
-                },
-                (last, current) -> {
-                    assertEquals("Content differed in length", last.getEntity().getContent().size(), current.getEntity().getContent().size());
-                    for (int i = 0; i < last.getEntity().getContent().size(); i++) {
-                        assertTrue("BBPeers disagreed on ballot in position " + i, last.getEntity().getContent().get(i).isSameBallot(current.getEntity().getContent().get(i)));
-                    }
+        // Assert that edge retrieves the pages of all peers
+        List<BallotPage> pages = mapper.readValue(edgeTarget.path("getBallots").request().get(String.class),
+                new TypeReference<List<BallotPage>>() {
                 });
+        for (BallotPage page : pages) {
+            assertEquals("List should be of size 1", 1, page.getBallots().size());
+            assertTrue("BBPeers disagreed on ballot", pages.get(0).getBallots().get(0).isSameBallot(page.getBallots().get(0)));
+        }
     }
 
     @Test
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.mmj.eevhe.client.SSLHelper;
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
@@ -14,6 +16,7 @@ import org.apache.commons.compress.utils.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.util.encoders.Hex;
 import org.glassfish.jersey.client.JerseyWebTarget;
 import org.junit.After;
 import org.junit.Before;
@@ -30,6 +33,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -98,6 +102,17 @@ public class TestBulletinBoardPeer {
         assertEquals("did not use supplied port", port, bulletinBoardPeer.getPort());
     }
 
+    @Test
+    public void receiptTimeoutShouldBePositive() {
+        assertEquals("Non-positive timeout would wait forever", BulletinBoardPeerResource.MIN_RECEIPT_TIMEOUT,
+                BulletinBoardPeerResource.getReceiptTimeout(0));
+        assertEquals("Non-positive timeout would wait forever", BulletinBoardPeerResource.MIN_RECEIPT_TIMEOUT,
+                BulletinBoardPeerResource.getReceiptTimeout(-5));
+        assertEquals("Timeout should be kept within limits", 500, BulletinBoardPeerResource.getReceiptTimeout(500));
+        assertEquals("Timeout should be limited", BulletinBoardPeerResource.MAX_RECEIPT_TIMEOUT,
+                BulletinBoardPeerResource.getReceiptTimeout(Long.MAX_VALUE));
+    }
+
     @Test
     public void serverTypeAndTime() throws JsonProcessingException {
         String type = target.path("type").request().get(String.class);
@@ -217,11 +232,8 @@ public class TestBulletinBoardPeer {
 
         String ballotsString = target.path("getBallots").request()
                 .get(String.class);
-        SignedEntity<BallotWrapper> signedBallotList = mapper.readValue(
-                ballotsString,
-                new TypeReference<SignedEntity<BallotWrapper>>() {
-                });
-        List<PersistedBallot> fetchedBallotList = unpack(signedBallotList);
+        BallotPage ballotPage = mapper.readValue(ballotsString, BallotPage.class);
+        List<PersistedBallot> fetchedBallotList = unpack(ballotPage);
         assertEquals("Unexpected list size", 1, fetchedBallotList.size());
         PersistedBallot persistedBallot = fetchedBallotList.get(0);
         assertEquals("Fetched ballot did not match posted one; votes", ballotDTO.getCandidateVotes(), persistedBallot.getCandidateVotes());
@@ -229,6 +241,17 @@ public class TestBulletinBoardPeer {
         assertEquals("Fetched ballot did not match posted one; proof", ballotDTO.getSumIsOneProof(), persistedBallot.getSumIsOneProof());
         assertNotNull("Fetched ballot had no timestamp", persistedBallot.getTs());
 
+        String fingerprint = CertificateHelper.fingerprint(CertificateHelper.readCertificate(Files.readAllBytes(Paths.get("certs/test_glob.pem"))));
+        assertEquals("Sequence number for this peer should be used", 0, unpack(getBallots(target.path("getBallots")
+                .queryParam("after", "0", fingerprint + ":0"))).size());
+        assertEquals("Sequence number for other peers should be ignored", 1, unpack(getBallots(target.path("getBallots")
+                .queryParam("after", "otherPeer:0"))).size());
+        assertEquals("Sequence number for this peer should take precedence", 1, unpack(getBallots(target.path("getBallots")
+                .queryParam("after", "0", fingerprint + ":-1"))).size());
+        assertEquals("Page should start at the first ballot", 0, ballotPage.getStart());
+        assertEquals("Page should start after the sequence number", 1, getBallots(target.path("getBallots")
+                .queryParam("after", fingerprint + ":0")).getStart());
+
         String commitmentsString = target.path("commitments").request().get(String.class);
 
         SignedEntity<CommitmentWrapper> signedCommits = mapper.readValue(
@@ -276,25 +299,66 @@ public class TestBulletinBoardPeer {
         assertEquals("Fetched certificate did not match posted one", certificate, fetchedCertificateList.get(0));
 
         String singleBallotString = target.path("getBallot/id").request().get(String.class);
-        SignedEntity<PersistedBallot> signedSingleBallot = mapper.readValue(singleBallotString, new TypeReference<SignedEntity<PersistedBallot>>() {
-        });
-        assertTrue("Failed to verify signature on single ballot", signedSingleBallot.verifySignature(this.pk));
-        PersistedBallot singleBallot = signedSingleBallot.getEntity();
+        BallotPage singleBallotPage = mapper.readValue(singleBallotString, BallotPage.class);
+        List<PersistedBallot> singleBallots = unpack(singleBallotPage);
+        assertEquals("Unexpected list size", 1, singleBallots.size());
+        assertEquals("Single ballot should be at its position", 0, singleBallotPage.getStart());
+        PersistedBallot singleBallot = singleBallots.get(0);
         assertEquals("Unexpected id", "id", singleBallot.getId());
         assertEquals("Unexpected candidate votes", candidates, singleBallot.getCandidateVotes());
         assertEquals("Unexpected 'sum is one' proof", p3, singleBallot.getSumIsOneProof());
     }
 
+    private BallotPage getBallots(JerseyWebTarget ballotsTarget) throws JsonProcessingException {
+        return mapper.readValue(ballotsTarget.request().get(String.class), BallotPage.class);
+    }
+
     private <T> T unpack(SignedEntity<? extends Wrapper<T>> entity) throws JsonProcessingException {
         assertTrue("Failed to verify signature", entity.verifySignature(pk));
         return entity.getEntity().getContent();
     }
 
+    private List<PersistedBallot> unpack(BallotPage page) throws JsonProcessingException {
+        assertTrue("Failed to verify signature on tree head", page.getTreeHead().verifySignature(pk));
+        TreeHead head = page.getTreeHead().getEntity();
+        if (!page.getBallots().isEmpty()) {
+            assertTrue("Failed to verify ballots against tree head", MerkleTree.verifyRange(
+                    page.getBallots().stream().map(BallotDigest::leaf).collect(Collectors.toList()),
+                    page.getStart(), head.getSize(),
+                    page.getProof().stream().map(Hex::decode).collect(Collectors.toList()),
+                    Hex.decode(head.getRootHash())));
+        }
+        return page.getBallots();
+    }
+
     @Test(expected = NotFoundException.class)
     public void shouldThrowExceptionWhenTryingToFetchNotCastBallot() {
         target.path("getBallot/someNotCastBallotsId").request().get(String.class);
     }
 
+    @Test
+    public void shouldReplayWriteAheadLog() throws IOException {
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO candidateVote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id", proof);
+        PersistedBallot ballot = new PersistedBallot(new BallotDTO(Collections.singletonList(candidateVote), "replayed", proof));
+
+        File wal = new File(confPath, "wal");
+        File logDir = new File(wal, "BB_peer1");
+        try (WriteAheadLog log = WriteAheadLog.open(logDir.toPath(), WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, 1, r -> {
+        })) {
+            log.commit(mapper.writeValueAsBytes(ballot), () -> {
+            });
+        }
+        files.addAll(0, Arrays.asList(logDir.listFiles()));
+        files.add(files.indexOf(new File(confPath)), logDir);
+        files.add(files.indexOf(new File(confPath)), wal);
+
+        new BulletinBoardPeer(new BulletinBoardPeer.BulletinBoardPeerConfiguration(port, confPath, 1, wal.getPath(), 0, 1));
+
+        BulletinBoardState state = ServerState.getInstance().get("bbState.1", BulletinBoardState.class);
+        assertEquals("Ballot should be replayed into the state", Collections.singletonList(ballot), state.getBallots());
+    }
+
     @After
     public void tearDown() throws InterruptedException {
         for (File file : files) {
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.mmj.eevhe.client.SSLHelper;
+import dk.mmj.eevhe.crypto.BallotDigest;
 import dk.mmj.eevhe.crypto.SecurityUtils;
 import dk.mmj.eevhe.crypto.TestUtils;
 import dk.mmj.eevhe.crypto.signature.CertificateHelper;
@@ -23,6 +24,7 @@ import org.junit.Test;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -141,11 +143,9 @@ public class TestBulletinBoardPeerCommunication {
         List<PersistedBallot> lastSeenBallotList = new ArrayList<>();
         for (JerseyWebTarget target : targets.values()) {
             String ballotsString = target.path("getBallots").request().get(String.class);
-            SignedEntity<BallotWrapper> signedBallotList = mapper.readValue(
-                    ballotsString,
-                    new TypeReference<SignedEntity<BallotWrapper>>() {
-                    });
-            List<PersistedBallot> fetchedBallotList = unpack(signedBallotList);
+            BallotPage ballotPage = mapper.readValue(ballotsString, BallotPage.class);
+            assertTrue("Failed to verify signature on tree head", ballotPage.getTreeHead().verifySignature(pk));
+            List<PersistedBallot> fetchedBallotList = ballotPage.getBallots();
 
             if (!lastSeenBallotList.isEmpty()) {
                 assertEquals("Bulletin Board Peers do not agree on ballot lists", lastSeenBallotList, fetchedBallotList);
@@ -157,6 +157,30 @@ public class TestBulletinBoardPeerCommunication {
         }
     }
 
+    @Test
+    public void shouldSendReceiptWhenBallotIsIncluded() throws JsonProcessingException {
+        PublicKey publicKey = TestUtils.generateKeysFromP2048bitsG2().getPublicKey();
+        BallotDTO ballotDTO = SecurityUtils.generateBallot(1, 3, "receipt_voter", publicKey);
+
+        targets.get(1).path("postBallot").request().post(Entity.entity(ballotDTO, MediaType.APPLICATION_JSON));
+
+        for (JerseyWebTarget target : targets.values()) {
+            Response response = target.path("receipt").path("receipt_voter").queryParam("timeout", 10_000).request().get();
+            assertEquals("Receipt should be sent once ballot is included", 200, response.getStatus());
+
+            SignedEntity<BallotReceipt> receipt = mapper.readValue(response.readEntity(String.class),
+                    new TypeReference<SignedEntity<BallotReceipt>>() {
+                    });
+            assertTrue("Failed to verify signature", receipt.verifySignature(pk));
+            assertEquals("Wrong voter id", "receipt_voter", receipt.getEntity().getId());
+            assertEquals("Wrong ballot hash", BallotDigest.hash(ballotDTO), receipt.getEntity().getBallotHash());
+            assertEquals("Wrong position", 0, receipt.getEntity().getPosition());
+        }
+
+        assertEquals("Should time out for voter who has not voted", 404,
+                targets.get(1).path("receipt").path("no_voter").queryParam("timeout", 200).request().get().getStatus());
+    }
+
     @Test
     public void shouldAgreeOnSingleBallotWhenOnePeerReceivesFromEdge() throws InterruptedException, JsonProcessingException {
         testPostAndRetrieveBallot(Collections.singletonList(1));
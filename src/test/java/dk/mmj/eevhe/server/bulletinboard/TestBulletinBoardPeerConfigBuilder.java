@@ -37,6 +37,27 @@ public class TestBulletinBoardPeerConfigBuilder extends AbstractConfigTest {
         }
     }
 
+    @Test
+    public void writeAheadLogIsRespected() {
+        BulletinBoardPeerConfigBuilder builder = new BulletinBoardPeerConfigBuilder();
+
+        try {
+            BulletinBoardPeer.BulletinBoardPeerConfiguration config = new SingletonCommandLineParser<>(builder).parse(
+                    new String[]{"--id=1", "--wal=wal/", "--walSyncInterval=50", "--walSyncBatch=20"});
+
+            assertEquals("Write-ahead log path not respected", "wal/", config.getWalPath());
+            assertEquals("Sync interval not respected", 50, config.getWalSyncInterval());
+            assertEquals("Sync batch not respected", 20, config.getWalSyncBatch());
+
+            BulletinBoardPeer.BulletinBoardPeerConfiguration inMemory =
+                    new SingletonCommandLineParser<>(new BulletinBoardPeerConfigBuilder()).parse(new String[]{"--id=1"});
+            assertNull("State should only be kept in memory by default", inMemory.getWalPath());
+        } catch (NoSuchBuilderException | WrongFormatException e) {
+            fail("failed to build config: " + e);
+            e.printStackTrace();
+        }
+    }
+
     @Test
     public void canProduce() {
         Main.main(new String[]{"--configuration", "--bb_peer_addresses", "-1_https://localhost:18081"});
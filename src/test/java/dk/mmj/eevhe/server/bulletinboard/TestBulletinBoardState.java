@@ -1,9 +1,12 @@
 package dk.mmj.eevhe.server.bulletinboard;
 
+import dk.mmj.eevhe.crypto.BallotDigest;
+import dk.mmj.eevhe.crypto.MerkleTree;
 import dk.mmj.eevhe.crypto.signature.KeyHelper;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
 import dk.mmj.eevhe.entities.*;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,7 +17,10 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static java.math.BigInteger.valueOf;
 
@@ -53,6 +59,220 @@ public class TestBulletinBoardState {
         Assert.assertTrue("BBState should contain this specific ballot", bulletinBoardState.hasVoted(persistedBallot));
     }
 
+    @Test
+    public void sameBallotShouldOnlyBeAddedOnce() {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id", proof);
+        BallotDTO ballot = new BallotDTO(Collections.singletonList(vote), "id", proof);
+        PersistedBallot first = new PersistedBallot(ballot);
+
+        first.update(bulletinBoardState);
+        new PersistedBallot(ballot).setTs(new Date(first.getTs().getTime() + 1)).update(bulletinBoardState);
+
+        Assert.assertEquals("Ballot should only be added once", Collections.singletonList(first), bulletinBoardState.getBallots());
+        Assert.assertEquals("Ballot should be found by voter id", Collections.singletonList(first), bulletinBoardState.getBallots("id"));
+        Assert.assertTrue("Voter should have voted", bulletinBoardState.hasVoted(first));
+    }
+
+    @Test
+    public void shouldReturnBallotsAfterSequenceNumber() {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id" + i, proof);
+            PersistedBallot ballot = new PersistedBallot(new BallotDTO(Collections.singletonList(vote), "id" + i, proof));
+            bulletinBoardState.addBallot(ballot);
+            ballots.add(ballot);
+        }
+
+        Assert.assertEquals("All ballots should come after -1", ballots, bulletinBoardState.getBallots(-1, 10));
+        Assert.assertEquals("Wrong ballots after sequence number 1", ballots.subList(2, 4), bulletinBoardState.getBallots(1, 10));
+        Assert.assertEquals("Limit should be respected", ballots.subList(1, 2), bulletinBoardState.getBallots(0, 1));
+        Assert.assertEquals("No ballots after the last one", Collections.emptyList(), bulletinBoardState.getBallots(3, 10));
+    }
+
+    @Test
+    public void treeHeadShouldOnlyBeSignedWhenBallotsAreAdded() {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id" + i, proof);
+            PersistedBallot ballot = new PersistedBallot(new BallotDTO(Collections.singletonList(vote), "id" + i, proof));
+            bulletinBoardState.addBallot(ballot);
+            ballots.add(ballot);
+        }
+
+        SignedEntity<TreeHead> head = bulletinBoardState.getSignedTreeHead(secretKey);
+        Assert.assertEquals("Wrong size of tree", 3, head.getEntity().getSize());
+        Assert.assertSame("Tree head should not be signed again", head, bulletinBoardState.getSignedTreeHead(secretKey));
+
+        byte[] root = Hex.decode(head.getEntity().getRootHash());
+        for (int i = 0; i < ballots.size(); i++) {
+            InclusionProof inclusionProof = bulletinBoardState.getInclusionProof(i, 3);
+            List<byte[]> path = inclusionProof.getPath().stream().map(Hex::decode).collect(Collectors.toList());
+            Assert.assertTrue("Ballot should be included in tree", MerkleTree.verifyInclusion(
+                    BallotDigest.leaf(ballots.get(i)), i, 3, path, root));
+        }
+
+        CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id3", proof);
+        bulletinBoardState.addBallot(new PersistedBallot(new BallotDTO(Collections.singletonList(vote), "id3", proof)));
+        SignedEntity<TreeHead> newHead = bulletinBoardState.getSignedTreeHead(secretKey);
+        Assert.assertEquals("Tree head should be signed again when ballots are added", 4, newHead.getEntity().getSize());
+
+        ConsistencyProof consistencyProof = bulletinBoardState.getConsistencyProof(3, 4);
+        Assert.assertTrue("Old tree should be prefix of new tree", MerkleTree.verifyConsistency(3, 4, root,
+                Hex.decode(newHead.getEntity().getRootHash()),
+                consistencyProof.getPath().stream().map(Hex::decode).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void ballotPagesShouldBeProvenAgainstTheSignedTreeHead() {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id" + i, proof);
+            PersistedBallot ballot = new PersistedBallot(new BallotDTO(Collections.singletonList(vote), "id" + i, proof));
+            bulletinBoardState.addBallot(ballot);
+            ballots.add(ballot);
+        }
+
+        SignedEntity<TreeHead> head = bulletinBoardState.getSignedTreeHead(secretKey);
+        byte[] root = Hex.decode(head.getEntity().getRootHash());
+
+        BallotPage page = bulletinBoardState.getBallotPage(0, 3, secretKey);
+        Assert.assertSame("Page should hold the cached tree head", head, page.getTreeHead());
+        Assert.assertEquals("Page should start after the given sequence number", 1, page.getStart());
+        Assert.assertEquals("Wrong ballots in page", ballots.subList(1, 4), page.getBallots());
+        Assert.assertTrue("Page should be proven at its start", MerkleTree.verifyRange(
+                page.getBallots().stream().map(BallotDigest::leaf).collect(Collectors.toList()), 1, 5,
+                page.getProof().stream().map(Hex::decode).collect(Collectors.toList()), root));
+        Assert.assertFalse("Page should not be proven at another start", MerkleTree.verifyRange(
+                page.getBallots().stream().map(BallotDigest::leaf).collect(Collectors.toList()), 0, 5,
+                page.getProof().stream().map(Hex::decode).collect(Collectors.toList()), root));
+
+        Assert.assertTrue("Page after the last ballot should be empty",
+                bulletinBoardState.getBallotPage(4, 3, secretKey).getBallots().isEmpty());
+
+        BallotPage voterPage = bulletinBoardState.getBallotPage("id2", secretKey);
+        Assert.assertEquals("Wrong ballot for voter", Collections.singletonList(ballots.get(2)), voterPage.getBallots());
+        Assert.assertEquals("Page should start at the ballot of the voter", 2, voterPage.getStart());
+        Assert.assertTrue("Ballot of voter should be proven at its position", MerkleTree.verifyRange(
+                Collections.singletonList(BallotDigest.leaf(ballots.get(2))), 2, 5,
+                voterPage.getProof().stream().map(Hex::decode).collect(Collectors.toList()), root));
+        Assert.assertNull("No page should be returned for voters without ballots", bulletinBoardState.getBallotPage("unknown", secretKey));
+    }
+
+    @Test
+    public void treeHeadsShouldOnlyBeValidForTheirOwnOrder() {
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        List<PersistedBallot> ballots = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id" + i, proof);
+            ballots.add(new PersistedBallot(new BallotDTO(Collections.singletonList(vote), "id" + i, proof)));
+        }
+
+        //Peers add ballots in the order they reach agreement on them
+        BulletinBoardState first = new BulletinBoardState();
+        BulletinBoardState second = new BulletinBoardState();
+        ballots.forEach(first::addBallot);
+        second.addBallot(ballots.get(1));
+        second.addBallot(ballots.get(0));
+
+        TreeHead firstHead = first.getTreeHead();
+        TreeHead secondHead = second.getTreeHead();
+        Assert.assertNotEquals("Different orders should give different heads", firstHead, secondHead);
+
+        byte[] leaf = BallotDigest.leaf(ballots.get(0));
+        long firstPosition = first.getReceipt("id0").join().getPosition();
+        long secondPosition = second.getReceipt("id0").join().getPosition();
+        List<byte[]> firstPath = first.getInclusionProof(firstPosition, 2).getPath().stream().map(Hex::decode).collect(Collectors.toList());
+        List<byte[]> secondPath = second.getInclusionProof(secondPosition, 2).getPath().stream().map(Hex::decode).collect(Collectors.toList());
+
+        Assert.assertTrue("Proof should verify against the head of the same state", MerkleTree.verifyInclusion(
+                leaf, firstPosition, 2, firstPath, Hex.decode(firstHead.getRootHash())));
+        Assert.assertTrue("Proof should verify against the head of the same state", MerkleTree.verifyInclusion(
+                leaf, secondPosition, 2, secondPath, Hex.decode(secondHead.getRootHash())));
+        Assert.assertFalse("Proof should not verify against the head of another state", MerkleTree.verifyInclusion(
+                leaf, firstPosition, 2, firstPath, Hex.decode(secondHead.getRootHash())));
+        Assert.assertFalse("Position from one state should not verify against the head of another", MerkleTree.verifyInclusion(
+                leaf, firstPosition, 2, secondPath, Hex.decode(secondHead.getRootHash())));
+    }
+
+    @Test
+    public void generationShouldOnlyIncreaseWhenEntitiesAreAdded() {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        SignedEntity<CertificateDTO> certificate = new SignedEntity<>(new CertificateDTO("certificate", 1), secretKey);
+
+        Assert.assertEquals("Generation should start at 0", 0, bulletinBoardState.getSignedCertificatesGeneration());
+        bulletinBoardState.addSignedCertificate(certificate);
+        Assert.assertEquals("Generation should increase when entity is added", 1, bulletinBoardState.getSignedCertificatesGeneration());
+        bulletinBoardState.addSignedCertificate(certificate);
+        Assert.assertEquals("Generation should not change when entity is already present", 1, bulletinBoardState.getSignedCertificatesGeneration());
+        Assert.assertEquals("Other lists should be unaffected", 0, bulletinBoardState.getSignedCommitmentsGeneration());
+    }
+
+    @Test
+    public void receiptShouldCompleteWhenBallotIsAdded() throws Exception {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id", proof);
+        BallotDTO first = new BallotDTO(Collections.singletonList(vote), "first", proof);
+        BallotDTO second = new BallotDTO(Collections.singletonList(vote), "second", proof);
+
+        PersistedBallot persistedFirst = new PersistedBallot(first);
+        PersistedBallot persistedSecond = new PersistedBallot(second);
+
+        CompletableFuture<BallotReceipt> receipt = bulletinBoardState.getReceipt("second");
+        bulletinBoardState.addBallot(persistedFirst);
+        Assert.assertFalse("Receipt should not be completed by other ballots", receipt.isDone());
+
+        bulletinBoardState.addBallot(persistedSecond);
+        Assert.assertEquals("Wrong receipt", new BallotReceipt("second", BallotDigest.hash(second), 1,
+                persistedSecond.getTs().getTime()), receipt.get());
+        Assert.assertEquals("Receipt should be available after ballot is added",
+                new BallotReceipt("first", BallotDigest.hash(first), 0, persistedFirst.getTs().getTime()),
+                bulletinBoardState.getReceipt("first").getNow(null));
+
+        CompletableFuture<BallotReceipt> pending = bulletinBoardState.getReceipt("third");
+        bulletinBoardState.discardPendingReceipt("third", pending);
+        Assert.assertNotSame("Pending receipt should be discarded", pending, bulletinBoardState.getReceipt("third"));
+        bulletinBoardState.discardPendingReceipt("first", bulletinBoardState.getReceipt("first"));
+        Assert.assertTrue("Completed receipt should not be discarded", bulletinBoardState.getReceipt("first").isDone());
+
+        Assert.assertNotSame("Completed receipt should not be kept once delivered", receipt, bulletinBoardState.getReceipt("second"));
+        Assert.assertEquals("Completed receipt should be built from the ballots", receipt.get(), bulletinBoardState.getReceipt("second").get());
+
+        CandidateVoteDTO otherVote = new CandidateVoteDTO(new CipherText(valueOf(166), valueOf(684983)), "id", proof);
+        bulletinBoardState.addBallot(new PersistedBallot(new BallotDTO(Collections.singletonList(otherVote), "second", proof)));
+        Assert.assertEquals("Receipt should be for the first ballot of the voter", receipt.get(), bulletinBoardState.getReceipt("second").get());
+    }
+
+    @Test
+    public void receiptShouldCompleteForRemainingWaitersWhenOneTimesOut() throws Exception {
+        BulletinBoardState bulletinBoardState = new BulletinBoardState();
+        Proof proof = new Proof(valueOf(486), valueOf(359483), valueOf(73452), valueOf(85671));
+        CandidateVoteDTO vote = new CandidateVoteDTO(new CipherText(valueOf(165), valueOf(684983)), "id", proof);
+        BallotDTO ballot = new BallotDTO(Collections.singletonList(vote), "voter", proof);
+
+        CompletableFuture<BallotReceipt> waiting = bulletinBoardState.getReceipt("voter");
+        CompletableFuture<BallotReceipt> timedOut = bulletinBoardState.getReceipt("voter");
+        bulletinBoardState.discardPendingReceipt("voter", timedOut);
+
+        PersistedBallot persisted = new PersistedBallot(ballot);
+        bulletinBoardState.addBallot(persisted);
+        Assert.assertEquals("Receipt should be completed for the waiter which did not time out",
+                new BallotReceipt("voter", BallotDigest.hash(ballot), 0, persisted.getTs().getTime()), waiting.getNow(null));
+
+        CompletableFuture<BallotReceipt> pending = bulletinBoardState.getReceipt("other");
+        bulletinBoardState.discardPendingReceipt("other", bulletinBoardState.getReceipt("other"));
+        bulletinBoardState.discardPendingReceipt("other", pending);
+        Assert.assertNotSame("Pending receipt should be discarded once no one waits for it", pending, bulletinBoardState.getReceipt("other"));
+    }
+
     @Test
     public void testResult() {
         BulletinBoardState bulletinBoardState = new BulletinBoardState();
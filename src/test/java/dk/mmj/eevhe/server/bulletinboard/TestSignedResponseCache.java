@@ -0,0 +1,86 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import dk.mmj.eevhe.client.SmileProvider;
+import dk.mmj.eevhe.crypto.signature.CertificateHelper;
+import dk.mmj.eevhe.crypto.signature.KeyHelper;
+import dk.mmj.eevhe.entities.SignedEntity;
+import dk.mmj.eevhe.entities.wrappers.StringListWrapper;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class TestSignedResponseCache {
+    private AsymmetricKeyParameter sk;
+    private AsymmetricKeyParameter pk;
+    private final AtomicInteger signatures = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        sk = KeyHelper.readKey(Paths.get("certs/test_glob_key.pem"));
+        pk = CertificateHelper.getPublicKeyFromCertificate(Paths.get("certs/test_glob.pem"));
+    }
+
+    private Supplier<SignedEntity<?>> sign(String content) {
+        return () -> {
+            signatures.incrementAndGet();
+            return new SignedEntity<>(new StringListWrapper(Collections.singletonList(content)), sk);
+        };
+    }
+
+    private SignedEntity<StringListWrapper> read(byte[] response) throws IOException {
+        return SmileProvider.readValue(response, new TypeReference<SignedEntity<StringListWrapper>>() {
+        });
+    }
+
+    @Test
+    public void shouldOnlySignOncePerGeneration() throws IOException {
+        SignedResponseCache cache = new SignedResponseCache();
+
+        byte[] first = cache.get("list", 1, MediaType.APPLICATION_JSON_TYPE, sign("first"));
+        byte[] again = cache.get("list", 1, MediaType.APPLICATION_JSON_TYPE, sign("changed"));
+        assertSame("Same bytes should be served for same generation", first, again);
+        assertEquals("Should only sign once", 1, signatures.get());
+
+        SignedEntity<StringListWrapper> response = read(first);
+        assertEquals("Wrong content", Collections.singletonList("first"), response.getEntity().getContent());
+        assertTrue("Signature should be valid", response.verifySignature(pk));
+
+        byte[] next = cache.get("list", 2, MediaType.APPLICATION_JSON_TYPE, sign("second"));
+        assertEquals("Should sign again for new generation", 2, signatures.get());
+        assertEquals("Wrong content for new generation", Collections.singletonList("second"), read(next).getEntity().getContent());
+    }
+
+    @Test
+    public void shouldServeBothFormatsFromSameSignature() throws IOException {
+        SignedResponseCache cache = new SignedResponseCache();
+
+        byte[] json = cache.get("list", 1, MediaType.APPLICATION_JSON_TYPE, sign("content"));
+        byte[] smile = cache.get("list", 1, SmileProvider.APPLICATION_SMILE_TYPE, sign("content"));
+
+        assertEquals("Should only sign once", 1, signatures.get());
+        assertEquals("Formats should contain the same signed entity", read(json), read(smile));
+        assertNotEquals("Formats should differ", new String(json), new String(smile));
+    }
+
+    @Test
+    public void shouldKeepNewerGenerationAndSeparateKeys() {
+        SignedResponseCache cache = new SignedResponseCache();
+
+        byte[] newer = cache.get("list", 2, MediaType.APPLICATION_JSON_TYPE, sign("newer"));
+        assertSame("Request with older generation should get the newer response",
+                newer, cache.get("list", 1, MediaType.APPLICATION_JSON_TYPE, sign("older")));
+
+        cache.get("other", 2, MediaType.APPLICATION_JSON_TYPE, sign("other"));
+        assertEquals("Each key should have its own response", 2, signatures.get());
+    }
+}
@@ -0,0 +1,221 @@
+package dk.mmj.eevhe.server.bulletinboard;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class TestWriteAheadLog {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("wal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path segment : segments()) {
+            Files.delete(segment);
+        }
+        Files.delete(dir);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private WriteAheadLog open(int segmentSize, long syncInterval, List<String> replayed) throws IOException {
+        return open(segmentSize, syncInterval, 2, replayed);
+    }
+
+    private WriteAheadLog open(int segmentSize, long syncInterval, int syncBatch, List<String> replayed) throws IOException {
+        return WriteAheadLog.open(dir, segmentSize, syncInterval, syncBatch,
+                record -> replayed.add(new String(record, StandardCharsets.UTF_8)));
+    }
+
+    private void commit(WriteAheadLog log, String record, List<String> applied) {
+        log.commit(record.getBytes(StandardCharsets.UTF_8), () -> applied.add(record));
+    }
+
+    @Test
+    public void shouldReplayCommittedRecords() throws IOException {
+        List<String> applied = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, new ArrayList<>())) {
+            commit(log, "first", applied);
+            commit(log, "second", applied);
+        }
+        assertEquals("Records should be applied when committed", Arrays.asList("first", "second"), applied);
+
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed)) {
+            assertEquals("Wrong records replayed", applied, replayed);
+            commit(log, "third", applied);
+        }
+
+        replayed.clear();
+        open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed).close();
+        assertEquals("Records should be appended after the replayed ones", applied, replayed);
+    }
+
+    @Test
+    public void shouldContinueInNewSegments() throws IOException {
+        List<String> applied = new ArrayList<>();
+        try (WriteAheadLog log = open(40, 0, new ArrayList<>())) {
+            for (int i = 0; i < 10; i++) {
+                commit(log, "record" + i, applied);
+            }
+            commit(log, "a record larger than the size of a segment", applied);
+            commit(log, "last", applied);
+        }
+        assertTrue("Records should be spread over several segments", segments().size() > 5);
+
+        List<String> replayed = new ArrayList<>();
+        open(40, 0, replayed).close();
+        assertEquals("Records should be replayed across segments", applied, replayed);
+    }
+
+    @Test
+    public void shouldDiscardPartiallyWrittenRecord() throws IOException {
+        List<String> applied = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, new ArrayList<>())) {
+            commit(log, "complete", applied);
+            commit(log, "torn", applied);
+        }
+
+        //Corrupts the last byte of the second record
+        int lastByte = 2 * 8 + "complete".length() + "torn".length() - 1;
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'x'}), lastByte);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed)) {
+            assertEquals("Torn record should be discarded", Collections.singletonList("complete"), replayed);
+            commit(log, "new", applied);
+        }
+
+        replayed.clear();
+        open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed).close();
+        assertEquals("New records should replace the torn one", Arrays.asList("complete", "new"), replayed);
+    }
+
+    @Test
+    public void shouldDiscardRecordsAfterEndOfLog() throws IOException {
+        List<String> applied = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, new ArrayList<>())) {
+            commit(log, "aaaa", applied);
+            commit(log, "bbbb", applied);
+            commit(log, "cccc", applied);
+        }
+
+        //The header of the second record never reached the disk, but the third record did
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[8]), 8 + "aaaa".length());
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed)) {
+            assertEquals("Log should end at the missing record", Collections.singletonList("aaaa"), replayed);
+            //Ends exactly where the third record starts
+            commit(log, "dddd", applied);
+        }
+
+        replayed.clear();
+        open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed).close();
+        assertEquals("Records after the end of the log should not be replayed", Arrays.asList("aaaa", "dddd"), replayed);
+    }
+
+    @Test
+    public void shouldRefuseCorruptRecordBeforeLastSegment() throws IOException {
+        try (WriteAheadLog log = open(40, 0, new ArrayList<>())) {
+            for (int i = 0; i < 5; i++) {
+                commit(log, "record" + i, new ArrayList<>());
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'x'}), 8);
+        }
+
+        try {
+            open(40, 0, new ArrayList<>()).close();
+            fail("Log with a corrupt record before the last segment should not be opened");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void shouldReopenAfterRollingSegmentsWithoutSync() throws IOException {
+        //Neither the interval nor the batch size is reached, so only rolling segments syncs records
+        List<String> applied = new ArrayList<>();
+        WriteAheadLog crashed = open(40, 60_000, 1000, new ArrayList<>());
+        for (int i = 0; i < 10; i++) {
+            commit(crashed, "record" + i, applied);
+        }
+        assertTrue("Records should be spread over several segments", segments().size() > 2);
+
+        //Reopens without closing, as after a crash
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(40, 60_000, 1000, replayed)) {
+            assertEquals("Records should be replayed across segments", applied, replayed);
+            commit(log, "after", applied);
+        }
+
+        replayed.clear();
+        open(40, 0, replayed).close();
+        assertEquals("Records should be appended after the replayed ones", applied, replayed);
+    }
+
+    @Test
+    public void concurrentCommitsShouldBeAppliedInLogOrder() throws Exception {
+        for (long syncInterval : new long[]{0, 5}) {
+            List<String> applied = Collections.synchronizedList(new ArrayList<>());
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try (WriteAheadLog log = open(1024, syncInterval, new ArrayList<>())) {
+                IntStream.range(0, 200).forEach(i -> executor.execute(() -> commit(log, "record" + i, applied)));
+                executor.shutdown();
+                assertTrue("Commits should finish", executor.awaitTermination(30, TimeUnit.SECONDS));
+            }
+
+            List<String> replayed = new ArrayList<>();
+            open(1024, syncInterval, replayed).close();
+            assertEquals("Every record should be applied", 200, new HashSet<>(applied).size());
+            assertEquals("Replay should apply records in the order they were applied", applied, replayed);
+
+            for (Path segment : segments()) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    @Test
+    public void emptyLogShouldReplayNothing() throws IOException {
+        List<String> replayed = new ArrayList<>();
+        open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed).close();
+        open(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 0, replayed).close();
+
+        assertEquals("Nothing should be replayed", Collections.emptyList(), replayed);
+        assertEquals("Only one segment should be created", 1, segments().size());
+    }
+}
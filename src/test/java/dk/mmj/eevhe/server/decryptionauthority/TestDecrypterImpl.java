@@ -2,6 +2,7 @@ package dk.mmj.eevhe.server.decryptionauthority;
 
 import dk.mmj.eevhe.crypto.ElGamal;
 import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.TallyEngine;
 import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
 import dk.mmj.eevhe.crypto.zeroknowledge.DLogProofUtils;
 import dk.mmj.eevhe.crypto.zeroknowledge.VoteProofUtils;
@@ -11,6 +12,7 @@ import org.junit.Test;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static dk.mmj.eevhe.TestHelper.runDKG;
 import static org.junit.Assert.*;
@@ -70,6 +72,59 @@ public class TestDecrypterImpl {
 
     }
 
+    @Test
+    public void generatePartialResultIncludesBallotsAfterUpdate() {
+        PublicKey pk = dkgRes.get(1).getPublicKey();
+        List<PersistedBallot> ballots = new ArrayList<>();
+        ballots.add(new PersistedBallot(SecurityUtils.generateBallot(0, 2, "1", pk)));
+        ballots.add(new PersistedBallot(SecurityUtils.generateBallot(1, 2, "2", pk)));
+
+        List<Candidate> candidates = Arrays.asList(
+                new Candidate(0, "Mette", "A"),
+                new Candidate(1, "Jakob", "V")
+        );
+        DecrypterImpl decrypter = new DecrypterImpl(1, () -> new ArrayList<>(ballots), b -> VoteProofUtils.verifyBallot(b, pk), candidates);
+
+        long endTime = new Date().getTime() + 60_000;
+        decrypter.update(endTime, dkgRes.get(1));
+        ballots.add(new PersistedBallot(SecurityUtils.generateBallot(1, 2, "3", pk)));
+
+        PartialResultList partialResultList = decrypter.generatePartialResult(endTime, dkgRes.get(1));
+
+        assertEquals("Ballots from before and after update should be counted", 3, partialResultList.getVoteCount());
+        partialResultList.getResults().forEach(this::assertResultPasses);
+    }
+
+    @Test
+    public void generatePartialResultWithAggregateProof() {
+        PublicKey pk = dkgRes.get(1).getPublicKey();
+        List<PersistedBallot> ballots = Arrays.asList(
+                new PersistedBallot(SecurityUtils.generateBallot(0, 3, "1", pk)),
+                new PersistedBallot(SecurityUtils.generateBallot(2, 3, "2", pk))
+        );
+        List<Candidate> candidates = Arrays.asList(
+                new Candidate(0, "Mette", "A"),
+                new Candidate(1, "Jakob", "V"),
+                new Candidate(2, "Morten", "B")
+        );
+        DecrypterImpl decrypter = new DecrypterImpl(2, () -> ballots, b -> VoteProofUtils.verifyBallot(b, pk), candidates,
+                TallyEngine.getDefault(), true);
+
+        PartialResultList partialResultList = decrypter.generatePartialResult(new Date().getTime() + 60_000, dkgRes.get(2));
+
+        assertNotNull("Aggregated proof should be included", partialResultList.getAggregateProof());
+        assertEquals("Wrong number of results", 3, partialResultList.getResults().size());
+        partialResultList.getResults().forEach(r -> assertNull("Results should not carry individual proofs", r.getProof()));
+
+        PartialKeyPair partialKeyPair = dkgRes.get(2);
+        PublicKey partialPublicKey = new PublicKey(partialKeyPair.getPartialPublicKey(), pk.getG(), pk.getQ());
+        List<CipherText> sums = partialResultList.getResults().stream().map(PartialResult::getCipherText).collect(Collectors.toList());
+        List<BigInteger> partials = partialResultList.getResults().stream().map(PartialResult::getResult).collect(Collectors.toList());
+
+        assertTrue("Failed to validate aggregated proof of correct decryption", DLogProofUtils.verifyAggregateProof(
+                sums, partials, partialPublicKey, partialResultList.getAggregateProof(), 2));
+    }
+
     private void assertResultPasses(PartialResult res) {
         PartialKeyPair partialKeyPair = dkgRes.get(res.getId());
         PublicKey pk = partialKeyPair.getPublicKey();
@@ -138,6 +138,28 @@ public class TestDecryptionAuthorityConfigBuilder extends AbstractConfigTest {
         }
     }
 
+    @Test
+    public void tallyOptionsAreRespected() {
+        DecryptionAuthorityConfigBuilder builder = new DecryptionAuthorityConfigBuilder();
+
+        try {
+            DecryptionAuthority.DecryptionAuthorityConfiguration config =
+                    new SingletonCommandLineParser<>(builder).parse(new String[]{"--id=" + id, "--tallyThreads=3"});
+
+            assertEquals("TallyThreads not respected", 3, config.getTallyThreads());
+
+            config = new SingletonCommandLineParser<>(new DecryptionAuthorityConfigBuilder()).parse(new String[]{"--id=" + id});
+            assertEquals("TallyThreads should default to the common pool", 0, config.getTallyThreads());
+            assertTrue("Proofs should be aggregated by default", config.isAggregateProofs());
+
+            config = new SingletonCommandLineParser<>(new DecryptionAuthorityConfigBuilder())
+                    .parse(new String[]{"--id=" + id, "--aggregateProofs=false"});
+            assertFalse("AggregateProofs not respected", config.isAggregateProofs());
+        } catch (NoSuchBuilderException | WrongFormatException e) {
+            fail("failed to build config: " + e);
+        }
+    }
+
     @Test
     public void noExceptionOnUnrecognized() {
         Random rand = new Random();
@@ -0,0 +1,85 @@
+package dk.mmj.eevhe.server.decryptionauthority;
+
+import dk.mmj.eevhe.crypto.ElGamal;
+import dk.mmj.eevhe.crypto.SecurityUtils;
+import dk.mmj.eevhe.crypto.TallyEngine;
+import dk.mmj.eevhe.crypto.exceptions.UnableToDecryptException;
+import dk.mmj.eevhe.entities.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dk.mmj.eevhe.crypto.TestUtils.generateKeysFromP2048bitsG2;
+import static org.junit.Assert.*;
+
+public class TestIncrementalTally {
+    private static final int CANDIDATES = 3;
+
+    private PersistedBallot ballot(int vote, String id, PublicKey publicKey) {
+        return new PersistedBallot(SecurityUtils.generateBallot(vote, CANDIDATES, id, publicKey));
+    }
+
+    @Test
+    public void shouldOnlyVerifyNewBallots() throws UnableToDecryptException {
+        KeyPair keyPair = generateKeysFromP2048bitsG2();
+        PublicKey publicKey = keyPair.getPublicKey();
+
+        List<PersistedBallot> board = new ArrayList<>();
+        AtomicInteger verified = new AtomicInteger();
+        IncrementalTally tally = new IncrementalTally(() -> new ArrayList<>(board), b -> {
+            verified.incrementAndGet();
+            return !"invalid".equals(b.getId());
+        }, CANDIDATES, publicKey, TallyEngine.getDefault());
+
+        board.add(ballot(0, "1", publicKey));
+        board.add(ballot(2, "2", publicKey));
+        long endTime = new Date().getTime() + 60_000;
+
+        assertEquals("Wrong number of ballots added", 2, tally.update(endTime));
+        assertEquals("Nothing new should be added", 0, tally.update(endTime));
+        assertEquals("Ballots should only be verified once", 2, verified.get());
+
+        board.add(ballot(2, "3", publicKey));
+        board.add(ballot(1, "invalid", publicKey));
+        board.add(ballot(1, "late", publicKey).setTs(new Date(endTime + 1)));
+
+        assertEquals("Only the new valid ballot cast before endTime should be added", 1, tally.update(endTime));
+        assertEquals("Only new ballots should be verified", 5, verified.get());
+        assertEquals("Late ballot should not be added again", 0, tally.update(endTime));
+        assertEquals("Ballots should only be verified once", 5, verified.get());
+        assertEquals("Wrong ballot count", 3, tally.getBallotCount());
+        assertEquals("Wrong seen count", 5, tally.getSeenCount());
+
+        List<CipherText> sums = tally.getSums();
+        int[] expected = {1, 0, 2};
+        for (int i = 0; i < CANDIDATES; i++) {
+            assertEquals("Wrong sum for candidate " + i, expected[i],
+                    ElGamal.homomorphicDecryption(keyPair, sums.get(i), 3));
+        }
+    }
+
+    @Test
+    public void shouldDiscardBallotsWithWrongNumberOfVotes() {
+        PublicKey publicKey = generateKeysFromP2048bitsG2().getPublicKey();
+        List<PersistedBallot> board = new ArrayList<>();
+        board.add(ballot(0, "1", publicKey));
+        board.add(new PersistedBallot(SecurityUtils.generateBallot(0, CANDIDATES + 1, "2", publicKey)));
+
+        IncrementalTally tally = new IncrementalTally(() -> board, b -> true, CANDIDATES, publicKey, TallyEngine.getDefault());
+
+        assertEquals("Only ballot with a vote for each candidate should be added", 1, tally.update(new Date().getTime() + 1000));
+        assertEquals("Both ballots should be seen", 2, tally.getSeenCount());
+    }
+
+    @Test
+    public void shouldBeEmptyWithoutBallots() {
+        IncrementalTally tally = new IncrementalTally(() -> null, b -> true, CANDIDATES, null, TallyEngine.getDefault());
+
+        assertEquals("No ballots should be added", 0, tally.update(new Date().getTime()));
+        assertEquals("Wrong ballot count", 0, tally.getBallotCount());
+        assertTrue("Sums should be empty", tally.getSums().isEmpty());
+    }
+}